@@ -25,6 +25,12 @@ import java.util.List;
  * A BatchInboxFetcher instance will hold to all fetched messages: be careful of how long you're keeping the instances around.<br/>
  * You can also set a upper messages limit, after which BatchInbox will stop fetching new messages, even if you call fetchNextPage.<br/>
  * <p>
+ * Pages following the first one may be served from the SDK's cache, and then synchronized with the server in the background.
+ * This makes the fetched messages eventually consistent: messages that have already been given to you are never modified
+ * or removed by this synchronization, so read or deleted states changed elsewhere only show up after calling
+ * {@link #fetchNewNotifications(OnNewNotificationsFetchedListener)} again. Messages that the cache was missing are
+ * given to you with the next page, before the older ones.<br/>
+ * <p>
  * Note: You will always be called back on the thread that you instantiated BatchInboxFetcher on. use {@link #setHandlerOverride(Handler)} if you want to change that behaviour.
  */
 
@@ -76,6 +82,29 @@ public class BatchInboxFetcher {
         return !impl.isEndReached();
     }
 
+    /**
+     * Returns the number of unread notifications stored in the inbox cache for this user or installation.<br/>
+     * This doesn't make any network call: notifications only appear in the cache once they have been fetched,
+     * by this fetcher or another one for the same user or installation. Use this to display a badge, for example.<br/>
+     * Silent notifications are not counted, unless disabled with {@link #setFilterSilentNotifications(boolean)}.
+     *
+     * @return The number of unread notifications, or -1 if it could not be read from the cache.
+     */
+    public int getCachedUnreadCount() {
+        return impl.getCachedUnreadCount();
+    }
+
+    /**
+     * Returns the number of notifications stored in the inbox cache for this user or installation, excluding the ones
+     * that have been marked as deleted.<br/>
+     * This doesn't make any network call. See {@link #getCachedUnreadCount()}.
+     *
+     * @return The number of notifications, or -1 if it could not be read from the cache.
+     */
+    public int getCachedNotificationCount() {
+        return impl.getCachedNotificationCount();
+    }
+
     /**
      * Mark a specific notification as read.
      *
@@ -147,6 +176,7 @@ public class BatchInboxFetcher {
     /**
      * Fetch a page of notifications.<br/>
      * Calling this method when no messages have been loaded will be equivalent to calling {@link #fetchNewNotifications(OnNewNotificationsFetchedListener)}<br/>
+     * The page may come from the cache: see this class' documentation about how it is kept in sync with the server.<br/>
      * <b>Warning: callbacks might not be called on the thread you're expecting. See {@link #setHandlerOverride(Handler)}</b>
      *
      * @param listener An optional listener can be executed on success or failure with either the fetched notifications or the detailed error.
@@ -59,7 +59,7 @@ public class BatchInboxNotificationContent {
 
     @NonNull
     public BatchNotificationSource getSource() {
-        return internalContent.source;
+        return internalContent.getSource();
     }
 
     public boolean isUnread() {
@@ -79,11 +79,8 @@ public class BatchInboxNotificationContent {
      * Warning: Other services listening to push messages might display it.
      */
     public boolean isSilent() {
-        try {
-            return internalContent.body == null || getPushPayload().getInternalData().isSilent();
-        } catch (BatchPushPayload.ParsingException ignored) {
-            return true;
-        }
+        // Doesn't build the push payload, as this is checked for every listed notification
+        return internalContent.body == null || internalContent.isSilentPush();
     }
 
     /**
@@ -92,7 +89,7 @@ public class BatchInboxNotificationContent {
      */
     @NonNull
     public Map<String, String> getRawPayload() {
-        return new HashMap<>(internalContent.payload);
+        return new HashMap<>(internalContent.getPayload());
     }
 
     /**
@@ -109,6 +109,7 @@ public final class ParameterKeys
     public final static String METRIC_WS_RETRYCOUNT_KEY	                =   "ws.metrics.retry";
 
     public final static String LOCAL_CAMPAIGNS_WS_INITIAL_DELAY         = "lc.wsdelay.initial";
+    public final static String LOCAL_CAMPAIGNS_JIT_CACHE_TTL            = "lc.jit.cache.ttl";
     public final static String WS_CIPHERV2_LAST_FAILURE_KEY             = "ws.cipherv2.lastfailure";
     public final static String DEFAULT_RETRY_NUMBER_KEY					= "ws.defaultRetry";
     public final static String DEFAULT_CONNECT_TIMEOUT_KEY				= "ws.defaultconnectTimeout";
@@ -127,6 +128,8 @@ public final class ParameterKeys
     public final static String EVENT_TRACKER_MAX_DELAY					= "tracker.delay.max";
     public final static String EVENT_TRACKER_BATCH_QUANTITY				= "tracker.batch.quantity";
     public final static String EVENT_TRACKER_EVENTS_LIMIT				= "tracker.db.limit";
+    public final static String INBOX_CACHE_MAX_NOTIFICATIONS_KEY		= "inbox.cache.limit";
+    public final static String INBOX_CACHE_MAX_SIZE_KEY					= "inbox.cache.size";
     public final static String PUSH_REGISTRATION_ID_KEY					= "push.registration.id";
     public final static String PUSH_REGISTRATION_PROVIDER_KEY			= "push.registration.provider";
     public final static String PUSH_REGISTRATION_SENDERID_KEY			= "push.registration.sender_id";
@@ -129,10 +129,13 @@ public final class Parameters {
         appParameters.put(ParameterKeys.METRIC_WS_RETRYCOUNT_KEY, 		    "0");
 
         appParameters.put(ParameterKeys.LOCAL_CAMPAIGNS_WS_INITIAL_DELAY, 	"5");
+        appParameters.put(ParameterKeys.LOCAL_CAMPAIGNS_JIT_CACHE_TTL, 	"30000");
         appParameters.put(ParameterKeys.EVENT_TRACKER_INITIAL_DELAY, 		"10000");
         appParameters.put(ParameterKeys.EVENT_TRACKER_MAX_DELAY, 	 		"120000");
         appParameters.put(ParameterKeys.EVENT_TRACKER_BATCH_QUANTITY, 		"20");
         appParameters.put(ParameterKeys.EVENT_TRACKER_EVENTS_LIMIT, 		"10000");
+        appParameters.put(ParameterKeys.INBOX_CACHE_MAX_NOTIFICATIONS_KEY, "1000");
+        appParameters.put(ParameterKeys.INBOX_CACHE_MAX_SIZE_KEY, 			"5242880");
         appParameters.put(ParameterKeys.DEFAULT_CONNECT_TIMEOUT_KEY,		"10000");
         appParameters.put(ParameterKeys.DEFAULT_READ_TIMEOUT_KEY,			"10000");
         appParameters.put(ParameterKeys.DEFAULT_RETRY_NUMBER_KEY, 			"2");
@@ -5,11 +5,11 @@ import android.net.TrafficStats;
 import android.text.TextUtils;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 import com.batch.android.FailReason;
 import com.batch.android.core.URLBuilder.CryptorMode;
 import com.batch.android.core.Webservice.WebserviceError.Reason;
 import com.batch.android.core.domain.DomainManager;
-import com.batch.android.core.domain.DomainStore;
 import com.batch.android.di.providers.DomainManagerProvider;
 import com.batch.android.di.providers.OptOutModuleProvider;
 import com.batch.android.di.providers.ParametersProvider;
@@ -17,6 +17,7 @@ import com.batch.android.di.providers.RuntimeManagerProvider;
 import com.batch.android.di.providers.SecureDateProviderProvider;
 import com.batch.android.json.JSONException;
 import com.batch.android.json.JSONObject;
+import com.batch.android.json.JSONReader;
 import com.batch.android.module.OptOutModule;
 import com.batch.android.post.PostDataProvider;
 import java.io.BufferedInputStream;
@@ -30,6 +31,7 @@ import java.net.MalformedURLException;
 import java.net.SocketTimeoutException;
 import java.net.URL;
 import java.net.URLEncoder;
+import java.nio.ByteBuffer;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -41,6 +43,16 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.TimeZone;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.zip.GZIPInputStream;
 import javax.net.ssl.HttpsURLConnection;
@@ -71,6 +83,22 @@ public abstract class Webservice {
      */
     private static Interceptor wsInterceptor;
 
+    /**
+     * Delay (in ms) given to the primary host before the fallback host joins a connection race
+     */
+    private static final long RACE_FALLBACK_HEAD_START_MS = 250;
+
+    /**
+     * Maximum number of threads connecting racers: two per race, for as many races as there are
+     * {@link TaskExecutor} threads by default. Races that can't get a thread connect without racing.
+     */
+    private static final int RACE_EXECUTOR_MAX_THREADS = 10;
+
+    /**
+     * Executor running connection races, lazily created
+     */
+    private static ExecutorService raceExecutor;
+
     // ------------------------------------------>
 
     /**
@@ -433,6 +461,8 @@ public abstract class Webservice {
          * Execute request, with retry
          */
         int count = 0;
+        boolean hostErrorOccurred = false;
+        DomainManager domainManager = DomainManagerProvider.get();
         do {
             // Handle retry
             if (count > 0) {
@@ -441,19 +471,37 @@ public abstract class Webservice {
 
             InputStream in = null;
             ByteArrayOutputStream baos = null;
-            DomainManager domainManager = DomainManagerProvider.get(new DomainStore());
+            boolean fallbackWonRace = false;
             try {
                 try {
                     TrafficStats.setThreadStatsTag((int) Thread.currentThread().getId());
-                    connection = buildConnection();
-                    connection.connect();
+                    String fallbackHost = null;
+                    PreparedRequest request = null;
+                    if (hostErrorOccurred && domainManager.isRaceModeActivated()) {
+                        request = prepareRequest();
+                        fallbackHost = domainManager.fallbackHost(request.url.getHost());
+                    }
+
+                    if (fallbackHost != null) {
+                        RaceResult raceResult = buildRacingConnection(request, fallbackHost);
+                        connection = raceResult.connection;
+                        fallbackWonRace = raceResult.fallbackWon;
+                    } else {
+                        connection = buildConnection();
+                        connection.connect();
+                    }
                 } catch (IOException ce) {
                     error = new WebserviceError(WebserviceError.Reason.NETWORK_ERROR, ce);
                     responseCode = -1;
                     count++;
 
+                    if (ce instanceof SocketTimeoutException) {
+                        hostErrorOccurred = true;
+                    }
+
                     /// On host error
                     if (ce instanceof java.net.UnknownHostException || ce instanceof java.net.ConnectException) {
+                        hostErrorOccurred = true;
                         String host = builder.build().getHost();
                         /*
                             URL was build with `canCheckOriginalDomainAvailability` to override current domain
@@ -488,13 +536,16 @@ public abstract class Webservice {
                 responseCode = connection.getResponseCode();
 
                 if (isResponseValid(responseCode)) {
-                    /// If URL was build with `canCheckOriginalDomainAvailability` to override current domain so success means that the original domain is now available
-                    String host = buildURL().getHost();
-                    if (domainManager.isOriginalDomain(host) && !domainManager.isCurrentDomain(host)) {
-                        domainManager.resetDomainToOriginal();
-                    }
+                    /// The primary host did not answer when the fallback won a race: keep its errors
+                    if (!fallbackWonRace) {
+                        /// If URL was build with `canCheckOriginalDomainAvailability` to override current domain so success means that the original domain is now available
+                        String host = connection.getURL().getHost();
+                        if (domainManager.isOriginalDomain(host) && !domainManager.isCurrentDomain(host)) {
+                            domainManager.resetDomainToOriginal();
+                        }
 
-                    domainManager.resetErrorCountIfNeeded();
+                        domainManager.resetErrorCountIfNeeded();
+                    }
 
                     // Treat GZIP stream.
                     String header = connection.getHeaderField("Content-Encoding");
@@ -733,6 +784,16 @@ public abstract class Webservice {
         return response;
     }
 
+    /**
+     * Return a streaming reader on the JSON body, for responses too large to be parsed as a whole
+     *
+     * @return JSON reader positioned before the response's root value
+     * @throws WebserviceError on error on the webservice
+     */
+    protected JSONReader getBasicJsonResponseReader() throws WebserviceError {
+        return new JSONReader(ByteBuffer.wrap(executeRequest()));
+    }
+
     /**
      * Tell if an http response code is valid or not
      *
@@ -810,10 +871,59 @@ public abstract class Webservice {
      * @return HttpURLConnection on success|null otherwise
      */
     protected HttpURLConnection buildConnection() throws Exception {
+        PreparedRequest request = prepareRequest();
+        HttpURLConnection connection = openConnection(request, null);
+        writePostContent(connection, request);
+        return connection;
+    }
+
+    /**
+     * Compute everything that does not depend on the connection: URL, post body and interceptor data.
+     * This is done once per attempt, even if multiple connections are opened for it.
+     */
+    @VisibleForTesting
+    PreparedRequest prepareRequest() throws Exception {
+        PreparedRequest request = new PreparedRequest();
+        request.url = buildURL();
+
+        /*
+         * Post parameters
+         * @see http://stackoverflow.com/questions/9767952/how-to-add-parameters-to-httpurlconnection-using-post
+         */
+        if (type == RequestType.POST) {
+            PostDataProvider<?> postProvider = getPostDataProvider();
+            if (postProvider != null) {
+                request.contentType = postProvider.getContentType();
+                request.postContent = buildPostParameters(postProvider);
+            }
+
+            if (Parameters.ENABLE_WS_INTERCEPTOR && wsInterceptor != null) {
+                if (postProvider != null) {
+                    request.interceptorData = postProvider.getData();
+                } else {
+                    request.interceptorData = "{'error':'Internal interceptor error'}".getBytes("UTF-8");
+                }
+            }
+        }
+        return request;
+    }
+
+    /**
+     * Open a connection for a prepared request, without sending its body
+     *
+     * @param request      Prepared request
+     * @param hostOverride Host to use instead of the request's one, null to keep it
+     */
+    private HttpURLConnection openConnection(@NonNull PreparedRequest request, @Nullable String hostOverride)
+        throws Exception {
         /*
          * Create connection
          */
-        HttpURLConnection connection = (HttpURLConnection) buildURL().openConnection();
+        URL url = request.url;
+        if (hostOverride != null) {
+            url = new URL(url.getProtocol(), hostOverride, url.getPort(), url.getFile());
+        }
+        HttpURLConnection connection = createConnection(url);
 
         if (Parameters.ENABLE_WS_INTERCEPTOR && wsInterceptor != null) {
             connection = wsInterceptor.onBuildHttpConnection(connection);
@@ -844,49 +954,211 @@ public abstract class Webservice {
         }
         connection.setRequestProperty("Accept-Encoding", "gzip");
 
-        /*
-         * Post parameters
-         * @see http://stackoverflow.com/questions/9767952/how-to-add-parameters-to-httpurlconnection-using-post
-         */
-        byte[] postContent = null;
         if (type == RequestType.POST) {
             connection.setDoOutput(true);
             connection.setRequestMethod("POST");
 
-            PostDataProvider<?> postProvider = getPostDataProvider();
-            if (postProvider != null) {
-                connection.setRequestProperty("Content-Type", postProvider.getContentType());
-                postContent = buildPostParameters(postProvider);
+            if (request.contentType != null) {
+                connection.setRequestProperty("Content-Type", request.contentType);
             }
         }
 
         // Add signature and checksum headers
-        addRequestSignatures(connection, postContent);
+        addRequestSignatures(connection, request.postContent);
 
         if (Parameters.ENABLE_WS_INTERCEPTOR && wsInterceptor != null) {
-            byte[] data = null;
+            wsInterceptor.onPreConnect(
+                id,
+                connection,
+                request.interceptorData,
+                request.postContent != null ? request.postContent.length : 0
+            );
+        }
 
-            if (type == RequestType.POST) {
-                PostDataProvider<?> provider = getPostDataProvider();
-                if (provider != null) {
-                    data = provider.getData();
-                } else {
-                    data = "{'error':'Internal interceptor error'}".getBytes("UTF-8");
+        return connection;
+    }
+
+    /**
+     * Create a connection to the given URL, without opening it
+     */
+    @VisibleForTesting
+    protected HttpURLConnection createConnection(@NonNull URL url) throws IOException {
+        return (HttpURLConnection) url.openConnection();
+    }
+
+    /**
+     * Send the body of a prepared request, if any.
+     * Once we write to the output stream, we cannot update anything in the connection
+     */
+    private void writePostContent(@NonNull HttpURLConnection connection, @NonNull PreparedRequest request)
+        throws IOException {
+        if (request.postContent != null) {
+            try (DataOutputStream bos = new DataOutputStream(connection.getOutputStream())) {
+                bos.write(request.postContent);
+            }
+        }
+    }
+
+    /**
+     * Open connections to both the primary host and the fallback host, and keep the first one to connect.
+     * The primary host gets a head start, cut short if it fails, and the loser is disconnected before anything
+     * is sent on it.
+     *
+     * @param request      Prepared request
+     * @param fallbackHost Host to race against the request's one
+     * @return The connected winner, with its body sent
+     * @throws Exception The primary host error if neither connection succeeded
+     */
+    @VisibleForTesting
+    RaceResult buildRacingConnection(@NonNull PreparedRequest request, @NonNull String fallbackHost)
+        throws Exception {
+        final AtomicBoolean settled = new AtomicBoolean(false);
+        final CountDownLatch primaryFailed = new CountDownLatch(1);
+        final int threadStatsTag = (int) Thread.currentThread().getId();
+
+        ExecutorCompletionService<HttpURLConnection> completionService = new ExecutorCompletionService<>(
+            getRaceExecutor()
+        );
+        Future<HttpURLConnection> primary;
+        try {
+            primary =
+                completionService.submit(() -> {
+                    try {
+                        return connectRacer(request, null, settled, threadStatsTag, null);
+                    } catch (Exception e) {
+                        primaryFailed.countDown();
+                        throw e;
+                    }
+                });
+        } catch (RejectedExecutionException e) {
+            Logger.internal(TAG, "Too many connection races, connecting to the primary host only");
+            HttpURLConnection connection = openConnection(request, null);
+            connection.connect();
+            writePostContent(connection, request);
+            return new RaceResult(connection, false);
+        }
+
+        Future<HttpURLConnection> fallback = null;
+        try {
+            fallback =
+                completionService.submit(() ->
+                    connectRacer(request, fallbackHost, settled, threadStatsTag, primaryFailed)
+                );
+        } catch (RejectedExecutionException e) {
+            Logger.internal(TAG, "Too many connection races, not racing the fallback host");
+        }
+
+        Exception primaryError = null;
+        int racerCount = fallback != null ? 2 : 1;
+        for (int i = 0; i < racerCount; i++) {
+            Future<HttpURLConnection> done = completionService.take();
+            try {
+                HttpURLConnection connection = done.get();
+                if (connection != null) {
+                    boolean fallbackWon = done == fallback;
+                    Logger.internal(TAG, "Connection race won by " + connection.getURL().getHost());
+                    writePostContent(connection, request);
+                    return new RaceResult(connection, fallbackWon);
+                }
+            } catch (ExecutionException e) {
+                if (done == primary && e.getCause() instanceof Exception) {
+                    primaryError = (Exception) e.getCause();
                 }
             }
+        }
 
-            wsInterceptor.onPreConnect(id, connection, data, postContent != null ? postContent.length : 0);
+        primary.cancel(true);
+        if (fallback != null) {
+            fallback.cancel(true);
         }
+        throw primaryError != null ? primaryError : new IOException("Both racing connections failed");
+    }
 
-        /*
-         * Once we write to the output stream, we cannot update anything in the connection
+    /**
+     * Connect one side of a connection race
+     *
+     * @param headStartEnd Latch ending the other side's head start early, null to start right away
+     * @return The connection if it won the race, null if it lost
+     */
+    @Nullable
+    private HttpURLConnection connectRacer(
+        @NonNull PreparedRequest request,
+        @Nullable String hostOverride,
+        @NonNull AtomicBoolean settled,
+        int threadStatsTag,
+        @Nullable CountDownLatch headStartEnd
+    ) throws Exception {
+        if (headStartEnd != null) {
+            headStartEnd.await(RACE_FALLBACK_HEAD_START_MS, TimeUnit.MILLISECONDS);
+        }
+        if (settled.get()) {
+            return null;
+        }
+
+        TrafficStats.setThreadStatsTag(threadStatsTag);
+        HttpURLConnection connection = openConnection(request, hostOverride);
+        connection.connect();
+        if (settled.compareAndSet(false, true)) {
+            return connection;
+        }
+
+        // Lost the race: nothing has been sent yet
+        connection.disconnect();
+        return null;
+    }
+
+    private static synchronized ExecutorService getRaceExecutor() {
+        if (raceExecutor == null) {
+            raceExecutor =
+                new ThreadPoolExecutor(
+                    0,
+                    RACE_EXECUTOR_MAX_THREADS,
+                    30,
+                    TimeUnit.SECONDS,
+                    new SynchronousQueue<>(),
+                    new NamedThreadFactory("webservice.race")
+                );
+        }
+        return raceExecutor;
+    }
+
+    /**
+     * Outcome of a connection race
+     */
+    static final class RaceResult {
+
+        /**
+         * Connection of the winner, with the request body sent
          */
-        if (postContent != null) {
-            try (DataOutputStream bos = new DataOutputStream(connection.getOutputStream())) {
-                bos.write(postContent);
-            }
+        @NonNull
+        final HttpURLConnection connection;
+
+        /**
+         * Whether the fallback host won the race: the primary host did not answer in time
+         */
+        final boolean fallbackWon;
+
+        RaceResult(@NonNull HttpURLConnection connection, boolean fallbackWon) {
+            this.connection = connection;
+            this.fallbackWon = fallbackWon;
         }
-        return connection;
+    }
+
+    /**
+     * Everything about a request that does not depend on the connection it will be sent on
+     */
+    static class PreparedRequest {
+
+        URL url;
+
+        @Nullable
+        String contentType;
+
+        @Nullable
+        byte[] postContent;
+
+        @Nullable
+        byte[] interceptorData;
     }
 
     /**
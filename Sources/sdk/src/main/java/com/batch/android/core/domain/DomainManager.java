@@ -1,8 +1,10 @@
 package com.batch.android.core.domain;
 
 import android.annotation.SuppressLint;
+import androidx.annotation.Nullable;
 import com.batch.android.core.Logger;
 import com.batch.android.processor.Module;
+import com.batch.android.processor.Provide;
 import com.batch.android.processor.Singleton;
 import java.util.Arrays;
 import java.util.Date;
@@ -16,6 +18,7 @@ public class DomainManager implements IDomainManager {
     public static final int DNS_DOMAIN_ERROR_LIMIT_COUNT = 3;
     public static final int DNS_DOMAIN_ERROR_MIN_DELAY_SECOND = 5;
     private static final boolean DNS_FALLBACK_FEATURE_FLAG = false;
+    private static final boolean DNS_RACE_MODE_FEATURE_FLAG = true;
     private static final String TAG = "DomainManager";
 
     private final IDomainStore store;
@@ -29,6 +32,11 @@ public class DomainManager implements IDomainManager {
         this.store = store;
     }
 
+    @Provide
+    public static DomainManager provide() {
+        return new DomainManager(new DomainStore());
+    }
+
     //endregion
 
     //region Functions
@@ -173,5 +181,24 @@ public class DomainManager implements IDomainManager {
     public boolean isFeatureActivated() {
         return DNS_FALLBACK_FEATURE_FLAG;
     }
+
+    @Override
+    public boolean isRaceModeActivated() {
+        return isFeatureActivated() && DNS_RACE_MODE_FEATURE_FLAG;
+    }
+
+    @Nullable
+    @Override
+    public String fallbackHost(String host) {
+        for (int i = 0; i < domains.size(); i++) {
+            String domain = domains.get(i);
+            if (host.equals(domain) || host.endsWith("." + domain)) {
+                /// Swap the domain suffix, keeping the subdomain
+                String fallbackDomain = domains.get((i + 1) % domains.size());
+                return host.substring(0, host.length() - domain.length()) + fallbackDomain;
+            }
+        }
+        return null;
+    }
     //endregion
 }
@@ -3,13 +3,25 @@ package com.batch.android.core.domain;
 import android.annotation.SuppressLint;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 import com.batch.android.core.Logger;
+import com.batch.android.core.NamedThreadFactory;
 import com.batch.android.core.ParameterKeys;
+import com.batch.android.core.Parameters;
 import com.batch.android.di.providers.ParametersProvider;
 import com.batch.android.di.providers.RuntimeManagerProvider;
 import com.batch.android.metrics.MetricRegistry;
 import java.util.Date;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Domain state store.
+ * <p>
+ * State is read from the parameters once, then kept in memory. Updates are applied in memory
+ * and persisted in the background (write-behind), so webservice calls never hit the storage.
+ */
 public class DomainStore implements IDomainStore {
 
     //region Parameters
@@ -18,15 +30,59 @@ public class DomainStore implements IDomainStore {
     protected static final Integer DNS_DOMAIN_LAST_CHECK_MIN_DELAY_SECOND = 172800; // 48 hours
     public static final String DNS_DOMAIN_ORIGINAL = "batch.com";
 
+    /**
+     * Executor persisting the in-memory state
+     */
+    private final Executor persistExecutor;
+
+    /**
+     * Whether a persist task is already waiting on the executor
+     */
+    private final AtomicBoolean persistScheduled = new AtomicBoolean(false);
+
+    private final Object lock = new Object();
+
+    private boolean loaded = false;
+
+    /**
+     * Persisted domain, null if it has never been changed
+     */
+    @Nullable
+    private String domain;
+
+    private int errorCount;
+
+    @Nullable
+    private Long errorUpdateDate;
+
+    @Nullable
+    private Long lastUpdateDate;
+
+    @Nullable
+    private Long lastCheckDate;
+
+    //endregion
+
+    //region Initializer
+    public DomainStore() {
+        this(Executors.newSingleThreadExecutor(new NamedThreadFactory("domain.store")));
+    }
+
+    @VisibleForTesting
+    DomainStore(@NonNull Executor persistExecutor) {
+        this.persistExecutor = persistExecutor;
+    }
+
     //endregion
 
     //region Functions
     @NonNull
     @Override
     public String getCurrentDomain() {
-        return ParametersProvider
-            .get(RuntimeManagerProvider.get().getContext())
-            .get(ParameterKeys.DNS_DOMAIN_KEY, DomainManager.domains.get(0));
+        synchronized (lock) {
+            loadIfNeeded();
+            return domain != null ? domain : DomainManager.domains.get(0);
+        }
     }
 
     @Override
@@ -34,27 +90,24 @@ public class DomainStore implements IDomainStore {
         /// Reset domain error parameter values
         resetErrorCountIfNeeded();
 
-        if (domain != null) {
-            /// Save the new domain
-            Logger.internal(
-                TAG,
-                String.format("Set BAParameter key: '%s' with '%s'.", ParameterKeys.DNS_DOMAIN_KEY, domain)
-            );
-
-            ParametersProvider
-                .get(RuntimeManagerProvider.get().getContext())
-                .set(ParameterKeys.DNS_DOMAIN_KEY, domain, true);
-        } else {
-            /// Reset the domain
-            Logger.internal(TAG, String.format("Remove BAParameter key: '%s'.", ParameterKeys.DNS_DOMAIN_KEY));
+        synchronized (lock) {
+            loadIfNeeded();
+            if (domain != null) {
+                /// Save the new domain
+                Logger.internal(
+                    TAG,
+                    String.format("Set BAParameter key: '%s' with '%s'.", ParameterKeys.DNS_DOMAIN_KEY, domain)
+                );
+            } else {
+                /// Reset the domain
+                Logger.internal(TAG, String.format("Remove BAParameter key: '%s'.", ParameterKeys.DNS_DOMAIN_KEY));
+            }
+            this.domain = domain;
 
-            ParametersProvider.get(RuntimeManagerProvider.get().getContext()).remove(ParameterKeys.DNS_DOMAIN_KEY);
+            /// Update domain last update date
+            this.lastUpdateDate = new Date().getTime();
         }
-
-        /// Update domain last update date
-        ParametersProvider
-            .get(RuntimeManagerProvider.get().getContext())
-            .set(ParameterKeys.DNS_DOMAIN_LAST_UPDATE_DATE, String.valueOf(new Date().getTime()), true);
+        persistAsync();
 
         Logger.internal(TAG, String.format("New current domain: '%s.", getCurrentDomain()));
     }
@@ -62,36 +115,32 @@ public class DomainStore implements IDomainStore {
     @SuppressLint("DefaultLocale")
     @Override
     public int incrementErrorCount() {
-        int errorCount = Integer.parseInt(
-            ParametersProvider
-                .get(RuntimeManagerProvider.get().getContext())
-                .get(ParameterKeys.DNS_DOMAIN_ERROR_COUNT_KEY, "0")
-        );
-
-        /// Increment the counter
-        int newValue = errorCount + 1;
+        int oldValue;
+        int newValue;
         Date errorUpdateDate = new Date();
+        synchronized (lock) {
+            loadIfNeeded();
+            oldValue = errorCount;
+
+            /// Increment the counter
+            newValue = oldValue + 1;
+            this.errorCount = newValue;
+            this.errorUpdateDate = errorUpdateDate.getTime();
+        }
+        persistAsync();
 
         Logger.internal(
             TAG,
             String.format(
                 "Increment BAParameter key: '%s' by 1, (old value: %d, new value: %d, domain: %s). %s",
                 ParameterKeys.DNS_DOMAIN_ERROR_COUNT_KEY,
-                errorCount,
+                oldValue,
                 newValue,
                 getCurrentDomain(),
                 errorUpdateDate
             )
         );
 
-        /// Save new the domain error values
-        ParametersProvider
-            .get(RuntimeManagerProvider.get().getContext())
-            .set(ParameterKeys.DNS_DOMAIN_ERROR_COUNT_KEY, String.valueOf(newValue), true);
-        ParametersProvider
-            .get(RuntimeManagerProvider.get().getContext())
-            .set(ParameterKeys.DNS_DOMAIN_ERROR_UPDATE_DATE, String.valueOf(errorUpdateDate.getTime()), true);
-
         /// Add metric
         MetricRegistry.dnsErrorCount.labels("KO").inc();
 
@@ -100,9 +149,11 @@ public class DomainStore implements IDomainStore {
 
     @Override
     public void updateLastCheckDomainDate() {
-        ParametersProvider
-            .get(RuntimeManagerProvider.get().getContext())
-            .set(ParameterKeys.DNS_DOMAIN_LAST_CHECK_DATE, String.valueOf(new Date().getTime()), true);
+        synchronized (lock) {
+            loadIfNeeded();
+            this.lastCheckDate = new Date().getTime();
+        }
+        persistAsync();
     }
 
     @Override
@@ -112,26 +163,18 @@ public class DomainStore implements IDomainStore {
 
     @Override
     public void resetErrorCountIfNeeded() {
-        /// No domain error count case
-        if (
-            Integer.parseInt(
-                ParametersProvider
-                    .get(RuntimeManagerProvider.get().getContext())
-                    .get(ParameterKeys.DNS_DOMAIN_ERROR_COUNT_KEY, "0")
-            ) ==
-            0
-        ) {
-            return;
-        }
-
-        /// Reset domain error count
-        ParametersProvider
-            .get(RuntimeManagerProvider.get().getContext())
-            .remove(ParameterKeys.DNS_DOMAIN_ERROR_COUNT_KEY);
+        synchronized (lock) {
+            loadIfNeeded();
+            /// No domain error count case
+            if (errorCount == 0) {
+                return;
+            }
 
-        ParametersProvider
-            .get(RuntimeManagerProvider.get().getContext())
-            .remove(ParameterKeys.DNS_DOMAIN_ERROR_UPDATE_DATE);
+            /// Reset domain error count
+            this.errorCount = 0;
+            this.errorUpdateDate = null;
+        }
+        persistAsync();
 
         /// Add metric
         MetricRegistry.dnsErrorCount.labels("OK").reset();
@@ -140,45 +183,36 @@ public class DomainStore implements IDomainStore {
     @Override
     @Nullable
     public Date lastErrorUpdateDate() {
-        String value = ParametersProvider
-            .get(RuntimeManagerProvider.get().getContext())
-            .get(ParameterKeys.DNS_DOMAIN_ERROR_UPDATE_DATE, null);
-
-        if (value == null) {
-            return null;
+        synchronized (lock) {
+            loadIfNeeded();
+            if (errorUpdateDate == null) {
+                return null;
+            }
+            return new Date(errorUpdateDate);
         }
-        return new Date(Long.parseLong(value));
     }
 
     @Override
     public boolean canCheckOriginalDomainAvailability() {
-        /// No domain changes
-        String currentDomain = ParametersProvider
-            .get(RuntimeManagerProvider.get().getContext())
-            .get(ParameterKeys.DNS_DOMAIN_KEY, null);
-        String lastDomainUpdateDateStringValue = ParametersProvider
-            .get(RuntimeManagerProvider.get().getContext())
-            .get(ParameterKeys.DNS_DOMAIN_LAST_UPDATE_DATE, null);
-
-        if (currentDomain == null || lastDomainUpdateDateStringValue == null) {
-            return false;
-        }
-        /// Current domain is the original one
-        if (currentDomain.equals(DNS_DOMAIN_ORIGINAL)) {
-            return false;
-        }
+        synchronized (lock) {
+            loadIfNeeded();
+            /// No domain changes
+            if (domain == null || lastUpdateDate == null) {
+                return false;
+            }
+            /// Current domain is the original one
+            if (domain.equals(DNS_DOMAIN_ORIGINAL)) {
+                return false;
+            }
 
-        String lastDomainCheckDateStringValue = ParametersProvider
-            .get(RuntimeManagerProvider.get().getContext())
-            .get(ParameterKeys.DNS_DOMAIN_LAST_CHECK_DATE, null);
-        /// Never check case
-        if (lastDomainCheckDateStringValue == null) {
-            return true;
-        }
+            /// Never check case
+            if (lastCheckDate == null) {
+                return true;
+            }
 
-        long lastDomainCheckDate = Long.parseLong(lastDomainCheckDateStringValue);
-        /// Throttler case or all good
-        return (lastDomainCheckDate + (DNS_DOMAIN_ERROR_MIN_DELAY_SECOND * 1000L)) < new Date().getTime();
+            /// Throttler case or all good
+            return (lastCheckDate + (DNS_DOMAIN_ERROR_MIN_DELAY_SECOND * 1000L)) < new Date().getTime();
+        }
     }
 
     @Override
@@ -191,5 +225,81 @@ public class DomainStore implements IDomainStore {
     public boolean isCurrentDomain(String domain) {
         return domain.contains(getCurrentDomain());
     }
+
+    //endregion
+
+    //region Persistence
+
+    /**
+     * Read the persisted state, once.
+     * Must be called while holding {@link #lock}
+     */
+    private void loadIfNeeded() {
+        if (loaded) {
+            return;
+        }
+        Parameters parameters = ParametersProvider.get(RuntimeManagerProvider.get().getContext());
+        domain = parameters.get(ParameterKeys.DNS_DOMAIN_KEY, null);
+        errorCount = Integer.parseInt(parameters.get(ParameterKeys.DNS_DOMAIN_ERROR_COUNT_KEY, "0"));
+        errorUpdateDate = parseDate(parameters.get(ParameterKeys.DNS_DOMAIN_ERROR_UPDATE_DATE, null));
+        lastUpdateDate = parseDate(parameters.get(ParameterKeys.DNS_DOMAIN_LAST_UPDATE_DATE, null));
+        lastCheckDate = parseDate(parameters.get(ParameterKeys.DNS_DOMAIN_LAST_CHECK_DATE, null));
+        loaded = true;
+    }
+
+    @Nullable
+    private static Long parseDate(@Nullable String value) {
+        if (value == null) {
+            return null;
+        }
+        return Long.parseLong(value);
+    }
+
+    /**
+     * Schedule a write of the in-memory state.
+     * Updates made while a write is pending are coalesced into it.
+     */
+    private void persistAsync() {
+        if (persistScheduled.compareAndSet(false, true)) {
+            persistExecutor.execute(this::persist);
+        }
+    }
+
+    private void persist() {
+        persistScheduled.set(false);
+
+        String domain;
+        int errorCount;
+        Long errorUpdateDate;
+        Long lastUpdateDate;
+        Long lastCheckDate;
+        synchronized (lock) {
+            domain = this.domain;
+            errorCount = this.errorCount;
+            errorUpdateDate = this.errorUpdateDate;
+            lastUpdateDate = this.lastUpdateDate;
+            lastCheckDate = this.lastCheckDate;
+        }
+
+        try {
+            Parameters parameters = ParametersProvider.get(RuntimeManagerProvider.get().getContext());
+            parameters.setOrRemove(ParameterKeys.DNS_DOMAIN_KEY, domain, true);
+            parameters.setOrRemove(
+                ParameterKeys.DNS_DOMAIN_ERROR_COUNT_KEY,
+                errorCount != 0 ? String.valueOf(errorCount) : null,
+                true
+            );
+            parameters.setOrRemove(ParameterKeys.DNS_DOMAIN_ERROR_UPDATE_DATE, dateToString(errorUpdateDate), true);
+            parameters.setOrRemove(ParameterKeys.DNS_DOMAIN_LAST_UPDATE_DATE, dateToString(lastUpdateDate), true);
+            parameters.setOrRemove(ParameterKeys.DNS_DOMAIN_LAST_CHECK_DATE, dateToString(lastCheckDate), true);
+        } catch (Exception e) {
+            Logger.internal(TAG, "Could not persist domain state", e);
+        }
+    }
+
+    @Nullable
+    private static String dateToString(@Nullable Long date) {
+        return date != null ? String.valueOf(date) : null;
+    }
     //endregion
 }
@@ -14,7 +14,7 @@ public final class DomainURLBuilder {
      * @return The domain URL for the specified service.
      */
     private static String getDomainURL(DomainService service, boolean shouldCheckOriginalDomainAvailability) {
-        IDomainManager manager = DomainManagerProvider.get(new DomainStore());
+        IDomainManager manager = DomainManagerProvider.get();
         boolean canCheckOriginalDomainAvailability =
             shouldCheckOriginalDomainAvailability && manager.canCheckOriginalDomainAvailability();
 
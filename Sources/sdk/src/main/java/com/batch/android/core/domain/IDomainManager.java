@@ -2,6 +2,17 @@ package com.batch.android.core.domain;
 
 interface IDomainManager {
     boolean isFeatureActivated();
+
+    /**
+     * Determine if connections may be raced against the fallback domain after a host error
+     */
+    boolean isRaceModeActivated();
+
+    /**
+     * Returns the given host with its domain swapped for the other known domain, keeping the subdomain.
+     * Returns null if the host does not belong to a known domain.
+     */
+    String fallbackHost(String host);
     /**
      * Update current domain if needed
      */
@@ -29,11 +29,18 @@ public final class InboxDatabaseHelper extends SQLiteOpenHelper {
     protected static final String COLUMN_DELETED = "deleted";
     protected static final String COLUMN_DATE = "date";
     protected static final String COLUMN_PAYLOAD = "payload";
+    protected static final String COLUMN_PAYLOAD_HASH = "payload_hash";
+    protected static final String COLUMN_SOURCE = "source";
+    protected static final String COLUMN_SILENT = "silent";
+
+    protected static final String INDEX_NOTIFICATIONS_DATE = "notifications_date_idx";
+    protected static final String INDEX_FETCHERS_NOTIFICATIONS_NOTIFICATION_ID =
+        "fetcher_notifications_notification_id_idx";
 
     // -------------------------------------------->
 
     private static final String DATABASE_NAME = "ba_in.db";
-    private static final int DATABASE_VERSION = 2;
+    private static final int DATABASE_VERSION = 5;
 
     // -------------------------------------------->
 
@@ -86,6 +93,12 @@ public final class InboxDatabaseHelper extends SQLiteOpenHelper {
             " integer not null, " +
             COLUMN_PAYLOAD +
             " text, " +
+            COLUMN_PAYLOAD_HASH +
+            " text, " +
+            COLUMN_SOURCE +
+            " text, " +
+            COLUMN_SILENT +
+            " integer, " +
             "unique(" +
             COLUMN_NOTIFICATION_ID +
             "," +
@@ -127,6 +140,45 @@ public final class InboxDatabaseHelper extends SQLiteOpenHelper {
             COLUMN_NOTIFICATION_ID +
             "));"
         );
+
+        createIndexes(database);
+    }
+
+    /**
+     * Create the indexes used to list notifications and paginate them.
+     * <p>
+     * Notifications are read from the most recent to the oldest: the date index also covers the identifier
+     * (keyset pagination tie-breaker), and the deleted and unread flags, so that pages and candidates are
+     * read by walking it without sorting. Fetcher notifications are already indexed on (fetcher_id,
+     * notification_id) by their unique constraint, the added index serves lookups and deletions by
+     * notification identifier.
+     */
+    private void createIndexes(SQLiteDatabase database) {
+        database.execSQL(
+            "create index if not exists " +
+            INDEX_NOTIFICATIONS_DATE +
+            " on " +
+            TABLE_NOTIFICATIONS +
+            "(" +
+            COLUMN_DATE +
+            ", " +
+            COLUMN_NOTIFICATION_ID +
+            ", " +
+            COLUMN_DELETED +
+            ", " +
+            COLUMN_UNREAD +
+            ");"
+        );
+
+        database.execSQL(
+            "create index if not exists " +
+            INDEX_FETCHERS_NOTIFICATIONS_NOTIFICATION_ID +
+            " on " +
+            TABLE_FETCHERS_NOTIFICATIONS +
+            "(" +
+            COLUMN_NOTIFICATION_ID +
+            ");"
+        );
     }
 
     @Override
@@ -142,5 +194,19 @@ public final class InboxDatabaseHelper extends SQLiteOpenHelper {
                 " IN (0,1)) "
             );
         }
+
+        if (oldVersion < 3) {
+            createIndexes(database);
+        }
+
+        if (oldVersion < 4) {
+            database.execSQL("ALTER TABLE " + TABLE_NOTIFICATIONS + " ADD COLUMN " + COLUMN_PAYLOAD_HASH + " text");
+        }
+
+        if (oldVersion < 5) {
+            // Left empty on existing rows: these values are then read from the payload
+            database.execSQL("ALTER TABLE " + TABLE_NOTIFICATIONS + " ADD COLUMN " + COLUMN_SOURCE + " text");
+            database.execSQL("ALTER TABLE " + TABLE_NOTIFICATIONS + " ADD COLUMN " + COLUMN_SILENT + " integer");
+        }
     }
 }
@@ -3,23 +3,36 @@ package com.batch.android.inbox;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteConstraintException;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
 import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteStatement;
 import android.text.TextUtils;
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import com.batch.android.Batch;
+import com.batch.android.BatchNotificationSource;
+import com.batch.android.core.GenericHelper;
 import com.batch.android.core.InternalPushData;
 import com.batch.android.core.Logger;
+import com.batch.android.core.NamedThreadFactory;
+import com.batch.android.core.ParameterKeys;
+import com.batch.android.core.Parameters;
+import com.batch.android.di.providers.ParametersProvider;
 import com.batch.android.json.JSONException;
 import com.batch.android.json.JSONObject;
 import com.batch.android.processor.Module;
 import com.batch.android.processor.Singleton;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Inbox datasource. Wraps SQLite queries (DAO).
@@ -29,6 +42,74 @@ import java.util.Map;
 public final class InboxDatasource {
 
     private static final String TAG = "InboxDatasource";
+
+    /**
+     * Age after which notifications are removed from the cache: 90 days
+     */
+    private static final long EXPIRATION_DELAY = 7776000000L;
+
+    /**
+     * Max number of notifications deleted per transaction when cleaning the cache
+     */
+    private static final int CLEANUP_BATCH_SIZE = 200;
+
+    /**
+     * Order in which notifications are kept when over the retention limits, from the first to be kept
+     */
+    private static final String RETENTION_ORDER =
+        InboxDatabaseHelper.COLUMN_DATE + " DESC, " + InboxDatabaseHelper.COLUMN_NOTIFICATION_ID + " DESC";
+
+    /**
+     * Size of a notification's content, in bytes
+     */
+    private static final String NOTIFICATION_SIZE =
+        "length(CAST(" +
+        InboxDatabaseHelper.COLUMN_PAYLOAD +
+        " AS BLOB)) + length(CAST(" +
+        InboxDatabaseHelper.COLUMN_TITLE +
+        " AS BLOB)) + length(CAST(" +
+        InboxDatabaseHelper.COLUMN_BODY +
+        " AS BLOB))";
+
+    /**
+     * Whether a notification is silent, as filtered by fetchers: it has no body or is a silent push.
+     * Only uses columns of the notifications table.
+     */
+    private static final String SILENT_EXPRESSION =
+        "(" +
+        InboxDatabaseHelper.COLUMN_SILENT +
+        " = 1 OR " +
+        InboxDatabaseHelper.COLUMN_BODY +
+        " = '')";
+
+    /**
+     * Columns needed to build notifications. The notification identifier is qualified, as the fetchers
+     * notifications table also has one.
+     */
+    private static final String NOTIFICATION_COLUMNS =
+        InboxDatabaseHelper.TABLE_NOTIFICATIONS +
+        "." +
+        InboxDatabaseHelper.COLUMN_NOTIFICATION_ID +
+        ", " +
+        InboxDatabaseHelper.COLUMN_SEND_ID +
+        ", " +
+        InboxDatabaseHelper.COLUMN_TITLE +
+        ", " +
+        InboxDatabaseHelper.COLUMN_BODY +
+        ", " +
+        InboxDatabaseHelper.COLUMN_UNREAD +
+        ", " +
+        InboxDatabaseHelper.COLUMN_DATE +
+        ", " +
+        InboxDatabaseHelper.COLUMN_PAYLOAD +
+        ", " +
+        InboxDatabaseHelper.COLUMN_SOURCE +
+        ", " +
+        InboxDatabaseHelper.COLUMN_SILENT +
+        ", " +
+        InboxDatabaseHelper.COLUMN_INSTALL_ID +
+        ", " +
+        InboxDatabaseHelper.COLUMN_CUSTOM_ID;
     /**
      * Synchronization lock
      */
@@ -41,6 +122,14 @@ public final class InboxDatasource {
      * The DB Helper
      */
     private final InboxDatabaseHelper databaseHelper;
+    /**
+     * Whether the background cleanup has already been scheduled
+     */
+    private final AtomicBoolean cleanupScheduled = new AtomicBoolean(false);
+    /**
+     * Counters of the cached notifications, by fetcher id. Only accessed while holding the db lock.
+     */
+    private final Map<Long, Counters> countersCache = new HashMap<>();
 
     // -------------------------------------------->
 
@@ -71,6 +160,7 @@ public final class InboxDatasource {
             database.delete(InboxDatabaseHelper.TABLE_NOTIFICATIONS, null, null);
             database.delete(InboxDatabaseHelper.TABLE_FETCHERS_NOTIFICATIONS, null, null);
             database.delete(InboxDatabaseHelper.TABLE_FETCHERS, null, null);
+            countersCache.clear();
         }
     }
 
@@ -101,7 +191,8 @@ public final class InboxDatasource {
         synchronized (dbLock) {
             final List<InboxNotificationContentInternal> notifications = new ArrayList<>();
             String query =
-                "SELECT * " +
+                "SELECT " +
+                NOTIFICATION_COLUMNS +
                 " FROM " +
                 InboxDatabaseHelper.TABLE_FETCHERS_NOTIFICATIONS +
                 " INNER JOIN " +
@@ -156,6 +247,83 @@ public final class InboxDatasource {
         }
     }
 
+    /**
+     * Get a page of cached notifications, from the most recent to the oldest.
+     * <p>
+     * Pages are keyset-paginated on the date and notification identifier: the query starts right after
+     * the previous page's last notification using the date index, rather than skipping the rows before it.
+     *
+     * @param after     Position of the previous page's last notification, null to get the first page
+     * @param limit     Maximum number of notifications
+     * @param fetcherId The fetcher identifier
+     * @return The page's notifications, excluding the ones deleted locally
+     */
+    @NonNull
+    public List<InboxNotificationContentInternal> getNotificationsPage(
+        @Nullable InboxPageCursor after,
+        int limit,
+        long fetcherId
+    ) {
+        synchronized (dbLock) {
+            final List<InboxNotificationContentInternal> notifications = new ArrayList<>();
+            final String dateColumn = InboxDatabaseHelper.TABLE_NOTIFICATIONS + "." + InboxDatabaseHelper.COLUMN_DATE;
+            final String notificationIdColumn =
+                InboxDatabaseHelper.TABLE_NOTIFICATIONS + "." + InboxDatabaseHelper.COLUMN_NOTIFICATION_ID;
+
+            String query =
+                "SELECT " +
+                NOTIFICATION_COLUMNS +
+                " FROM " +
+                InboxDatabaseHelper.TABLE_FETCHERS_NOTIFICATIONS +
+                " INNER JOIN " +
+                InboxDatabaseHelper.TABLE_NOTIFICATIONS +
+                " ON " +
+                InboxDatabaseHelper.TABLE_FETCHERS_NOTIFICATIONS +
+                "." +
+                InboxDatabaseHelper.COLUMN_NOTIFICATION_ID +
+                " = " +
+                notificationIdColumn +
+                " WHERE " +
+                InboxDatabaseHelper.COLUMN_FETCHER_ID +
+                " = ?" +
+                " AND " +
+                InboxDatabaseHelper.TABLE_NOTIFICATIONS +
+                "." +
+                InboxDatabaseHelper.COLUMN_DELETED +
+                " = 0";
+
+            String[] args;
+            if (after != null) {
+                query +=
+                    " AND (" +
+                    dateColumn +
+                    " < ? OR (" +
+                    dateColumn +
+                    " = ? AND " +
+                    notificationIdColumn +
+                    " < ?))";
+                String afterDate = Long.toString(after.date);
+                args = new String[] { Long.toString(fetcherId), afterDate, afterDate, after.notificationId };
+            } else {
+                args = new String[] { Long.toString(fetcherId) };
+            }
+            query += " ORDER BY " + dateColumn + " DESC, " + notificationIdColumn + " DESC" + " LIMIT " + limit;
+
+            try (Cursor cursor = database.rawQuery(query, args)) {
+                while (cursor.moveToNext()) {
+                    InboxNotificationContentInternal notification = parseNotification(cursor);
+                    if (notification != null) {
+                        notifications.add(notification);
+                    }
+                }
+            } catch (Exception e) {
+                Logger.internal(TAG, "Could not get notifications page", e);
+            }
+
+            return notifications;
+        }
+    }
+
     protected long getNotificationTime(String notificationId) {
         synchronized (dbLock) {
             try (
@@ -363,10 +531,7 @@ public final class InboxDatasource {
         if (response == null || fetcherId <= 0) {
             return;
         }
-        for (InboxNotificationContentInternal notification : response.notifications) {
-            Logger.internal(TAG, "Add notification in DB: " + notification.identifiers.identifier);
-            insert(notification, fetcherId);
-        }
+        insertNotifications(response.notifications, fetcherId);
     }
 
     /**
@@ -377,63 +542,208 @@ public final class InboxDatasource {
      * @return If the insert succeeded or not
      */
     protected boolean insert(InboxNotificationContentInternal notification, long fetcherId) {
+        if (notification == null) {
+            throw new NullPointerException("notification==null");
+        }
+        return !insertNotifications(Collections.singletonList(notification), fetcherId).isEmpty();
+    }
+
+    /**
+     * Insert or replace notifications in a single transaction.
+     * <p>
+     * Statements are compiled once and reused for every notification. Each notification row stores a hash
+     * of its content: notifications that are already stored with the same hash and that are not deleted
+     * locally are not rewritten.
+     *
+     * @param notifications Notifications to insert
+     * @param fetcherId     Fetcher id
+     * @return The identifiers of the notifications that are stored, whether they have been rewritten or not
+     */
+    @NonNull
+    public List<String> insertNotifications(
+        @NonNull List<InboxNotificationContentInternal> notifications,
+        long fetcherId
+    ) {
         synchronized (dbLock) {
             if (database == null) {
-                Logger.internal(TAG, "Attempted to insert a notification to a closed database");
+                Logger.internal(TAG, "Attempted to insert notifications to a closed database");
                 open();
             }
 
-            if (notification == null) {
-                throw new NullPointerException("notification==null");
+            List<String> storedIds = new ArrayList<>();
+            if (notifications.isEmpty()) {
+                return storedIds;
             }
+            countersCache.clear();
 
             try {
-                final ContentValues values = new ContentValues();
-                values.put(InboxDatabaseHelper.COLUMN_NOTIFICATION_ID, notification.identifiers.identifier);
-                values.put(InboxDatabaseHelper.COLUMN_SEND_ID, notification.identifiers.sendID);
-                values.put(InboxDatabaseHelper.COLUMN_TITLE, notification.title != null ? notification.title : "");
-                values.put(InboxDatabaseHelper.COLUMN_BODY, notification.body != null ? notification.body : "");
-                values.put(InboxDatabaseHelper.COLUMN_UNREAD, notification.isUnread ? 1 : 0);
-                values.put(InboxDatabaseHelper.COLUMN_DATE, notification.date.getTime());
-
-                values.put(InboxDatabaseHelper.COLUMN_PAYLOAD, new JSONObject(notification.payload).toString());
-
-                ContentValues linkValues = new ContentValues();
-                linkValues.put(InboxDatabaseHelper.COLUMN_NOTIFICATION_ID, notification.identifiers.identifier);
-                linkValues.put(InboxDatabaseHelper.COLUMN_FETCHER_ID, fetcherId);
-                linkValues.put(InboxDatabaseHelper.COLUMN_INSTALL_ID, notification.identifiers.installID);
-                linkValues.put(InboxDatabaseHelper.COLUMN_CUSTOM_ID, notification.identifiers.customID);
-
                 database.beginTransactionNonExclusive();
-                try {
-                    database.insertWithOnConflict(
-                        InboxDatabaseHelper.TABLE_NOTIFICATIONS,
-                        null,
-                        values,
-                        SQLiteDatabase.CONFLICT_REPLACE
+                try (
+                    SQLiteStatement hashStatement = database.compileStatement(
+                        "SELECT " +
+                        InboxDatabaseHelper.COLUMN_PAYLOAD_HASH +
+                        " FROM " +
+                        InboxDatabaseHelper.TABLE_NOTIFICATIONS +
+                        " WHERE " +
+                        InboxDatabaseHelper.COLUMN_NOTIFICATION_ID +
+                        " = ? AND " +
+                        InboxDatabaseHelper.COLUMN_SEND_ID +
+                        " = ? AND " +
+                        InboxDatabaseHelper.COLUMN_DELETED +
+                        " = 0"
                     );
-
-                    database.insertWithOnConflict(
-                        InboxDatabaseHelper.TABLE_FETCHERS_NOTIFICATIONS,
-                        null,
-                        linkValues,
-                        SQLiteDatabase.CONFLICT_REPLACE
+                    SQLiteStatement notificationStatement = database.compileStatement(
+                        "INSERT OR REPLACE INTO " +
+                        InboxDatabaseHelper.TABLE_NOTIFICATIONS +
+                        " (" +
+                        InboxDatabaseHelper.COLUMN_NOTIFICATION_ID +
+                        ", " +
+                        InboxDatabaseHelper.COLUMN_SEND_ID +
+                        ", " +
+                        InboxDatabaseHelper.COLUMN_TITLE +
+                        ", " +
+                        InboxDatabaseHelper.COLUMN_BODY +
+                        ", " +
+                        InboxDatabaseHelper.COLUMN_UNREAD +
+                        ", " +
+                        InboxDatabaseHelper.COLUMN_DATE +
+                        ", " +
+                        InboxDatabaseHelper.COLUMN_PAYLOAD +
+                        ", " +
+                        InboxDatabaseHelper.COLUMN_PAYLOAD_HASH +
+                        ", " +
+                        InboxDatabaseHelper.COLUMN_SOURCE +
+                        ", " +
+                        InboxDatabaseHelper.COLUMN_SILENT +
+                        ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)"
                     );
+                    SQLiteStatement linkStatement = database.compileStatement(
+                        "INSERT OR REPLACE INTO " +
+                        InboxDatabaseHelper.TABLE_FETCHERS_NOTIFICATIONS +
+                        " (" +
+                        InboxDatabaseHelper.COLUMN_NOTIFICATION_ID +
+                        ", " +
+                        InboxDatabaseHelper.COLUMN_FETCHER_ID +
+                        ", " +
+                        InboxDatabaseHelper.COLUMN_INSTALL_ID +
+                        ", " +
+                        InboxDatabaseHelper.COLUMN_CUSTOM_ID +
+                        ") VALUES (?, ?, ?, ?)"
+                    )
+                ) {
+                    for (InboxNotificationContentInternal notification : notifications) {
+                        if (
+                            notification == null ||
+                            notification.identifiers.identifier == null ||
+                            notification.identifiers.sendID == null
+                        ) {
+                            Logger.internal(TAG, "Attempted to insert an invalid notification, skipping.");
+                            continue;
+                        }
+
+                        try {
+                            String identifier = notification.identifiers.identifier;
+                            String title = notification.title != null ? notification.title : "";
+                            String body = notification.body != null ? notification.body : "";
+                            String payload = notification.getPayloadJSONString();
+                            String hash = computeNotificationHash(notification, title, body, payload);
 
+                            if (hash == null || !hash.equals(readStoredHash(hashStatement, notification))) {
+                                notificationStatement.bindString(1, identifier);
+                                notificationStatement.bindString(2, notification.identifiers.sendID);
+                                notificationStatement.bindString(3, title);
+                                notificationStatement.bindString(4, body);
+                                notificationStatement.bindLong(5, notification.isUnread ? 1 : 0);
+                                notificationStatement.bindLong(6, notification.date.getTime());
+                                notificationStatement.bindString(7, payload);
+                                bindStringOrNull(notificationStatement, 8, hash);
+                                notificationStatement.bindString(9, notification.getSource().name());
+                                notificationStatement.bindLong(10, notification.isSilentPush() ? 1 : 0);
+                                notificationStatement.executeInsert();
+                                Logger.internal(TAG, "Successfully inserted notification " + identifier + " into DB");
+                            } else {
+                                Logger.internal(TAG, "Notification " + identifier + " is unchanged, skipping write");
+                            }
+
+                            linkStatement.bindString(1, identifier);
+                            linkStatement.bindLong(2, fetcherId);
+                            bindStringOrNull(linkStatement, 3, notification.identifiers.installID);
+                            bindStringOrNull(linkStatement, 4, notification.identifiers.customID);
+                            linkStatement.executeInsert();
+
+                            storedIds.add(identifier);
+                        } catch (Exception e) {
+                            Logger.internal(TAG, "Error while writing notification to SQLite.", e);
+                        }
+                    }
                     database.setTransactionSuccessful();
                 } finally {
                     database.endTransaction();
                 }
-
-                Logger.internal(
-                    TAG,
-                    "Successfully inserted notification " + notification.identifiers.identifier + " into DB"
-                );
-                return true;
             } catch (Exception e) {
-                Logger.internal(TAG, "Error while writing event to SQLite.", e);
+                Logger.internal(TAG, "Error while writing notifications to SQLite.", e);
+                storedIds.clear();
             }
-            return false;
+            return storedIds;
+        }
+    }
+
+    /**
+     * Read the content hash of a notification that is stored and not deleted
+     *
+     * @return The stored hash, or null if there is none
+     */
+    @Nullable
+    private String readStoredHash(
+        @NonNull SQLiteStatement hashStatement,
+        @NonNull InboxNotificationContentInternal notification
+    ) {
+        hashStatement.bindString(1, notification.identifiers.identifier);
+        hashStatement.bindString(2, notification.identifiers.sendID);
+        try {
+            return hashStatement.simpleQueryForString();
+        } catch (SQLiteDoneException e) {
+            // No such row
+            return null;
+        }
+    }
+
+    /**
+     * Compute the hash of the content written to a notification row
+     *
+     * @return The hash, or null if it could not be computed
+     */
+    @Nullable
+    private static String computeNotificationHash(
+        @NonNull InboxNotificationContentInternal notification,
+        @NonNull String title,
+        @NonNull String body,
+        @NonNull String payload
+    ) {
+        try {
+            return GenericHelper.readMD5(
+                notification.identifiers.sendID +
+                "\n" +
+                title +
+                "\n" +
+                body +
+                "\n" +
+                notification.isUnread +
+                "\n" +
+                notification.date.getTime() +
+                "\n" +
+                payload
+            );
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+
+    private static void bindStringOrNull(@NonNull SQLiteStatement statement, int index, @Nullable String value) {
+        if (value != null) {
+            statement.bindString(index, value);
+        } else {
+            statement.bindNull(index);
         }
     }
 
@@ -448,87 +758,161 @@ public final class InboxDatasource {
     public String updateNotification(JSONObject notification, long fetcherId) {
         synchronized (dbLock) {
             try {
-                String notificationId = notification.getString("notificationId");
-                ContentValues notificationsValues = new ContentValues();
-                ContentValues values = new ContentValues();
-                for (String key : notification.keySet()) {
-                    switch (key) {
-                        case "sendId":
-                            String sendId = notification.getString("sendId");
-                            notificationsValues.put(InboxDatabaseHelper.COLUMN_SEND_ID, sendId);
-                            break;
-                        case Batch.Push.TITLE_KEY:
-                            String title = notification.getString(Batch.Push.TITLE_KEY);
-                            notificationsValues.put(InboxDatabaseHelper.COLUMN_TITLE, title);
-                            break;
-                        case Batch.Push.BODY_KEY:
-                            String body = notification.getString(Batch.Push.BODY_KEY);
-                            notificationsValues.put(InboxDatabaseHelper.COLUMN_BODY, body);
-                            break;
-                        case "read":
-                            boolean unread =
-                                !notification.reallyOptBoolean("read", false) &&
-                                !notification.reallyOptBoolean("opened", false);
-                            notificationsValues.put(InboxDatabaseHelper.COLUMN_UNREAD, unread ? 1 : 0);
-                            break;
-                        case "notificationTime":
-                            Date date = new Date(notification.getLong("notificationTime"));
-                            notificationsValues.put(InboxDatabaseHelper.COLUMN_DATE, date.getTime());
-                            break;
-                        case InboxDatabaseHelper.COLUMN_PAYLOAD:
-                            JSONObject payload = notification.getJSONObject("payload");
-                            notificationsValues.put(InboxDatabaseHelper.COLUMN_PAYLOAD, payload.toString());
-                            break;
-                        case "installId":
-                            String installId = notification.getString("installId");
-                            values.put(InboxDatabaseHelper.COLUMN_INSTALL_ID, installId);
-                            break;
-                        case "customId":
-                            String customId = notification.getString("customId");
-                            values.put(InboxDatabaseHelper.COLUMN_CUSTOM_ID, customId);
-                            break;
-                    }
-                }
-
-                if (notificationsValues.size() <= 0) {
-                    // JSON contains only notificationId
-                    // Meaning we have the latest payload and states in DB
+                database.beginTransactionNonExclusive();
+                try {
+                    String notificationId = writeNotificationUpdate(notification, fetcherId);
+                    database.setTransactionSuccessful();
                     return notificationId;
+                } finally {
+                    database.endTransaction();
                 }
+            } catch (JSONException e) {
+                Logger.internal(TAG, "Could not parse sync payload", e);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Update notifications from their sync objects in a single transaction
+     * <p>
+     * Sync objects that can't be parsed are skipped. If a write fails, the whole transaction is rolled back
+     * and no notification is reported as updated.
+     *
+     * @param notifications Notifications sync objects
+     * @param fetcherId     Fetcher id
+     * @return The identifiers of the notifications that have been updated
+     * @see #updateNotification(JSONObject, long)
+     */
+    @NonNull
+    public List<String> updateNotifications(@NonNull List<JSONObject> notifications, long fetcherId) {
+        synchronized (dbLock) {
+            if (database == null) {
+                Logger.internal(TAG, "Attempted to update notifications of a closed database");
+                open();
+            }
 
+            List<String> updatedIds = new ArrayList<>();
+            if (notifications.isEmpty()) {
+                return updatedIds;
+            }
+
+            try {
                 database.beginTransactionNonExclusive();
                 try {
-                    database.update(
-                        InboxDatabaseHelper.TABLE_NOTIFICATIONS,
-                        notificationsValues,
-                        InboxDatabaseHelper.COLUMN_NOTIFICATION_ID + " =?",
-                        new String[] { notificationId }
-                    );
-
-                    if (values.size() > 0) {
-                        database.update(
-                            InboxDatabaseHelper.TABLE_FETCHERS_NOTIFICATIONS,
-                            values,
-                            InboxDatabaseHelper.COLUMN_NOTIFICATION_ID +
-                            " =? and " +
-                            InboxDatabaseHelper.COLUMN_FETCHER_ID +
-                            " =?",
-                            new String[] { notificationId, Long.toString(fetcherId) }
-                        );
+                    for (JSONObject notification : notifications) {
+                        try {
+                            updatedIds.add(writeNotificationUpdate(notification, fetcherId));
+                        } catch (JSONException e) {
+                            // Nothing has been written for this notification
+                            Logger.internal(TAG, "Could not parse sync payload", e);
+                        }
                     }
-
                     database.setTransactionSuccessful();
                 } finally {
                     database.endTransaction();
                 }
-                return notificationId;
-            } catch (JSONException e) {
-                Logger.internal(TAG, "Could not parse sync payload", e);
+            } catch (SQLException e) {
+                Logger.internal(TAG, "Error while updating notifications in SQLite, rolled back.", e);
+                updatedIds.clear();
             }
-            return null;
+            return updatedIds;
         }
     }
 
+    /**
+     * Update the rows of a notification from its sync object. Must be called in a transaction, holding the db lock.
+     * <p>
+     * The sync object is entirely read before anything is written.
+     *
+     * @return Notification identifier
+     * @throws JSONException if the sync object could not be parsed
+     * @throws SQLException  if a write failed
+     */
+    @NonNull
+    private String writeNotificationUpdate(@NonNull JSONObject notification, long fetcherId) throws JSONException {
+        String notificationId = notification.getString("notificationId");
+        ContentValues notificationsValues = new ContentValues();
+        ContentValues values = new ContentValues();
+        for (String key : notification.keySet()) {
+            switch (key) {
+                case "sendId":
+                    String sendId = notification.getString("sendId");
+                    notificationsValues.put(InboxDatabaseHelper.COLUMN_SEND_ID, sendId);
+                    break;
+                case Batch.Push.TITLE_KEY:
+                    String title = notification.getString(Batch.Push.TITLE_KEY);
+                    notificationsValues.put(InboxDatabaseHelper.COLUMN_TITLE, title);
+                    break;
+                case Batch.Push.BODY_KEY:
+                    String body = notification.getString(Batch.Push.BODY_KEY);
+                    notificationsValues.put(InboxDatabaseHelper.COLUMN_BODY, body);
+                    break;
+                case "read":
+                    boolean unread =
+                        !notification.reallyOptBoolean("read", false) &&
+                        !notification.reallyOptBoolean("opened", false);
+                    notificationsValues.put(InboxDatabaseHelper.COLUMN_UNREAD, unread ? 1 : 0);
+                    break;
+                case "notificationTime":
+                    Date date = new Date(notification.getLong("notificationTime"));
+                    notificationsValues.put(InboxDatabaseHelper.COLUMN_DATE, date.getTime());
+                    break;
+                case InboxDatabaseHelper.COLUMN_PAYLOAD:
+                    JSONObject payload = notification.getJSONObject("payload");
+                    notificationsValues.put(InboxDatabaseHelper.COLUMN_PAYLOAD, payload.toString());
+                    // Read the new Batch data the same way as InboxNotificationContentInternal does
+                    BatchNotificationSource source = BatchNotificationSource.UNKNOWN;
+                    boolean silent = true;
+                    try {
+                        InternalPushData batchData = new InternalPushData(payload.reallyOptString("com.batch", null));
+                        source = batchData.getSource();
+                        silent = batchData.isSilent();
+                    } catch (Exception e) {
+                        Logger.internal(TAG, "Could not read synced notification Batch data", e);
+                    }
+                    notificationsValues.put(InboxDatabaseHelper.COLUMN_SOURCE, source.name());
+                    notificationsValues.put(InboxDatabaseHelper.COLUMN_SILENT, silent ? 1 : 0);
+                    break;
+                case "installId":
+                    String installId = notification.getString("installId");
+                    values.put(InboxDatabaseHelper.COLUMN_INSTALL_ID, installId);
+                    break;
+                case "customId":
+                    String customId = notification.getString("customId");
+                    values.put(InboxDatabaseHelper.COLUMN_CUSTOM_ID, customId);
+                    break;
+            }
+        }
+
+        if (notificationsValues.size() <= 0) {
+            // JSON contains only notificationId
+            // Meaning we have the latest payload and states in DB
+            return notificationId;
+        }
+
+        // The stored hash doesn't match the partially updated content anymore
+        notificationsValues.putNull(InboxDatabaseHelper.COLUMN_PAYLOAD_HASH);
+        countersCache.clear();
+
+        database.update(
+            InboxDatabaseHelper.TABLE_NOTIFICATIONS,
+            notificationsValues,
+            InboxDatabaseHelper.COLUMN_NOTIFICATION_ID + " =?",
+            new String[] { notificationId }
+        );
+
+        if (values.size() > 0) {
+            database.update(
+                InboxDatabaseHelper.TABLE_FETCHERS_NOTIFICATIONS,
+                values,
+                InboxDatabaseHelper.COLUMN_NOTIFICATION_ID + " =? and " + InboxDatabaseHelper.COLUMN_FETCHER_ID + " =?",
+                new String[] { notificationId, Long.toString(fetcherId) }
+            );
+        }
+        return notificationId;
+    }
+
     /**
      * Mark all notification received before a specified time as read
      *
@@ -541,11 +925,16 @@ public final class InboxDatasource {
             ContentValues values = new ContentValues();
             values.put(InboxDatabaseHelper.COLUMN_UNREAD, 0);
 
+            // Notifications can be shared with other fetchers: their counters are read again when needed
+            countersCache.clear();
             return database.update(
                 InboxDatabaseHelper.TABLE_NOTIFICATIONS,
                 values,
                 InboxDatabaseHelper.COLUMN_DATE +
                 " <= ?" +
+                " AND " +
+                InboxDatabaseHelper.COLUMN_UNREAD +
+                " = 1" +
                 " AND EXISTS (" +
                 " SELECT " +
                 InboxDatabaseHelper.COLUMN_NOTIFICATION_ID +
@@ -573,6 +962,7 @@ public final class InboxDatasource {
      */
     public void markNotificationAsRead(String notificationID) {
         synchronized (dbLock) {
+            CounterChange change = getCounterChange(notificationID);
             ContentValues values = new ContentValues();
             values.put(InboxDatabaseHelper.COLUMN_UNREAD, 0);
             database.update(
@@ -581,6 +971,14 @@ public final class InboxDatasource {
                 InboxDatabaseHelper.COLUMN_NOTIFICATION_ID + " = ?",
                 new String[] { notificationID }
             );
+            if (change != null && change.unread) {
+                for (long fetcherId : change.fetcherIds) {
+                    Counters counters = countersCache.get(fetcherId);
+                    if (counters != null) {
+                        counters.markAsRead(change.silent);
+                    }
+                }
+            }
         }
     }
 
@@ -591,6 +989,7 @@ public final class InboxDatasource {
      */
     public void markNotificationAsDeleted(String notificationID) {
         synchronized (dbLock) {
+            CounterChange change = getCounterChange(notificationID);
             ContentValues values = new ContentValues();
             values.put(InboxDatabaseHelper.COLUMN_DELETED, 1);
             database.update(
@@ -599,6 +998,161 @@ public final class InboxDatasource {
                 InboxDatabaseHelper.COLUMN_NOTIFICATION_ID + " = ?",
                 new String[] { notificationID }
             );
+            if (change != null) {
+                for (long fetcherId : change.fetcherIds) {
+                    Counters counters = countersCache.get(fetcherId);
+                    if (counters != null) {
+                        counters.markAsDeleted(change.unread, change.silent);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the number of cached notifications of a fetcher, not counting the ones deleted locally.
+     * <p>
+     * Counters are computed with a single aggregate query, then kept in memory and updated as
+     * notifications are marked as read or deleted.
+     *
+     * @param fetcherId    The fetcher identifier
+     * @param filterSilent Whether silent notifications should not be counted, as filtered from the fetched ones:
+     *                     notifications without a body are silent too. Notifications stored before whether
+     *                     they are silent was stored are always counted.
+     * @return The number of notifications, or -1 on error
+     */
+    public int getNotificationCount(long fetcherId, boolean filterSilent) {
+        synchronized (dbLock) {
+            Counters counters = getCounters(fetcherId);
+            if (counters == null) {
+                return -1;
+            }
+            return filterSilent ? counters.total - counters.silentTotal : counters.total;
+        }
+    }
+
+    /**
+     * Get the number of unread cached notifications of a fetcher, not counting the ones deleted locally
+     *
+     * @param fetcherId    The fetcher identifier
+     * @param filterSilent Whether silent notifications should not be counted
+     * @return The number of unread notifications, or -1 on error
+     * @see #getNotificationCount(long, boolean)
+     */
+    public int getUnreadNotificationCount(long fetcherId, boolean filterSilent) {
+        synchronized (dbLock) {
+            Counters counters = getCounters(fetcherId);
+            if (counters == null) {
+                return -1;
+            }
+            return filterSilent ? counters.unread - counters.silentUnread : counters.unread;
+        }
+    }
+
+    /**
+     * Get the counters of a fetcher from the memory cache, or compute them. Must be called while holding the db lock.
+     */
+    @Nullable
+    private Counters getCounters(long fetcherId) {
+        Counters counters = countersCache.get(fetcherId);
+        if (counters != null) {
+            return counters;
+        }
+
+        if (database == null) {
+            Logger.internal(TAG, "Attempted to count notifications on a closed database");
+            open();
+        }
+
+        // Walks the fetcher's links through their unique index, then each notification through its own
+        String query =
+            "SELECT COUNT(*), " +
+            "TOTAL(n." +
+            InboxDatabaseHelper.COLUMN_UNREAD +
+            "), " +
+            "TOTAL(" +
+            SILENT_EXPRESSION +
+            "), " +
+            "TOTAL(" +
+            SILENT_EXPRESSION +
+            " AND n." +
+            InboxDatabaseHelper.COLUMN_UNREAD +
+            " = 1)" +
+            " FROM " +
+            InboxDatabaseHelper.TABLE_FETCHERS_NOTIFICATIONS +
+            " AS f INNER JOIN " +
+            InboxDatabaseHelper.TABLE_NOTIFICATIONS +
+            " AS n ON f." +
+            InboxDatabaseHelper.COLUMN_NOTIFICATION_ID +
+            " = n." +
+            InboxDatabaseHelper.COLUMN_NOTIFICATION_ID +
+            " WHERE f." +
+            InboxDatabaseHelper.COLUMN_FETCHER_ID +
+            " = ? AND n." +
+            InboxDatabaseHelper.COLUMN_DELETED +
+            " = 0";
+
+        try (Cursor cursor = database.rawQuery(query, new String[] { Long.toString(fetcherId) })) {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            counters = new Counters(cursor.getInt(0), cursor.getInt(1), cursor.getInt(2), cursor.getInt(3));
+            countersCache.put(fetcherId, counters);
+            return counters;
+        } catch (SQLiteException e) {
+            Logger.internal(TAG, "Could not count notifications", e);
+            return null;
+        }
+    }
+
+    /**
+     * Read what a notification contributes to the cached counters, before changing its state.
+     * Must be called while holding the db lock.
+     *
+     * @return the notification's contribution, or null if it is not counted or no counters are cached
+     */
+    @Nullable
+    private CounterChange getCounterChange(@NonNull String notificationID) {
+        if (countersCache.isEmpty()) {
+            return null;
+        }
+
+        try (
+            Cursor cursor = database.query(
+                InboxDatabaseHelper.TABLE_NOTIFICATIONS,
+                new String[] { InboxDatabaseHelper.COLUMN_UNREAD, SILENT_EXPRESSION },
+                InboxDatabaseHelper.COLUMN_NOTIFICATION_ID + " = ? AND " + InboxDatabaseHelper.COLUMN_DELETED + " = 0",
+                new String[] { notificationID },
+                null,
+                null,
+                null
+            )
+        ) {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            CounterChange change = new CounterChange(cursor.getInt(0) == 1, cursor.getInt(1) == 1);
+
+            try (
+                Cursor fetchersCursor = database.query(
+                    InboxDatabaseHelper.TABLE_FETCHERS_NOTIFICATIONS,
+                    new String[] { InboxDatabaseHelper.COLUMN_FETCHER_ID },
+                    InboxDatabaseHelper.COLUMN_NOTIFICATION_ID + " = ?",
+                    new String[] { notificationID },
+                    null,
+                    null,
+                    null
+                )
+            ) {
+                while (fetchersCursor.moveToNext()) {
+                    change.fetcherIds.add(fetchersCursor.getLong(0));
+                }
+            }
+            return change;
+        } catch (SQLiteException e) {
+            Logger.internal(TAG, "Could not read notification state, resetting counters", e);
+            countersCache.clear();
+            return null;
         }
     }
 
@@ -616,6 +1170,7 @@ public final class InboxDatasource {
 
             String[] args = notificationIds.toArray(new String[0]);
 
+            countersCache.clear();
             database.beginTransactionNonExclusive();
             try {
                 database.delete(
@@ -641,96 +1196,255 @@ public final class InboxDatasource {
         }
     }
 
+    /**
+     * Clean the database in the background, once per process.
+     * <p>
+     * Retention limits are read from the parameters.
+     *
+     * @param context Context, used to read the parameters
+     */
+    public void scheduleCleanup(@NonNull Context context) {
+        if (!cleanupScheduled.compareAndSet(false, true)) {
+            return;
+        }
+
+        final Context applicationContext = context.getApplicationContext();
+        new NamedThreadFactory("inbox.cleanup")
+            .newThread(() -> {
+                Parameters parameters = ParametersProvider.get(applicationContext);
+                int maxNotifications = readIntParameter(parameters, ParameterKeys.INBOX_CACHE_MAX_NOTIFICATIONS_KEY);
+                long maxSize = readIntParameter(parameters, ParameterKeys.INBOX_CACHE_MAX_SIZE_KEY);
+                cleanDatabase(maxNotifications, maxSize);
+            })
+            .start();
+    }
+
+    private static int readIntParameter(@NonNull Parameters parameters, @NonNull String key) {
+        try {
+            return Integer.parseInt(parameters.get(key));
+        } catch (NumberFormatException e) {
+            Logger.internal(TAG, "Invalid value for parameter " + key + ", ignoring it");
+            return 0;
+        }
+    }
+
     /**
      * Remove notifications older than 90 days
      * Also remove related row in other tables
      */
     public boolean cleanDatabase() {
-        synchronized (dbLock) {
-            long expireTime = System.currentTimeMillis() - 7776000000L;
+        return cleanDatabase(0, 0);
+    }
 
-            try (
-                Cursor cursor = database.query(
-                    InboxDatabaseHelper.TABLE_NOTIFICATIONS,
-                    new String[] { InboxDatabaseHelper.COLUMN_NOTIFICATION_ID },
-                    InboxDatabaseHelper.COLUMN_DATE + " <= ?",
-                    new String[] { Long.toString(expireTime) },
-                    null,
-                    null,
-                    null,
-                    null
-                )
-            ) {
-                List<String> idsToDelete = new ArrayList<>();
-                while (cursor.moveToNext()) {
-                    String id = cursor.getString(
-                        cursor.getColumnIndexOrThrow(InboxDatabaseHelper.COLUMN_NOTIFICATION_ID)
-                    );
-                    if (!TextUtils.isEmpty(id)) {
-                        idsToDelete.add(id);
+    /**
+     * Remove notifications older than 90 days, then the oldest notifications over the retention limits.
+     * Also remove related row in other tables.
+     * <p>
+     * Notifications are deleted by batches, each in its own transaction, so that other queries don't
+     * wait for the whole cleanup.
+     *
+     * @param maxNotifications Max number of notifications to keep, 0 or less for no limit
+     * @param maxSize          Max size of the notifications content to keep, in bytes, 0 or less for no limit
+     * @return true if the cleanup succeeded
+     */
+    public boolean cleanDatabase(int maxNotifications, long maxSize) {
+        try {
+            long expireTime = System.currentTimeMillis() - EXPIRATION_DELAY;
+            int deleted = deleteNotificationsWhere(
+                InboxDatabaseHelper.COLUMN_DATE + " <= ?",
+                new String[] { Long.toString(expireTime) }
+            );
+
+            if (maxNotifications > 0) {
+                // Delete from the first notification over the limit
+                InboxPageCursor cutoff = null;
+                synchronized (dbLock) {
+                    try (
+                        Cursor cursor = database.query(
+                            InboxDatabaseHelper.TABLE_NOTIFICATIONS,
+                            new String[] {
+                                InboxDatabaseHelper.COLUMN_DATE,
+                                InboxDatabaseHelper.COLUMN_NOTIFICATION_ID
+                            },
+                            null,
+                            null,
+                            null,
+                            null,
+                            RETENTION_ORDER,
+                            maxNotifications + ", 1"
+                        )
+                    ) {
+                        if (cursor.moveToFirst()) {
+                            cutoff = new InboxPageCursor(cursor.getLong(0), cursor.getString(1));
+                        }
                     }
                 }
+                deleted += deleteNotificationsFrom(cutoff);
+            }
 
-                return deleteNotifications(idsToDelete);
-            } catch (Exception e) {
-                Logger.internal(TAG, "Could not clean database", e);
+            if (maxSize > 0) {
+                // Sum the sizes from the most recent notification, until going over the limit
+                InboxPageCursor cutoff = null;
+                synchronized (dbLock) {
+                    try (
+                        Cursor cursor = database.query(
+                            InboxDatabaseHelper.TABLE_NOTIFICATIONS,
+                            new String[] {
+                                InboxDatabaseHelper.COLUMN_DATE,
+                                InboxDatabaseHelper.COLUMN_NOTIFICATION_ID,
+                                NOTIFICATION_SIZE
+                            },
+                            null,
+                            null,
+                            null,
+                            null,
+                            RETENTION_ORDER
+                        )
+                    ) {
+                        long size = 0;
+                        while (cursor.moveToNext()) {
+                            size += cursor.getLong(2);
+                            if (size > maxSize) {
+                                cutoff = new InboxPageCursor(cursor.getLong(0), cursor.getString(1));
+                                break;
+                            }
+                        }
+                    }
+                }
+                deleted += deleteNotificationsFrom(cutoff);
             }
-            return false;
+
+            Logger.internal(TAG, "Cleaned " + deleted + " notifications from the inbox cache");
+            return true;
+        } catch (Exception e) {
+            Logger.internal(TAG, "Could not clean database", e);
         }
+        return false;
     }
 
     /**
-     * Parse a DB cursor to Notification object
+     * Delete a notification and all the ones that come after it, meaning that they are older
      *
-     * @param cursor The cursor
-     * @return Notification content
+     * @param cutoff First notification to delete, null to delete nothing
+     * @return The number of deleted notifications
      */
-    private InboxNotificationContentInternal parseNotification(Cursor cursor) {
-        try {
-            final JSONObject payload = new JSONObject(
-                cursor.getString(cursor.getColumnIndexOrThrow(InboxDatabaseHelper.COLUMN_PAYLOAD))
-            );
-
-            final InternalPushData batchData = new InternalPushData(payload.getString("com.batch"));
-            final NotificationIdentifiers identifiers = new NotificationIdentifiers(
-                cursor.getString(cursor.getColumnIndexOrThrow(InboxDatabaseHelper.COLUMN_NOTIFICATION_ID)),
-                cursor.getString(cursor.getColumnIndexOrThrow(InboxDatabaseHelper.COLUMN_SEND_ID))
-            );
+    private int deleteNotificationsFrom(@Nullable InboxPageCursor cutoff) {
+        if (cutoff == null) {
+            return 0;
+        }
+        String date = Long.toString(cutoff.date);
+        return deleteNotificationsWhere(
+            InboxDatabaseHelper.COLUMN_DATE +
+            " < ? OR (" +
+            InboxDatabaseHelper.COLUMN_DATE +
+            " = ? AND " +
+            InboxDatabaseHelper.COLUMN_NOTIFICATION_ID +
+            " <= ?)",
+            new String[] { date, date, cutoff.notificationId }
+        );
+    }
 
-            identifiers.customID = cursor.getString(cursor.getColumnIndexOrThrow(InboxDatabaseHelper.COLUMN_CUSTOM_ID));
-            identifiers.installID =
-                cursor.getString(cursor.getColumnIndexOrThrow(InboxDatabaseHelper.COLUMN_INSTALL_ID));
-            identifiers.additionalData = batchData.getExtraParameters();
+    /**
+     * Delete the notifications matching a condition, and their fetchers links, by batches
+     *
+     * @param whereClause Condition on the notifications table
+     * @param whereArgs   Condition arguments
+     * @return The number of deleted notifications
+     */
+    private int deleteNotificationsWhere(@NonNull String whereClause, @NonNull String[] whereArgs) {
+        String batchQuery =
+            "SELECT " +
+            InboxDatabaseHelper.COLUMN_DB_ID +
+            " FROM " +
+            InboxDatabaseHelper.TABLE_NOTIFICATIONS +
+            " WHERE " +
+            whereClause +
+            " LIMIT " +
+            CLEANUP_BATCH_SIZE;
 
-            final Map<String, String> convertedPayload = new HashMap<>();
-            for (String payloadKey : payload.keySet()) {
+        int totalDeleted = 0;
+        int deleted;
+        do {
+            synchronized (dbLock) {
+                countersCache.clear();
+                database.beginTransactionNonExclusive();
                 try {
-                    convertedPayload.put(payloadKey, payload.getString(payloadKey));
-                } catch (JSONException ignored) {
-                    Logger.internal(
-                        TAG,
-                        "Could not coalesce payload value to string for key \"" + payloadKey + "\". Ignoring."
+                    // Links first, as they are found through the notifications
+                    database.delete(
+                        InboxDatabaseHelper.TABLE_FETCHERS_NOTIFICATIONS,
+                        InboxDatabaseHelper.COLUMN_NOTIFICATION_ID +
+                        " IN (SELECT " +
+                        InboxDatabaseHelper.COLUMN_NOTIFICATION_ID +
+                        " FROM " +
+                        InboxDatabaseHelper.TABLE_NOTIFICATIONS +
+                        " WHERE " +
+                        InboxDatabaseHelper.COLUMN_DB_ID +
+                        " IN (" +
+                        batchQuery +
+                        "))",
+                        whereArgs
                     );
+                    deleted =
+                        database.delete(
+                            InboxDatabaseHelper.TABLE_NOTIFICATIONS,
+                            InboxDatabaseHelper.COLUMN_DB_ID + " IN (" + batchQuery + ")",
+                            whereArgs
+                        );
+                    database.setTransactionSuccessful();
+                } finally {
+                    database.endTransaction();
                 }
             }
+            totalDeleted += deleted;
+        } while (deleted >= CLEANUP_BATCH_SIZE);
+        return totalDeleted;
+    }
 
-            final InboxNotificationContentInternal c = new InboxNotificationContentInternal(
-                batchData.getSource(),
-                new Date(cursor.getLong(cursor.getColumnIndexOrThrow(InboxDatabaseHelper.COLUMN_DATE))),
-                convertedPayload,
-                identifiers
-            );
+    /**
+     * Parse a DB cursor to Notification object
+     * <p>
+     * The cursor must include the {@link #NOTIFICATION_COLUMNS}. The payload is kept as raw JSON,
+     * and will only be parsed if needed.
+     *
+     * @param cursor The cursor
+     * @return Notification content
+     */
+    private InboxNotificationContentInternal parseNotification(Cursor cursor) {
+        final NotificationIdentifiers identifiers = new NotificationIdentifiers(
+            cursor.getString(cursor.getColumnIndexOrThrow(InboxDatabaseHelper.COLUMN_NOTIFICATION_ID)),
+            cursor.getString(cursor.getColumnIndexOrThrow(InboxDatabaseHelper.COLUMN_SEND_ID))
+        );
+        identifiers.customID = cursor.getString(cursor.getColumnIndexOrThrow(InboxDatabaseHelper.COLUMN_CUSTOM_ID));
+        identifiers.installID = cursor.getString(cursor.getColumnIndexOrThrow(InboxDatabaseHelper.COLUMN_INSTALL_ID));
+
+        String payload = cursor.getString(cursor.getColumnIndexOrThrow(InboxDatabaseHelper.COLUMN_PAYLOAD));
+        final InboxNotificationContentInternal c = new InboxNotificationContentInternal(
+            new Date(cursor.getLong(cursor.getColumnIndexOrThrow(InboxDatabaseHelper.COLUMN_DATE))),
+            payload != null ? payload : "{}",
+            identifiers
+        );
+
+        String title = cursor.getString(cursor.getColumnIndexOrThrow(InboxDatabaseHelper.COLUMN_TITLE));
+        String body = cursor.getString(cursor.getColumnIndexOrThrow(InboxDatabaseHelper.COLUMN_BODY));
+        c.title = title.isEmpty() ? null : title;
+        c.body = body.isEmpty() ? null : body;
+        c.isUnread = cursor.getInt(cursor.getColumnIndexOrThrow(InboxDatabaseHelper.COLUMN_UNREAD)) != 0;
 
-            String title = cursor.getString(cursor.getColumnIndexOrThrow(InboxDatabaseHelper.COLUMN_TITLE));
-            String body = cursor.getString(cursor.getColumnIndexOrThrow(InboxDatabaseHelper.COLUMN_BODY));
-            c.title = title.isEmpty() ? null : title;
-            c.body = body.isEmpty() ? null : body;
-            c.isUnread = cursor.getInt(cursor.getColumnIndexOrThrow(InboxDatabaseHelper.COLUMN_UNREAD)) != 0;
-            return c;
-        } catch (JSONException e) {
-            Logger.internal(TAG, "Could not parse notification from DB", e);
+        // Rows written before these columns existed don't have them: they are then read from the payload
+        BatchNotificationSource source = null;
+        int sourceIndex = cursor.getColumnIndexOrThrow(InboxDatabaseHelper.COLUMN_SOURCE);
+        if (!cursor.isNull(sourceIndex)) {
+            try {
+                source = BatchNotificationSource.valueOf(cursor.getString(sourceIndex));
+            } catch (IllegalArgumentException ignored) {}
         }
-        return null;
+        Boolean silent = null;
+        int silentIndex = cursor.getColumnIndexOrThrow(InboxDatabaseHelper.COLUMN_SILENT);
+        if (!cursor.isNull(silentIndex)) {
+            silent = cursor.getInt(silentIndex) != 0;
+        }
+        c.setBatchDataValues(source, silent);
+        return c;
     }
 
     /**
@@ -764,4 +1478,59 @@ public final class InboxDatasource {
         }
         return sb.toString();
     }
+
+    /**
+     * Counters of a fetcher's notifications
+     */
+    private static class Counters {
+
+        private int total;
+
+        private int unread;
+
+        private int silentTotal;
+
+        private int silentUnread;
+
+        private Counters(int total, int unread, int silentTotal, int silentUnread) {
+            this.total = total;
+            this.unread = unread;
+            this.silentTotal = silentTotal;
+            this.silentUnread = silentUnread;
+        }
+
+        private void markAsRead(boolean silent) {
+            unread--;
+            if (silent) {
+                silentUnread--;
+            }
+        }
+
+        private void markAsDeleted(boolean wasUnread, boolean silent) {
+            total--;
+            if (silent) {
+                silentTotal--;
+            }
+            if (wasUnread) {
+                markAsRead(silent);
+            }
+        }
+    }
+
+    /**
+     * State of a notification about to be changed, and the fetchers whose counters it is part of
+     */
+    private static class CounterChange {
+
+        private final boolean unread;
+
+        private final boolean silent;
+
+        private final List<Long> fetcherIds = new ArrayList<>();
+
+        private CounterChange(boolean unread, boolean silent) {
+            this.unread = unread;
+            this.silent = silent;
+        }
+    }
 }
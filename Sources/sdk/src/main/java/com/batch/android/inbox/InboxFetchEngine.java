@@ -0,0 +1,225 @@
+package com.batch.android.inbox;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import com.batch.android.core.Logger;
+import com.batch.android.core.NamedThreadFactory;
+import com.batch.android.processor.Module;
+import com.batch.android.processor.Provide;
+import com.batch.android.processor.Singleton;
+import com.batch.android.webservice.listener.InboxWebserviceListener;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs the inbox fetch and sync requests of all fetchers.
+ * <p>
+ * Requests run serially on a single thread shared by every fetcher. Fetchers of the same inbox
+ * (fetcher type, identifier and cache) asking for the same page while a request is pending join it
+ * rather than calling the webservice again: each of them gets its own copy of the response.
+ */
+@Module
+@Singleton
+public class InboxFetchEngine {
+
+    private static final String TAG = "InboxFetchEngine";
+
+    private final Executor executor = Executors.newSingleThreadExecutor(new NamedThreadFactory("inbox.fetcher"));
+
+    /**
+     * Pending requests, by request key
+     */
+    private final Map<String, PendingRequest> pendingRequests = new HashMap<>();
+
+    @Provide
+    public static InboxFetchEngine provide() {
+        return new InboxFetchEngine();
+    }
+
+    /**
+     * Run a request, or join the pending one with the same key
+     *
+     * @param requestKey Key of the request, made with {@link #makeFetchKey} or {@link #makeSyncKey}
+     * @param listener   Listener of the fetcher making the request
+     * @param request    Request to run if none is pending. Must call the given listener back once done.
+     */
+    public void submit(
+        @NonNull String requestKey,
+        @NonNull InboxWebserviceListener listener,
+        @NonNull Request request
+    ) {
+        final PendingRequest pendingRequest;
+        synchronized (pendingRequests) {
+            PendingRequest existingRequest = pendingRequests.get(requestKey);
+            if (existingRequest != null) {
+                Logger.internal(TAG, "Joining pending inbox request");
+                existingRequest.listeners.add(listener);
+                return;
+            }
+            pendingRequest = new PendingRequest(requestKey, listener);
+            pendingRequests.put(requestKey, pendingRequest);
+        }
+
+        executor.execute(() -> {
+            try {
+                request.run(pendingRequest);
+            } catch (RuntimeException e) {
+                // Make sure that the pending request doesn't stay there forever
+                Logger.internal(TAG, "Inbox request failed unexpectedly", e);
+                pendingRequest.onFailure("Internal network call error");
+            }
+        });
+    }
+
+    /**
+     * Run a task on the inbox thread, after the requests that have already been submitted
+     */
+    public void execute(@NonNull Runnable task) {
+        executor.execute(task);
+    }
+
+    @VisibleForTesting
+    int getPendingRequestCount() {
+        synchronized (pendingRequests) {
+            return pendingRequests.size();
+        }
+    }
+
+    /**
+     * Make the key of a fetch request
+     *
+     * @param fetcherId ID of the fetcher in the cache, -1 if it doesn't use it. Requests only write to the cache
+     *                  of the fetcher that started them, so fetchers with different IDs never share one.
+     */
+    @NonNull
+    public static String makeFetchKey(
+        long fetcherId,
+        @NonNull FetcherType fetcherType,
+        @Nullable String identifier,
+        @Nullable String authKey,
+        int maxPageSize,
+        @Nullable String cursor
+    ) {
+        return (
+            "fetch/" +
+            fetcherId +
+            "/" +
+            fetcherType.getValue() +
+            "/" +
+            identifier +
+            "/" +
+            authKey +
+            "/" +
+            maxPageSize +
+            "/" +
+            cursor
+        );
+    }
+
+    /**
+     * Make the key of a sync request. Syncs only match if they have the same candidates, in the same states.
+     */
+    @NonNull
+    public static String makeSyncKey(
+        long fetcherId,
+        @NonNull FetcherType fetcherType,
+        @Nullable String identifier,
+        @Nullable String authKey,
+        int maxPageSize,
+        @Nullable String cursor,
+        @NonNull List<InboxCandidateNotificationInternal> candidates
+    ) {
+        final StringBuilder key = new StringBuilder("sync/")
+            .append(fetcherId)
+            .append('/')
+            .append(fetcherType.getValue())
+            .append('/')
+            .append(identifier)
+            .append('/')
+            .append(authKey)
+            .append('/')
+            .append(maxPageSize)
+            .append('/')
+            .append(cursor);
+        for (InboxCandidateNotificationInternal candidate : candidates) {
+            key.append('/').append(candidate.identifier).append(candidate.isUnread ? ":u" : ":r");
+        }
+        return key.toString();
+    }
+
+    /**
+     * A fetch or sync request
+     */
+    public interface Request {
+        /**
+         * Run the request on the inbox thread
+         *
+         * @param listener Listener to call back once done, dispatching the result to all the fetchers waiting for it
+         */
+        void run(@NonNull InboxWebserviceListener listener);
+    }
+
+    /**
+     * A running request, and the fetchers waiting for it
+     */
+    private class PendingRequest implements InboxWebserviceListener {
+
+        @NonNull
+        private final String key;
+
+        /**
+         * Listeners of the fetchers waiting for the request. Only accessed while holding the pending requests lock.
+         */
+        @NonNull
+        private final List<InboxWebserviceListener> listeners = new ArrayList<>();
+
+        private PendingRequest(@NonNull String key, @NonNull InboxWebserviceListener listener) {
+            this.key = key;
+            this.listeners.add(listener);
+        }
+
+        /**
+         * Stop accepting new listeners
+         *
+         * @return the listeners to call back, or null if this has already been done
+         */
+        @Nullable
+        private List<InboxWebserviceListener> complete() {
+            synchronized (pendingRequests) {
+                if (pendingRequests.get(key) != this) {
+                    return null;
+                }
+                pendingRequests.remove(key);
+                return new ArrayList<>(listeners);
+            }
+        }
+
+        @Override
+        public void onSuccess(InboxWebserviceResponse result) {
+            final List<InboxWebserviceListener> listenersToCall = complete();
+            if (listenersToCall == null) {
+                return;
+            }
+            for (int i = 0; i < listenersToCall.size(); i++) {
+                // Fetchers modify the notifications they get: only the first one gets the original response
+                listenersToCall.get(i).onSuccess(i == 0 || result == null ? result : result.copy());
+            }
+        }
+
+        @Override
+        public void onFailure(@NonNull String error) {
+            final List<InboxWebserviceListener> listenersToCall = complete();
+            if (listenersToCall == null) {
+                return;
+            }
+            for (InboxWebserviceListener listener : listenersToCall) {
+                listener.onFailure(error);
+            }
+        }
+    }
+}
@@ -12,9 +12,9 @@ import com.batch.android.core.ParameterKeys;
 import com.batch.android.core.TaskRunnable;
 import com.batch.android.core.domain.DomainURLBuilder;
 import com.batch.android.di.providers.InboxDatasourceProvider;
-import com.batch.android.json.JSONArray;
 import com.batch.android.json.JSONException;
 import com.batch.android.json.JSONObject;
+import com.batch.android.json.JSONReader;
 import com.batch.android.post.PostDataProvider;
 import com.batch.android.webservice.listener.InboxWebserviceListener;
 import java.net.MalformedURLException;
@@ -82,8 +82,7 @@ public class InboxFetchWebserviceClient extends BatchWebservice implements TaskR
     public void run() {
         try {
             Logger.internal(TAG, "Starting inbox fetch (" + buildURL().toString() + ")");
-            JSONObject response = getBasicJsonResponseBody();
-            InboxWebserviceResponse parsedResponse = parseResponse(response);
+            InboxWebserviceResponse parsedResponse = parseResponse(getBasicJsonResponseReader());
 
             // Insert response in cache
             if (fetcherId > 0) {
@@ -111,41 +110,80 @@ public class InboxFetchWebserviceClient extends BatchWebservice implements TaskR
         }
     }
 
-    private InboxWebserviceResponse parseResponse(JSONObject json) throws ResponseParsingException {
+    /**
+     * Parse the response as it is read: notifications are materialized one at a time
+     *
+     * @throws JSONException if the response is not valid JSON
+     * @throws ResponseParsingException if the response does not have the expected content
+     */
+    private InboxWebserviceResponse parseResponse(JSONReader reader)
+        throws JSONException, ResponseParsingException {
         final InboxWebserviceResponse r = new InboxWebserviceResponse();
 
-        try {
-            r.hasMore = json.getBoolean("hasMore");
-            r.didTimeout = json.reallyOptBoolean("timeout", false);
-            r.cursor = json.reallyOptString("cursor", null);
-            if (TextUtils.isEmpty(r.cursor)) {
-                r.cursor = null;
-            }
+        if (reader.peek() != JSONReader.Token.BEGIN_OBJECT) {
+            throw new ResponseParsingException("Response JSON is not an object");
+        }
 
-            JSONArray rawNotifications = json.getJSONArray("notifications");
-            for (int i = 0; i < rawNotifications.length(); i++) {
-                Object rawNotification = rawNotifications.get(i);
-                if (rawNotification instanceof JSONObject) {
-                    try {
-                        r.notifications.add(parseNotification((JSONObject) rawNotification));
-                    } catch (ResponseParsingException e) {
-                        Logger.internal(TAG, "Failed to parse notification content, skipping.", e);
+        Boolean hasMore = null;
+        boolean hasNotifications = false;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "hasMore":
+                    hasMore = reader.optNextBoolean();
+                    break;
+                case "timeout":
+                    r.didTimeout = Boolean.TRUE.equals(reader.optNextBoolean());
+                    break;
+                case "cursor":
+                    r.cursor = reader.optNextString();
+                    break;
+                case "notifications":
+                    if (reader.peek() != JSONReader.Token.BEGIN_ARRAY) {
+                        throw new ResponseParsingException("Missing key or invalid value type in response JSON");
                     }
-                } else {
-                    Logger.internal(
-                        TAG,
-                        "Invalid json element found in notification array, skipping. Found: " +
-                        rawNotification.toString()
-                    );
-                }
+                    parseNotifications(reader, r);
+                    hasNotifications = true;
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
             }
-        } catch (JSONException e) {
-            throw new ResponseParsingException("Missing key or invalid value type in response JSON", e);
+        }
+        reader.endObject();
+
+        if (hasMore == null || !hasNotifications) {
+            throw new ResponseParsingException("Missing key or invalid value type in response JSON");
+        }
+        r.hasMore = hasMore;
+
+        if (TextUtils.isEmpty(r.cursor)) {
+            r.cursor = null;
         }
 
         return r;
     }
 
+    private void parseNotifications(JSONReader reader, InboxWebserviceResponse r) throws JSONException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (reader.peek() == JSONReader.Token.BEGIN_OBJECT) {
+                try {
+                    r.notifications.add(parseNotification(reader.nextJSONObject()));
+                } catch (ResponseParsingException e) {
+                    Logger.internal(TAG, "Failed to parse notification content, skipping.", e);
+                }
+            } else {
+                Logger.internal(
+                    TAG,
+                    "Invalid json element found in notification array, skipping. Found: " +
+                    reader.nextValue().toString()
+                );
+            }
+        }
+        reader.endArray();
+    }
+
     protected static InboxNotificationContentInternal parseNotification(JSONObject json)
         throws ResponseParsingException {
         try {
@@ -177,6 +215,7 @@ public class InboxFetchWebserviceClient extends BatchWebservice implements TaskR
             c.title = payload.reallyOptString(Batch.Push.TITLE_KEY, null);
             c.isUnread = !json.reallyOptBoolean("read", false) && !json.reallyOptBoolean("opened", false);
             c.isDeleted = false;
+            c.setBatchDataValues(null, batchData.isSilent());
 
             if (!c.isValid()) {
                 throw new ResponseParsingException(
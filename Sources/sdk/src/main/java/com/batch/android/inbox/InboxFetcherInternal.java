@@ -9,8 +9,8 @@ import com.batch.android.BatchInboxFetcher;
 import com.batch.android.BatchInboxNotificationContent;
 import com.batch.android.PrivateNotificationContentHelper;
 import com.batch.android.core.Logger;
-import com.batch.android.core.NamedThreadFactory;
 import com.batch.android.di.providers.InboxDatasourceProvider;
+import com.batch.android.di.providers.InboxFetchEngineProvider;
 import com.batch.android.di.providers.InboxFetcherInternalProvider;
 import com.batch.android.di.providers.RuntimeManagerProvider;
 import com.batch.android.di.providers.TrackerModuleProvider;
@@ -25,8 +25,6 @@ import java.net.MalformedURLException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 
 /**
  * Internal implementation of {@link BatchInboxFetcher}
@@ -36,14 +34,23 @@ public class InboxFetcherInternal {
 
     private static final String TAG = "InboxFetcher";
 
-    private static boolean isDatabaseCleaned = false;
-
     private TrackerModule trackerModule;
 
+    /**
+     * Engine running the requests of all fetchers
+     */
+    private InboxFetchEngine engine;
+
     private Context context;
 
     private String cursor = null;
 
+    /**
+     * Position of the oldest fetched notification, from which the next page is read in the cache
+     */
+    @Nullable
+    private InboxPageCursor localCursor = null;
+
     private long fetcherId;
 
     private FetcherType fetcherType;
@@ -54,12 +61,16 @@ public class InboxFetcherInternal {
 
     private final List<InboxNotificationContentInternal> fetchedNotifications = new ArrayList<>();
 
+    /**
+     * Notifications added by the sync of a page served from the cache, not given to the developer yet.
+     * They are delivered with the next page. Only accessed while holding the fetched notifications lock.
+     */
+    private final List<InboxNotificationContentInternal> pendingNotifications = new ArrayList<>();
+
     private int maxPageSize = 20;
 
     private int fetchLimit = 200;
 
-    private Executor fetchExecutor = Executors.newSingleThreadExecutor(new NamedThreadFactory("inbox.fetcher"));
-
     private boolean endReached = false;
 
     private InboxDatasource datasource;
@@ -68,17 +79,20 @@ public class InboxFetcherInternal {
 
     private InboxFetcherInternal(
         @NonNull TrackerModule trackerModule,
+        @NonNull InboxFetchEngine engine,
         @Nullable InboxDatasource datasource,
         @NonNull Context context,
         String installID
     ) {
         this.trackerModule = trackerModule;
+        this.engine = engine;
         this.context = context;
         this.fetcherType = FetcherType.INSTALLATION;
         this.identifier = installID;
         this.datasource = datasource;
         if (datasource != null) {
             this.fetcherId = datasource.getFetcherID(fetcherType, identifier);
+            datasource.scheduleCleanup(context);
         } else {
             this.fetcherId = -1;
         }
@@ -88,6 +102,7 @@ public class InboxFetcherInternal {
     public static InboxFetcherInternal provide(@NonNull Context context, String installID) {
         return new InboxFetcherInternal(
             TrackerModuleProvider.get(),
+            InboxFetchEngineProvider.get(),
             InboxDatasourceProvider.get(context),
             context,
             installID
@@ -104,17 +119,25 @@ public class InboxFetcherInternal {
             return InboxFetcherInternalProvider.get(context, installID);
         }
 
-        return new InboxFetcherInternal(TrackerModuleProvider.get(), null, context, installID);
+        return new InboxFetcherInternal(
+            TrackerModuleProvider.get(),
+            InboxFetchEngineProvider.get(),
+            null,
+            context,
+            installID
+        );
     }
 
     private InboxFetcherInternal(
         @NonNull TrackerModule trackerModule,
+        @NonNull InboxFetchEngine engine,
         @Nullable InboxDatasource datasource,
         @NonNull Context context,
         @NonNull String userIdentifier,
         @NonNull String authenticationKey
     ) {
         this.trackerModule = trackerModule;
+        this.engine = engine;
         this.context = context;
         this.fetcherType = FetcherType.USER_IDENTIFIER;
         this.identifier = userIdentifier;
@@ -122,6 +145,7 @@ public class InboxFetcherInternal {
         this.datasource = datasource;
         if (datasource != null) {
             this.fetcherId = datasource.getFetcherID(fetcherType, identifier);
+            datasource.scheduleCleanup(context);
         } else {
             this.fetcherId = -1;
         }
@@ -135,6 +159,7 @@ public class InboxFetcherInternal {
     ) {
         return new InboxFetcherInternal(
             TrackerModuleProvider.get(),
+            InboxFetchEngineProvider.get(),
             InboxDatasourceProvider.get(context),
             context,
             userIdentifier,
@@ -153,7 +178,14 @@ public class InboxFetcherInternal {
             return InboxFetcherInternalProvider.get(context, userIdentifier, authenticationKey);
         }
 
-        return new InboxFetcherInternal(TrackerModuleProvider.get(), null, context, userIdentifier, authenticationKey);
+        return new InboxFetcherInternal(
+            TrackerModuleProvider.get(),
+            InboxFetchEngineProvider.get(),
+            null,
+            context,
+            userIdentifier,
+            authenticationKey
+        );
     }
 
     public void setMaxPageSize(int maxPageSize) {
@@ -172,6 +204,30 @@ public class InboxFetcherInternal {
         return endReached || fetchedNotifications.size() >= fetchLimit;
     }
 
+    /**
+     * Get the number of cached notifications, read from the datasource
+     *
+     * @return the number of notifications, or -1 if not available
+     */
+    public int getCachedNotificationCount() {
+        if (datasource == null || fetcherId == -1) {
+            return -1;
+        }
+        return datasource.getNotificationCount(fetcherId, filterSilentNotifications);
+    }
+
+    /**
+     * Get the number of unread cached notifications, read from the datasource
+     *
+     * @return the number of unread notifications, or -1 if not available
+     */
+    public int getCachedUnreadCount() {
+        if (datasource == null || fetcherId == -1) {
+            return -1;
+        }
+        return datasource.getUnreadNotificationCount(fetcherId, filterSilentNotifications);
+    }
+
     public void markAsRead(BatchInboxNotificationContent notification) {
         synchronized (fetchedNotifications) {
             String notifID = PrivateNotificationContentHelper.getInternalContent(notification).identifiers.identifier;
@@ -313,6 +369,16 @@ public class InboxFetcherInternal {
 
     public void fetchNextPage(BatchInboxFetcher.OnNextPageFetchedListener listener) {
         if (isEndReached()) {
+            final List<InboxNotificationContentInternal> pending;
+            synchronized (fetchedNotifications) {
+                pending = takePendingNotifications(new ArrayList<>());
+            }
+            if (!pending.isEmpty()) {
+                if (listener != null) {
+                    listener.onFetchSuccess(convertInternalModelsToPublic(pending), true);
+                }
+                return;
+            }
             if (listener != null) {
                 listener.onFetchFailure(
                     "The end of the inbox feed has been reached, either because you've reached the fetch limit, or because the server doesn't have anything left for you."
@@ -343,10 +409,10 @@ public class InboxFetcherInternal {
                 try {
                     // If the cursor is null, we actually did something equivalent to "fetchNewNotifications",
                     // so handle the response appropriately
-                    List<InboxNotificationContentInternal> addedNotifications = handleFetchSuccess(
-                        response,
-                        cursor == null
-                    );
+                    List<InboxNotificationContentInternal> addedNotifications;
+                    synchronized (fetchedNotifications) {
+                        addedNotifications = takePendingNotifications(handleFetchSuccess(response, cursor == null));
+                    }
                     finalListener.onFetchSuccess(convertInternalModelsToPublic(addedNotifications), !response.hasMore);
                 } catch (ResultHandlingError e) {
                     Logger.internal(TAG, "Failed to handle inbox fetch response", e);
@@ -360,9 +426,127 @@ public class InboxFetcherInternal {
                 finalListener.onFetchFailure(error);
             }
         };
+
+        if (fetchNextPageFromCache(finalListener)) {
+            return;
+        }
         fetch(cursor, wsClientListener);
     }
 
+    /**
+     * Serve the next page from the cache, then sync it with the server in the background.
+     * <p>
+     * Only done once a first page has been fetched from the server, and if the cache has notifications
+     * after the oldest fetched one. The sync writes the read and deleted states the server sends to the
+     * cache, and moves the server cursor forward for the next fetches. The notifications that have been
+     * served are left untouched: these states show up on the next refresh. Notifications that the cache
+     * was missing are delivered with the next page.
+     *
+     * @return true if a page has been served from the cache
+     */
+    private boolean fetchNextPageFromCache(@NonNull BatchInboxFetcher.OnNextPageFetchedListener listener) {
+        if (datasource == null || fetcherId == -1 || cursor == null) {
+            return false;
+        }
+
+        final List<InboxNotificationContentInternal> cachedNotifications;
+        final List<InboxNotificationContentInternal> addedNotifications;
+        synchronized (fetchedNotifications) {
+            if (localCursor == null) {
+                return false;
+            }
+            cachedNotifications = datasource.getNotificationsPage(localCursor, maxPageSize, fetcherId);
+            if (cachedNotifications.isEmpty()) {
+                return false;
+            }
+            addedNotifications = takePendingNotifications(mergeNotifications(cachedNotifications));
+            advanceLocalCursor(cachedNotifications);
+        }
+
+        Logger.internal(TAG, "Serving " + cachedNotifications.size() + " inbox notifications from cache");
+        // Whether the end has been reached is only known once the page has been synced
+        listener.onFetchSuccess(convertInternalModelsToPublic(addedNotifications), false);
+
+        final List<InboxCandidateNotificationInternal> candidates = new ArrayList<>();
+        for (InboxNotificationContentInternal notification : cachedNotifications) {
+            candidates.add(
+                new InboxCandidateNotificationInternal(notification.identifiers.identifier, notification.isUnread)
+            );
+        }
+
+        final InboxWebserviceListener syncListener = new InboxWebserviceListener() {
+            @Override
+            public void onSuccess(InboxWebserviceResponse response) {
+                Logger.internal(TAG, "Inbox sync success (cached page) ----\n" + response.toString());
+                handleCachedPageSyncSuccess(response);
+            }
+
+            @Override
+            public void onFailure(@NonNull String error) {
+                Logger.internal(TAG, "Could not sync inbox notifications served from cache: " + error);
+            }
+        };
+
+        final String requestKey = InboxFetchEngine.makeSyncKey(
+            fetcherId,
+            fetcherType,
+            identifier,
+            authKey,
+            maxPageSize,
+            cursor,
+            candidates
+        );
+        engine.submit(
+            requestKey,
+            syncListener,
+            requestListener -> {
+                Context c = getFetchContext(requestListener);
+                if (c == null) {
+                    return;
+                }
+
+                try {
+                    // The cursor is read now rather than when serving the page, as a previous sync might have moved it
+                    runSyncWSClient(
+                        new InboxSyncWebserviceClient(
+                            c,
+                            fetcherType,
+                            identifier,
+                            authKey,
+                            maxPageSize,
+                            cursor,
+                            fetcherId,
+                            candidates,
+                            requestListener
+                        )
+                    );
+                } catch (MalformedURLException e) {
+                    Logger.internal(TAG, "Could not start inbox fetcher ws: ", e);
+                    requestListener.onFailure("Internal network call error");
+                }
+            }
+        );
+        return true;
+    }
+
+    /**
+     * Get the context for a fetch or sync
+     *
+     * @return the context, or null if none is available, in which case the listener has been called back
+     */
+    @Nullable
+    private Context getFetchContext(@NonNull InboxWebserviceListener wsClientListener) {
+        Context c = context != null ? context : RuntimeManagerProvider.get().getContext();
+        if (c == null) {
+            Logger.internal(TAG, "No context available");
+            wsClientListener.onFailure(
+                "Internal error: No context available. If you are getting a Batch Inbox Fetcher in 'user identifier' mode, you can improve this by using the Batch.Inbox.getFetcher(Context,String,String) variant."
+            );
+            return null;
+        }
+        return c;
+    }
+
     private void fetch(@Nullable final String cursor, @NonNull final InboxWebserviceListener wsClientListener) {
         if (sync(cursor, wsClientListener)) {
             return;
@@ -380,41 +564,35 @@ public class InboxFetcherInternal {
             }
         }
 
-        fetchExecutor.execute(() -> {
-            Context c = context != null ? context : RuntimeManagerProvider.get().getContext();
-            if (c == null) {
-                Logger.internal(TAG, "No context available");
-                wsClientListener.onFailure(
-                    "Internal error: No context available. If you are getting a Batch Inbox Fetcher in 'user identifier' mode, you can improve this by using the Batch.Inbox.getFetcher(Context,String,String) variant."
-                );
-                return;
-            }
-
-            if (!isDatabaseCleaned && datasource != null) {
-                // Before the first fetch or sync, we clean old notifications for the DB
-                isDatabaseCleaned = true;
-                datasource.cleanDatabase();
-            }
+        engine.submit(
+            InboxFetchEngine.makeFetchKey(fetcherId, fetcherType, identifier, authKey, maxPageSize, cursor),
+            wsClientListener,
+            requestListener -> {
+                Context c = getFetchContext(requestListener);
+                if (c == null) {
+                    return;
+                }
 
-            try {
-                // No need for the TaskExecutor, run the WS directly on this thread since it has to work serially
-                runFetchWSClient(
-                    new InboxFetchWebserviceClient(
-                        c,
-                        fetcherType,
-                        identifier,
-                        authKey,
-                        maxPageSize,
-                        cursor,
-                        fetcherId,
-                        wsClientListener
-                    )
-                );
-            } catch (MalformedURLException e) {
-                Logger.internal(TAG, "Could not start inbox fetcher ws: ", e);
-                wsClientListener.onFailure("Internal network call error");
+                try {
+                    // No need for the TaskExecutor, run the WS directly on this thread since it has to work serially
+                    runFetchWSClient(
+                        new InboxFetchWebserviceClient(
+                            c,
+                            fetcherType,
+                            identifier,
+                            authKey,
+                            maxPageSize,
+                            cursor,
+                            fetcherId,
+                            requestListener
+                        )
+                    );
+                } catch (MalformedURLException e) {
+                    Logger.internal(TAG, "Could not start inbox fetcher ws: ", e);
+                    requestListener.onFailure("Internal network call error");
+                }
             }
-        });
+        );
     }
 
     @VisibleForTesting
@@ -422,47 +600,55 @@ public class InboxFetcherInternal {
         client.run();
     }
 
+    @VisibleForTesting
+    protected void runSyncWSClient(InboxSyncWebserviceClient client) {
+        client.run();
+    }
+
     private boolean sync(@Nullable final String cursor, final InboxWebserviceListener wsClientListener) {
         if (datasource != null && fetcherId != -1) {
             List<InboxCandidateNotificationInternal> candidates;
             candidates = datasource.getCandidateNotifications(cursor, maxPageSize, fetcherId);
             if (!candidates.isEmpty()) {
                 List<InboxCandidateNotificationInternal> finalCandidates = candidates;
-                fetchExecutor.execute(() -> {
-                    Context c = context != null ? context : RuntimeManagerProvider.get().getContext();
-                    if (c == null) {
-                        Logger.internal(TAG, "No context available");
-                        wsClientListener.onFailure(
-                            "Internal error: No context available. If you are getting a Batch Inbox Fetcher in 'user identifier' mode, you can improve this by using the Batch.Inbox.getFetcher(Context,String,String) variant."
-                        );
-                        return;
-                    }
-
-                    if (!isDatabaseCleaned && datasource != null) {
-                        // Before the first fetch or sync, we clean old notifications for the DB
-                        isDatabaseCleaned = true;
-                        datasource.cleanDatabase();
-                    }
+                engine.submit(
+                    InboxFetchEngine.makeSyncKey(
+                        fetcherId,
+                        fetcherType,
+                        identifier,
+                        authKey,
+                        maxPageSize,
+                        cursor,
+                        candidates
+                    ),
+                    wsClientListener,
+                    requestListener -> {
+                        Context c = getFetchContext(requestListener);
+                        if (c == null) {
+                            return;
+                        }
 
-                    try {
-                        // No need for the TaskExecutor, run the WS directly on this thread since it has to work serially
-                        new InboxSyncWebserviceClient(
-                            c,
-                            fetcherType,
-                            identifier,
-                            authKey,
-                            maxPageSize,
-                            cursor,
-                            fetcherId,
-                            finalCandidates,
-                            wsClientListener
-                        )
-                            .run();
-                    } catch (MalformedURLException e) {
-                        Logger.internal(TAG, "Could not start inbox fetcher ws: ", e);
-                        wsClientListener.onFailure("Internal network call error");
+                        try {
+                            // No need for the TaskExecutor, run the WS directly on this thread since it has to work serially
+                            runSyncWSClient(
+                                new InboxSyncWebserviceClient(
+                                    c,
+                                    fetcherType,
+                                    identifier,
+                                    authKey,
+                                    maxPageSize,
+                                    cursor,
+                                    fetcherId,
+                                    finalCandidates,
+                                    requestListener
+                                )
+                            );
+                        } catch (MalformedURLException e) {
+                            Logger.internal(TAG, "Could not start inbox fetcher ws: ", e);
+                            requestListener.onFailure("Internal network call error");
+                        }
                     }
-                });
+                );
 
                 return true;
             }
@@ -478,6 +664,9 @@ public class InboxFetcherInternal {
             return datas;
         }
 
+        // Additional data is read from the payload, which might not have been parsed yet
+        notificationContent.loadBatchData();
+
         List<NotificationIdentifiers> contentIdentifiers = new ArrayList<>();
         contentIdentifiers.add(notificationContent.identifiers);
         if (notificationContent.duplicateIdentifiers != null) {
@@ -544,67 +733,135 @@ public class InboxFetcherInternal {
             if (askedForNewNotifications) {
                 //TODO Improve on this later (v2)
                 fetchedNotifications.clear();
+                pendingNotifications.clear();
+                localCursor = null;
             }
 
-            // Also deduplicate the response notifications, so that the developer gets somewhat consistent data
-            List<InboxNotificationContentInternal> addedNotifications = new ArrayList<>();
+            List<InboxNotificationContentInternal> addedNotifications = mergeNotifications(response.notifications);
+            advanceLocalCursor(response.notifications);
+
+            cursor = response.cursor;
+            endReached = !response.hasMore;
+            return addedNotifications;
+        }
+    }
+
+    /**
+     * Add notifications to the fetched ones, deduplicating them so that the developer gets somewhat
+     * consistent data. Must be called while holding the fetched notifications lock.
+     *
+     * @return the notifications that have been added
+     */
+    @NonNull
+    private List<InboxNotificationContentInternal> mergeNotifications(
+        @NonNull List<InboxNotificationContentInternal> notifications
+    ) {
+        List<InboxNotificationContentInternal> addedNotifications = new ArrayList<>();
 
-            // Deduplicate based on the sendID
-            for (InboxNotificationContentInternal respNotif : response.notifications) {
-                final String sendID = respNotif.identifiers.sendID;
-                if (sendID == null) {
-                    continue;
+        // Deduplicate based on the sendID
+        for (InboxNotificationContentInternal respNotif : notifications) {
+            final String sendID = respNotif.identifiers.sendID;
+            if (sendID == null) {
+                continue;
+            }
+            InboxNotificationContentInternal duplicateNotif = null;
+            for (InboxNotificationContentInternal fetchedNotif : fetchedNotifications) {
+                if (sendID.equals(fetchedNotif.identifiers.sendID)) {
+                    duplicateNotif = fetchedNotif;
+                    break;
                 }
-                InboxNotificationContentInternal duplicateNotif = null;
-                for (InboxNotificationContentInternal fetchedNotif : fetchedNotifications) {
-                    if (sendID.equals(fetchedNotif.identifiers.sendID)) {
-                        duplicateNotif = fetchedNotif;
-                        break;
-                    }
+            }
+
+            if (duplicateNotif != null) {
+                if (duplicateNotif.isDeleted) {
+                    Logger.internal(
+                        TAG,
+                        "Receiving notification that has been deleted locally. " + respNotif.identifiers.identifier
+                    );
                 }
 
-                if (duplicateNotif != null) {
-                    if (duplicateNotif.isDeleted) {
-                        Logger.internal(
-                            TAG,
-                            "Receiving notification that has been deleted locally. " + respNotif.identifiers.identifier
-                        );
-                    }
+                if (respNotif.identifiers.identifier.equals(duplicateNotif.identifiers.identifier)) {
+                    Logger.internal(
+                        TAG,
+                        "InboxFetcher: Got the exact same notification twice, skipping. " +
+                        respNotif.identifiers.identifier
+                    );
+                } else {
+                    Logger.internal(
+                        TAG,
+                        "Merging notifications for sendID " +
+                        sendID +
+                        " (identifiers: " +
+                        respNotif.identifiers.identifier +
+                        ", " +
+                        duplicateNotif.identifiers.identifier +
+                        ")"
+                    );
 
-                    if (respNotif.identifiers.identifier.equals(duplicateNotif.identifiers.identifier)) {
-                        Logger.internal(
-                            TAG,
-                            "InboxFetcher: Got the exact same notification twice, skipping. " +
-                            respNotif.identifiers.identifier
-                        );
-                    } else {
-                        Logger.internal(
-                            TAG,
-                            "Merging notifications for sendID " +
-                            sendID +
-                            " (identifiers: " +
-                            respNotif.identifiers.identifier +
-                            ", " +
-                            duplicateNotif.identifiers.identifier +
-                            ")"
-                        );
-
-                        duplicateNotif.addDuplicateIdentifiers(respNotif.identifiers);
-
-                        // If the duplicate is read, mark the other notification as read too
-                        if (!respNotif.isUnread) {
-                            duplicateNotif.isUnread = false;
-                        }
+                    respNotif.loadBatchData();
+                    duplicateNotif.addDuplicateIdentifiers(respNotif.identifiers);
+
+                    // If the duplicate is read, mark the other notification as read too
+                    if (!respNotif.isUnread) {
+                        duplicateNotif.isUnread = false;
                     }
-                } else {
-                    fetchedNotifications.add(respNotif);
-                    addedNotifications.add(respNotif);
                 }
+            } else {
+                fetchedNotifications.add(respNotif);
+                addedNotifications.add(respNotif);
             }
+        }
+        return addedNotifications;
+    }
 
-            cursor = response.cursor;
-            endReached = !response.hasMore;
-            return addedNotifications;
+    /**
+     * Move the local cursor to the oldest of the given notifications, if older than the current one
+     */
+    private void advanceLocalCursor(@NonNull List<InboxNotificationContentInternal> notifications) {
+        for (InboxNotificationContentInternal notification : notifications) {
+            InboxPageCursor position = InboxPageCursor.from(notification);
+            if (localCursor == null || position.isAfter(localCursor)) {
+                localCursor = position;
+            }
+        }
+    }
+
+    /**
+     * Put the notifications waiting to be delivered before the given ones, as they are more recent
+     * than any page that has not been delivered yet. Must be called while holding the fetched notifications lock.
+     *
+     * @return the notifications to deliver
+     */
+    @NonNull
+    private List<InboxNotificationContentInternal> takePendingNotifications(
+        @NonNull List<InboxNotificationContentInternal> notifications
+    ) {
+        if (pendingNotifications.isEmpty()) {
+            return notifications;
+        }
+        List<InboxNotificationContentInternal> result = new ArrayList<>(pendingNotifications);
+        result.addAll(notifications);
+        pendingNotifications.clear();
+        return result;
+    }
+
+    /**
+     * Apply the result of the sync of a page served from the cache
+     * <p>
+     * The notifications that have been served are not modified nor removed, as the developer might be
+     * displaying them: the sync wrote the server states to the cache, so they will be up to date on
+     * the next refresh. Notifications that were not served yet are queued for the next page.
+     *
+     * @param response Sync response, whose notifications have been updated in the cache
+     */
+    private void handleCachedPageSyncSuccess(@NonNull InboxWebserviceResponse response) {
+        synchronized (fetchedNotifications) {
+            try {
+                // Moves the server cursor, and keeps the notifications that have not been served yet
+                pendingNotifications.addAll(handleFetchSuccess(response, false));
+            } catch (ResultHandlingError e) {
+                Logger.internal(TAG, "Failed to handle inbox sync response", e);
+            }
         }
     }
 
@@ -4,25 +4,32 @@ import android.os.Bundle;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import com.batch.android.BatchNotificationSource;
+import com.batch.android.core.InternalPushData;
+import com.batch.android.core.Logger;
+import com.batch.android.json.JSONException;
+import com.batch.android.json.JSONObject;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
  * Internal representation of an inbox notification's content
+ * <p>
+ * Notifications read from the cache keep their payload as raw JSON: it is only parsed when first
+ * accessed, as listing notifications only needs their title, body and date.
  */
 public class InboxNotificationContentInternal {
 
+    private static final String TAG = "InboxNotificationContent";
+
     @Nullable
     public String title;
 
     @Nullable
     public String body;
 
-    @NonNull
-    public BatchNotificationSource source;
-
     public boolean isUnread;
 
     public boolean isDeleted;
@@ -30,15 +37,35 @@ public class InboxNotificationContentInternal {
     @NonNull
     public Date date;
 
-    @NonNull
-    public Map<String, String> payload;
-
     @NonNull
     public NotificationIdentifiers identifiers;
 
     @Nullable
     public List<NotificationIdentifiers> duplicateIdentifiers;
 
+    @Nullable
+    private BatchNotificationSource source;
+
+    /**
+     * Whether the push has Batch's silent flag. Null until read from the payload.
+     */
+    @Nullable
+    private Boolean silentPush;
+
+    /**
+     * Parsed payload. Null until first accessed, for notifications built from a raw payload.
+     */
+    @Nullable
+    private Map<String, String> payload;
+
+    /**
+     * Payload in its raw JSON form, for notifications read from the cache
+     */
+    @Nullable
+    private final String rawPayload;
+
+    private boolean batchDataLoaded = false;
+
     public InboxNotificationContentInternal(
         @NonNull BatchNotificationSource source,
         @NonNull Date date,
@@ -48,13 +75,163 @@ public class InboxNotificationContentInternal {
         this.source = source;
         this.date = date;
         this.payload = payload;
+        this.rawPayload = null;
+        this.identifiers = identifiers;
+    }
+
+    /**
+     * Make a notification whose payload will be parsed on first access
+     *
+     * @param rawPayload Payload in its raw JSON form, as stored in the cache
+     */
+    public InboxNotificationContentInternal(
+        @NonNull Date date,
+        @NonNull String rawPayload,
+        @NonNull NotificationIdentifiers identifiers
+    ) {
+        this.date = date;
+        this.rawPayload = rawPayload;
+        this.identifiers = identifiers;
+    }
+
+    /**
+     * Copy this notification, sharing its payload which is never modified once parsed
+     */
+    @NonNull
+    public synchronized InboxNotificationContentInternal copy() {
+        final InboxNotificationContentInternal copy = new InboxNotificationContentInternal(
+            date,
+            rawPayload,
+            payload,
+            identifiers.copy()
+        );
+        copy.title = title;
+        copy.body = body;
+        copy.isUnread = isUnread;
+        copy.isDeleted = isDeleted;
+        copy.source = source;
+        copy.silentPush = silentPush;
+        copy.batchDataLoaded = batchDataLoaded;
+        if (duplicateIdentifiers != null) {
+            for (NotificationIdentifiers duplicate : duplicateIdentifiers) {
+                copy.addDuplicateIdentifiers(duplicate.copy());
+            }
+        }
+        return copy;
+    }
+
+    private InboxNotificationContentInternal(
+        @NonNull Date date,
+        @Nullable String rawPayload,
+        @Nullable Map<String, String> payload,
+        @NonNull NotificationIdentifiers identifiers
+    ) {
+        this.date = date;
+        this.rawPayload = rawPayload;
+        this.payload = payload;
         this.identifiers = identifiers;
     }
 
+    @NonNull
+    public synchronized Map<String, String> getPayload() {
+        if (payload == null) {
+            payload = new HashMap<>();
+            if (rawPayload != null) {
+                try {
+                    JSONObject json = new JSONObject(rawPayload);
+                    for (String payloadKey : json.keySet()) {
+                        try {
+                            payload.put(payloadKey, json.getString(payloadKey));
+                        } catch (JSONException ignored) {
+                            Logger.internal(
+                                TAG,
+                                "Could not coalesce payload value to string for key \"" + payloadKey + "\". Ignoring."
+                            );
+                        }
+                    }
+                } catch (JSONException e) {
+                    Logger.internal(TAG, "Could not parse notification payload", e);
+                }
+            }
+        }
+        return payload;
+    }
+
+    /**
+     * Get the payload in its JSON form, without parsing it if it hasn't been yet
+     */
+    @NonNull
+    public String getPayloadJSONString() {
+        if (rawPayload != null) {
+            return rawPayload;
+        }
+        return new JSONObject(getPayload()).toString();
+    }
+
+    @NonNull
+    public synchronized BatchNotificationSource getSource() {
+        if (source == null) {
+            loadBatchData();
+        }
+        return source != null ? source : BatchNotificationSource.UNKNOWN;
+    }
+
+    /**
+     * Whether the push has Batch's silent flag, or has invalid Batch data
+     */
+    public synchronized boolean isSilentPush() {
+        if (silentPush == null) {
+            loadBatchData();
+        }
+        return silentPush == null || silentPush;
+    }
+
+    /**
+     * Set the values read from the Batch data when they are already known, so that the payload doesn't
+     * need to be parsed to get them
+     */
+    public synchronized void setBatchDataValues(
+        @Nullable BatchNotificationSource source,
+        @Nullable Boolean silentPush
+    ) {
+        if (source != null) {
+            this.source = source;
+        }
+        if (silentPush != null) {
+            this.silentPush = silentPush;
+        }
+    }
+
+    /**
+     * Read the values depending on the Batch data of the payload that have not been set yet,
+     * including the identifiers' additional data
+     */
+    public synchronized void loadBatchData() {
+        if (batchDataLoaded) {
+            return;
+        }
+        batchDataLoaded = true;
+
+        try {
+            final InternalPushData batchData = new InternalPushData(getPayload().get("com.batch"));
+            if (source == null) {
+                source = batchData.getSource();
+            }
+            if (silentPush == null) {
+                silentPush = batchData.isSilent();
+            }
+            if (identifiers.additionalData == null) {
+                identifiers.additionalData = batchData.getExtraParameters();
+            }
+        } catch (Exception e) {
+            Logger.internal(TAG, "Could not read notification Batch data", e);
+        }
+    }
+
     @NonNull
     public Bundle getReceiverLikePayload() {
         final Bundle b = new Bundle();
-        for (Map.Entry<String, String> payloadItem : payload.entrySet()) {
+        for (Map.Entry<String, String> payloadItem : getPayload().entrySet()) {
             b.putString(payloadItem.getKey(), payloadItem.getValue());
         }
         return b;
@@ -69,10 +246,9 @@ public class InboxNotificationContentInternal {
 
     public boolean isValid() {
         return (
-            source != null &&
+            (source != null || rawPayload != null) &&
             date != null &&
-            payload != null &&
-            payload.size() > 0 &&
+            getPayload().size() > 0 &&
             identifiers != null &&
             identifiers.isValid()
         );
@@ -0,0 +1,37 @@
+package com.batch.android.inbox;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Position of a notification in the cached inbox, used to read it page by page.
+ * <p>
+ * Notifications are sorted from the most recent to the oldest, by date then by identifier so that
+ * notifications sharing the same date keep a stable order.
+ */
+public final class InboxPageCursor {
+
+    public final long date;
+
+    @NonNull
+    public final String notificationId;
+
+    public InboxPageCursor(long date, @NonNull String notificationId) {
+        this.date = date;
+        this.notificationId = notificationId;
+    }
+
+    @NonNull
+    public static InboxPageCursor from(@NonNull InboxNotificationContentInternal notification) {
+        return new InboxPageCursor(notification.date.getTime(), notification.identifiers.identifier);
+    }
+
+    /**
+     * Checks if this position comes after another one, meaning that it is older
+     */
+    public boolean isAfter(@NonNull InboxPageCursor other) {
+        if (date != other.date) {
+            return date < other.date;
+        }
+        return notificationId.compareTo(other.notificationId) < 0;
+    }
+}
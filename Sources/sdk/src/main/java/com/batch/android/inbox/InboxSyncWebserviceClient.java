@@ -147,7 +147,8 @@ public class InboxSyncWebserviceClient extends BatchWebservice implements TaskRu
                 }
             }
 
-            List<String> ids = new ArrayList<>();
+            List<JSONObject> updatedNotifications = new ArrayList<>();
+            List<InboxNotificationContentInternal> newNotifications = new ArrayList<>();
             JSONArray rawNotifications = json.getJSONArray("notifications");
             for (int i = 0; i < rawNotifications.length(); i++) {
                 Object rawNotification = rawNotifications.get(i);
@@ -157,23 +158,13 @@ public class InboxSyncWebserviceClient extends BatchWebservice implements TaskRu
                     if (notificationId != null) {
                         if (isCandidates(notificationId)) {
                             // The notification is a candidate, it's already in DB, update it
-                            String id = InboxDatasourceProvider
-                                .get(applicationContext)
-                                .updateNotification((JSONObject) rawNotification, fetcherId);
-                            if (id != null) {
-                                ids.add(id);
-                            }
+                            updatedNotifications.add((JSONObject) rawNotification);
                         } else {
                             // The notification isn't a candidate, inserting it
                             try {
-                                InboxNotificationContentInternal newNotification = InboxFetchWebserviceClient.parseNotification(
-                                    (JSONObject) rawNotification
+                                newNotifications.add(
+                                    InboxFetchWebserviceClient.parseNotification((JSONObject) rawNotification)
                                 );
-                                if (
-                                    InboxDatasourceProvider.get(applicationContext).insert(newNotification, fetcherId)
-                                ) {
-                                    ids.add(notificationId);
-                                }
                             } catch (ResponseParsingException e) {
                                 Logger.internal(TAG, "Failed to parse notification content, skipping.", e);
                             }
@@ -194,7 +185,12 @@ public class InboxSyncWebserviceClient extends BatchWebservice implements TaskRu
                 }
             }
 
-            r.notifications = InboxDatasourceProvider.get(applicationContext).getNotifications(ids, fetcherId);
+            // Write them in bulk, each in a single transaction
+            InboxDatasource datasource = InboxDatasourceProvider.get(applicationContext);
+            List<String> ids = new ArrayList<>(datasource.updateNotifications(updatedNotifications, fetcherId));
+            ids.addAll(datasource.insertNotifications(newNotifications, fetcherId));
+
+            r.notifications = datasource.getNotifications(ids, fetcherId);
             return r;
         } catch (JSONException e) {
             throw new ResponseParsingException("Missing key or invalid value type in response JSON", e);
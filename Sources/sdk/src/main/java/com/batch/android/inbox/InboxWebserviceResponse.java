@@ -19,4 +19,19 @@ public class InboxWebserviceResponse {
 
     @NonNull
     public List<InboxNotificationContentInternal> notifications = new ArrayList<>();
+
+    /**
+     * Copy this response and its notifications, so that it can be handed to another fetcher
+     */
+    @NonNull
+    public InboxWebserviceResponse copy() {
+        final InboxWebserviceResponse copy = new InboxWebserviceResponse();
+        copy.hasMore = hasMore;
+        copy.didTimeout = didTimeout;
+        copy.cursor = cursor;
+        for (InboxNotificationContentInternal notification : notifications) {
+            copy.notifications.add(notification.copy());
+        }
+        return copy;
+    }
 }
@@ -32,6 +32,15 @@ public class NotificationIdentifiers {
         this.sendID = sendID;
     }
 
+    @NonNull
+    public NotificationIdentifiers copy() {
+        final NotificationIdentifiers copy = new NotificationIdentifiers(identifier, sendID);
+        copy.installID = installID;
+        copy.customID = customID;
+        copy.additionalData = additionalData;
+        return copy;
+    }
+
     public boolean isValid() {
         return !TextUtils.isEmpty(identifier) && !TextUtils.isEmpty(sendID);
     }
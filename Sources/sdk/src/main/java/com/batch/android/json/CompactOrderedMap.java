@@ -0,0 +1,337 @@
+package com.batch.android.json;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Insertion ordered String keyed map used as the storage of {@link JSONObject}.
+ * <p>
+ * Small maps, which are the vast majority of JSON objects handled by the SDK, are stored in
+ * parallel key/hash/value arrays and looked up by a linear probe, which avoids allocating an
+ * entry per mapping. Once the map grows past {@link #COMPACT_THRESHOLD} mappings, it promotes
+ * itself to a {@link LinkedHashMap}, keeping the same iteration order.
+ * <p>
+ * This map does not support null keys. It is not thread safe.
+ */
+final class CompactOrderedMap extends AbstractMap<String, Object> {
+
+    /**
+     * Maximum number of mappings stored in the compact arrays
+     */
+    static final int COMPACT_THRESHOLD = 8;
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private static final String[] EMPTY_KEYS = new String[0];
+    private static final Object[] EMPTY_VALUES = new Object[0];
+    private static final int[] EMPTY_HASHES = new int[0];
+
+    private String[] keys = EMPTY_KEYS;
+
+    private int[] hashes = EMPTY_HASHES;
+
+    private Object[] values = EMPTY_VALUES;
+
+    private int size = 0;
+
+    /**
+     * Storage once promoted. When not null, the arrays are not used anymore.
+     */
+    private LinkedHashMap<String, Object> promoted;
+
+    private int modCount = 0;
+
+    CompactOrderedMap() {}
+
+    /**
+     * @param expectedSize Number of mappings the map is about to hold. Maps expected to be large
+     *                     start promoted.
+     */
+    CompactOrderedMap(int expectedSize) {
+        if (expectedSize > COMPACT_THRESHOLD) {
+            promoted = new LinkedHashMap<>((int) (expectedSize / 0.75f) + 1);
+        }
+    }
+
+    /**
+     * Whether the map is still using its compact storage
+     */
+    boolean isCompact() {
+        return promoted == null;
+    }
+
+    @Override
+    public int size() {
+        return promoted != null ? promoted.size() : size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (promoted != null) {
+            return promoted.containsKey(key);
+        }
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (promoted != null) {
+            return promoted.get(key);
+        }
+        int index = indexOf(key);
+        return index >= 0 ? values[index] : null;
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        if (key == null) {
+            throw new NullPointerException("key == null");
+        }
+        if (promoted != null) {
+            return promoted.put(key, value);
+        }
+
+        int hash = key.hashCode();
+        int index = indexOf(key, hash);
+        if (index >= 0) {
+            Object previous = values[index];
+            values[index] = value;
+            return previous;
+        }
+
+        if (size == COMPACT_THRESHOLD) {
+            promote();
+            return promoted.put(key, value);
+        }
+
+        if (size == keys.length) {
+            int newCapacity = Math.min(COMPACT_THRESHOLD, Math.max(INITIAL_CAPACITY, size * 2));
+            keys = Arrays.copyOf(keys, newCapacity);
+            hashes = Arrays.copyOf(hashes, newCapacity);
+            values = Arrays.copyOf(values, newCapacity);
+        }
+        keys[size] = key;
+        hashes[size] = hash;
+        values[size] = value;
+        size++;
+        modCount++;
+        return null;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        if (promoted != null) {
+            return promoted.remove(key);
+        }
+        int index = indexOf(key);
+        if (index < 0) {
+            return null;
+        }
+        Object previous = values[index];
+        removeAt(index);
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        if (promoted != null) {
+            promoted.clear();
+            return;
+        }
+        Arrays.fill(keys, 0, size, null);
+        Arrays.fill(values, 0, size, null);
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        return new EntrySet();
+    }
+
+    private int indexOf(Object key) {
+        if (!(key instanceof String)) {
+            return -1;
+        }
+        return indexOf((String) key, key.hashCode());
+    }
+
+    private int indexOf(String key, int hash) {
+        final String[] keys = this.keys;
+        final int[] hashes = this.hashes;
+        for (int i = 0; i < size; i++) {
+            if (hashes[i] == hash && key.equals(keys[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void removeAt(int index) {
+        int moved = size - index - 1;
+        if (moved > 0) {
+            // Shift the following mappings to keep the insertion order
+            System.arraycopy(keys, index + 1, keys, index, moved);
+            System.arraycopy(hashes, index + 1, hashes, index, moved);
+            System.arraycopy(values, index + 1, values, index, moved);
+        }
+        size--;
+        keys[size] = null;
+        values[size] = null;
+        modCount++;
+    }
+
+    private void promote() {
+        LinkedHashMap<String, Object> map = new LinkedHashMap<>(COMPACT_THRESHOLD * 4);
+        for (int i = 0; i < size; i++) {
+            map.put(keys[i], values[i]);
+        }
+        promoted = map;
+        keys = EMPTY_KEYS;
+        hashes = EMPTY_HASHES;
+        values = EMPTY_VALUES;
+        size = 0;
+        modCount++;
+    }
+
+    private final class EntrySet extends AbstractSet<Map.Entry<String, Object>> {
+
+        @Override
+        public Iterator<Map.Entry<String, Object>> iterator() {
+            if (promoted != null) {
+                return promoted.entrySet().iterator();
+            }
+            return new CompactIterator();
+        }
+
+        @Override
+        public int size() {
+            return CompactOrderedMap.this.size();
+        }
+
+        @Override
+        public void clear() {
+            CompactOrderedMap.this.clear();
+        }
+    }
+
+    private final class CompactIterator implements Iterator<Map.Entry<String, Object>> {
+
+        private int next = 0;
+
+        private int last = -1;
+
+        private int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+            // Once promoted, the arrays are empty: don't let the iteration silently end early
+            if (promoted != null) {
+                throw new ConcurrentModificationException();
+            }
+            return next < size;
+        }
+
+        @Override
+        public Map.Entry<String, Object> next() {
+            checkForComodification();
+            if (next >= size) {
+                throw new NoSuchElementException();
+            }
+            last = next++;
+            return new CompactEntry(last);
+        }
+
+        @Override
+        public void remove() {
+            if (last < 0) {
+                throw new IllegalStateException();
+            }
+            checkForComodification();
+            removeAt(last);
+            next = last;
+            last = -1;
+            expectedModCount = modCount;
+        }
+
+        private void checkForComodification() {
+            if (modCount != expectedModCount || promoted != null) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    /**
+     * Entry reading and writing through to the compact arrays
+     */
+    private final class CompactEntry implements Map.Entry<String, Object> {
+
+        private final String key;
+
+        private final int index;
+
+        private final int expectedModCount = modCount;
+
+        CompactEntry(int index) {
+            this.index = index;
+            this.key = keys[index];
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public Object getValue() {
+            return isValid() ? values[index] : CompactOrderedMap.this.get(key);
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            if (isValid()) {
+                Object previous = values[index];
+                values[index] = value;
+                return previous;
+            }
+            return CompactOrderedMap.this.put(key, value);
+        }
+
+        private boolean isValid() {
+            return promoted == null && modCount == expectedModCount;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            Object value = getValue();
+            return key.equals(e.getKey()) && (value == null ? e.getValue() == null : value.equals(e.getValue()));
+        }
+
+        @Override
+        public int hashCode() {
+            Object value = getValue();
+            return key.hashCode() ^ (value == null ? 0 : value.hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + getValue();
+        }
+    }
+}
@@ -618,6 +618,14 @@ public class JSONArray {
         stringer.endArray();
     }
 
+    void writeTo(JSONWriter writer) throws JSONException {
+        writer.beginArray();
+        for (Object value : values) {
+            writer.value(value);
+        }
+        writer.endArray();
+    }
+
     @Override
     public boolean equals(Object o) {
         return o instanceof JSONArray && ((JSONArray) o).values.equals(values);
@@ -0,0 +1,190 @@
+package com.batch.android.json;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compiled version of {@link JSONUtils#jsonObjectContainsValuesFrom(JSONObject, JSONObject)}.
+ * <p>
+ * The expected JSONObject is walked once when compiling, and turned into a tree of typed matchers:
+ * checking an actual JSONObject is then a single pass over it, without re-reading the expected values
+ * or going through the throwing getters for every key.
+ * <p>
+ * Matching results are the same as {@link JSONUtils}'s, except that a missing key is never matched: JSONUtils
+ * first compares nested values with equals(), which ignores keys mapped to {@link JSONObject#NULL}.
+ * The expected object should not be modified once compiled, as changes will not be reflected.
+ */
+public final class JSONMatcher {
+
+    @NonNull
+    private final ObjectMatcher root;
+
+    private JSONMatcher(@NonNull ObjectMatcher root) {
+        this.root = root;
+    }
+
+    /**
+     * Compile a matcher checking that JSONObjects contain all the values from the expected one
+     *
+     * @param expected The expected json object
+     * @return The compiled matcher
+     */
+    @NonNull
+    public static JSONMatcher compile(@NonNull JSONObject expected) {
+        return new JSONMatcher(new ObjectMatcher(expected));
+    }
+
+    /**
+     * Checks whether all the values of the compiled JSONObject are contained in the given one
+     *
+     * @param actual The actual json object to check
+     * @return true if all the expected values are contained in the actual json object
+     */
+    public boolean matches(@Nullable JSONObject actual) {
+        return root.matchesValue(actual);
+    }
+
+    @NonNull
+    private static ValueMatcher compileValue(@Nullable Object expected) {
+        if (expected instanceof JSONObject) {
+            return new ObjectMatcher((JSONObject) expected);
+        } else if (expected instanceof JSONArray) {
+            return new ArrayMatcher((JSONArray) expected);
+        } else if (expected instanceof String) {
+            return new StringMatcher((String) expected);
+        } else if (expected == null) {
+            // JSONUtils fails on null array values
+            return actual -> false;
+        }
+        return new EqualsMatcher(expected);
+    }
+
+    private interface ValueMatcher {
+        boolean matchesValue(@Nullable Object actual);
+    }
+
+    private static final class StringMatcher implements ValueMatcher {
+
+        @NonNull
+        private final String expected;
+
+        StringMatcher(@NonNull String expected) {
+            this.expected = expected;
+        }
+
+        @Override
+        public boolean matchesValue(@Nullable Object actual) {
+            return actual instanceof String && expected.equals(actual);
+        }
+    }
+
+    /**
+     * Numbers, booleans and {@link JSONObject#NULL}. Number types are not coerced, like in {@link JSONUtils}.
+     */
+    private static final class EqualsMatcher implements ValueMatcher {
+
+        @NonNull
+        private final Object expected;
+
+        EqualsMatcher(@NonNull Object expected) {
+            this.expected = expected;
+        }
+
+        @Override
+        public boolean matchesValue(@Nullable Object actual) {
+            return actual != null && expected.equals(actual);
+        }
+    }
+
+    private static final class ObjectMatcher implements ValueMatcher {
+
+        @NonNull
+        private final String[] keys;
+
+        @NonNull
+        private final ValueMatcher[] matchers;
+
+        ObjectMatcher(@NonNull JSONObject expected) {
+            int size = expected.length();
+            keys = new String[size];
+            matchers = new ValueMatcher[size];
+            int i = 0;
+            for (String key : expected.keySet()) {
+                keys[i] = key;
+                matchers[i] = compileValue(expected.opt(key));
+                i++;
+            }
+        }
+
+        @Override
+        public boolean matchesValue(@Nullable Object actual) {
+            if (!(actual instanceof JSONObject)) {
+                return false;
+            }
+            JSONObject actualObject = (JSONObject) actual;
+            for (int i = 0; i < keys.length; i++) {
+                // opt() only returns null for missing keys: null values are stored as JSONObject.NULL
+                Object actualValue = actualObject.opt(keys[i]);
+                if (actualValue == null || !matchers[i].matchesValue(actualValue)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Checks that every expected value matches a distinct value of the actual array, in any order.
+     * Values are greedily matched with the first available one, like in {@link JSONUtils}.
+     */
+    private static final class ArrayMatcher implements ValueMatcher {
+
+        @NonNull
+        private final ValueMatcher[] matchers;
+
+        ArrayMatcher(@NonNull JSONArray expected) {
+            int length = expected.length();
+            List<ValueMatcher> compiled = new ArrayList<>(length);
+            for (int i = 0; i < length; i++) {
+                compiled.add(compileValue(expected.opt(i)));
+            }
+            matchers = compiled.toArray(new ValueMatcher[0]);
+        }
+
+        @Override
+        public boolean matchesValue(@Nullable Object actual) {
+            if (!(actual instanceof JSONArray)) {
+                return false;
+            }
+            JSONArray actualArray = (JSONArray) actual;
+            int length = actualArray.length();
+            if (matchers.length > length) {
+                return false;
+            }
+
+            boolean[] used = new boolean[length];
+            for (int i = 0; i < length; i++) {
+                if (actualArray.opt(i) == null) {
+                    return false;
+                }
+            }
+
+            for (ValueMatcher matcher : matchers) {
+                boolean found = false;
+                for (int j = 0; j < length; j++) {
+                    if (!used[j] && matcher.matchesValue(actualArray.opt(j))) {
+                        used[j] = true;
+                        found = true;
+                        break;
+                    }
+                }
+                if (!found) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
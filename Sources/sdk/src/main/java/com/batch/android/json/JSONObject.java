@@ -24,7 +24,6 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
@@ -115,13 +114,16 @@ public class JSONObject implements Serializable {
         }
     };
 
-    private LinkedHashMap<String, Object> nameValuePairs;
+    /**
+     * Mappings, in insertion order. Small objects are stored in a compact array-backed map.
+     */
+    private Map<String, Object> nameValuePairs;
 
     /**
      * Creates a {@code JSONObject} with no name/value mappings.
      */
     public JSONObject() {
-        nameValuePairs = new LinkedHashMap<>();
+        nameValuePairs = new CompactOrderedMap();
     }
 
     /**
@@ -134,8 +136,8 @@ public class JSONObject implements Serializable {
      */
     /* (accept a raw type for API compatibility) */
     public JSONObject(Map copyFrom) {
-        this();
         Map<?, ?> contentsTyped = (Map<?, ?>) copyFrom;
+        nameValuePairs = new CompactOrderedMap(contentsTyped.size());
         for (Map.Entry<?, ?> entry : contentsTyped.entrySet()) {
             /*
              * Deviate from the original by checking that keys are non-null and
@@ -193,7 +195,7 @@ public class JSONObject implements Serializable {
      * Creates a new {@code JSONObject} by copying mappings for given object
      */
     public JSONObject(JSONObject copyFrom) throws JSONException {
-        this();
+        nameValuePairs = new CompactOrderedMap(copyFrom.length());
         for (String name : copyFrom.keySet()) {
             Object value = copyFrom.opt(name);
             if (value != null) {
@@ -821,6 +823,14 @@ public class JSONObject implements Serializable {
         stringer.endObject();
     }
 
+    void writeTo(JSONWriter writer) throws JSONException {
+        writer.beginObject();
+        for (Map.Entry<String, Object> entry : nameValuePairs.entrySet()) {
+            writer.name(entry.getKey()).value(entry.getValue());
+        }
+        writer.endObject();
+    }
+
     /**
      * Encodes the number as a JSON string.
      *
@@ -0,0 +1,833 @@
+package com.batch.android.json;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Pull parser reading a JSON (<a href="http://www.ietf.org/rfc/rfc4627.txt">RFC 4627</a>)
+ * encoded value one token at a time.
+ * <p>
+ * Unlike {@link JSONTokener}, the input does not need to be loaded in memory as one String, and
+ * no tree is built unless asked: callers walk the document with {@link #beginObject()},
+ * {@link #nextName()}, typed value getters and {@link #skipValue()}, and can still materialize a
+ * sub-tree with {@link #nextJSONObject()} or {@link #nextJSONArray()} when they need to keep it.
+ * <p>
+ * Example usage: <pre>
+ * reader.beginObject();
+ * while (reader.hasNext()) {
+ *     String name = reader.nextName();
+ *     if ("query".equals(name)) {
+ *         query = reader.nextString();
+ *     } else {
+ *         reader.skipValue();
+ *     }
+ * }
+ * reader.endObject();</pre>
+ * <p>
+ * This parser is strict: comments, unquoted or single quoted strings and names are rejected.
+ * Numbers are materialized with the same types as {@link JSONTokener} (Integer, Long, then Double).
+ * <p>
+ * Instances of this class are not thread safe.
+ */
+public class JSONReader implements Closeable {
+
+    /**
+     * Kind of the next token in the document
+     */
+    public enum Token {
+        BEGIN_OBJECT,
+        END_OBJECT,
+        BEGIN_ARRAY,
+        END_ARRAY,
+        NAME,
+        STRING,
+        NUMBER,
+        BOOLEAN,
+        NULL,
+        END_DOCUMENT,
+    }
+
+    private static final int SCOPE_EMPTY_DOCUMENT = 0;
+    private static final int SCOPE_NONEMPTY_DOCUMENT = 1;
+    private static final int SCOPE_EMPTY_ARRAY = 2;
+    private static final int SCOPE_NONEMPTY_ARRAY = 3;
+    private static final int SCOPE_EMPTY_OBJECT = 4;
+    private static final int SCOPE_DANGLING_NAME = 5;
+    private static final int SCOPE_NONEMPTY_OBJECT = 6;
+    private static final int SCOPE_CLOSED = 7;
+
+    private final Reader in;
+
+    private final char[] buffer = new char[1024];
+
+    private int pos = 0;
+
+    private int limit = 0;
+
+    private int[] stack = new int[32];
+
+    private int stackSize = 0;
+
+    /**
+     * The peeked token, or null if the next token has not been read yet
+     */
+    private Token token;
+
+    /**
+     * Text of the peeked name, string, number or boolean
+     */
+    private String value;
+
+    /**
+     * @param in Reader to read the JSON from. It will be closed with this reader.
+     */
+    public JSONReader(@NonNull Reader in) {
+        if (in == null) {
+            throw new NullPointerException("in == null");
+        }
+        this.in = in;
+        push(SCOPE_EMPTY_DOCUMENT);
+    }
+
+    /**
+     * @param in UTF-8 encoded stream to read the JSON from. It will be closed with this reader.
+     */
+    public JSONReader(@NonNull InputStream in) {
+        this(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param in UTF-8 encoded buffer to read the JSON from, from its position to its limit.
+     *           The buffer's position is advanced as the JSON is read.
+     */
+    public JSONReader(@NonNull ByteBuffer in) {
+        this(new ByteBufferInputStream(in));
+    }
+
+    //region Structure
+
+    /**
+     * Consumes the next token, which must be the beginning of an object
+     */
+    public void beginObject() throws JSONException {
+        expect(Token.BEGIN_OBJECT);
+    }
+
+    /**
+     * Consumes the next token, which must be the end of the current object
+     */
+    public void endObject() throws JSONException {
+        expect(Token.END_OBJECT);
+    }
+
+    /**
+     * Consumes the next token, which must be the beginning of an array
+     */
+    public void beginArray() throws JSONException {
+        expect(Token.BEGIN_ARRAY);
+    }
+
+    /**
+     * Consumes the next token, which must be the end of the current array
+     */
+    public void endArray() throws JSONException {
+        expect(Token.END_ARRAY);
+    }
+
+    /**
+     * Returns true if the current object or array has another element
+     */
+    public boolean hasNext() throws JSONException {
+        Token next = peek();
+        return next != Token.END_OBJECT && next != Token.END_ARRAY && next != Token.END_DOCUMENT;
+    }
+
+    /**
+     * Returns the kind of the next token, without consuming it
+     */
+    @NonNull
+    public Token peek() throws JSONException {
+        if (token != null) {
+            return token;
+        }
+
+        switch (stack[stackSize - 1]) {
+            case SCOPE_EMPTY_DOCUMENT:
+                stack[stackSize - 1] = SCOPE_NONEMPTY_DOCUMENT;
+                return readValueToken();
+            case SCOPE_EMPTY_ARRAY:
+                return nextInArray(true);
+            case SCOPE_NONEMPTY_ARRAY:
+                return nextInArray(false);
+            case SCOPE_EMPTY_OBJECT:
+                return nextInObject(true);
+            case SCOPE_DANGLING_NAME:
+                return objectValue();
+            case SCOPE_NONEMPTY_OBJECT:
+                return nextInObject(false);
+            case SCOPE_NONEMPTY_DOCUMENT:
+                if (nextNonWhitespace() != -1) {
+                    throw syntaxError("Expected end of document");
+                }
+                return token = Token.END_DOCUMENT;
+            default:
+                throw new JSONException("JSONReader is closed");
+        }
+    }
+
+    //endregion
+
+    //region Values
+
+    /**
+     * Consumes the next token, which must be a name, and returns it
+     */
+    @NonNull
+    public String nextName() throws JSONException {
+        if (peek() != Token.NAME) {
+            throw unexpected("a name");
+        }
+        return consumeValue();
+    }
+
+    /**
+     * Consumes the next token, which must be a string or a number, and returns its text
+     */
+    @NonNull
+    public String nextString() throws JSONException {
+        Token next = peek();
+        if (next != Token.STRING && next != Token.NUMBER) {
+            throw unexpected("a string");
+        }
+        return consumeValue();
+    }
+
+    /**
+     * Consumes the next token, which must be a boolean, and returns it
+     */
+    public boolean nextBoolean() throws JSONException {
+        if (peek() != Token.BOOLEAN) {
+            throw unexpected("a boolean");
+        }
+        return Boolean.parseBoolean(consumeValue());
+    }
+
+    /**
+     * Consumes the next token, which must be null
+     */
+    public void nextNull() throws JSONException {
+        if (peek() != Token.NULL) {
+            throw unexpected("null");
+        }
+        consumeValue();
+    }
+
+    /**
+     * Consumes the next token, which must be a number or a numeric string, and returns it as a double
+     */
+    public double nextDouble() throws JSONException {
+        Token next = peek();
+        if (next != Token.NUMBER && next != Token.STRING) {
+            throw unexpected("a number");
+        }
+        String text = consumeValue();
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            throw new JSONException("Value " + text + " cannot be converted to double");
+        }
+    }
+
+    /**
+     * Consumes the next token, which must be a number or a numeric string, and returns it as a long.
+     * Fractional numbers are truncated, like {@link JSONObject#getLong(String)}.
+     */
+    public long nextLong() throws JSONException {
+        Token next = peek();
+        if (next != Token.NUMBER && next != Token.STRING) {
+            throw unexpected("a number");
+        }
+        String text = consumeValue();
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException ignored) {}
+        try {
+            return (long) Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            throw new JSONException("Value " + text + " cannot be converted to long");
+        }
+    }
+
+    /**
+     * Consumes the next token, which must be a number or a numeric string, and returns it as an int.
+     * Fractional numbers are truncated, like {@link JSONObject#getInt(String)}.
+     */
+    public int nextInt() throws JSONException {
+        return (int) nextLong();
+    }
+
+    /**
+     * Consumes the next value and returns it as a String if it can be coerced to one, like
+     * {@link JSONObject#reallyOptString(String, String)}. Returns null for a JSON null.
+     */
+    @Nullable
+    public String optNextString() throws JSONException {
+        Object next = nextValue();
+        return next != JSONObject.NULL ? JSON.toString(next) : null;
+    }
+
+    /**
+     * Consumes the next value and returns it as a Boolean if it can be coerced to one, like
+     * {@link JSONObject#reallyOptBoolean(String, Boolean)}. Returns null otherwise.
+     */
+    @Nullable
+    public Boolean optNextBoolean() throws JSONException {
+        Object next = nextValue();
+        return next != JSONObject.NULL ? JSON.toBoolean(next) : null;
+    }
+
+    /**
+     * Consumes the next value and returns it as an Integer if it can be coerced to one, like
+     * {@link JSONObject#reallyOptInteger(String, Integer)}. Returns null otherwise.
+     */
+    @Nullable
+    public Integer optNextInteger() throws JSONException {
+        Object next = nextValue();
+        return next != JSONObject.NULL ? JSON.toInteger(next) : null;
+    }
+
+    /**
+     * Consumes the next value and returns it as a Long if it can be coerced to one, like
+     * {@link JSONObject#reallyOptLong(String, Long)}. Returns null otherwise.
+     */
+    @Nullable
+    public Long optNextLong() throws JSONException {
+        Object next = nextValue();
+        return next != JSONObject.NULL ? JSON.toLong(next) : null;
+    }
+
+    /**
+     * Skips the next value, including all of its nested elements if it is an object or an array
+     */
+    public void skipValue() throws JSONException {
+        int depth = 0;
+        do {
+            switch (peek()) {
+                case BEGIN_OBJECT:
+                case BEGIN_ARRAY:
+                    depth++;
+                    break;
+                case END_OBJECT:
+                case END_ARRAY:
+                    depth--;
+                    break;
+                case END_DOCUMENT:
+                    throw syntaxError("End of input");
+                default:
+                    break;
+            }
+            consumeToken();
+        } while (depth > 0);
+    }
+
+    /**
+     * Consumes the next value and returns it as a {@link JSONObject}, {@link JSONArray}, String,
+     * Boolean, Integer, Long, Double or {@link JSONObject#NULL}.
+     */
+    @NonNull
+    public Object nextValue() throws JSONException {
+        switch (peek()) {
+            case BEGIN_OBJECT:
+                return nextJSONObject();
+            case BEGIN_ARRAY:
+                return nextJSONArray();
+            case STRING:
+                return consumeValue();
+            case BOOLEAN:
+                return nextBoolean();
+            case NULL:
+                nextNull();
+                return JSONObject.NULL;
+            case NUMBER:
+                return parseNumber(consumeValue());
+            default:
+                throw unexpected("a value");
+        }
+    }
+
+    /**
+     * Consumes the next value, which must be an object, and returns it as a {@link JSONObject}
+     */
+    @NonNull
+    public JSONObject nextJSONObject() throws JSONException {
+        JSONObject result = new JSONObject();
+        beginObject();
+        while (hasNext()) {
+            String name = nextName();
+            result.put(name, nextValue());
+        }
+        endObject();
+        return result;
+    }
+
+    /**
+     * Consumes the next value, which must be an array, and returns it as a {@link JSONArray}
+     */
+    @NonNull
+    public JSONArray nextJSONArray() throws JSONException {
+        JSONArray result = new JSONArray();
+        beginArray();
+        while (hasNext()) {
+            result.put(nextValue());
+        }
+        endArray();
+        return result;
+    }
+
+    /**
+     * Consumes the next value, which must be an object or an array, and returns it as compact JSON text
+     * without building a tree. Decoding the text gives the same values as {@link #nextValue()}, so that
+     * callers can keep it and only materialize it when needed.
+     */
+    @NonNull
+    public String nextRawValue() throws JSONException {
+        Token next = peek();
+        if (next != Token.BEGIN_OBJECT && next != Token.BEGIN_ARRAY) {
+            throw unexpected("an object or an array");
+        }
+
+        JSONStringer stringer = new JSONStringer();
+        int depth = 0;
+        do {
+            switch (peek()) {
+                case BEGIN_OBJECT:
+                    beginObject();
+                    stringer.object();
+                    depth++;
+                    break;
+                case END_OBJECT:
+                    endObject();
+                    stringer.endObject();
+                    depth--;
+                    break;
+                case BEGIN_ARRAY:
+                    beginArray();
+                    stringer.array();
+                    depth++;
+                    break;
+                case END_ARRAY:
+                    endArray();
+                    stringer.endArray();
+                    depth--;
+                    break;
+                case NAME:
+                    stringer.key(nextName());
+                    break;
+                case NUMBER:
+                    // Keep the original text so that the number is decoded with the same type
+                    stringer.literal(consumeValue());
+                    break;
+                case END_DOCUMENT:
+                    throw syntaxError("End of input");
+                default:
+                    stringer.value(nextValue());
+                    break;
+            }
+        } while (depth > 0);
+        return stringer.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        token = null;
+        value = null;
+        stack[0] = SCOPE_CLOSED;
+        stackSize = 1;
+        in.close();
+    }
+
+    //endregion
+
+    //region Tokenizer
+
+    private void expect(Token expected) throws JSONException {
+        if (peek() != expected) {
+            throw unexpected(expected.name());
+        }
+        consumeToken();
+    }
+
+    private void consumeToken() {
+        token = null;
+        value = null;
+    }
+
+    private String consumeValue() {
+        String result = value;
+        consumeToken();
+        return result;
+    }
+
+    private Token nextInArray(boolean firstElement) throws JSONException {
+        if (firstElement) {
+            stack[stackSize - 1] = SCOPE_NONEMPTY_ARRAY;
+        } else {
+            switch (nextNonWhitespace()) {
+                case ']':
+                    stackSize--;
+                    return token = Token.END_ARRAY;
+                case ',':
+                    break;
+                default:
+                    throw syntaxError("Unterminated array");
+            }
+        }
+
+        if (firstElement) {
+            int c = nextNonWhitespace();
+            if (c == ']') {
+                stackSize--;
+                return token = Token.END_ARRAY;
+            }
+            stepBack(c);
+        }
+        return readValueToken();
+    }
+
+    private Token nextInObject(boolean firstElement) throws JSONException {
+        if (firstElement) {
+            int c = nextNonWhitespace();
+            if (c == '}') {
+                stackSize--;
+                return token = Token.END_OBJECT;
+            }
+            stepBack(c);
+        } else {
+            switch (nextNonWhitespace()) {
+                case '}':
+                    stackSize--;
+                    return token = Token.END_OBJECT;
+                case ',':
+                    break;
+                default:
+                    throw syntaxError("Unterminated object");
+            }
+        }
+
+        if (nextNonWhitespace() != '"') {
+            throw syntaxError("Expected a quoted name");
+        }
+        value = readString();
+        stack[stackSize - 1] = SCOPE_DANGLING_NAME;
+        return token = Token.NAME;
+    }
+
+    private Token objectValue() throws JSONException {
+        if (nextNonWhitespace() != ':') {
+            throw syntaxError("Expected ':' after a name");
+        }
+        stack[stackSize - 1] = SCOPE_NONEMPTY_OBJECT;
+        return readValueToken();
+    }
+
+    private Token readValueToken() throws JSONException {
+        int c = nextNonWhitespace();
+        switch (c) {
+            case -1:
+                throw syntaxError("End of input");
+            case '{':
+                push(SCOPE_EMPTY_OBJECT);
+                return token = Token.BEGIN_OBJECT;
+            case '[':
+                push(SCOPE_EMPTY_ARRAY);
+                return token = Token.BEGIN_ARRAY;
+            case '"':
+                value = readString();
+                return token = Token.STRING;
+            default:
+                pos--;
+                return readLiteral();
+        }
+    }
+
+    private Token readLiteral() throws JSONException {
+        StringBuilder builder = null;
+        int start = pos;
+        while (true) {
+            if (pos == limit) {
+                if (builder == null) {
+                    builder = new StringBuilder();
+                }
+                builder.append(buffer, start, pos - start);
+                boolean more = fill();
+                start = pos;
+                if (!more) {
+                    break;
+                }
+                continue;
+            }
+            char c = buffer[pos];
+            if (isLiteralDelimiter(c)) {
+                break;
+            }
+            pos++;
+        }
+
+        String literal;
+        if (builder == null) {
+            literal = new String(buffer, start, pos - start);
+        } else {
+            builder.append(buffer, start, pos - start);
+            literal = builder.toString();
+        }
+
+        if (literal.isEmpty()) {
+            throw syntaxError("Expected literal value");
+        }
+
+        value = literal;
+        switch (literal) {
+            case "null":
+                return token = Token.NULL;
+            case "true":
+            case "false":
+                return token = Token.BOOLEAN;
+            default:
+                char first = literal.charAt(0);
+                if (first == '-' || (first >= '0' && first <= '9')) {
+                    return token = Token.NUMBER;
+                }
+                throw syntaxError("Unexpected literal " + literal);
+        }
+    }
+
+    private static boolean isLiteralDelimiter(char c) {
+        switch (c) {
+            case '{':
+            case '}':
+            case '[':
+            case ']':
+            case ':':
+            case ',':
+            case '"':
+            case ' ':
+            case '\t':
+            case '\n':
+            case '\r':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Returns the string up to the closing quote, unescaping any character escape sequences.
+     * The opening quote should have already been read.
+     */
+    private String readString() throws JSONException {
+        StringBuilder builder = null;
+        int start = pos;
+        while (true) {
+            if (pos == limit) {
+                if (builder == null) {
+                    builder = new StringBuilder();
+                }
+                builder.append(buffer, start, pos - start);
+                if (!fill()) {
+                    throw syntaxError("Unterminated string");
+                }
+                start = pos;
+                continue;
+            }
+
+            char c = buffer[pos++];
+            if (c == '"') {
+                if (builder == null) {
+                    return new String(buffer, start, pos - start - 1);
+                }
+                builder.append(buffer, start, pos - start - 1);
+                return builder.toString();
+            }
+
+            if (c == '\\') {
+                if (builder == null) {
+                    builder = new StringBuilder();
+                }
+                builder.append(buffer, start, pos - start - 1);
+                builder.append(readEscapeCharacter());
+                start = pos;
+            }
+        }
+    }
+
+    private char readEscapeCharacter() throws JSONException {
+        if (pos == limit && !fill()) {
+            throw syntaxError("Unterminated escape sequence");
+        }
+        char escaped = buffer[pos++];
+        switch (escaped) {
+            case 'u':
+                int result = 0;
+                for (int i = 0; i < 4; i++) {
+                    if (pos == limit && !fill()) {
+                        throw syntaxError("Unterminated escape sequence");
+                    }
+                    int digit = Character.digit(buffer[pos++], 16);
+                    if (digit == -1) {
+                        throw syntaxError("Invalid escape sequence");
+                    }
+                    result = (result << 4) | digit;
+                }
+                return (char) result;
+            case 't':
+                return '\t';
+            case 'b':
+                return '\b';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 'f':
+                return '\f';
+            default:
+                return escaped;
+        }
+    }
+
+    /**
+     * Returns the next non whitespace character, consuming it, or -1 at the end of the input
+     */
+    private int nextNonWhitespace() throws JSONException {
+        while (pos < limit || fill()) {
+            char c = buffer[pos++];
+            switch (c) {
+                case ' ':
+                case '\t':
+                case '\n':
+                case '\r':
+                    continue;
+                case '\ufeff':
+                    // Byte order mark
+                    if (stackSize == 1) {
+                        continue;
+                    }
+                    return c;
+                default:
+                    return c;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Un-reads the character returned by {@link #nextNonWhitespace()}, unless it was the end of the input
+     */
+    private void stepBack(int c) {
+        if (c != -1) {
+            pos--;
+        }
+    }
+
+    /**
+     * Refills the buffer. Returns false at the end of the input.
+     */
+    private boolean fill() throws JSONException {
+        try {
+            int read;
+            do {
+                read = in.read(buffer, 0, buffer.length);
+            } while (read == 0);
+            if (read == -1) {
+                pos = 0;
+                limit = 0;
+                return false;
+            }
+            pos = 0;
+            limit = read;
+            return true;
+        } catch (IOException e) {
+            throw new JSONException("Could not read JSON input: " + e.getMessage(), e);
+        }
+    }
+
+    private void push(int scope) {
+        if (stackSize == stack.length) {
+            int[] newStack = new int[stackSize * 2];
+            System.arraycopy(stack, 0, newStack, 0, stackSize);
+            stack = newStack;
+        }
+        stack[stackSize++] = scope;
+    }
+
+    private static Object parseNumber(String literal) throws JSONException {
+        if (literal.indexOf('.') == -1 && literal.indexOf('e') == -1 && literal.indexOf('E') == -1) {
+            try {
+                long longValue = Long.parseLong(literal);
+                if (longValue <= Integer.MAX_VALUE && longValue >= Integer.MIN_VALUE) {
+                    return (int) longValue;
+                } else {
+                    return longValue;
+                }
+            } catch (NumberFormatException ignored) {
+                // Greater than Long.MAX_VALUE: fall through to floating point
+            }
+        }
+        try {
+            return Double.valueOf(literal);
+        } catch (NumberFormatException e) {
+            throw new JSONException("Invalid number " + literal);
+        }
+    }
+
+    private JSONException unexpected(String expected) throws JSONException {
+        return new JSONException("Expected " + expected + " but was " + peek());
+    }
+
+    private JSONException syntaxError(String message) {
+        return new JSONException(message);
+    }
+
+    //endregion
+
+    /**
+     * Minimal stream over a byte buffer's remaining bytes
+     */
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(@NonNull ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(@NonNull byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -17,6 +17,7 @@
 package com.batch.android.json;
 
 import androidx.annotation.Keep;
+import androidx.annotation.NonNull;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -253,6 +254,20 @@ public class JSONStringer {
         return this;
     }
 
+    /**
+     * Appends an already encoded JSON literal, such as a number's original text, to this stringer.
+     *
+     * @return this stringer.
+     */
+    JSONStringer literal(@NonNull String literal) throws JSONException {
+        if (stack.isEmpty()) {
+            throw new JSONException("Nesting problem");
+        }
+        beforeValue();
+        out.append(literal);
+        return this;
+    }
+
     /**
      * Encodes {@code value} to this stringer.
      *
@@ -0,0 +1,431 @@
+package com.batch.android.json;
+
+import androidx.annotation.NonNull;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Writes JSON as UTF-8 bytes, directly to an {@link OutputStream}.
+ * <p>
+ * The output is byte for byte the UTF-8 encoding of what {@link JSONStringer} (and thus
+ * {@link JSONObject#toString()}) produces, without building the intermediate String. Use
+ * {@link #toUTF8Bytes(Object)} to encode a whole tree into a byte array through a reused buffer.
+ * <p>
+ * Example usage: <pre>
+ * JSONWriter writer = new JSONWriter(out);
+ * writer.beginObject()
+ *     .name("query").value("Pizza")
+ *     .name("locations").value(locations)
+ *     .endObject();
+ * writer.flush();</pre>
+ * <p>
+ * Instances of this class are not thread safe.
+ */
+public class JSONWriter implements Closeable {
+
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes();
+
+    /**
+     * Buffers larger than this are not kept for reuse once a serialization is done
+     */
+    private static final int POOLED_BUFFER_MAX_RETAINED_SIZE = 256 * 1024;
+
+    /**
+     * Growable byte buffer reused by {@link #toUTF8Bytes(Object)} on each thread
+     */
+    private static final ThreadLocal<PooledByteArrayOutputStream> BUFFER_POOL = new ThreadLocal<>();
+
+    private static final int SCOPE_EMPTY_ARRAY = 0;
+    private static final int SCOPE_NONEMPTY_ARRAY = 1;
+    private static final int SCOPE_EMPTY_OBJECT = 2;
+    private static final int SCOPE_DANGLING_NAME = 3;
+    private static final int SCOPE_NONEMPTY_OBJECT = 4;
+
+    private final OutputStream out;
+
+    private final byte[] buffer = new byte[8192];
+
+    private int count = 0;
+
+    private int[] stack = new int[32];
+
+    private int stackSize = 0;
+
+    private boolean hasRoot = false;
+
+    /**
+     * @param out Stream to write the UTF-8 JSON to. It will be closed with this writer.
+     */
+    public JSONWriter(@NonNull OutputStream out) {
+        if (out == null) {
+            throw new NullPointerException("out == null");
+        }
+        this.out = out;
+    }
+
+    /**
+     * Encode a {@link JSONObject} or {@link JSONArray} as UTF-8 JSON bytes, without creating an intermediate String
+     *
+     * @param value JSONObject or JSONArray to encode
+     * @return The UTF-8 JSON bytes, equal to the encoding of the value's toString()
+     * @throws JSONException if the value can't be encoded
+     */
+    @NonNull
+    public static byte[] toUTF8Bytes(@NonNull Object value) throws JSONException {
+        PooledByteArrayOutputStream pooledBuffer = BUFFER_POOL.get();
+        if (pooledBuffer == null || pooledBuffer.inUse) {
+            // Reentrant use is not expected, but don't share the buffer if it happens
+            pooledBuffer = new PooledByteArrayOutputStream();
+            BUFFER_POOL.set(pooledBuffer);
+        }
+
+        pooledBuffer.inUse = true;
+        try {
+            JSONWriter writer = new JSONWriter(pooledBuffer);
+            writer.value(value);
+            writer.flush();
+            return pooledBuffer.toByteArray();
+        } finally {
+            pooledBuffer.reset();
+            pooledBuffer.inUse = false;
+            if (pooledBuffer.capacity() > POOLED_BUFFER_MAX_RETAINED_SIZE) {
+                BUFFER_POOL.remove();
+            }
+        }
+    }
+
+    //region Structure
+
+    /**
+     * Begins encoding a new object. Each call to this method must be paired with a call to {@link #endObject}.
+     */
+    public JSONWriter beginObject() throws JSONException {
+        return open(SCOPE_EMPTY_OBJECT, '{');
+    }
+
+    /**
+     * Ends encoding the current object
+     */
+    public JSONWriter endObject() throws JSONException {
+        return close(SCOPE_EMPTY_OBJECT, SCOPE_NONEMPTY_OBJECT, '}');
+    }
+
+    /**
+     * Begins encoding a new array. Each call to this method must be paired with a call to {@link #endArray}.
+     */
+    public JSONWriter beginArray() throws JSONException {
+        return open(SCOPE_EMPTY_ARRAY, '[');
+    }
+
+    /**
+     * Ends encoding the current array
+     */
+    public JSONWriter endArray() throws JSONException {
+        return close(SCOPE_EMPTY_ARRAY, SCOPE_NONEMPTY_ARRAY, ']');
+    }
+
+    /**
+     * Encodes the name of the forthcoming value
+     *
+     * @param name the name of the forthcoming value. May not be null.
+     */
+    public JSONWriter name(String name) throws JSONException {
+        if (name == null) {
+            throw new JSONException("Names must be non-null");
+        }
+        int context = peek();
+        if (context == SCOPE_NONEMPTY_OBJECT) {
+            writeByte(',');
+        } else if (context != SCOPE_EMPTY_OBJECT) {
+            throw new JSONException("Nesting problem");
+        }
+        stack[stackSize - 1] = SCOPE_DANGLING_NAME;
+        string(name);
+        return this;
+    }
+
+    //endregion
+
+    //region Values
+
+    /**
+     * Encodes {@code value}.
+     *
+     * @param value a {@link JSONObject}, {@link JSONArray}, String, Boolean,
+     *              Integer, Long, Double or null. May not be {@link Double#isNaN() NaNs}
+     *              or {@link Double#isInfinite() infinities}.
+     */
+    public JSONWriter value(Object value) throws JSONException {
+        if (value instanceof JSONArray) {
+            ((JSONArray) value).writeTo(this);
+            return this;
+        } else if (value instanceof JSONObject) {
+            ((JSONObject) value).writeTo(this);
+            return this;
+        }
+
+        beforeValue();
+
+        if (value == null || value == JSONObject.NULL) {
+            writeAscii("null");
+        } else if (value instanceof Boolean) {
+            writeAscii(value.toString());
+        } else if (value instanceof Number) {
+            writeAscii(JSONObject.numberToString((Number) value));
+        } else {
+            string(value.toString());
+        }
+        return this;
+    }
+
+    /**
+     * Encodes {@code value}
+     */
+    public JSONWriter value(boolean value) throws JSONException {
+        beforeValue();
+        writeAscii(value ? "true" : "false");
+        return this;
+    }
+
+    /**
+     * Encodes {@code value}
+     *
+     * @param value a finite value. May not be {@link Double#isNaN() NaNs} or
+     *              {@link Double#isInfinite() infinities}.
+     */
+    public JSONWriter value(double value) throws JSONException {
+        beforeValue();
+        writeAscii(JSONObject.numberToString(value));
+        return this;
+    }
+
+    /**
+     * Encodes {@code value}
+     */
+    public JSONWriter value(long value) throws JSONException {
+        beforeValue();
+        writeAscii(Long.toString(value));
+        return this;
+    }
+
+    /**
+     * Encodes a null value
+     */
+    public JSONWriter nullValue() throws JSONException {
+        return value(null);
+    }
+
+    /**
+     * Writes the buffered bytes to the underlying stream and flushes it
+     */
+    public void flush() throws JSONException {
+        try {
+            flushBuffer();
+            out.flush();
+        } catch (IOException e) {
+            throw new JSONException("Could not write JSON output: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Flushes and closes the underlying stream
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBuffer();
+        } finally {
+            out.close();
+        }
+    }
+
+    //endregion
+
+    //region Encoding
+
+    private JSONWriter open(int emptyScope, char openBracket) throws JSONException {
+        beforeValue();
+        if (stackSize == stack.length) {
+            stack = Arrays.copyOf(stack, stackSize * 2);
+        }
+        stack[stackSize++] = emptyScope;
+        writeByte(openBracket);
+        return this;
+    }
+
+    private JSONWriter close(int emptyScope, int nonemptyScope, char closeBracket) throws JSONException {
+        int context = peek();
+        if (context != nonemptyScope && context != emptyScope) {
+            throw new JSONException("Nesting problem");
+        }
+        stackSize--;
+        writeByte(closeBracket);
+        return this;
+    }
+
+    private int peek() throws JSONException {
+        if (stackSize == 0) {
+            throw new JSONException("Nesting problem");
+        }
+        return stack[stackSize - 1];
+    }
+
+    /**
+     * Inserts any necessary separators before a value, and adjusts the stack to expect either a
+     * closing bracket or another element.
+     */
+    private void beforeValue() throws JSONException {
+        if (stackSize == 0) {
+            if (hasRoot) {
+                throw new JSONException("Nesting problem: multiple top-level roots");
+            }
+            hasRoot = true;
+            return;
+        }
+
+        int context = stack[stackSize - 1];
+        if (context == SCOPE_EMPTY_ARRAY) {
+            stack[stackSize - 1] = SCOPE_NONEMPTY_ARRAY;
+        } else if (context == SCOPE_NONEMPTY_ARRAY) {
+            writeByte(',');
+        } else if (context == SCOPE_DANGLING_NAME) {
+            writeByte(':');
+            stack[stackSize - 1] = SCOPE_NONEMPTY_OBJECT;
+        } else {
+            throw new JSONException("Nesting problem");
+        }
+    }
+
+    /**
+     * Writes a quoted and escaped string, encoding it in UTF-8 as it goes.
+     * The escaping rules are the ones of {@link JSONStringer}.
+     */
+    private void string(String value) throws JSONException {
+        writeByte('"');
+        for (int i = 0, length = value.length(); i < length; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                case '\\':
+                case '/':
+                    writeByte('\\');
+                    writeByte(c);
+                    break;
+                case '\t':
+                    writeEscape('t');
+                    break;
+                case '\b':
+                    writeEscape('b');
+                    break;
+                case '\n':
+                    writeEscape('n');
+                    break;
+                case '\r':
+                    writeEscape('r');
+                    break;
+                case '\f':
+                    writeEscape('f');
+                    break;
+                default:
+                    if (c <= 0x1F) {
+                        ensureCapacity(6);
+                        buffer[count++] = '\\';
+                        buffer[count++] = 'u';
+                        buffer[count++] = '0';
+                        buffer[count++] = '0';
+                        buffer[count++] = HEX_DIGITS[(c >> 4) & 0xF];
+                        buffer[count++] = HEX_DIGITS[c & 0xF];
+                    } else if (c < 0x80) {
+                        writeByte(c);
+                    } else if (c < 0x800) {
+                        ensureCapacity(2);
+                        buffer[count++] = (byte) (0xC0 | (c >> 6));
+                        buffer[count++] = (byte) (0x80 | (c & 0x3F));
+                    } else if (Character.isSurrogate(c)) {
+                        if (
+                            Character.isHighSurrogate(c) &&
+                            i + 1 < length &&
+                            Character.isLowSurrogate(value.charAt(i + 1))
+                        ) {
+                            int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                            ensureCapacity(4);
+                            buffer[count++] = (byte) (0xF0 | (codePoint >> 18));
+                            buffer[count++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                            buffer[count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                            buffer[count++] = (byte) (0x80 | (codePoint & 0x3F));
+                        } else {
+                            // Unpaired surrogate, replaced like String.getBytes() does
+                            writeByte('?');
+                        }
+                    } else {
+                        ensureCapacity(3);
+                        buffer[count++] = (byte) (0xE0 | (c >> 12));
+                        buffer[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                        buffer[count++] = (byte) (0x80 | (c & 0x3F));
+                    }
+                    break;
+            }
+        }
+        writeByte('"');
+    }
+
+    private void writeEscape(char escaped) throws JSONException {
+        ensureCapacity(2);
+        buffer[count++] = '\\';
+        buffer[count++] = (byte) escaped;
+    }
+
+    /**
+     * Writes a string only made of ASCII characters, such as a number or a literal
+     */
+    private void writeAscii(String ascii) throws JSONException {
+        int length = ascii.length();
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            buffer[count++] = (byte) ascii.charAt(i);
+        }
+    }
+
+    private void writeByte(int b) throws JSONException {
+        ensureCapacity(1);
+        buffer[count++] = (byte) b;
+    }
+
+    private void ensureCapacity(int length) throws JSONException {
+        if (count + length > buffer.length) {
+            try {
+                flushBuffer();
+            } catch (IOException e) {
+                throw new JSONException("Could not write JSON output: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (count > 0) {
+            out.write(buffer, 0, count);
+            count = 0;
+        }
+    }
+
+    //endregion
+
+    /**
+     * Byte array stream exposing its capacity, so that oversized buffers are not kept in the pool
+     */
+    private static class PooledByteArrayOutputStream extends ByteArrayOutputStream {
+
+        boolean inUse = false;
+
+        PooledByteArrayOutputStream() {
+            super(8192);
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+    }
+}
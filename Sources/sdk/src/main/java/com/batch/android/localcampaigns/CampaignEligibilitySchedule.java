@@ -0,0 +1,118 @@
+package com.batch.android.localcampaigns;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.batch.android.localcampaigns.model.LocalCampaign;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TimeZone;
+
+/**
+ * Campaigns known to be ineligible until a given instant because of a time-based condition: start date,
+ * end date, minimum display interval or quiet hours.
+ * <p>
+ * Campaigns are scheduled when the election finds them ineligible, with the next instant at which their
+ * eligibility can change. Until then, the election skips them without evaluating their conditions again.
+ * Instants are kept in a priority queue, so that expired campaigns are released by only looking at its head.
+ * <p>
+ * The schedule is cleared if the clock goes back or if the time zone changes, as both can make a campaign
+ * eligible earlier than computed.
+ */
+final class CampaignEligibilitySchedule {
+
+    /**
+     * Instant of campaigns that will never be eligible again, such as campaigns past their end date
+     */
+    static final long NEVER = Long.MAX_VALUE;
+
+    private final PriorityQueue<Entry> queue = new PriorityQueue<>(
+        11,
+        (o1, o2) -> Long.compare(o1.ineligibleUntil, o2.ineligibleUntil)
+    );
+
+    /**
+     * Latest entry of each scheduled campaign. Entries replaced by a later one stay in the queue
+     * until they expire.
+     */
+    private final Map<LocalCampaign, Entry> entries = new IdentityHashMap<>();
+
+    private long lastUpdate = Long.MIN_VALUE;
+
+    @Nullable
+    private String timeZoneId;
+
+    /**
+     * Release the campaigns that may be eligible at the given time
+     *
+     * @param now Current timestamp, in milliseconds
+     */
+    synchronized void advance(long now) {
+        String currentTimeZoneId = TimeZone.getDefault().getID();
+        if (now < lastUpdate || !currentTimeZoneId.equals(timeZoneId)) {
+            clear();
+            timeZoneId = currentTimeZoneId;
+        }
+        lastUpdate = now;
+
+        Entry head = queue.peek();
+        while (head != null && head.ineligibleUntil <= now) {
+            queue.poll();
+            if (entries.get(head.campaign) == head) {
+                entries.remove(head.campaign);
+            }
+            head = queue.peek();
+        }
+    }
+
+    /**
+     * Checks if a campaign is known to be ineligible, as of the last call to {@link #advance(long)}
+     */
+    synchronized boolean isIneligible(@NonNull LocalCampaign campaign) {
+        return entries.containsKey(campaign);
+    }
+
+    /**
+     * Schedule a campaign that can't be eligible before the given instant
+     *
+     * @param campaign        Ineligible campaign
+     * @param ineligibleUntil First instant at which the campaign may be eligible, in milliseconds
+     * @param now             Current timestamp, in milliseconds
+     */
+    synchronized void schedule(@NonNull LocalCampaign campaign, long ineligibleUntil, long now) {
+        advance(now);
+        if (ineligibleUntil <= now) {
+            return;
+        }
+
+        Entry previous = entries.get(campaign);
+        if (previous != null && previous.ineligibleUntil >= ineligibleUntil) {
+            return;
+        }
+        Entry entry = new Entry(campaign, ineligibleUntil);
+        entries.put(campaign, entry);
+        queue.add(entry);
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized void clear() {
+        queue.clear();
+        entries.clear();
+    }
+
+    private static final class Entry {
+
+        @NonNull
+        final LocalCampaign campaign;
+
+        final long ineligibleUntil;
+
+        Entry(@NonNull LocalCampaign campaign, long ineligibleUntil) {
+            this.campaign = campaign;
+            this.ineligibleUntil = ineligibleUntil;
+        }
+    }
+}
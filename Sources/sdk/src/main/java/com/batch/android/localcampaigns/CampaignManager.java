@@ -12,10 +12,12 @@ import com.batch.android.LoggerLevel;
 import com.batch.android.WebserviceLauncher;
 import com.batch.android.core.DateProvider;
 import com.batch.android.core.Logger;
+import com.batch.android.core.ParameterKeys;
 import com.batch.android.core.Parameters;
 import com.batch.android.core.SystemDateProvider;
 import com.batch.android.core.Webservice;
 import com.batch.android.date.BatchDate;
+import com.batch.android.di.providers.ParametersProvider;
 import com.batch.android.di.providers.RuntimeManagerProvider;
 import com.batch.android.di.providers.TaskExecutorProvider;
 import com.batch.android.di.providers.UserModuleProvider;
@@ -23,11 +25,14 @@ import com.batch.android.json.JSONException;
 import com.batch.android.json.JSONObject;
 import com.batch.android.localcampaigns.model.DayOfWeek;
 import com.batch.android.localcampaigns.model.LocalCampaign;
+import com.batch.android.localcampaigns.model.QuietHours;
+import com.batch.android.localcampaigns.output.LandingOutput;
 import com.batch.android.localcampaigns.persistence.LocalCampaignsFilePersistence;
 import com.batch.android.localcampaigns.persistence.LocalCampaignsPersistence;
 import com.batch.android.localcampaigns.persistence.PersistenceException;
+import com.batch.android.localcampaigns.persistence.SavedCampaigns;
+import com.batch.android.localcampaigns.serialization.LocalCampaignDeserializer;
 import com.batch.android.localcampaigns.signal.Signal;
-import com.batch.android.localcampaigns.trigger.EventLocalCampaignTrigger;
 import com.batch.android.processor.Module;
 import com.batch.android.processor.Provide;
 import com.batch.android.processor.Singleton;
@@ -35,14 +40,15 @@ import com.batch.android.query.response.LocalCampaignsResponse;
 import com.batch.android.query.serialization.deserializers.LocalCampaignsResponseDeserializer;
 import com.batch.android.query.serialization.serializers.LocalCampaignsResponseSerializer;
 import com.batch.android.webservice.listener.LocalCampaignsJITWebserviceListener;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -63,7 +69,12 @@ public class CampaignManager {
 
     private static final String TAG = "CampaignManager";
 
-    private static final String PERSISTENCE_LOCAL_CAMPAIGNS_FILE_NAME = "com.batch.localcampaigns.persist.json";
+    private static final String PERSISTENCE_LOCAL_CAMPAIGNS_FILE_NAME = "com.batch.localcampaigns.persist.bin";
+
+    /**
+     * JSON file saved by previous versions, converted to {@link #PERSISTENCE_LOCAL_CAMPAIGNS_FILE_NAME} when found
+     */
+    private static final String PERSISTENCE_LEGACY_LOCAL_CAMPAIGNS_FILE_NAME = "com.batch.localcampaigns.persist.json";
 
     /**
      * Delay to wait before calling the jit webservice again after a fail
@@ -80,13 +91,19 @@ public class CampaignManager {
      */
     private static final int MAX_CAMPAIGNS_JIT_THRESHOLD = 10;
 
+    /**
+     * Max number of campaigns whose images are prefetched.
+     */
+    static final int MAX_CAMPAIGNS_IMAGE_PREFETCH = 5;
+
     /**
      * Min delay between two JIT sync (in ms)
      */
     private static final int MIN_DELAY_BETWEEN_JIT_SYNC = 15_000;
 
     /**
-     * Period during cached local campaign requiring a JIT sync is considered as up-to-date.
+     * Default period during cached local campaign requiring a JIT sync is considered as up-to-date.
+     * Can be overridden with the {@link ParameterKeys#LOCAL_CAMPAIGNS_JIT_CACHE_TTL} parameter.
      */
     private static final int JIT_CAMPAIGN_CACHE_PERIOD = 30_000;
 
@@ -106,22 +123,22 @@ public class CampaignManager {
     private final LocalCampaignsPersistence persistor = new LocalCampaignsFilePersistence();
 
     /**
-     * List of campaigns
+     * Loaded campaigns, their index and sync state.
+     * Readers don't lock: updates build a new snapshot and publish it under {@link #snapshotUpdateLock}.
      */
-    private final List<LocalCampaign> campaignList = new ArrayList<>();
+    @NonNull
+    private volatile CampaignSnapshot snapshot = CampaignSnapshot.EMPTY;
 
     /**
-     * Global in-app cappings  (MEP only)
+     * Serializes snapshot updates, so that they are all based on the latest snapshot
      */
-    private LocalCampaignsResponse.GlobalCappings cappings;
+    private final Object snapshotUpdateLock = new Object();
 
     /**
-     * Version of the local campaigns (MEP or CEP)
+     * Campaigns of the {@link #snapshot} that are ineligible because of time-based conditions,
+     * cleared each time the snapshot changes
      */
-    @Nullable
-    private LocalCampaignsResponse.Version campaignsVersion;
-
-    private final Object campaignListLock = new Object();
+    private final CampaignEligibilitySchedule eligibilitySchedule = new CampaignEligibilitySchedule();
 
     /**
      * Timestamp to wait before JIT service will be available again
@@ -130,15 +147,15 @@ public class CampaignManager {
     private long nextAvailableJITTimestamp;
 
     /**
-     * Tells if we loaded at least one time the campaigns list (an empty campains list could mean that
-     * we didn't load or that the result is empty)
+     * Timestamp to wait before a JIT prefetch can call the service again
+     * Only set when the server responds with an error, unlike {@link #nextAvailableJITTimestamp}.
      */
-    private final AtomicBoolean campaignsLoaded = new AtomicBoolean(false);
+    private long nextJITPrefetchTimestamp;
 
     /**
-     * Cached list of event names that can potentially triggers the display of a local campaign
+     * Whether a JIT eligibility prefetch is in progress
      */
-    private Set<String> watchedEventNames = new HashSet<>();
+    private final AtomicBoolean isPrefetchingJITEligibility = new AtomicBoolean(false);
 
     /**
      * Cached list of synced JIT campaigns
@@ -159,12 +176,42 @@ public class CampaignManager {
      * Handle the response from the local campaigns webservice
      *
      * @param response Local campaigns response
+     * @return false if the response is a delta that can't be applied to the loaded campaigns, meaning
+     * a full sync is required
      */
-    public void handleLocalCampaignsResponse(@NonNull LocalCampaignsResponse response) {
-        synchronized (this.campaignListLock) {
-            this.campaignsVersion = response.getVersion();
-            this.cappings = response.getCappings();
-            updateCampaignList(response.getCampaigns(), true);
+    public boolean handleLocalCampaignsResponse(@NonNull LocalCampaignsResponse response) {
+        synchronized (this.snapshotUpdateLock) {
+            CampaignSnapshot current = this.snapshot;
+            LocalCampaignsResponse.Delta delta = response.getDelta();
+            if (delta != null) {
+                if (
+                    !current.loaded ||
+                    response.getVersion() != current.version ||
+                    !delta.getBaseVersion().equals(current.syncVersion)
+                ) {
+                    Logger.internal(
+                        TAG,
+                        "Received a delta against version " + delta.getBaseVersion() + " which is not loaded."
+                    );
+                    publishSnapshot(current.withSyncVersion(null));
+                    return false;
+                }
+                applyCampaignListDelta(
+                    response.getCampaigns(),
+                    delta.getRemovedCampaignIds(),
+                    response.getCappings(),
+                    response.getSyncVersion()
+                );
+                return true;
+            }
+            updateCampaignList(
+                response.getCampaigns(),
+                true,
+                response.getCappings(),
+                response.getVersion(),
+                response.getSyncVersion()
+            );
+            return true;
         }
     }
 
@@ -176,57 +223,188 @@ public class CampaignManager {
      * @param upToDate Whether the campaigns are up-to-date (meaning just been sync from server) or not
      */
     public void updateCampaignList(@NonNull List<LocalCampaign> updatedCampaignList, boolean upToDate) {
-        synchronized (this.campaignListLock) {
-            this.campaignList.clear();
-            this.campaignList.addAll(cleanCampaignList(updatedCampaignList));
+        synchronized (this.snapshotUpdateLock) {
+            CampaignSnapshot current = this.snapshot;
+            updateCampaignList(updatedCampaignList, upToDate, current.cappings, current.version, current.syncVersion);
+        }
+    }
+
+    private void updateCampaignList(
+        @NonNull List<LocalCampaign> updatedCampaignList,
+        boolean upToDate,
+        @Nullable LocalCampaignsResponse.GlobalCappings cappings,
+        @Nullable LocalCampaignsResponse.Version version,
+        @Nullable String syncVersion
+    ) {
+        synchronized (this.snapshotUpdateLock) {
+            List<LocalCampaign> campaigns = cleanCampaignList(updatedCampaignList, version);
 
             if (upToDate) {
                 List<String> ids = new ArrayList<>();
-                for (LocalCampaign campaign : this.campaignList) {
+                for (LocalCampaign campaign : campaigns) {
                     ids.add(campaign.id);
                 }
-                updateSyncedJITCampaignsCached(this.campaignList, ids, false);
+                updateSyncedJITCampaignsCached(campaigns, ids, false);
             }
 
-            campaignsLoaded.set(true);
-
-            updateWatchedEventNames();
+            CampaignSnapshot updated = new CampaignSnapshot(campaigns, cappings, version, syncVersion, true);
+            publishSnapshot(updated);
 
             if (Logger.shouldLogForLevel(LoggerLevel.INTERNAL)) {
-                Logger.internal(TAG, "Loaded " + this.campaignList.size() + " campaign(s)");
-                String publicToken;
-                for (LocalCampaign localCampaign : this.campaignList) {
-                    publicToken = localCampaign.publicToken;
-                    if (publicToken != null) {
-                        Logger.internal(TAG, publicToken);
-                    } else {
-                        Logger.internal(TAG, "Unknown ( " + localCampaign.id + " )");
-                    }
+                Logger.internal(TAG, "Loaded " + updated.campaigns.size() + " campaign(s)");
+                logCampaigns(updated.campaigns);
+                logWatchedEventNames(updated);
+            }
+        }
+    }
+
+    /**
+     * Patch the currently stored campaign list with a delta update.
+     * Only the added, updated and removed campaigns are processed: the rest of the list is kept as is.
+     *
+     * @param upsertedCampaigns Added or updated campaigns
+     * @param removedCampaignIds Ids of the removed campaigns
+     */
+    @VisibleForTesting
+    protected void applyCampaignListDelta(
+        @NonNull List<LocalCampaign> upsertedCampaigns,
+        @NonNull List<String> removedCampaignIds
+    ) {
+        synchronized (this.snapshotUpdateLock) {
+            CampaignSnapshot current = this.snapshot;
+            applyCampaignListDelta(upsertedCampaigns, removedCampaignIds, current.cappings, current.syncVersion);
+        }
+    }
+
+    private void applyCampaignListDelta(
+        @NonNull List<LocalCampaign> upsertedCampaigns,
+        @NonNull List<String> removedCampaignIds,
+        @Nullable LocalCampaignsResponse.GlobalCappings cappings,
+        @Nullable String syncVersion
+    ) {
+        synchronized (this.snapshotUpdateLock) {
+            CampaignSnapshot current = this.snapshot;
+
+            // Campaigns that should leave the list, unless they are replaced by a cleaned up-to-date version
+            Set<String> outdatedCampaignIds = new HashSet<>(removedCampaignIds);
+            for (LocalCampaign campaign : upsertedCampaigns) {
+                outdatedCampaignIds.add(campaign.id);
+            }
+
+            Map<String, LocalCampaign> cleanedUpserts = new LinkedHashMap<>();
+            for (LocalCampaign campaign : cleanCampaignList(upsertedCampaigns, current.version)) {
+                cleanedUpserts.put(campaign.id, campaign);
+            }
+
+            List<LocalCampaign> campaigns = new ArrayList<>(current.campaigns.size() + cleanedUpserts.size());
+            for (LocalCampaign campaign : current.campaigns) {
+                if (!outdatedCampaignIds.contains(campaign.id)) {
+                    campaigns.add(campaign);
+                    continue;
                 }
+                LocalCampaign updatedCampaign = cleanedUpserts.remove(campaign.id);
+                if (updatedCampaign != null) {
+                    // Keep the position of updated campaigns, as it matters for same-priority campaigns
+                    campaigns.add(updatedCampaign);
+                }
+            }
+            campaigns.addAll(cleanedUpserts.values());
 
-                if (watchedEventNames.isEmpty()) {
-                    Logger.internal(TAG, "No events to watch");
-                } else {
-                    Logger.internal(TAG, "Watching events: ");
-                    for (String watchedEvent : watchedEventNames) {
-                        Logger.internal(TAG, watchedEvent);
-                    }
+            List<String> ids = new ArrayList<>();
+            for (LocalCampaign campaign : campaigns) {
+                ids.add(campaign.id);
+            }
+            updateSyncedJITCampaignsCached(campaigns, ids, false);
+
+            CampaignSnapshot updated = new CampaignSnapshot(campaigns, cappings, current.version, syncVersion, true);
+            publishSnapshot(updated);
+
+            if (Logger.shouldLogForLevel(LoggerLevel.INTERNAL)) {
+                Logger.internal(
+                    TAG,
+                    "Applied campaigns delta: " +
+                    upsertedCampaigns.size() +
+                    " added or updated, " +
+                    removedCampaignIds.size() +
+                    " removed, " +
+                    updated.campaigns.size() +
+                    " campaign(s) loaded"
+                );
+                logCampaigns(upsertedCampaigns);
+                logWatchedEventNames(updated);
+            }
+        }
+    }
+
+    /**
+     * Publish a new snapshot of the campaigns
+     * Must be called under {@link #snapshotUpdateLock}
+     */
+    private void publishSnapshot(@NonNull CampaignSnapshot updated) {
+        CampaignSnapshot previous = this.snapshot;
+        this.snapshot = updated;
+        if (updated.campaigns != previous.campaigns) {
+            this.eligibilitySchedule.clear();
+        }
+        if (updated.cappings != previous.cappings) {
+            viewTracker.setViewEventsRetention(getLongestTimeBasedCappingDuration(updated.cappings));
+        }
+    }
+
+    /**
+     * Get the duration of the longest time-based capping, which is how long view events need to be kept in memory
+     *
+     * @return the duration in milliseconds, 0 if there is no time-based capping
+     */
+    private static long getLongestTimeBasedCappingDuration(@Nullable LocalCampaignsResponse.GlobalCappings cappings) {
+        long longestDuration = 0;
+        if (cappings != null && cappings.getTimeBasedCappings() != null) {
+            for (LocalCampaignsResponse.GlobalCappings.TimeBasedCapping capping : cappings.getTimeBasedCappings()) {
+                if (capping.getDuration() != null) {
+                    longestDuration = Math.max(longestDuration, capping.getDuration() * 1000L);
                 }
             }
         }
+        return longestDuration;
+    }
+
+    private void logCampaigns(@NonNull List<LocalCampaign> campaigns) {
+        String publicToken;
+        for (LocalCampaign localCampaign : campaigns) {
+            publicToken = localCampaign.publicToken;
+            if (publicToken != null) {
+                Logger.internal(TAG, publicToken);
+            } else {
+                Logger.internal(TAG, "Unknown ( " + localCampaign.id + " )");
+            }
+        }
+    }
+
+    private void logWatchedEventNames(@NonNull CampaignSnapshot snapshot) {
+        Set<String> watchedEventNames = snapshot.getWatchedEventNames();
+        if (watchedEventNames.isEmpty()) {
+            Logger.internal(TAG, "No events to watch");
+        } else {
+            Logger.internal(TAG, "Watching events: ");
+            for (String watchedEvent : watchedEventNames) {
+                Logger.internal(TAG, watchedEvent);
+            }
+        }
     }
 
     /**
      * Delete all campaigns
      */
     public void deleteAllCampaigns(Context context, boolean persist) throws PersistenceException {
-        synchronized (this.campaignListLock) {
-            this.campaignList.clear();
-            this.watchedEventNames.clear();
-            campaignsLoaded.set(false);
+        synchronized (this.snapshotUpdateLock) {
+            CampaignSnapshot current = this.snapshot;
+            publishSnapshot(
+                new CampaignSnapshot(Collections.emptyList(), current.cappings, current.version, null, false)
+            );
 
             if (persist) {
                 persistor.deleteData(context, PERSISTENCE_LOCAL_CAMPAIGNS_FILE_NAME);
+                persistor.deleteData(context, PERSISTENCE_LEGACY_LOCAL_CAMPAIGNS_FILE_NAME);
             }
         }
     }
@@ -239,46 +417,46 @@ public class CampaignManager {
      * Get all campaign between all of those that are satisfied by the latest application event
      * and sort them by priority
      * This is the campaign that you'll want to display
+     * <p>
+     * Only the campaigns indexed for the signal are checked, and the election stops at the first
+     * displayable campaign not requiring a JIT sync: lower priority campaigns can't be elected
+     * after it, so they are not returned.
+     * Campaigns known to be ineligible until a later time are skipped without being checked.
      */
     @NonNull
     public List<LocalCampaign> getEligibleCampaignsSortedByPriority(@NonNull Signal signal) {
-        synchronized (this.campaignListLock) {
-            List<LocalCampaign> eligibleCampaigns = new ArrayList<>();
-
-            // Getting campaign eligible for the given signal
-            for (LocalCampaign campaign : campaignList) {
-                boolean satisfiesTrigger = false;
-                for (LocalCampaign.Trigger trigger : campaign.triggers) {
-                    if (trigger != null && signal.satisfiesTrigger(trigger)) {
-                        satisfiesTrigger = true;
-                        break;
-                    }
-                }
+        List<LocalCampaign> eligibleCampaigns = new ArrayList<>();
+        eligibilitySchedule.advance(dateProvider.getCurrentDate().getTime());
 
-                if (!satisfiesTrigger) {
-                    continue;
-                }
+        // Candidates are already sorted by server priority
+        for (LocalCampaign campaign : snapshot.triggerIndex.getCandidates(signal)) {
+            if (eligibilitySchedule.isIneligible(campaign)) {
+                continue;
+            }
 
-                if (!isCampaignDisplayable(campaign)) {
-                    continue;
+            boolean satisfiesTrigger = false;
+            for (LocalCampaign.Trigger trigger : campaign.triggers) {
+                if (trigger != null && signal.satisfiesTrigger(trigger)) {
+                    satisfiesTrigger = true;
+                    break;
                 }
+            }
 
-                eligibleCampaigns.add(campaign);
+            if (!satisfiesTrigger) {
+                continue;
             }
 
-            // Sorting eligible campaigns by server priority
-            Collections.sort(
-                eligibleCampaigns,
-                Collections.reverseOrder((o1, o2) -> {
-                    int x = o1.priority;
-                    int y = o2.priority;
-                    //Suppress the inspection as it's not available on API 15 (IntelliJ believes it is though)
-                    //noinspection UseCompareMethod
-                    return (x < y) ? -1 : ((x == y) ? 0 : 1);
-                })
-            );
-            return eligibleCampaigns;
+            if (!isCampaignDisplayable(campaign)) {
+                continue;
+            }
+
+            eligibleCampaigns.add(campaign);
+
+            if (!campaign.requiresJustInTimeSync) {
+                break;
+            }
         }
+        return eligibleCampaigns;
     }
 
     /**
@@ -339,10 +517,9 @@ public class CampaignManager {
             return;
         }
 
-        WebserviceLauncher.launchLocalCampaignsJITWebservice(
-            RuntimeManagerProvider.get(),
+        launchJITWebservice(
             eligibleCampaignsRequiringSync,
-            campaignsVersion,
+            snapshot.version,
             new LocalCampaignsJITWebserviceListener() {
                 @Override
                 public void onSuccess(@NonNull List<String> eligibleCampaignIds) {
@@ -430,6 +607,37 @@ public class CampaignManager {
         return dateProvider.getCurrentDate().getTime() >= nextAvailableJITTimestamp;
     }
 
+    /**
+     * Check if a JIT prefetch can call the service
+     * <p>
+     * Prefetches don't wait for {@link #MIN_DELAY_BETWEEN_JIT_SYNC} after a successful sync: they only
+     * check campaigns without an up-to-date result, so they never repeat the checks that sync just made.
+     * They still wait for the delay requested by the server after an error.
+     * @return true if JIT prefetch is available
+     */
+    public synchronized boolean isJITPrefetchAvailable() {
+        return dateProvider.getCurrentDate().getTime() >= nextJITPrefetchTimestamp;
+    }
+
+    /**
+     * Launch the JIT webservice
+     *
+     * @return true if the webservice has been launched
+     */
+    @VisibleForTesting
+    protected boolean launchJITWebservice(
+        @NonNull List<LocalCampaign> campaigns,
+        @Nullable LocalCampaignsResponse.Version campaignsVersion,
+        @NonNull LocalCampaignsJITWebserviceListener listener
+    ) {
+        return WebserviceLauncher.launchLocalCampaignsJITWebservice(
+            RuntimeManagerProvider.get(),
+            campaigns,
+            campaignsVersion,
+            listener
+        );
+    }
+
     /**
      * Check if the given campaign has been already synced recently
      * @param campaign to check
@@ -451,26 +659,189 @@ public class CampaignManager {
                 return SyncedJITResult.State.REQUIRES_SYNC;
             }
 
-            if (dateProvider.getCurrentDate().getTime() >= (syncedJITResult.timestamp + JIT_CAMPAIGN_CACHE_PERIOD)) {
+            if (dateProvider.getCurrentDate().getTime() >= (syncedJITResult.timestamp + getJITCampaignCachePeriod())) {
                 return SyncedJITResult.State.REQUIRES_SYNC;
             }
             return syncedJITResult.eligible ? SyncedJITResult.State.ELIGIBLE : SyncedJITResult.State.NOT_ELIGIBLE;
         }
     }
 
+    /**
+     * Get the period during which JIT results are considered up-to-date
+     * <p>
+     * Read from the parameters every time, as the server can update it at any time.
+     */
+    public long getJITCampaignCachePeriod() {
+        Context context = RuntimeManagerProvider.get().getContext();
+        if (context == null) {
+            return JIT_CAMPAIGN_CACHE_PERIOD;
+        }
+        String ttl = ParametersProvider.get(context).get(ParameterKeys.LOCAL_CAMPAIGNS_JIT_CACHE_TTL);
+        if (ttl == null) {
+            return JIT_CAMPAIGN_CACHE_PERIOD;
+        }
+        try {
+            long period = Long.parseLong(ttl);
+            if (period > 0) {
+                return period;
+            }
+        } catch (NumberFormatException e) {
+            Logger.internal(TAG, "Invalid JIT cache TTL: " + ttl);
+        }
+        return JIT_CAMPAIGN_CACHE_PERIOD;
+    }
+
+    /**
+     * Get the campaigns requiring a JIT sync that are the most likely to be elected by the next signals
+     * <p>
+     * For each indexed trigger, displayable campaigns are walked by priority until the first one not requiring
+     * a JIT sync, as campaigns after it could not be elected. Campaigns with an up-to-date JIT result
+     * are skipped.
+     *
+     * @return campaigns to sync sorted by priority (max: {@link CampaignManager#MAX_CAMPAIGNS_JIT_THRESHOLD})
+     */
+    @VisibleForTesting
+    @NonNull
+    protected List<LocalCampaign> getJITPrefetchCandidates() {
+        eligibilitySchedule.advance(dateProvider.getCurrentDate().getTime());
+
+        // Campaigns are indexed under each of their triggers
+        Set<LocalCampaign> candidates = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (List<LocalCampaign> bucket : snapshot.triggerIndex.getTriggerBuckets()) {
+            int bucketCandidates = 0;
+            for (LocalCampaign campaign : bucket) {
+                if (bucketCandidates >= MAX_CAMPAIGNS_JIT_THRESHOLD) {
+                    break;
+                }
+                if (eligibilitySchedule.isIneligible(campaign) || !isCampaignDisplayable(campaign)) {
+                    continue;
+                }
+                if (!campaign.requiresJustInTimeSync) {
+                    break;
+                }
+                if (getSyncedJITCampaignState(campaign) == SyncedJITResult.State.REQUIRES_SYNC) {
+                    candidates.add(campaign);
+                }
+                bucketCandidates++;
+            }
+        }
+
+        List<LocalCampaign> sortedCandidates = new ArrayList<>(candidates);
+        Collections.sort(sortedCandidates, (o1, o2) -> Integer.compare(o2.priority, o1.priority));
+        if (sortedCandidates.size() > MAX_CAMPAIGNS_JIT_THRESHOLD) {
+            sortedCandidates = new ArrayList<>(sortedCandidates.subList(0, MAX_CAMPAIGNS_JIT_THRESHOLD));
+        }
+        return sortedCandidates;
+    }
+
+    /**
+     * Check the eligibility of the campaigns most likely to be elected with the JIT service, so that
+     * their results are cached before an election needs them.
+     * Nothing is done if the JIT service is not available for prefetches, or if all of these campaigns
+     * are up-to-date.
+     * <p>
+     * Should not be called on the UI thread.
+     */
+    public void prefetchJITEligibility() {
+        final LocalCampaignsResponse.Version campaignsVersion = snapshot.version;
+        if (campaignsVersion == null || !isJITPrefetchAvailable()) {
+            return;
+        }
+        if (!isPrefetchingJITEligibility.compareAndSet(false, true)) {
+            return;
+        }
+
+        final List<LocalCampaign> campaigns = getJITPrefetchCandidates();
+        if (campaigns.isEmpty()) {
+            isPrefetchingJITEligibility.set(false);
+            return;
+        }
+
+        Logger.internal(TAG, "Prefetching JIT eligibility of " + campaigns.size() + " campaign(s)");
+        boolean launched = launchJITWebservice(
+            campaigns,
+            campaignsVersion,
+            new LocalCampaignsJITWebserviceListener() {
+                @Override
+                public void onSuccess(@NonNull List<String> eligibleCampaignIds) {
+                    // Only cache the results: elections of other campaigns must not be throttled
+                    updateSyncedJITCampaignsCached(campaigns, eligibleCampaignIds, false);
+                    isPrefetchingJITEligibility.set(false);
+                }
+
+                @Override
+                public void onFailure(@Nullable Webservice.WebserviceError error) {
+                    if (error != null) {
+                        setNextAvailableJITTimestampWithCustomDelay(error.getRetryAfterInMillis());
+                    }
+                    isPrefetchingJITEligibility.set(false);
+                }
+            }
+        );
+        if (!launched) {
+            isPrefetchingJITEligibility.set(false);
+        }
+    }
+
+    /**
+     * Get the in-app campaigns whose images should be prefetched, from the most to the least likely to be displayed
+     * <p>
+     * Campaigns that would be elected by the next signal of one of their triggers come first, as the first
+     * displayable campaign of a trigger bucket. They are followed by the other displayable campaigns.
+     * Both groups are sorted by priority.
+     *
+     * @return campaigns with a landing output (max: {@link CampaignManager#MAX_CAMPAIGNS_IMAGE_PREFETCH})
+     */
+    @NonNull
+    public List<LocalCampaign> getImagePrefetchCandidates() {
+        eligibilitySchedule.advance(dateProvider.getCurrentDate().getTime());
+
+        // Campaigns are indexed under each of their triggers
+        Set<LocalCampaign> likelyCandidates = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<LocalCampaign> otherCandidates = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (List<LocalCampaign> bucket : snapshot.triggerIndex.getTriggerBuckets()) {
+            boolean isFirstDisplayable = true;
+            for (LocalCampaign campaign : bucket) {
+                if (eligibilitySchedule.isIneligible(campaign) || !isCampaignDisplayable(campaign)) {
+                    continue;
+                }
+                if (campaign.output instanceof LandingOutput) {
+                    if (isFirstDisplayable) {
+                        likelyCandidates.add(campaign);
+                    } else {
+                        otherCandidates.add(campaign);
+                    }
+                }
+                isFirstDisplayable = false;
+            }
+        }
+        otherCandidates.removeAll(likelyCandidates);
+
+        List<LocalCampaign> sortedCandidates = new ArrayList<>(likelyCandidates);
+        Collections.sort(sortedCandidates, (o1, o2) -> Integer.compare(o2.priority, o1.priority));
+        List<LocalCampaign> sortedOtherCandidates = new ArrayList<>(otherCandidates);
+        Collections.sort(sortedOtherCandidates, (o1, o2) -> Integer.compare(o2.priority, o1.priority));
+        sortedCandidates.addAll(sortedOtherCandidates);
+
+        if (sortedCandidates.size() > MAX_CAMPAIGNS_IMAGE_PREFETCH) {
+            sortedCandidates = new ArrayList<>(sortedCandidates.subList(0, MAX_CAMPAIGNS_IMAGE_PREFETCH));
+        }
+        return sortedCandidates;
+    }
+
     /**
      * Checks if an event name will triggers at least one campaign, allowing for a fast pre-filter to check if it is worth
      * checking other conditions for campaigns with an event triggers
      */
     public boolean isEventWatched(@NonNull String name) {
-        return watchedEventNames.contains(name.toUpperCase(Locale.US));
+        return snapshot.getWatchedEventNames().contains(name.toUpperCase(Locale.US));
     }
 
     /**
      * Returns a copy of the loaded campaigns
      */
     public List<LocalCampaign> getCampaignList() {
-        return new ArrayList<>(campaignList);
+        return new ArrayList<>(snapshot.campaigns);
     }
 
     /**
@@ -480,9 +851,7 @@ public class CampaignManager {
      */
     @Nullable
     public LocalCampaignsResponse.GlobalCappings getCappings() {
-        synchronized (this.campaignListLock) {
-            return cappings;
-        }
+        return snapshot.cappings;
     }
 
     /**
@@ -492,9 +861,18 @@ public class CampaignManager {
      */
     @Nullable
     public LocalCampaignsResponse.Version getCampaignsVersion() {
-        synchronized (this.campaignListLock) {
-            return campaignsVersion;
-        }
+        return snapshot.version;
+    }
+
+    /**
+     * Get the sync version of the loaded campaigns, to be used as a delta base
+     *
+     * @return The sync version, or null if the server should send the full campaign set
+     */
+    @Nullable
+    public String getSyncVersion() {
+        CampaignSnapshot current = snapshot;
+        return current.loaded ? current.syncVersion : null;
     }
 
     /**
@@ -506,6 +884,14 @@ public class CampaignManager {
     @VisibleForTesting
     @NonNull
     public List<LocalCampaign> cleanCampaignList(@NonNull List<LocalCampaign> campaignsToClean) {
+        return cleanCampaignList(campaignsToClean, snapshot.version);
+    }
+
+    @NonNull
+    private List<LocalCampaign> cleanCampaignList(
+        @NonNull List<LocalCampaign> campaignsToClean,
+        @Nullable LocalCampaignsResponse.Version campaignsVersion
+    ) {
         final BatchDate currentDate = dateProvider.getCurrentDate();
 
         final List<LocalCampaign> cleanedCampaignList = new ArrayList<>();
@@ -519,7 +905,7 @@ public class CampaignManager {
 
             try {
                 // Exclude campaigns that are over the view capping
-                if (isCampaignOverCapping(campaign, true)) {
+                if (isCampaignOverCapping(campaign, true, campaignsVersion)) {
                     Logger.internal(TAG, "Campaign " + campaign.id + " is over capping.");
                     continue;
                 }
@@ -552,6 +938,14 @@ public class CampaignManager {
     @VisibleForTesting
     protected boolean isCampaignOverCapping(LocalCampaign campaign, boolean ignoreMinInterval)
         throws ViewTrackerUnavailableException {
+        return isCampaignOverCapping(campaign, ignoreMinInterval, snapshot.version);
+    }
+
+    private boolean isCampaignOverCapping(
+        LocalCampaign campaign,
+        boolean ignoreMinInterval,
+        @Nullable LocalCampaignsResponse.Version campaignsVersion
+    ) throws ViewTrackerUnavailableException {
         ViewTracker.CountedViewEvent ev;
         if (campaignsVersion == LocalCampaignsResponse.Version.CEP) {
             Context context = RuntimeManagerProvider.get().getContext();
@@ -570,14 +964,17 @@ public class CampaignManager {
             }
         }
 
-        if (
-            !ignoreMinInterval &&
-            campaign.minimumDisplayInterval > 0 &&
-            dateProvider.getCurrentDate().getTime() <=
-            (ev.lastOccurrence + SECONDS.toMillis(campaign.minimumDisplayInterval))
-        ) {
-            Logger.internal(TAG, "Campaign's minimum display interval has not been reached");
-            return true;
+        if (!ignoreMinInterval && campaign.minimumDisplayInterval > 0) {
+            long now = dateProvider.getCurrentDate().getTime();
+            long minimumIntervalEnd = ev.lastOccurrence + SECONDS.toMillis(campaign.minimumDisplayInterval);
+            if (now <= minimumIntervalEnd) {
+                Logger.internal(TAG, "Campaign's minimum display interval has not been reached");
+                // CEP views are counted per custom user ID, which may change before the interval ends
+                if (campaignsVersion != LocalCampaignsResponse.Version.CEP) {
+                    eligibilitySchedule.schedule(campaign, minimumIntervalEnd + 1, now);
+                }
+                return true;
+            }
         }
 
         return false;
@@ -589,20 +986,24 @@ public class CampaignManager {
      * - Current date over start date
      * - Minimum API level
      * - etc...
+     * Campaigns failing a time-based condition are added to the {@link #eligibilitySchedule}.
      */
     @VisibleForTesting
     protected boolean isCampaignDisplayable(LocalCampaign campaign) {
         BatchDate currentDate = dateProvider.getCurrentDate();
+        long now = currentDate.getTime();
 
         // Exclude campaigns that have not begun yet
         if (campaign.startDate != null && campaign.startDate.compareTo(currentDate) > 0) {
             Logger.internal(TAG, "Ignoring campaign " + campaign.id + " since it has not begun yet");
+            eligibilitySchedule.schedule(campaign, campaign.startDate.getTime(), now);
             return false;
         }
 
         // Exclude campaigns that are over
         if (campaign.endDate != null && campaign.endDate.compareTo(currentDate) < 0) {
             Logger.internal(TAG, "Ignoring campaign " + campaign.id + " since it is past its end_date");
+            eligibilitySchedule.schedule(campaign, CampaignEligibilitySchedule.NEVER, now);
             return false;
         }
 
@@ -638,6 +1039,7 @@ public class CampaignManager {
 
         if (campaign.quietHours != null && isCampaignWithinQuietHours(campaign)) {
             Logger.internal(TAG, "Campaign " + campaign.id + " is within quiet hours");
+            eligibilitySchedule.schedule(campaign, getQuietHoursEnd(campaign.quietHours, now), now);
             return false;
         }
 
@@ -649,6 +1051,7 @@ public class CampaignManager {
      * @return true if cappings are reached
      */
     public boolean isOverGlobalCappings() {
+        LocalCampaignsResponse.GlobalCappings cappings = snapshot.cappings;
         if (cappings == null) {
             // No cappings
             return false;
@@ -661,9 +1064,10 @@ public class CampaignManager {
 
         List<LocalCampaignsResponse.GlobalCappings.TimeBasedCapping> timeBasedCappings = cappings.getTimeBasedCappings();
         if (timeBasedCappings != null) {
+            long now = dateProvider.getCurrentDate().getTime();
             for (LocalCampaignsResponse.GlobalCappings.TimeBasedCapping timeBasedCapping : timeBasedCappings) {
                 if (timeBasedCapping.getDuration() != null && timeBasedCapping.getViews() != null) {
-                    long timestamp = dateProvider.getCurrentDate().getTime() - (timeBasedCapping.getDuration() * 1000);
+                    long timestamp = now - (timeBasedCapping.getDuration() * 1000);
                     try {
                         if (viewTracker.getNumberOfViewEventsSince(timestamp) >= timeBasedCapping.getViews()) {
                             Logger.internal(TAG, "Time-based cappings have been reached");
@@ -734,32 +1138,56 @@ public class CampaignManager {
     }
 
     /**
-     * Update the set of watched event names
-     * This method is not thread safe: do not call it without some kind of lock
+     * Get the end of the quiet period containing the given time: the next midnight for quiet days, or the
+     * next occurrence of the quiet hours end time.
+     * The campaign may still be quiet at that time, if the next period directly follows.
+     *
+     * @param quietHours quiet hours of a campaign that is currently quiet
+     * @param now current timestamp, in milliseconds
+     * @return the end of the quiet period, in milliseconds
      */
-    private void updateWatchedEventNames() {
-        Set<String> newWatchedEvents = new HashSet<>();
-        synchronized (this.campaignListLock) {
-            for (LocalCampaign campaign : campaignList) {
-                for (LocalCampaign.Trigger trigger : campaign.triggers) {
-                    if (trigger instanceof EventLocalCampaignTrigger) {
-                        newWatchedEvents.add(((EventLocalCampaignTrigger) trigger).name.toUpperCase(Locale.US));
-                    }
-                }
-            }
-            watchedEventNames = newWatchedEvents;
+    private static long getQuietHoursEnd(@NonNull QuietHours quietHours, long now) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(now);
+        DayOfWeek currentDay = DayOfWeek.fromCalendar(calendar);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+
+        if (quietHours.getDaysOfWeek() != null && quietHours.getDaysOfWeek().contains(currentDay)) {
+            calendar.set(Calendar.HOUR_OF_DAY, 0);
+            calendar.set(Calendar.MINUTE, 0);
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+            return calendar.getTimeInMillis();
+        }
+
+        calendar.set(Calendar.HOUR_OF_DAY, quietHours.getEndHour());
+        calendar.set(Calendar.MINUTE, quietHours.getEndMinute());
+        if (calendar.getTimeInMillis() <= now) {
+            // Overnight quiet hours, ending tomorrow
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
         }
+        return calendar.getTimeInMillis();
     }
 
     public void saveCampaigns(@NonNull Context context, @NonNull LocalCampaignsResponse response) {
+        if (response.isDelta()) {
+            saveCampaignsDelta(context, response);
+            return;
+        }
         try {
             LocalCampaignsResponseSerializer serializer = new LocalCampaignsResponseSerializer();
+            List<LocalCampaign> campaignsToSave = response.getCampaignsToSave();
             JSONObject jsonData = new JSONObject();
             jsonData.put("campaigns_version", response.getVersion());
-            jsonData.put("campaigns", serializer.serializeCampaigns(response.getCampaignsToSave()));
+            jsonData.put("campaigns", serializer.serializeCampaigns(campaignsToSave));
             jsonData.putOpt("cappings", serializer.serializeCappings(response.getCappings()));
             jsonData.putOpt("cache_date", dateProvider.getCurrentDate().getTime());
+            // Non persisted campaigns are missing from the file, so it can only be used as a delta base if there are none
+            if (campaignsToSave.size() == response.getCampaigns().size()) {
+                jsonData.putOpt("sync_version", response.getSyncVersion());
+            }
             persistor.persistData(context, jsonData, PERSISTENCE_LOCAL_CAMPAIGNS_FILE_NAME);
+            persistor.deleteData(context, PERSISTENCE_LEGACY_LOCAL_CAMPAIGNS_FILE_NAME);
         } catch (PersistenceException e) {
             Logger.internal(TAG, "Can't persist local campaigns response", e);
         } catch (JSONException e) {
@@ -767,6 +1195,64 @@ public class CampaignManager {
         }
     }
 
+    /**
+     * Patch the saved campaigns with a delta response.
+     * Unchanged campaigns are copied as is by the persistor, only the updated ones are serialized.
+     * If the saved campaigns are not the delta base, they are deleted as they can't be trusted anymore.
+     */
+    private void saveCampaignsDelta(@NonNull Context context, @NonNull LocalCampaignsResponse response) {
+        LocalCampaignsResponse.Delta delta = response.getDelta();
+        if (delta == null) {
+            return;
+        }
+        // The delta base may still be in the legacy file
+        migrateLegacySavedCampaigns(context);
+        try {
+            JSONObject rootFields = persistor.loadRootFields(context, PERSISTENCE_LOCAL_CAMPAIGNS_FILE_NAME);
+            if (
+                rootFields == null ||
+                !persistor.checkSaveVersion(rootFields) ||
+                !response.getVersion().name().equals(rootFields.reallyOptString("campaigns_version", null)) ||
+                !delta.getBaseVersion().equals(rootFields.reallyOptString("sync_version", null))
+            ) {
+                Logger.internal(TAG, "Saved local campaigns are not the delta base, deleting them.");
+                persistor.deleteData(context, PERSISTENCE_LOCAL_CAMPAIGNS_FILE_NAME);
+                return;
+            }
+
+            // Campaigns that are not persisted must not stay saved with their previous version
+            Set<String> outdatedCampaignIds = new HashSet<>(delta.getRemovedCampaignIds());
+            for (LocalCampaign campaign : response.getCampaigns()) {
+                outdatedCampaignIds.add(campaign.id);
+            }
+
+            LocalCampaignsResponseSerializer serializer = new LocalCampaignsResponseSerializer();
+            List<LocalCampaign> campaignsToSave = response.getCampaignsToSave();
+            rootFields.remove("cappings");
+            rootFields.putOpt("cappings", serializer.serializeCappings(response.getCappings()));
+            rootFields.put("cache_date", dateProvider.getCurrentDate().getTime());
+            rootFields.remove("sync_version");
+            if (campaignsToSave.size() == response.getCampaigns().size()) {
+                rootFields.putOpt("sync_version", response.getSyncVersion());
+            }
+            boolean patched = persistor.patchData(
+                context,
+                rootFields,
+                serializer.serializeCampaigns(campaignsToSave),
+                outdatedCampaignIds,
+                PERSISTENCE_LOCAL_CAMPAIGNS_FILE_NAME
+            );
+            if (!patched) {
+                Logger.internal(TAG, "Saved local campaigns can't be patched, deleting them.");
+                persistor.deleteData(context, PERSISTENCE_LOCAL_CAMPAIGNS_FILE_NAME);
+            }
+        } catch (PersistenceException e) {
+            Logger.internal(TAG, "Can't patch persisted local campaigns", e);
+        } catch (JSONException e) {
+            Logger.internal(TAG, "Can't serialize local campaigns delta before the save operation", e);
+        }
+    }
+
     public void saveCampaignsAsync(@NonNull final Context context, @NonNull final LocalCampaignsResponse response) {
         TaskExecutorProvider.get(context).execute(() -> saveCampaigns(context, response));
     }
@@ -774,6 +1260,7 @@ public class CampaignManager {
     public void deleteSavedCampaigns(@NonNull final Context context) {
         try {
             persistor.deleteData(context, PERSISTENCE_LOCAL_CAMPAIGNS_FILE_NAME);
+            persistor.deleteData(context, PERSISTENCE_LEGACY_LOCAL_CAMPAIGNS_FILE_NAME);
         } catch (PersistenceException e) {
             Logger.internal(TAG, "Can't delete local campaigns", e);
         }
@@ -785,27 +1272,50 @@ public class CampaignManager {
 
     public boolean hasSavedCampaigns(Context context) {
         try {
-            return persistor.hasSavedData(context, PERSISTENCE_LOCAL_CAMPAIGNS_FILE_NAME);
+            return (
+                persistor.hasSavedData(context, PERSISTENCE_LOCAL_CAMPAIGNS_FILE_NAME) ||
+                persistor.hasSavedData(context, PERSISTENCE_LEGACY_LOCAL_CAMPAIGNS_FILE_NAME)
+            );
         } catch (PersistenceException e) {
             Logger.internal(TAG, "Can't determine if there is saved local campaigns", e);
             return false;
         }
     }
 
-    public void loadSavedCampaignResponse(@NonNull final Context context) {
-        JSONObject campaignsRawData;
+    /**
+     * Convert the campaigns saved by previous versions, and delete their file
+     */
+    private void migrateLegacySavedCampaigns(@NonNull Context context) {
         try {
-            campaignsRawData = persistor.loadData(context, PERSISTENCE_LOCAL_CAMPAIGNS_FILE_NAME);
-        } catch (PersistenceException | IOException e) {
-            Logger.internal(TAG, "Can't load saved local campaigns", e);
-            return;
+            if (
+                persistor.migrateLegacyData(
+                    context,
+                    PERSISTENCE_LEGACY_LOCAL_CAMPAIGNS_FILE_NAME,
+                    PERSISTENCE_LOCAL_CAMPAIGNS_FILE_NAME
+                )
+            ) {
+                Logger.internal(TAG, "Converted legacy saved local campaigns");
+            }
+        } catch (PersistenceException e) {
+            Logger.internal(TAG, "Can't convert legacy saved local campaigns", e);
         }
+    }
 
-        if (campaignsRawData == null) {
+    public void loadSavedCampaignResponse(@NonNull final Context context) {
+        migrateLegacySavedCampaigns(context);
+        SavedCampaigns savedCampaigns;
+        try {
+            savedCampaigns = persistor.loadSavedCampaigns(context, PERSISTENCE_LOCAL_CAMPAIGNS_FILE_NAME);
+            if (savedCampaigns == null || !persistor.checkSaveVersion(savedCampaigns.rootFields)) {
+                return;
+            }
+        } catch (PersistenceException e) {
+            Logger.internal(TAG, "Can't load saved local campaigns", e);
             return;
         }
 
         // Ensure cache is not too old.
+        JSONObject campaignsRawData = savedCampaigns.rootFields;
         Long expirationDate = campaignsRawData.reallyOptLong("cache_date", null);
         if (expirationDate != null) {
             expirationDate += CACHE_EXPIRATION_DELAY;
@@ -819,23 +1329,22 @@ public class CampaignManager {
         LocalCampaignsResponseDeserializer localCampaignResponseDeserializer = new LocalCampaignsResponseDeserializer(
             campaignsRawData
         );
-        synchronized (this.campaignListLock) {
-            try {
-                campaignsVersion = localCampaignResponseDeserializer.deserializeVersion();
-                cappings = localCampaignResponseDeserializer.deserializeCappings();
-                boolean requireJITFallback = campaignsVersion == LocalCampaignsResponse.Version.CEP;
-                List<LocalCampaign> campaigns = localCampaignResponseDeserializer.deserializeCampaigns(
-                    requireJITFallback
-                );
-                updateCampaignList(campaigns, false);
-            } catch (Exception ex) {
-                Logger.internal(TAG, "Can't convert json to LocalCampaignsResponse : " + ex);
-            }
+        try {
+            LocalCampaignsResponse.Version campaignsVersion = localCampaignResponseDeserializer.deserializeVersion();
+            LocalCampaignsResponse.GlobalCappings cappings = localCampaignResponseDeserializer.deserializeCappings();
+            String syncVersion = localCampaignResponseDeserializer.deserializeSyncVersion();
+            boolean requireJITFallback = campaignsVersion == LocalCampaignsResponse.Version.CEP;
+            // Output payloads are only decoded when a campaign is displayed
+            List<LocalCampaign> campaigns = new LocalCampaignDeserializer()
+                .deserializeList(savedCampaigns.campaigns, requireJITFallback);
+            updateCampaignList(campaigns, false, cappings, campaignsVersion, syncVersion);
+        } catch (Exception ex) {
+            Logger.internal(TAG, "Can't convert json to LocalCampaignsResponse : " + ex);
         }
     }
 
     public boolean areCampaignsLoaded() {
-        return campaignsLoaded.get();
+        return snapshot.loaded;
     }
 
     public void openViewTracker() {
@@ -870,17 +1379,18 @@ public class CampaignManager {
      * {@link #MIN_DELAY_BETWEEN_JIT_SYNC}.</p>
      */
     public void setNextAvailableJITTimestampWithDefaultDelay() {
-        setNextAvailableJITTimestampWithCustomDelay(MIN_DELAY_BETWEEN_JIT_SYNC);
+        nextAvailableJITTimestamp = dateProvider.getCurrentDate().getTime() + MIN_DELAY_BETWEEN_JIT_SYNC;
     }
 
     /**
      * Sets the next available timestamp for Just-In-Time (JIT) synchronization
-     * using a custom delay.
+     * using a custom delay, after an error. Prefetches wait for it too.
      * The default minimum delay is defined by the constant
      * {@link #DEFAULT_RETRY_AFTER}.</p>
      */
     public void setNextAvailableJITTimestampWithCustomDelay(int delay) {
         long retryAfter = delay <= 0 ? DEFAULT_RETRY_AFTER : delay;
         nextAvailableJITTimestamp = dateProvider.getCurrentDate().getTime() + retryAfter;
+        nextJITPrefetchTimestamp = nextAvailableJITTimestamp;
     }
 }
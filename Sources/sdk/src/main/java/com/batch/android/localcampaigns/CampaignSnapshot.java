@@ -0,0 +1,99 @@
+package com.batch.android.localcampaigns;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.batch.android.localcampaigns.model.LocalCampaign;
+import com.batch.android.query.response.LocalCampaignsResponse;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Immutable state of the loaded campaigns.
+ * <p>
+ * {@link CampaignManager} publishes a new snapshot each time the campaigns change, so that readers
+ * (elections, tracked events, queries and debug screens) only read a volatile reference and always see
+ * a consistent campaign list, trigger index, cappings and versions.
+ */
+final class CampaignSnapshot {
+
+    static final CampaignSnapshot EMPTY = new CampaignSnapshot(Collections.emptyList(), null, null, null, false);
+
+    /**
+     * Loaded campaigns, in server order
+     */
+    @NonNull
+    final List<LocalCampaign> campaigns;
+
+    /**
+     * Index of {@link #campaigns} by trigger
+     */
+    @NonNull
+    final CampaignTriggerIndex triggerIndex;
+
+    /**
+     * Global in-app cappings (MEP only)
+     */
+    @Nullable
+    final LocalCampaignsResponse.GlobalCappings cappings;
+
+    /**
+     * Version of the local campaigns (MEP or CEP)
+     */
+    @Nullable
+    final LocalCampaignsResponse.Version version;
+
+    /**
+     * Sync version of the campaign set, sent to the server so it can answer with a delta.
+     * Null if the set can't be used as a delta base.
+     */
+    @Nullable
+    final String syncVersion;
+
+    /**
+     * Tells if the campaigns have been loaded (an empty campaign list could mean that
+     * they were not loaded or that the result is empty)
+     */
+    final boolean loaded;
+
+    CampaignSnapshot(
+        @NonNull List<LocalCampaign> campaigns,
+        @Nullable LocalCampaignsResponse.GlobalCappings cappings,
+        @Nullable LocalCampaignsResponse.Version version,
+        @Nullable String syncVersion,
+        boolean loaded
+    ) {
+        this.campaigns = Collections.unmodifiableList(new ArrayList<>(campaigns));
+        this.triggerIndex = campaigns.isEmpty() ? CampaignTriggerIndex.EMPTY : new CampaignTriggerIndex(campaigns);
+        this.cappings = cappings;
+        this.version = version;
+        this.syncVersion = syncVersion;
+        this.loaded = loaded;
+    }
+
+    /**
+     * Get the uppercased names of the events that can potentially trigger the display of a campaign
+     */
+    @NonNull
+    Set<String> getWatchedEventNames() {
+        return triggerIndex.getEventNames();
+    }
+
+    /**
+     * Copy this snapshot with another sync version, keeping the campaigns and their index
+     */
+    @NonNull
+    CampaignSnapshot withSyncVersion(@Nullable String syncVersion) {
+        return new CampaignSnapshot(this, syncVersion);
+    }
+
+    private CampaignSnapshot(@NonNull CampaignSnapshot source, @Nullable String syncVersion) {
+        this.campaigns = source.campaigns;
+        this.triggerIndex = source.triggerIndex;
+        this.cappings = source.cappings;
+        this.version = source.version;
+        this.syncVersion = syncVersion;
+        this.loaded = source.loaded;
+    }
+}
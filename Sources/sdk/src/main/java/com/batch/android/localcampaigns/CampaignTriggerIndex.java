@@ -0,0 +1,117 @@
+package com.batch.android.localcampaigns;
+
+import androidx.annotation.NonNull;
+import com.batch.android.localcampaigns.model.LocalCampaign;
+import com.batch.android.localcampaigns.signal.EventTrackedSignal;
+import com.batch.android.localcampaigns.signal.NewSessionSignal;
+import com.batch.android.localcampaigns.signal.Signal;
+import com.batch.android.localcampaigns.trigger.EventLocalCampaignTrigger;
+import com.batch.android.localcampaigns.trigger.NextSessionTrigger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable index of the campaigns that may be triggered by a signal.
+ * <p>
+ * Campaigns are bucketed by the type of their triggers, and by uppercased event name for event triggers.
+ * Each bucket is sorted by descending priority, keeping the campaign list order for equal priorities, so
+ * that election can stop as soon as it found a campaign to display.
+ * <p>
+ * Candidates still have to be checked against the signal, as an indexed trigger may also
+ * filter on the event label or attributes.
+ */
+final class CampaignTriggerIndex {
+
+    static final CampaignTriggerIndex EMPTY = new CampaignTriggerIndex(Collections.emptyList());
+
+    /**
+     * All campaigns sorted by priority, for signals that can't be looked up in a bucket
+     */
+    @NonNull
+    private final List<LocalCampaign> sortedCampaigns;
+
+    /**
+     * Campaigns with an event trigger, by uppercased event name
+     */
+    @NonNull
+    private final Map<String, List<LocalCampaign>> eventCampaigns;
+
+    /**
+     * Campaigns with a next session trigger
+     */
+    @NonNull
+    private final List<LocalCampaign> nextSessionCampaigns;
+
+    CampaignTriggerIndex(@NonNull List<LocalCampaign> campaigns) {
+        List<LocalCampaign> sorted = new ArrayList<>(campaigns);
+        // Stable sort: campaigns with the same priority keep their order
+        Collections.sort(sorted, (o1, o2) -> Integer.compare(o2.priority, o1.priority));
+
+        Map<String, List<LocalCampaign>> eventBuckets = new HashMap<>();
+        List<LocalCampaign> nextSessionBucket = new ArrayList<>();
+        for (LocalCampaign campaign : sorted) {
+            boolean addedToNextSession = false;
+            for (LocalCampaign.Trigger trigger : campaign.triggers) {
+                if (trigger instanceof EventLocalCampaignTrigger) {
+                    String eventName = ((EventLocalCampaignTrigger) trigger).name;
+                    List<LocalCampaign> bucket = eventBuckets.get(eventName);
+                    if (bucket == null) {
+                        bucket = new ArrayList<>(1);
+                        eventBuckets.put(eventName, bucket);
+                    }
+                    // Campaigns may have multiple triggers on the same event with different labels
+                    if (bucket.isEmpty() || bucket.get(bucket.size() - 1) != campaign) {
+                        bucket.add(campaign);
+                    }
+                } else if (trigger instanceof NextSessionTrigger && !addedToNextSession) {
+                    nextSessionBucket.add(campaign);
+                    addedToNextSession = true;
+                }
+            }
+        }
+
+        this.sortedCampaigns = Collections.unmodifiableList(sorted);
+        this.eventCampaigns = eventBuckets;
+        this.nextSessionCampaigns = Collections.unmodifiableList(nextSessionBucket);
+    }
+
+    /**
+     * Get the uppercased names of the events that may trigger a campaign
+     */
+    @NonNull
+    Set<String> getEventNames() {
+        return Collections.unmodifiableSet(eventCampaigns.keySet());
+    }
+
+    /**
+     * Get the campaigns of each indexed trigger, every list being sorted by descending priority
+     */
+    @NonNull
+    List<List<LocalCampaign>> getTriggerBuckets() {
+        List<List<LocalCampaign>> buckets = new ArrayList<>(eventCampaigns.size() + 1);
+        for (List<LocalCampaign> bucket : eventCampaigns.values()) {
+            buckets.add(Collections.unmodifiableList(bucket));
+        }
+        buckets.add(nextSessionCampaigns);
+        return buckets;
+    }
+
+    /**
+     * Get the campaigns that may be triggered by the given signal, sorted by descending priority
+     */
+    @NonNull
+    List<LocalCampaign> getCandidates(@NonNull Signal signal) {
+        if (signal instanceof EventTrackedSignal) {
+            List<LocalCampaign> bucket = eventCampaigns.get(((EventTrackedSignal) signal).name.toUpperCase(Locale.US));
+            return bucket != null ? Collections.unmodifiableList(bucket) : Collections.emptyList();
+        } else if (signal instanceof NewSessionSignal) {
+            return nextSessionCampaigns;
+        }
+        return sortedCampaigns;
+    }
+}
@@ -4,27 +4,82 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
-import com.batch.android.Batch;
 import com.batch.android.core.DateProvider;
 import com.batch.android.core.Logger;
+import com.batch.android.core.NamedThreadFactory;
 import com.batch.android.core.SystemDateProvider;
 import com.batch.android.localcampaigns.LocalCampaignTrackDbHelper.LocalCampaignEntry;
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * SQLite backed view tracker.
+ * <p>
+ * View counts and recent view event counters are loaded in memory on first use, and served from there:
+ * capping checks don't hit the database. Tracked views update the memory cache first and are written in the background,
+ * batched in a single transaction.
+ */
 public class LocalCampaignsSQLTracker implements ViewTracker {
 
     private static final String TAG = "LocalCampaignsSQLTracker";
+
+    /**
+     * Executor persisting the tracked views
+     */
+    private static final Executor persistenceExecutor = Executors.newSingleThreadExecutor(
+        new NamedThreadFactory("local_campaigns.tracker")
+    );
+
     private LocalCampaignTrackDbHelper dbHelper;
     private SQLiteDatabase database;
     private DateProvider dateProvider;
     private boolean open = false;
 
+    /**
+     * Lock guarding the database access. When both are needed, it is always taken before {@link #cacheLock}.
+     */
+    private final Object databaseLock = new Object();
+
+    /**
+     * Lock guarding the in-memory cache and the pending views
+     */
+    private final Object cacheLock = new Object();
+
+    /**
+     * In-memory copy of the view counts table: campaign ID -> custom user ID ("" if none) -> views.
+     * Null until loaded.
+     */
+    @Nullable
+    private Map<String, Map<String, CachedViews>> viewsCache;
+
+    /**
+     * In-memory window of the view events tracked during the last {@link #viewEventsRetention} milliseconds,
+     * for time-based cappings. Null until loaded.
+     */
+    @Nullable
+    private ViewEventsWindow viewEventsWindow;
+
+    /**
+     * How long view events are kept in {@link #viewEventsWindow}, in milliseconds
+     */
+    private long viewEventsRetention = 0;
+
+    /**
+     * Tracked views not written to the database yet, in tracking order
+     */
+    private final List<CountedViewEvent> pendingViews = new ArrayList<>();
+
+    private final AtomicBoolean persistScheduled = new AtomicBoolean(false);
+
     public LocalCampaignsSQLTracker() {
         this.dateProvider = new SystemDateProvider();
     }
@@ -40,11 +95,19 @@ public class LocalCampaignsSQLTracker implements ViewTracker {
     }
 
     public void close() {
-        if (database != null) {
-            database.close();
-            database = null;
+        synchronized (databaseLock) {
+            // Don't lose views tracked since the last background write
+            persistPendingViews();
+            if (database != null) {
+                database.close();
+                database = null;
+            }
+            synchronized (cacheLock) {
+                viewsCache = null;
+                viewEventsWindow = null;
+            }
+            open = false;
         }
-        open = false;
     }
 
     public boolean isOpen() {
@@ -61,6 +124,8 @@ public class LocalCampaignsSQLTracker implements ViewTracker {
 
     /**
      * This function increment campaign's count, or insert it in the table if it doesn't exist
+     * <p>
+     * The cache is updated right away, while the database write is done in the background.
      *
      * @param campaignID Campaign ID
      * @return The updated {@link CountedViewEvent}
@@ -68,47 +133,39 @@ public class LocalCampaignsSQLTracker implements ViewTracker {
     @Override
     public CountedViewEvent trackViewEvent(@NonNull String campaignID, @Nullable String customUserId)
         throws ViewTrackerUnavailableException {
-        ensureWritableDatabase();
-
-        CountedViewEvent ev = getViewEventByCampaignIdAndCustomId(campaignID, customUserId);
-        ev.count++;
-        ev.lastOccurrence = dateProvider.getCurrentDate().getTime();
-        database.execSQL(
-            "INSERT OR REPLACE INTO " +
-            LocalCampaignEntry.TABLE_NAME +
-            " (" +
-            LocalCampaignEntry.COLUMN_NAME_CAMPAIGN_ID +
-            ", " +
-            LocalCampaignEntry.COLUMN_NAME_CAMPAIGN_KIND +
-            ", " +
-            LocalCampaignEntry.COLUMN_NAME_CAMPAIGN_COUNT +
-            ", " +
-            LocalCampaignEntry.COLUMN_NAME_CAMPAIGN_LAST_OCCURRENCE +
-            ", " +
-            LocalCampaignEntry.COLUMN_NAME_CUSTOM_USER_ID +
-            ") VALUES (?, " +
-            KIND_VIEW +
-            ", ?, ?, ?)",
-            new String[] {
-                campaignID,
-                Integer.toString(ev.count),
-                Long.toString(ev.lastOccurrence),
-                customUserId == null ? "" : customUserId,
+        Map<String, Map<String, CachedViews>> cache = ensureCacheLoaded();
+
+        CountedViewEvent ev = new CountedViewEvent(campaignID, customUserId);
+        synchronized (cacheLock) {
+            Map<String, CachedViews> viewsByUser = cache.get(campaignID);
+            if (viewsByUser == null) {
+                viewsByUser = new HashMap<>(2);
+                cache.put(campaignID, viewsByUser);
+            }
+            String userKey = customUserId == null ? "" : customUserId;
+            CachedViews views = viewsByUser.get(userKey);
+            if (views == null) {
+                views = new CachedViews();
+                viewsByUser.put(userKey, views);
             }
-        );
-
-        database.execSQL(
-            "INSERT INTO " +
-            LocalCampaignEntry.TABLE_VIEW_EVENTS_NAME +
-            " (" +
-            LocalCampaignEntry.COLUMN_NAME_VE_CAMPAIGN_ID +
-            ", " +
-            LocalCampaignEntry.COLUMN_NAME_VE_TIMESTAMP +
-            ", " +
-            LocalCampaignEntry.COLUMN_NAME_VE_CUSTOM_USER_ID +
-            ") VALUES (?, ?, ?)",
-            new String[] { campaignID, Long.toString(ev.lastOccurrence), customUserId == null ? "" : customUserId }
-        );
+            views.count++;
+            views.lastOccurrence = dateProvider.getCurrentDate().getTime();
+
+            ev.count = views.count;
+            ev.lastOccurrence = views.lastOccurrence;
+
+            if (viewEventsWindow != null) {
+                viewEventsWindow.add(views.lastOccurrence);
+                viewEventsWindow.prune(views.lastOccurrence - viewEventsRetention);
+            }
+
+            CountedViewEvent pendingView = new CountedViewEvent(campaignID, customUserId);
+            pendingView.count = ev.count;
+            pendingView.lastOccurrence = ev.lastOccurrence;
+            pendingViews.add(pendingView);
+        }
+
+        schedulePersist();
         return ev;
     }
 
@@ -116,28 +173,18 @@ public class LocalCampaignsSQLTracker implements ViewTracker {
     @Override
     public CountedViewEvent getViewEventByCampaignId(@NonNull String campaignID)
         throws ViewTrackerUnavailableException {
-        ensureWritableDatabase();
+        Map<String, Map<String, CachedViews>> cache = ensureCacheLoaded();
 
         CountedViewEvent ev = new CountedViewEvent(campaignID);
-
-        Cursor countCursor = database.rawQuery(
-            "SELECT " +
-            LocalCampaignEntry.COLUMN_NAME_CAMPAIGN_COUNT +
-            ", " +
-            LocalCampaignEntry.COLUMN_NAME_CAMPAIGN_LAST_OCCURRENCE +
-            " FROM " +
-            LocalCampaignEntry.TABLE_NAME +
-            " WHERE " +
-            LocalCampaignEntry.COLUMN_NAME_CAMPAIGN_ID +
-            " = ?",
-            new String[] { campaignID }
-        );
-
-        while (countCursor.moveToNext()) {
-            ev.count += countCursor.getInt(0);
-            ev.lastOccurrence = Math.max(countCursor.getLong(1), ev.lastOccurrence);
+        synchronized (cacheLock) {
+            Map<String, CachedViews> viewsByUser = cache.get(campaignID);
+            if (viewsByUser != null) {
+                for (CachedViews views : viewsByUser.values()) {
+                    ev.count += views.count;
+                    ev.lastOccurrence = Math.max(views.lastOccurrence, ev.lastOccurrence);
+                }
+            }
         }
-        countCursor.close();
         return ev;
     }
 
@@ -147,30 +194,16 @@ public class LocalCampaignsSQLTracker implements ViewTracker {
         @NonNull String campaignID,
         @Nullable String customUserId
     ) throws ViewTrackerUnavailableException {
-        ensureWritableDatabase();
+        Map<String, Map<String, CachedViews>> cache = ensureCacheLoaded();
 
         CountedViewEvent ev = new CountedViewEvent(campaignID, customUserId);
-
-        Cursor countCursor = database.rawQuery(
-            "SELECT " +
-            LocalCampaignEntry.COLUMN_NAME_CAMPAIGN_COUNT +
-            ", " +
-            LocalCampaignEntry.COLUMN_NAME_CAMPAIGN_LAST_OCCURRENCE +
-            " FROM " +
-            LocalCampaignEntry.TABLE_NAME +
-            " WHERE " +
-            LocalCampaignEntry.COLUMN_NAME_CAMPAIGN_ID +
-            " = ? AND " +
-            LocalCampaignEntry.COLUMN_NAME_CUSTOM_USER_ID +
-            " = ?",
-            new String[] { campaignID, customUserId == null ? "" : customUserId }
-        );
-
-        if (countCursor.moveToFirst()) {
-            ev.count = countCursor.getInt(0);
-            ev.lastOccurrence = countCursor.getLong(1);
+        synchronized (cacheLock) {
+            CachedViews views = getCachedViews(cache, campaignID, customUserId);
+            if (views != null) {
+                ev.count = views.count;
+                ev.lastOccurrence = views.lastOccurrence;
+            }
         }
-        countCursor.close();
         return ev;
     }
 
@@ -178,48 +211,21 @@ public class LocalCampaignsSQLTracker implements ViewTracker {
     @NonNull
     public Map<String, Integer> getViewCountsByCampaignIds(@NonNull List<String> campaignsIds)
         throws ViewTrackerUnavailableException {
-        ensureWritableDatabase();
+        Map<String, Map<String, CachedViews>> cache = ensureCacheLoaded();
 
         Map<String, Integer> views = new HashMap<>(campaignsIds.size());
-
-        if (!campaignsIds.isEmpty()) {
+        synchronized (cacheLock) {
             for (String campaignId : campaignsIds) {
-                views.put(campaignId, 0);
-            }
-
-            final StringBuilder idsSelectArgsBuilder = new StringBuilder();
-            idsSelectArgsBuilder.append('?');
-            for (int i = 1; i < campaignsIds.size(); i++) {
-                idsSelectArgsBuilder.append(",?");
-            }
-
-            Cursor countCursor = database.rawQuery(
-                "SELECT " +
-                LocalCampaignEntry.COLUMN_NAME_CAMPAIGN_ID +
-                ", " +
-                "SUM(" +
-                LocalCampaignEntry.COLUMN_NAME_CAMPAIGN_COUNT +
-                ") " +
-                " FROM " +
-                LocalCampaignEntry.TABLE_NAME +
-                " WHERE " +
-                LocalCampaignEntry.COLUMN_NAME_CAMPAIGN_ID +
-                " IN (" +
-                idsSelectArgsBuilder +
-                ")" +
-                "GROUP BY " +
-                LocalCampaignEntry.COLUMN_NAME_CAMPAIGN_ID,
-                campaignsIds.toArray(new String[campaignsIds.size()])
-            );
-
-            while (countCursor.moveToNext()) {
-                String id = countCursor.getString(0);
-                int count = countCursor.getInt(1);
-                views.put(id, count);
+                int count = 0;
+                Map<String, CachedViews> viewsByUser = cache.get(campaignId);
+                if (viewsByUser != null) {
+                    for (CachedViews userViews : viewsByUser.values()) {
+                        count += userViews.count;
+                    }
+                }
+                views.put(campaignId, count);
             }
-            countCursor.close();
         }
-
         return views;
     }
 
@@ -229,106 +235,295 @@ public class LocalCampaignsSQLTracker implements ViewTracker {
         @NonNull List<String> campaignsIds,
         @Nullable String customUserId
     ) throws ViewTrackerUnavailableException {
-        Map<String, Integer> views = new HashMap<>(campaignsIds.size());
+        Map<String, Map<String, CachedViews>> cache = ensureCacheLoaded();
 
-        if (!campaignsIds.isEmpty()) {
+        Map<String, Integer> views = new HashMap<>(campaignsIds.size());
+        synchronized (cacheLock) {
             for (String campaignId : campaignsIds) {
-                views.put(campaignId, 0);
-            }
-
-            final StringBuilder idsSelectArgsBuilder = new StringBuilder();
-            idsSelectArgsBuilder.append('?');
-            for (int i = 1; i < campaignsIds.size(); i++) {
-                idsSelectArgsBuilder.append(",?");
-            }
-
-            String userId = customUserId == null ? "" : customUserId;
-            String[] args = new String[campaignsIds.size() + 1];
-            for (int i = 0; i < campaignsIds.size(); i++) {
-                args[i] = campaignsIds.get(i);
-            }
-            args[campaignsIds.size()] = userId;
-
-            Cursor countCursor = database.rawQuery(
-                "SELECT " +
-                LocalCampaignEntry.COLUMN_NAME_CAMPAIGN_ID +
-                ", " +
-                "SUM(" +
-                LocalCampaignEntry.COLUMN_NAME_CAMPAIGN_COUNT +
-                ") " +
-                " FROM " +
-                LocalCampaignEntry.TABLE_NAME +
-                " WHERE " +
-                LocalCampaignEntry.COLUMN_NAME_CAMPAIGN_ID +
-                " IN (" +
-                idsSelectArgsBuilder +
-                ")" +
-                " AND " +
-                LocalCampaignEntry.COLUMN_NAME_CUSTOM_USER_ID +
-                " = ?" +
-                " GROUP BY " +
-                LocalCampaignEntry.COLUMN_NAME_CAMPAIGN_ID,
-                args
-            );
-
-            while (countCursor.moveToNext()) {
-                String id = countCursor.getString(0);
-                int count = countCursor.getInt(1);
-                views.put(id, count);
+                CachedViews userViews = getCachedViews(cache, campaignId, customUserId);
+                views.put(campaignId, userViews != null ? userViews.count : 0);
             }
-            countCursor.close();
         }
         return views;
     }
 
     @Override
     public long getCampaignLastOccurrence(@NonNull String campaignID) throws ViewTrackerUnavailableException {
-        ensureWritableDatabase();
-
-        Cursor countCursor = database.rawQuery(
-            "SELECT " +
-            LocalCampaignEntry.COLUMN_NAME_CAMPAIGN_LAST_OCCURRENCE +
-            " FROM " +
-            LocalCampaignEntry.TABLE_NAME +
-            " WHERE " +
-            LocalCampaignEntry.COLUMN_NAME_CAMPAIGN_ID +
-            " = ?",
-            new String[] { campaignID }
-        );
-        long lastOccurence = 0;
+        Map<String, Map<String, CachedViews>> cache = ensureCacheLoaded();
 
-        while (countCursor.moveToNext()) {
-            lastOccurence = Math.max(lastOccurence, countCursor.getLong(0));
+        long lastOccurence = 0;
+        synchronized (cacheLock) {
+            Map<String, CachedViews> viewsByUser = cache.get(campaignID);
+            if (viewsByUser != null) {
+                for (CachedViews views : viewsByUser.values()) {
+                    lastOccurence = Math.max(lastOccurence, views.lastOccurrence);
+                }
+            }
         }
-        countCursor.close();
-
         return lastOccurence;
     }
 
+    /**
+     * Set how long view events are kept in memory. Should be the duration of the longest time-based capping.
+     *
+     * @param retention Retention, in milliseconds
+     */
+    public void setViewEventsRetention(long retention) {
+        synchronized (cacheLock) {
+            if (retention > viewEventsRetention) {
+                // Older events have been dropped: load them again when needed
+                viewEventsWindow = null;
+            }
+            viewEventsRetention = Math.max(0, retention);
+        }
+    }
+
     @Override
     public int getNumberOfViewEventsSince(long timestamp) throws ViewTrackerUnavailableException {
-        ensureWritableDatabase();
-        int total = 0;
-        Cursor countCursor = database.rawQuery(
-            "SELECT COUNT(*) " +
-            " FROM " +
-            LocalCampaignEntry.TABLE_VIEW_EVENTS_NAME +
-            " WHERE " +
-            LocalCampaignEntry.COLUMN_NAME_VE_TIMESTAMP +
-            " > ?",
-            new String[] { Long.toString(timestamp) }
-        );
-        if (countCursor.moveToFirst()) {
-            total = countCursor.getInt(0);
+        long now = dateProvider.getCurrentDate().getTime();
+        synchronized (cacheLock) {
+            if (now - timestamp > viewEventsRetention) {
+                // Only happens if the cappings didn't set the retention
+                setViewEventsRetention(now - timestamp);
+            }
+        }
+
+        ViewEventsWindow window = ensureViewEventsWindowLoaded();
+        synchronized (cacheLock) {
+            window.prune(now - viewEventsRetention);
+            return window.countSince(timestamp);
         }
-        countCursor.close();
-        return total;
     }
 
     public void deleteViewEvents() throws ViewTrackerUnavailableException {
-        ensureWritableDatabase();
-        database.execSQL("DELETE FROM " + LocalCampaignEntry.TABLE_VIEW_EVENTS_NAME);
-        database.execSQL("DELETE FROM " + LocalCampaignEntry.TABLE_NAME);
+        synchronized (databaseLock) {
+            ensureWritableDatabase();
+            synchronized (cacheLock) {
+                pendingViews.clear();
+                if (viewsCache != null) {
+                    viewsCache.clear();
+                }
+                if (viewEventsWindow != null) {
+                    viewEventsWindow.clear();
+                }
+            }
+            database.execSQL("DELETE FROM " + LocalCampaignEntry.TABLE_VIEW_EVENTS_NAME);
+            database.execSQL("DELETE FROM " + LocalCampaignEntry.TABLE_NAME);
+        }
+    }
+
+    @Nullable
+    private static CachedViews getCachedViews(
+        @NonNull Map<String, Map<String, CachedViews>> cache,
+        @NonNull String campaignID,
+        @Nullable String customUserId
+    ) {
+        Map<String, CachedViews> viewsByUser = cache.get(campaignID);
+        if (viewsByUser == null) {
+            return null;
+        }
+        return viewsByUser.get(customUserId == null ? "" : customUserId);
+    }
+
+    /**
+     * Get the views cache, loading it from the database if needed
+     */
+    @NonNull
+    private Map<String, Map<String, CachedViews>> ensureCacheLoaded() throws ViewTrackerUnavailableException {
+        synchronized (cacheLock) {
+            if (viewsCache != null) {
+                return viewsCache;
+            }
+        }
+
+        synchronized (databaseLock) {
+            ensureWritableDatabase();
+            synchronized (cacheLock) {
+                if (viewsCache != null) {
+                    return viewsCache;
+                }
+
+                Map<String, Map<String, CachedViews>> cache = new HashMap<>();
+                Cursor cursor = database.rawQuery(
+                    "SELECT " +
+                    LocalCampaignEntry.COLUMN_NAME_CAMPAIGN_ID +
+                    ", " +
+                    LocalCampaignEntry.COLUMN_NAME_CUSTOM_USER_ID +
+                    ", " +
+                    LocalCampaignEntry.COLUMN_NAME_CAMPAIGN_COUNT +
+                    ", " +
+                    LocalCampaignEntry.COLUMN_NAME_CAMPAIGN_LAST_OCCURRENCE +
+                    " FROM " +
+                    LocalCampaignEntry.TABLE_NAME,
+                    null
+                );
+                try {
+                    while (cursor.moveToNext()) {
+                        String campaignID = cursor.getString(0);
+                        Map<String, CachedViews> viewsByUser = cache.get(campaignID);
+                        if (viewsByUser == null) {
+                            viewsByUser = new HashMap<>(2);
+                            cache.put(campaignID, viewsByUser);
+                        }
+                        // Rows tracked before custom user IDs were supported have a null one: keep them apart
+                        // so that they only count for the campaign's total views, like in SQL
+                        String customUserId = cursor.isNull(1) ? null : cursor.getString(1);
+                        CachedViews views = viewsByUser.get(customUserId);
+                        if (views == null) {
+                            views = new CachedViews();
+                            viewsByUser.put(customUserId, views);
+                        }
+                        views.count += cursor.getInt(2);
+                        views.lastOccurrence = Math.max(views.lastOccurrence, cursor.getLong(3));
+                    }
+                } finally {
+                    cursor.close();
+                }
+
+                viewsCache = cache;
+                return cache;
+            }
+        }
+    }
+
+    /**
+     * Get the view events window, loading the events of the retention period from the database if needed
+     */
+    @NonNull
+    private ViewEventsWindow ensureViewEventsWindowLoaded() throws ViewTrackerUnavailableException {
+        synchronized (cacheLock) {
+            if (viewEventsWindow != null) {
+                return viewEventsWindow;
+            }
+        }
+
+        synchronized (databaseLock) {
+            ensureWritableDatabase();
+            synchronized (cacheLock) {
+                if (viewEventsWindow != null) {
+                    return viewEventsWindow;
+                }
+
+                long windowStart = ViewEventsWindow.getBucketStart(
+                    dateProvider.getCurrentDate().getTime() - viewEventsRetention
+                );
+                ViewEventsWindow window = new ViewEventsWindow();
+                Cursor cursor = database.rawQuery(
+                    "SELECT " +
+                    LocalCampaignEntry.COLUMN_NAME_VE_TIMESTAMP +
+                    " FROM " +
+                    LocalCampaignEntry.TABLE_VIEW_EVENTS_NAME +
+                    " WHERE " +
+                    LocalCampaignEntry.COLUMN_NAME_VE_TIMESTAMP +
+                    " >= ? ORDER BY " +
+                    LocalCampaignEntry.COLUMN_NAME_VE_TIMESTAMP,
+                    new String[] { Long.toString(windowStart) }
+                );
+                try {
+                    while (cursor.moveToNext()) {
+                        window.add(cursor.getLong(0));
+                    }
+                } finally {
+                    cursor.close();
+                }
+
+                // Holding the database lock: views are either pending or written, never in between
+                for (CountedViewEvent view : pendingViews) {
+                    if (view.lastOccurrence >= windowStart) {
+                        window.add(view.lastOccurrence);
+                    }
+                }
+
+                viewEventsWindow = window;
+                return window;
+            }
+        }
+    }
+
+    private void schedulePersist() {
+        if (persistScheduled.compareAndSet(false, true)) {
+            persistenceExecutor.execute(() -> {
+                persistScheduled.set(false);
+                synchronized (databaseLock) {
+                    persistPendingViews();
+                }
+            });
+        }
+    }
+
+    /**
+     * Write the pending views to the database in a single transaction.
+     * Must be called with {@link #databaseLock} held.
+     */
+    private void persistPendingViews() {
+        List<CountedViewEvent> views;
+        synchronized (cacheLock) {
+            if (pendingViews.isEmpty()) {
+                return;
+            }
+            views = new ArrayList<>(pendingViews);
+            pendingViews.clear();
+        }
+
+        try {
+            ensureWritableDatabase();
+            database.beginTransaction();
+            try {
+                SQLiteStatement countStatement = database.compileStatement(
+                    "INSERT OR REPLACE INTO " +
+                    LocalCampaignEntry.TABLE_NAME +
+                    " (" +
+                    LocalCampaignEntry.COLUMN_NAME_CAMPAIGN_ID +
+                    ", " +
+                    LocalCampaignEntry.COLUMN_NAME_CAMPAIGN_KIND +
+                    ", " +
+                    LocalCampaignEntry.COLUMN_NAME_CAMPAIGN_COUNT +
+                    ", " +
+                    LocalCampaignEntry.COLUMN_NAME_CAMPAIGN_LAST_OCCURRENCE +
+                    ", " +
+                    LocalCampaignEntry.COLUMN_NAME_CUSTOM_USER_ID +
+                    ") VALUES (?, " +
+                    KIND_VIEW +
+                    ", ?, ?, ?)"
+                );
+                SQLiteStatement eventStatement = database.compileStatement(
+                    "INSERT INTO " +
+                    LocalCampaignEntry.TABLE_VIEW_EVENTS_NAME +
+                    " (" +
+                    LocalCampaignEntry.COLUMN_NAME_VE_CAMPAIGN_ID +
+                    ", " +
+                    LocalCampaignEntry.COLUMN_NAME_VE_TIMESTAMP +
+                    ", " +
+                    LocalCampaignEntry.COLUMN_NAME_VE_CUSTOM_USER_ID +
+                    ") VALUES (?, ?, ?)"
+                );
+
+                for (CountedViewEvent view : views) {
+                    String customUserId = view.customUserId == null ? "" : view.customUserId;
+
+                    countStatement.bindString(1, view.campaignID);
+                    countStatement.bindLong(2, view.count);
+                    countStatement.bindLong(3, view.lastOccurrence);
+                    countStatement.bindString(4, customUserId);
+                    countStatement.executeInsert();
+
+                    eventStatement.bindString(1, view.campaignID);
+                    eventStatement.bindLong(2, view.lastOccurrence);
+                    eventStatement.bindString(3, customUserId);
+                    eventStatement.executeInsert();
+                }
+                countStatement.close();
+                eventStatement.close();
+                database.setTransactionSuccessful();
+            } finally {
+                database.endTransaction();
+            }
+        } catch (ViewTrackerUnavailableException | SQLException e) {
+            Logger.internal(TAG, "Could not persist tracked views, will retry later", e);
+            synchronized (cacheLock) {
+                pendingViews.addAll(0, views);
+            }
+        }
     }
 
     private void ensureWritableDatabase() throws ViewTrackerUnavailableException {
@@ -344,4 +539,14 @@ public class LocalCampaignsSQLTracker implements ViewTracker {
             }
         }
     }
+
+    /**
+     * Views of a campaign for a custom user ID
+     */
+    private static final class CachedViews {
+
+        int count = 0;
+
+        long lastOccurrence = -1;
+    }
 }
@@ -0,0 +1,159 @@
+package com.batch.android.localcampaigns;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sliding window of view events, used to count the views tracked in the last N seconds
+ * for time-based global cappings.
+ * <p>
+ * Events are grouped in one minute buckets sorted by start date, and counting only walks the buckets
+ * that are newer than the requested timestamp. Each bucket keeps the sorted timestamps of its events,
+ * so that the bucket overlapping the requested timestamp is counted exactly.
+ * <p>
+ * Buckets older than the retention are dropped by {@link #prune(long)}, so that the window only grows
+ * with the longest time-based capping rather than with the view history.
+ * <p>
+ * Not thread safe.
+ */
+final class ViewEventsWindow {
+
+    static final long BUCKET_DURATION_MS = 60 * 1000;
+
+    private final List<Bucket> buckets = new ArrayList<>();
+
+    private int totalCount = 0;
+
+    /**
+     * Add a view event
+     *
+     * @param timestamp View event timestamp, in milliseconds
+     */
+    void add(long timestamp) {
+        long bucketStart = getBucketStart(timestamp);
+
+        // Events are almost always tracked in order: look for the bucket from the end
+        int index = buckets.size() - 1;
+        while (index >= 0 && buckets.get(index).start > bucketStart) {
+            index--;
+        }
+
+        Bucket bucket;
+        if (index >= 0 && buckets.get(index).start == bucketStart) {
+            bucket = buckets.get(index);
+        } else {
+            bucket = new Bucket(bucketStart);
+            buckets.add(index + 1, bucket);
+        }
+        bucket.add(timestamp);
+        totalCount++;
+    }
+
+    /**
+     * Count the view events that happened after the given timestamp
+     *
+     * @param timestamp Timestamp, in milliseconds
+     */
+    int countSince(long timestamp) {
+        int count = 0;
+        for (int i = buckets.size() - 1; i >= 0; i--) {
+            Bucket bucket = buckets.get(i);
+            if (bucket.start + BUCKET_DURATION_MS <= timestamp) {
+                break;
+            }
+            if (bucket.start > timestamp) {
+                count += bucket.count;
+            } else {
+                count += bucket.countAfter(timestamp);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Drop the buckets that can't contain events after the given timestamp.
+     * {@link #countSince(long)} results are unchanged for timestamps after this one.
+     *
+     * @param timestamp Timestamp, in milliseconds
+     */
+    void prune(long timestamp) {
+        int index = 0;
+        while (index < buckets.size() && buckets.get(index).start + BUCKET_DURATION_MS <= timestamp) {
+            totalCount -= buckets.get(index).count;
+            index++;
+        }
+        if (index > 0) {
+            buckets.subList(0, index).clear();
+        }
+    }
+
+    int size() {
+        return totalCount;
+    }
+
+    int getBucketCount() {
+        return buckets.size();
+    }
+
+    void clear() {
+        buckets.clear();
+        totalCount = 0;
+    }
+
+    static long getBucketStart(long timestamp) {
+        // Math.floorDiv requires API 24
+        long offset = timestamp % BUCKET_DURATION_MS;
+        if (offset < 0) {
+            offset += BUCKET_DURATION_MS;
+        }
+        return timestamp - offset;
+    }
+
+    private static final class Bucket {
+
+        final long start;
+
+        /**
+         * Sorted event timestamps, only the first {@link #count} ones are set
+         */
+        long[] timestamps = new long[4];
+
+        int count;
+
+        Bucket(long start) {
+            this.start = start;
+        }
+
+        void add(long timestamp) {
+            if (count == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, count * 2);
+            }
+            int index = count;
+            while (index > 0 && timestamps[index - 1] > timestamp) {
+                timestamps[index] = timestamps[index - 1];
+                index--;
+            }
+            timestamps[index] = timestamp;
+            count++;
+        }
+
+        /**
+         * Count the events that happened after the given timestamp
+         */
+        int countAfter(long timestamp) {
+            // First index of an event after the timestamp
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (timestamps[middle] > timestamp) {
+                    high = middle;
+                } else {
+                    low = middle + 1;
+                }
+            }
+            return count - low;
+        }
+    }
+}
@@ -180,18 +180,75 @@ public class LocalCampaign {
         output.displayMessage(this);
     }
 
+    /**
+     * Undecoded campaign output payload
+     */
+    public interface PayloadSource {
+        /**
+         * Decode the payload. Only called once.
+         */
+        @NonNull
+        JSONObject decode() throws JSONException;
+    }
+
     /**
      * Define how this campaign will be displayed on the screen when triggered successfully
      */
     public abstract static class Output {
 
-        @NonNull
-        public JSONObject payload;
+        /**
+         * Decoded payload, null until {@link #payloadSource} has been decoded
+         */
+        @Nullable
+        private JSONObject payload;
+
+        /**
+         * Source of the undecoded payload, kept until it is first needed: only the displayed campaign's
+         * payload, and those of the few campaigns whose images are prefetched, are ever read.
+         */
+        @Nullable
+        private PayloadSource payloadSource;
+
+        /**
+         * Error thrown when decoding {@link #payloadSource}, rethrown on each access
+         */
+        @Nullable
+        private JSONException payloadDecodingError;
 
         public Output(@NonNull JSONObject payload) {
             this.payload = payload;
         }
 
+        /**
+         * @param payloadSource Source of the payload object, decoded on first access
+         */
+        public Output(@NonNull PayloadSource payloadSource) {
+            this.payloadSource = payloadSource;
+        }
+
+        /**
+         * Get the output payload, decoding it if needed
+         *
+         * @throws JSONException if the payload could not be decoded: the campaign can't be displayed
+         */
+        @NonNull
+        public synchronized JSONObject getPayload() throws JSONException {
+            if (payloadDecodingError != null) {
+                throw payloadDecodingError;
+            }
+            if (payload == null) {
+                try {
+                    payload = payloadSource != null ? payloadSource.decode() : new JSONObject();
+                } catch (JSONException e) {
+                    payloadDecodingError = e;
+                    throw e;
+                } finally {
+                    payloadSource = null;
+                }
+            }
+            return payload;
+        }
+
         /**
          * Display a local campaign message and track campaign view with the ViewTracker.
          * It's weird to give the campaign in parameter, but we need its custom payload
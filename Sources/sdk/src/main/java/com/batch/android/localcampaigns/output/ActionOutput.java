@@ -6,6 +6,7 @@ import androidx.annotation.NonNull;
 import com.batch.android.core.Logger;
 import com.batch.android.di.providers.ActionModuleProvider;
 import com.batch.android.di.providers.RuntimeManagerProvider;
+import com.batch.android.json.JSONException;
 import com.batch.android.json.JSONObject;
 import com.batch.android.localcampaigns.model.LocalCampaign;
 import com.batch.android.module.LocalCampaignsModule;
@@ -20,11 +21,20 @@ public class ActionOutput extends LocalCampaign.Output {
         super(payload);
     }
 
+    public ActionOutput(@NonNull LocalCampaign.PayloadSource payloadSource) {
+        super(payloadSource);
+    }
+
     @Provide
     public static ActionOutput provide(@NonNull JSONObject payload) {
         return new ActionOutput(payload);
     }
 
+    @Provide
+    public static ActionOutput provide(@NonNull LocalCampaign.PayloadSource payloadSource) {
+        return new ActionOutput(payloadSource);
+    }
+
     @Override
     protected boolean displayMessage(LocalCampaign campaign) {
         final RuntimeManager runtimeManager = RuntimeManagerProvider.get();
@@ -44,6 +54,13 @@ public class ActionOutput extends LocalCampaign.Output {
             );
         }
 
+        JSONObject payload;
+        try {
+            payload = getPayload();
+        } catch (JSONException e) {
+            Logger.internal(LocalCampaignsModule.TAG, "Action Output: Could not decode payload, skipping campaign", e);
+            return false;
+        }
         String actionIdentifier = payload.reallyOptString("action", null);
         if (TextUtils.isEmpty(actionIdentifier)) {
             Logger.error(LocalCampaignsModule.TAG, "Invalid action name, stopping.");
@@ -22,13 +22,31 @@ public class LandingOutput extends LocalCampaign.Output {
         this.messagingModule = messagingModule;
     }
 
+    public LandingOutput(MessagingModule messagingModule, @NonNull LocalCampaign.PayloadSource payloadSource) {
+        super(payloadSource);
+        this.messagingModule = messagingModule;
+    }
+
     @Provide
     public static LandingOutput provide(@NonNull JSONObject payload) {
         return new LandingOutput(MessagingModuleProvider.get(), payload);
     }
 
+    @Provide
+    public static LandingOutput provide(@NonNull LocalCampaign.PayloadSource payloadSource) {
+        return new LandingOutput(MessagingModuleProvider.get(), payloadSource);
+    }
+
     @Override
     public boolean displayMessage(LocalCampaign campaign) {
+        JSONObject payload;
+        try {
+            payload = getPayload();
+        } catch (JSONException e) {
+            Logger.internal(LocalCampaignsModule.TAG, "Landing Output: Could not decode payload, skipping campaign", e);
+            return false;
+        }
+
         try {
             // Copy event data before making the BatchInAppMessage
             JSONObject mergedPayload = new JSONObject(payload);
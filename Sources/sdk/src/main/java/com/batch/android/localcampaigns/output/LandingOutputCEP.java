@@ -23,11 +23,20 @@ public class LandingOutputCEP extends LandingOutput {
         super(messagingModule, payload);
     }
 
+    public LandingOutputCEP(MessagingModule messagingModule, @NonNull LocalCampaign.PayloadSource payloadSource) {
+        super(messagingModule, payloadSource);
+    }
+
     @Provide
     public static LandingOutputCEP provide(@NonNull JSONObject payload) {
         return new LandingOutputCEP(MessagingModuleProvider.get(), payload);
     }
 
+    @Provide
+    public static LandingOutputCEP provide(@NonNull LocalCampaign.PayloadSource payloadSource) {
+        return new LandingOutputCEP(MessagingModuleProvider.get(), payloadSource);
+    }
+
     @Override
     public boolean displayMessage(LocalCampaign campaign) {
         if (campaign.shouldBeDelayed()) {
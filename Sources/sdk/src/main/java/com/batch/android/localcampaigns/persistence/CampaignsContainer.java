@@ -0,0 +1,308 @@
+package com.batch.android.localcampaigns.persistence;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.batch.android.json.JSONException;
+import com.batch.android.json.JSONObject;
+import com.batch.android.json.JSONReader;
+import com.batch.android.json.JSONWriter;
+import com.batch.android.localcampaigns.model.LocalCampaign;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Binary container for saved campaigns.
+ * <p>
+ * Layout, big endian:
+ * <pre>
+ * header:   magic (int), format version (short), index length (int), index CRC32 (int)
+ * index:    root fields json blob, campaign count (int), then for each campaign:
+ *           campaign id blob, campaign json blob (everything but the output payload, including the triggers),
+ *           payload offset (int, -1 if none), payload length (int), payload CRC32 (int)
+ * payloads: concatenated payload json blobs
+ * </pre>
+ * Blobs are length prefixed (int) UTF-8.
+ * <p>
+ * Containers are read through a memory mapping: loading only reads the index, payloads are
+ * read and checked when they are decoded. Records can be copied to another container without
+ * being decoded, which is how saved campaigns are patched.
+ */
+final class CampaignsContainer {
+
+    static final int MAGIC = 0x42434C43; // "BCLC"
+
+    static final short FORMAT_VERSION = 1;
+
+    private static final int HEADER_SIZE = 4 + 2 + 4 + 4;
+
+    private static final int NO_PAYLOAD = -1;
+
+    private static final int COPY_BUFFER_SIZE = 8192;
+
+    private CampaignsContainer() {}
+
+    /**
+     * Campaign record of a container, as encoded in it
+     */
+    static final class Record {
+
+        @NonNull
+        final String campaignId;
+
+        /**
+         * UTF-8 encoded campaign json, without its output payload
+         */
+        @NonNull
+        final byte[] json;
+
+        /**
+         * UTF-8 encoded payload json, from its position to its limit
+         */
+        @Nullable
+        final ByteBuffer payload;
+
+        final int payloadCrc;
+
+        private Record(@NonNull String campaignId, @NonNull byte[] json, @Nullable ByteBuffer payload, int payloadCrc) {
+            this.campaignId = campaignId;
+            this.json = json;
+            this.payload = payload;
+            this.payloadCrc = payloadCrc;
+        }
+
+        /**
+         * Encode a campaign
+         *
+         * @param json    Campaign json, without its output payload
+         * @param payload UTF-8 encoded payload json
+         */
+        @NonNull
+        static Record create(@NonNull String campaignId, @NonNull JSONObject json, @Nullable byte[] payload)
+            throws JSONException {
+            if (payload == null) {
+                return new Record(campaignId, JSONWriter.toUTF8Bytes(json), null, 0);
+            }
+            return new Record(
+                campaignId,
+                JSONWriter.toUTF8Bytes(json),
+                ByteBuffer.wrap(payload),
+                crc(payload, 0, payload.length)
+            );
+        }
+    }
+
+    /**
+     * Index of a container: its root fields and undecoded campaign records
+     */
+    static final class Index {
+
+        @NonNull
+        final JSONObject rootFields;
+
+        @NonNull
+        final List<Record> records;
+
+        private Index(@NonNull JSONObject rootFields, @NonNull List<Record> records) {
+            this.rootFields = rootFields;
+            this.records = records;
+        }
+    }
+
+    /**
+     * Check whether a file starts like a container. Legacy saves are JSON files.
+     */
+    static boolean isContainer(@NonNull File file) throws IOException {
+        byte[] magic = new byte[4];
+        try (FileInputStream in = new FileInputStream(file)) {
+            if (in.read(magic) != magic.length) {
+                return false;
+            }
+        }
+        return ByteBuffer.wrap(magic).getInt() == MAGIC;
+    }
+
+    static void write(@NonNull File file, @NonNull JSONObject rootFields, @NonNull List<Record> records)
+        throws IOException, JSONException {
+        ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+        DataOutputStream index = new DataOutputStream(indexBytes);
+        writeBlob(index, JSONWriter.toUTF8Bytes(rootFields));
+        index.writeInt(records.size());
+        int payloadOffset = 0;
+        for (Record record : records) {
+            writeBlob(index, record.campaignId.getBytes(StandardCharsets.UTF_8));
+            writeBlob(index, record.json);
+            if (record.payload != null) {
+                index.writeInt(payloadOffset);
+                index.writeInt(record.payload.remaining());
+                index.writeInt(record.payloadCrc);
+                payloadOffset += record.payload.remaining();
+            } else {
+                index.writeInt(NO_PAYLOAD);
+                index.writeInt(0);
+                index.writeInt(0);
+            }
+        }
+        index.flush();
+
+        byte[] indexArray = indexBytes.toByteArray();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeShort(FORMAT_VERSION);
+            out.writeInt(indexArray.length);
+            out.writeInt(crc(indexArray, 0, indexArray.length));
+            out.write(indexArray);
+            byte[] copyBuffer = new byte[COPY_BUFFER_SIZE];
+            for (Record record : records) {
+                if (record.payload != null) {
+                    // Payloads copied from another container are written as is, without being checked
+                    ByteBuffer payload = record.payload.duplicate();
+                    while (payload.hasRemaining()) {
+                        int length = Math.min(copyBuffer.length, payload.remaining());
+                        payload.get(copyBuffer, 0, length);
+                        out.write(copyBuffer, 0, length);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Read the index of a container. Campaign records are not decoded.
+     */
+    @NonNull
+    static Index readIndex(@NonNull File file) throws IOException, JSONException {
+        ByteBuffer buffer;
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            // The mapping stays valid once the channel is closed
+            FileChannel channel = randomAccessFile.getChannel();
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a campaigns container");
+        }
+        short version = buffer.getShort();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported campaigns container version " + version);
+        }
+        int indexLength = buffer.getInt();
+        int indexCrc = buffer.getInt();
+        if (indexLength < 0 || indexLength > buffer.remaining()) {
+            throw new IOException("Truncated campaigns container");
+        }
+
+        byte[] indexArray = new byte[indexLength];
+        buffer.get(indexArray);
+        if (crc(indexArray, 0, indexLength) != indexCrc) {
+            throw new IOException("Corrupted campaigns container index");
+        }
+
+        int payloadsStart = HEADER_SIZE + indexLength;
+        int payloadsLength = buffer.limit() - payloadsStart;
+        ByteBuffer index = ByteBuffer.wrap(indexArray);
+        JSONObject rootFields = new JSONReader(ByteBuffer.wrap(readBlob(index))).nextJSONObject();
+        int count = index.getInt();
+        List<Record> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String campaignId = new String(readBlob(index), StandardCharsets.UTF_8);
+            byte[] json = readBlob(index);
+            int payloadOffset = index.getInt();
+            int payloadLength = index.getInt();
+            int payloadCrc = index.getInt();
+            ByteBuffer payload = null;
+            if (payloadOffset != NO_PAYLOAD) {
+                if (payloadOffset < 0 || payloadLength < 0 || payloadOffset > payloadsLength - payloadLength) {
+                    throw new IOException("Truncated campaigns container payloads");
+                }
+                // Own view, as the container buffer position is shared
+                payload = buffer.duplicate();
+                payload.position(payloadsStart + payloadOffset);
+                payload.limit(payloadsStart + payloadOffset + payloadLength);
+                payload = payload.slice();
+            }
+            records.add(new Record(campaignId, json, payload, payloadCrc));
+        }
+        return new Index(rootFields, records);
+    }
+
+    /**
+     * Read a container, decoding the campaigns but not their payloads
+     */
+    @NonNull
+    static SavedCampaigns read(@NonNull File file) throws IOException, JSONException {
+        Index index = readIndex(file);
+        List<SavedCampaigns.Campaign> campaigns = new ArrayList<>(index.records.size());
+        for (Record record : index.records) {
+            JSONObject json = new JSONReader(ByteBuffer.wrap(record.json)).nextJSONObject();
+            MappedPayload payload = null;
+            if (record.payload != null) {
+                payload = new MappedPayload(record.payload, record.payloadCrc);
+            }
+            campaigns.add(new SavedCampaigns.Campaign(json, payload));
+        }
+        return new SavedCampaigns(index.rootFields, campaigns);
+    }
+
+    private static void writeBlob(@NonNull DataOutputStream out, @NonNull byte[] blob) throws IOException {
+        out.writeInt(blob.length);
+        out.write(blob);
+    }
+
+    @NonNull
+    private static byte[] readBlob(@NonNull ByteBuffer index) throws IOException {
+        int length = index.getInt();
+        if (length < 0 || length > index.remaining()) {
+            throw new IOException("Invalid blob length");
+        }
+        byte[] blob = new byte[length];
+        index.get(blob);
+        return blob;
+    }
+
+    private static int crc(@NonNull byte[] bytes, int offset, int length) {
+        // CRC32.update(ByteBuffer) requires API 26
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Payload blob of a mapped container
+     */
+    private static final class MappedPayload implements LocalCampaign.PayloadSource {
+
+        @NonNull
+        private final ByteBuffer buffer;
+
+        private final int crc;
+
+        MappedPayload(@NonNull ByteBuffer buffer, int crc) {
+            this.buffer = buffer;
+            this.crc = crc;
+        }
+
+        @NonNull
+        @Override
+        public JSONObject decode() throws JSONException {
+            ByteBuffer payload = buffer.duplicate();
+            byte[] bytes = new byte[payload.remaining()];
+            payload.get(bytes);
+            if (crc(bytes, 0, bytes.length) != crc) {
+                throw new JSONException("Corrupted campaign payload");
+            }
+            return new JSONReader(ByteBuffer.wrap(bytes)).nextJSONObject();
+        }
+    }
+}
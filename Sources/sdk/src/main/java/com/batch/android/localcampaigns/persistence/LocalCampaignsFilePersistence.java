@@ -5,17 +5,30 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 import com.batch.android.core.Logger;
+import com.batch.android.json.JSONArray;
 import com.batch.android.json.JSONException;
 import com.batch.android.json.JSONObject;
-import java.io.BufferedReader;
+import com.batch.android.json.JSONReader;
+import com.batch.android.json.JSONWriter;
+import com.batch.android.localcampaigns.model.LocalCampaign;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
+/**
+ * Saves campaigns in a {@link CampaignsContainer}, split between an index holding the root fields and
+ * campaigns, and their output payloads which are only decoded when needed.
+ * <p>
+ * Files saved by previous versions, which were the whole data as JSON, are converted to a container by
+ * {@link #migrateLegacyData(Context, String, String)}.
+ */
 public class LocalCampaignsFilePersistence implements LocalCampaignsPersistence {
 
     private static final String TAG = "LocalCampaignsFilePersistence";
@@ -27,6 +40,11 @@ public class LocalCampaignsFilePersistence implements LocalCampaignsPersistence
     @VisibleForTesting
     static final int PERSISTENCE_CURRENT_FILE_VERSION = 1;
 
+    private static final String CAMPAIGNS_KEY = "campaigns";
+    private static final String CAMPAIGN_ID_KEY = "campaignId";
+    private static final String OUTPUT_KEY = "output";
+    private static final String PAYLOAD_KEY = "payload";
+
     @Override
     public boolean hasSavedData(@NonNull Context context, @NonNull String filename) throws PersistenceException {
         return new File(context.getCacheDir(), filename).exists();
@@ -35,38 +53,117 @@ public class LocalCampaignsFilePersistence implements LocalCampaignsPersistence
     @Override
     public void persistData(@NonNull Context context, @NonNull JSONObject json, @NonNull String filename)
         throws PersistenceException {
-        final File cacheDir = context.getCacheDir();
+        // The version is added to the file if the response does not contain that information,
+        // without copying the source argument.
+        JSONObject rootFields = new JSONObject();
+        List<CampaignsContainer.Record> records = new ArrayList<>();
+        try {
+            for (String key : json.keySet()) {
+                if (!CAMPAIGNS_KEY.equals(key)) {
+                    rootFields.put(key, json.opt(key));
+                }
+            }
+            if (!json.has(PERSISTENCE_SAVE_VERSION_KEY)) {
+                rootFields.put(PERSISTENCE_SAVE_VERSION_KEY, PERSISTENCE_CURRENT_FILE_VERSION);
+            }
 
-        // Try to get the access to the file.
-        FileOutputStream fos = null;
-        OutputStreamWriter osr = null;
+            JSONArray campaigns = json.optJSONArray(CAMPAIGNS_KEY);
+            if (campaigns != null) {
+                for (int i = 0; i < campaigns.length(); i++) {
+                    JSONObject campaign = campaigns.optJSONObject(i);
+                    if (campaign != null) {
+                        records.add(toRecord(campaign));
+                    }
+                }
+            }
+        } catch (JSONException ex) {
+            throw new PersistenceException("Can't save json file. " + ex.toString(), ex);
+        }
 
-        File file = new File(cacheDir, filename);
-        File tmpFile = new File(cacheDir, PERSISTENCE_TMP_FILE_PREFIX + UUID.randomUUID().toString() + ".json");
+        writeContainer(context.getCacheDir(), filename, rootFields, records);
+    }
 
+    @Override
+    public boolean patchData(
+        @NonNull Context context,
+        @NonNull JSONObject rootFields,
+        @NonNull JSONArray upsertedCampaigns,
+        @NonNull Collection<String> removedCampaignIds,
+        @NonNull String filename
+    ) throws PersistenceException {
+        File file = new File(context.getCacheDir(), filename);
         try {
-            // Create a temporary file, we will write in it
-            if (!tmpFile.createNewFile()) {
-                Logger.internal(TAG, "Unable to create a temporary file " + file.getName());
+            if (!file.exists() || !CampaignsContainer.isContainer(file)) {
+                return false;
             }
 
-            // Copy the output JSON so we don't pollute the source argument
-            JSONObject outputJSON = new JSONObject(json);
+            JSONObject patchedRootFields = new JSONObject(rootFields);
+            patchedRootFields.remove(CAMPAIGNS_KEY);
+            if (!patchedRootFields.has(PERSISTENCE_SAVE_VERSION_KEY)) {
+                patchedRootFields.put(PERSISTENCE_SAVE_VERSION_KEY, PERSISTENCE_CURRENT_FILE_VERSION);
+            }
+
+            Set<String> outdatedCampaignIds = new HashSet<>(removedCampaignIds);
+            List<CampaignsContainer.Record> upsertedRecords = new ArrayList<>();
+            for (int i = 0; i < upsertedCampaigns.length(); i++) {
+                JSONObject campaign = upsertedCampaigns.optJSONObject(i);
+                if (campaign != null) {
+                    CampaignsContainer.Record record = toRecord(campaign);
+                    outdatedCampaignIds.add(record.campaignId);
+                    upsertedRecords.add(record);
+                }
+            }
 
-            // Add version to the file if the response does not contain that information
-            if (!outputJSON.has(PERSISTENCE_SAVE_VERSION_KEY)) {
-                outputJSON.put(PERSISTENCE_SAVE_VERSION_KEY, PERSISTENCE_CURRENT_FILE_VERSION);
+            // Unchanged records are copied without being decoded
+            List<CampaignsContainer.Record> records = new ArrayList<>();
+            for (CampaignsContainer.Record record : CampaignsContainer.readIndex(file).records) {
+                if (!outdatedCampaignIds.contains(record.campaignId)) {
+                    records.add(record);
+                }
             }
+            records.addAll(upsertedRecords);
+            writeContainer(context.getCacheDir(), filename, patchedRootFields, records);
+            return true;
+        } catch (IOException | JSONException ex) {
+            throw new PersistenceException("Can't patch saved campaigns. " + ex.toString(), ex);
+        }
+    }
+
+    /**
+     * Encode a campaign, splitting its output payload so that it's saved in its own blob
+     */
+    @NonNull
+    private static CampaignsContainer.Record toRecord(@NonNull JSONObject campaign) throws JSONException {
+        String campaignId = campaign.reallyOptString(CAMPAIGN_ID_KEY, "");
+        JSONObject output = campaign.optJSONObject(OUTPUT_KEY);
+        JSONObject payload = output != null ? output.optJSONObject(PAYLOAD_KEY) : null;
+        if (payload == null) {
+            return CampaignsContainer.Record.create(campaignId, campaign, null);
+        }
 
-            fos = new FileOutputStream(tmpFile);
-            osr = new OutputStreamWriter(fos, "UTF-8");
+        JSONObject outputWithoutPayload = new JSONObject(output);
+        outputWithoutPayload.remove(PAYLOAD_KEY);
+        JSONObject campaignWithoutPayload = new JSONObject(campaign);
+        campaignWithoutPayload.put(OUTPUT_KEY, outputWithoutPayload);
+        return CampaignsContainer.Record.create(campaignId, campaignWithoutPayload, JSONWriter.toUTF8Bytes(payload));
+    }
 
-            osr.append(outputJSON.toString());
-            osr.close();
-            osr = null;
+    private void writeContainer(
+        @NonNull File cacheDir,
+        @NonNull String filename,
+        @NonNull JSONObject rootFields,
+        @NonNull List<CampaignsContainer.Record> records
+    ) throws PersistenceException {
+        File file = new File(cacheDir, filename);
+        File tmpFile = new File(cacheDir, PERSISTENCE_TMP_FILE_PREFIX + UUID.randomUUID().toString() + ".bin");
+
+        try {
+            // Create a temporary file, we will write in it
+            if (!tmpFile.createNewFile()) {
+                Logger.internal(TAG, "Unable to create a temporary file " + file.getName());
+            }
 
-            fos.close();
-            fos = null;
+            CampaignsContainer.write(tmpFile, rootFields, records);
 
             // If write success, remove previous file
             if (file.exists()) {
@@ -105,71 +202,153 @@ public class LocalCampaignsFilePersistence implements LocalCampaignsPersistence
             }
 
             throw new PersistenceException("Can't save json file. " + ex.toString(), ex);
-        } finally {
-            try {
-                if (osr != null) {
-                    osr.close();
-                }
-            } catch (IOException ignored) {}
-            try {
-                if (fos != null) {
-                    fos.close();
-                }
-            } catch (IOException ignored) {}
         }
     }
 
     @Nullable
     @Override
-    public JSONObject loadData(@NonNull Context context, @NonNull String filename)
-        throws PersistenceException, IOException {
-        FileInputStream fis = null;
-        InputStreamReader isr = null;
-        BufferedReader bufferedReader = null;
+    public JSONObject loadRootFields(@NonNull Context context, @NonNull String filename) throws PersistenceException {
+        File file = new File(context.getCacheDir(), filename);
+        if (!file.exists()) {
+            return null;
+        }
 
-        StringBuilder sb = new StringBuilder();
+        try {
+            return CampaignsContainer.readIndex(file).rootFields;
+        } catch (IOException | JSONException ex) {
+            throw new PersistenceException("Can't read file. " + ex.toString(), ex);
+        }
+    }
+
+    @Nullable
+    @Override
+    public SavedCampaigns loadSavedCampaigns(@NonNull Context context, @NonNull String filename)
+        throws PersistenceException {
+        File file = new File(context.getCacheDir(), filename);
+        if (!file.exists()) {
+            return null;
+        }
 
-        // Read the content
         try {
-            File file = new File(context.getCacheDir(), filename);
-            fis = new FileInputStream(file);
-            isr = new InputStreamReader(fis, "UTF-8");
-            bufferedReader = new BufferedReader(isr);
+            return CampaignsContainer.read(file);
+        } catch (IOException | JSONException ex) {
+            throw new PersistenceException("Can't read file. " + ex.toString(), ex);
+        }
+    }
+
+    @Override
+    public boolean migrateLegacyData(
+        @NonNull Context context,
+        @NonNull String legacyFilename,
+        @NonNull String filename
+    ) throws PersistenceException {
+        File legacyFile = new File(context.getCacheDir(), legacyFilename);
+        if (!legacyFile.exists()) {
+            return false;
+        }
 
-            String line;
-            while ((line = bufferedReader.readLine()) != null) {
-                sb.append(line);
+        try {
+            // Data saved since the update is more recent than the legacy data
+            if (new File(context.getCacheDir(), filename).exists()) {
+                return false;
             }
-        } catch (Exception ex) {
-            throw new PersistenceException("Can't read file. " + ex.toString());
-        } finally {
-            if (bufferedReader != null) {
-                bufferedReader.close();
+
+            SavedCampaigns savedCampaigns = readLegacyFile(legacyFile);
+            if (!checkSaveVersion(savedCampaigns.rootFields)) {
+                return false;
             }
-            if (isr != null) {
-                isr.close();
+
+            List<CampaignsContainer.Record> records = new ArrayList<>(savedCampaigns.campaigns.size());
+            for (SavedCampaigns.Campaign campaign : savedCampaigns.campaigns) {
+                byte[] payload = campaign.payload instanceof RawPayload
+                    ? ((RawPayload) campaign.payload).json.getBytes(StandardCharsets.UTF_8)
+                    : null;
+                records.add(
+                    CampaignsContainer.Record.create(
+                        campaign.json.reallyOptString(CAMPAIGN_ID_KEY, ""),
+                        campaign.json,
+                        payload
+                    )
+                );
             }
-            if (fis != null) {
-                fis.close();
+            writeContainer(context.getCacheDir(), filename, savedCampaigns.rootFields, records);
+            return true;
+        } catch (IOException | JSONException ex) {
+            throw new PersistenceException("Can't convert legacy file. " + ex.toString(), ex);
+        } finally {
+            if (!legacyFile.delete()) {
+                Logger.internal(TAG, "Unable to delete legacy file " + legacyFile.getName());
             }
         }
+    }
 
-        try {
-            JSONObject json = new JSONObject(sb.toString());
-
-            // If the jsonVersion is different to the current supported file version, delete the file
-            if (json.has(PERSISTENCE_SAVE_VERSION_KEY)) {
-                if (json.getInt(PERSISTENCE_SAVE_VERSION_KEY) == PERSISTENCE_CURRENT_FILE_VERSION) {
-                    return json;
+    /**
+     * Stream a JSON file saved by a previous version, keeping output payloads as raw JSON
+     */
+    @NonNull
+    private static SavedCampaigns readLegacyFile(@NonNull File file) throws IOException, JSONException {
+        JSONObject rootFields = new JSONObject();
+        List<SavedCampaigns.Campaign> campaigns = new ArrayList<>();
+        try (JSONReader reader = new JSONReader(new FileInputStream(file))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (CAMPAIGNS_KEY.equals(name) && reader.peek() == JSONReader.Token.BEGIN_ARRAY) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        if (reader.peek() == JSONReader.Token.BEGIN_OBJECT) {
+                            campaigns.add(readLegacyCampaign(reader));
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endArray();
                 } else {
-                    throw new PersistenceException("The loaded file has a wrong version. Dropping.");
+                    rootFields.put(name, reader.nextValue());
                 }
             }
-        } catch (JSONException ex) {
-            throw new PersistenceException("Can't parse loaded json response. " + ex.toString(), ex);
+            reader.endObject();
         }
+        return new SavedCampaigns(rootFields, campaigns);
+    }
 
-        return null;
+    @NonNull
+    private static SavedCampaigns.Campaign readLegacyCampaign(@NonNull JSONReader reader) throws JSONException {
+        JSONObject json = new JSONObject();
+        RawPayload payload = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (OUTPUT_KEY.equals(name) && reader.peek() == JSONReader.Token.BEGIN_OBJECT) {
+                JSONObject output = new JSONObject();
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String outputName = reader.nextName();
+                    if (PAYLOAD_KEY.equals(outputName) && reader.peek() == JSONReader.Token.BEGIN_OBJECT) {
+                        payload = new RawPayload(reader.nextRawValue());
+                    } else {
+                        output.put(outputName, reader.nextValue());
+                    }
+                }
+                reader.endObject();
+                json.put(name, output);
+            } else {
+                json.put(name, reader.nextValue());
+            }
+        }
+        reader.endObject();
+        return new SavedCampaigns.Campaign(json, payload);
+    }
+
+    @Override
+    public boolean checkSaveVersion(@NonNull JSONObject json) throws PersistenceException {
+        if (!json.has(PERSISTENCE_SAVE_VERSION_KEY)) {
+            return false;
+        }
+        if (json.reallyOptInteger(PERSISTENCE_SAVE_VERSION_KEY, -1) != PERSISTENCE_CURRENT_FILE_VERSION) {
+            throw new PersistenceException("The loaded file has a wrong version. Dropping.");
+        }
+        return true;
     }
 
     @Override
@@ -183,4 +362,23 @@ public class LocalCampaignsFilePersistence implements LocalCampaignsPersistence
             }
         }
     }
+
+    /**
+     * Output payload read from a legacy JSON file
+     */
+    private static final class RawPayload implements LocalCampaign.PayloadSource {
+
+        @NonNull
+        final String json;
+
+        RawPayload(@NonNull String json) {
+            this.json = json;
+        }
+
+        @NonNull
+        @Override
+        public JSONObject decode() throws JSONException {
+            return new JSONObject(json);
+        }
+    }
 }
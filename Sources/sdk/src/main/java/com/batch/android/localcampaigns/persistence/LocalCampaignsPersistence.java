@@ -3,8 +3,9 @@ package com.batch.android.localcampaigns.persistence;
 import android.content.Context;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import com.batch.android.json.JSONArray;
 import com.batch.android.json.JSONObject;
-import java.io.IOException;
+import java.util.Collection;
 
 public interface LocalCampaignsPersistence {
     boolean hasSavedData(@NonNull Context context, @NonNull String dataKey) throws PersistenceException;
@@ -15,8 +16,54 @@ public interface LocalCampaignsPersistence {
     void persistData(@NonNull Context context, @NonNull JSONObject json, @NonNull String dataKey)
         throws PersistenceException;
 
+    /**
+     * Patch saved data: campaigns that are not upserted or removed are kept as they were saved.
+     *
+     * @param rootFields         Root fields replacing the saved ones
+     * @param upsertedCampaigns  Campaigns to add, or to replace the saved ones with the same id
+     * @param removedCampaignIds Ids of the saved campaigns to remove
+     * @return false if there is no saved data that can be patched
+     */
+    boolean patchData(
+        @NonNull Context context,
+        @NonNull JSONObject rootFields,
+        @NonNull JSONArray upsertedCampaigns,
+        @NonNull Collection<String> removedCampaignIds,
+        @NonNull String dataKey
+    ) throws PersistenceException;
+
+    /**
+     * Load the root fields of saved data, without the campaigns
+     *
+     * @return The root fields, or null if there is no saved data
+     */
+    @Nullable
+    JSONObject loadRootFields(@NonNull Context context, @NonNull String dataKey) throws PersistenceException;
+
+    /**
+     * Load saved data without decoding the campaign output payloads
+     *
+     * @return The saved campaigns, or null if there is no saved data
+     */
     @Nullable
-    JSONObject loadData(@NonNull Context context, @NonNull String dataKey) throws PersistenceException, IOException;
+    SavedCampaigns loadSavedCampaigns(@NonNull Context context, @NonNull String dataKey) throws PersistenceException;
+
+    /**
+     * Check the save version of root fields loaded with {@link #loadSavedCampaigns(Context, String)}
+     *
+     * @return true if the data can be used, false if it has no save version
+     * @throws PersistenceException if the data was saved with an unsupported version
+     */
+    boolean checkSaveVersion(@NonNull JSONObject json) throws PersistenceException;
+
+    /**
+     * Convert data saved by a previous version under another key, then delete it.
+     * Data already saved under the current key is kept as is: the legacy data is only deleted.
+     *
+     * @return true if legacy data was converted
+     */
+    boolean migrateLegacyData(@NonNull Context context, @NonNull String legacyDataKey, @NonNull String dataKey)
+        throws PersistenceException;
 
     void deleteData(@NonNull Context context, @NonNull String dataKey) throws PersistenceException;
 }
@@ -0,0 +1,45 @@
+package com.batch.android.localcampaigns.persistence;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.batch.android.json.JSONObject;
+import com.batch.android.localcampaigns.model.LocalCampaign;
+import java.util.List;
+
+/**
+ * Saved campaigns, as loaded by {@link LocalCampaignsPersistence#loadSavedCampaigns}.
+ * Campaign output payloads are not decoded.
+ */
+public final class SavedCampaigns {
+
+    /**
+     * Root fields of the saved data, except the campaigns
+     */
+    @NonNull
+    public final JSONObject rootFields;
+
+    @NonNull
+    public final List<Campaign> campaigns;
+
+    SavedCampaigns(@NonNull JSONObject rootFields, @NonNull List<Campaign> campaigns) {
+        this.rootFields = rootFields;
+        this.campaigns = campaigns;
+    }
+
+    public static final class Campaign {
+
+        /**
+         * Campaign json. Its output has no payload if {@link #payload} is set.
+         */
+        @NonNull
+        public final JSONObject json;
+
+        @Nullable
+        public final LocalCampaign.PayloadSource payload;
+
+        Campaign(@NonNull JSONObject json, @Nullable LocalCampaign.PayloadSource payload) {
+            this.json = json;
+            this.payload = payload;
+        }
+    }
+}
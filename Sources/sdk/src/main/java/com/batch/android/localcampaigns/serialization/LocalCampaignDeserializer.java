@@ -16,6 +16,7 @@ import com.batch.android.localcampaigns.model.DayOfWeek;
 import com.batch.android.localcampaigns.model.LocalCampaign;
 import com.batch.android.localcampaigns.model.QuietHours;
 import com.batch.android.localcampaigns.output.ActionOutput;
+import com.batch.android.localcampaigns.persistence.SavedCampaigns;
 import com.batch.android.localcampaigns.trigger.EventLocalCampaignTrigger;
 import com.batch.android.localcampaigns.trigger.NextSessionTrigger;
 import java.util.ArrayList;
@@ -34,6 +35,22 @@ public class LocalCampaignDeserializer {
      * @throws JSONException parsing exception
      */
     public LocalCampaign deserialize(JSONObject json, boolean requireJITFallback) throws JSONException {
+        return deserialize(json, null, requireJITFallback);
+    }
+
+    /**
+     * Parse a json campaigns object, whose output payload is decoded separately
+     *
+     * @param json campaign json object
+     * @param payload source of the output payload, null if it is in the json
+     * @return the LocalCampaign
+     * @throws JSONException parsing exception
+     */
+    public LocalCampaign deserialize(
+        JSONObject json,
+        @Nullable LocalCampaign.PayloadSource payload,
+        boolean requireJITFallback
+    ) throws JSONException {
         if (json == null) {
             throw new JSONException("Cannot parse a null campaign json");
         }
@@ -110,7 +127,7 @@ public class LocalCampaignDeserializer {
 
         campaign.triggers = parseTriggers(json.getJSONArray("triggers"));
 
-        campaign.output = parseOutput(json.getJSONObject("output"));
+        campaign.output = parseOutput(json.getJSONObject("output"), payload);
 
         campaign.customPayload = json.optJSONObject("customPayload");
 
@@ -145,14 +162,38 @@ public class LocalCampaignDeserializer {
         return campaigns;
     }
 
+    /**
+     * Deserialize saved campaigns into a list of local campaign.
+     * Output payloads are not decoded until they are used.
+     *
+     * @param savedCampaigns saved campaigns
+     * @return a list of local campaign
+     */
+    public List<LocalCampaign> deserializeList(
+        @NonNull List<SavedCampaigns.Campaign> savedCampaigns,
+        boolean requireJITFallback
+    ) {
+        List<LocalCampaign> campaigns = new ArrayList<>(savedCampaigns.size());
+        for (SavedCampaigns.Campaign savedCampaign : savedCampaigns) {
+            try {
+                campaigns.add(deserialize(savedCampaign.json, savedCampaign.payload, requireJITFallback));
+            } catch (Exception e) {
+                Logger.internal(TAG, "An error occurred while parsing an In-App Campaign. Skipping.", e);
+            }
+        }
+        return campaigns;
+    }
+
     /**
      * Parse a json output object
      *
      * @param json output json object
+     * @param payloadSource source of the output payload, null if it is in the json
      * @return the LocalCampaign.Output
      * @throws JSONException parsing exception
      */
-    private LocalCampaign.Output parseOutput(JSONObject json) throws JSONException {
+    private LocalCampaign.Output parseOutput(JSONObject json, @Nullable LocalCampaign.PayloadSource payloadSource)
+        throws JSONException {
         String type = json.reallyOptString("type", null);
 
         if (TextUtils.isEmpty(type)) {
@@ -163,16 +204,23 @@ public class LocalCampaignDeserializer {
 
         LocalCampaign.Output output;
 
-        JSONObject payload = json.getJSONObject("payload");
+        // Saved campaigns keep their payload undecoded
+        JSONObject payload = payloadSource == null ? json.getJSONObject("payload") : null;
         switch (type) {
             case "LANDING":
-                output = LandingOutputProvider.get(payload);
+                output = payloadSource != null
+                    ? LandingOutputProvider.get(payloadSource)
+                    : LandingOutputProvider.get(payload);
                 break;
             case "LANDING_CEP":
-                output = LandingOutputCEPProvider.get(payload);
+                output = payloadSource != null
+                    ? LandingOutputCEPProvider.get(payloadSource)
+                    : LandingOutputCEPProvider.get(payload);
                 break;
             case "ACTION":
-                output = ActionOutputProvider.get(payload);
+                output = payloadSource != null
+                    ? ActionOutputProvider.get(payloadSource)
+                    : ActionOutputProvider.get(payload);
                 break;
             default:
                 throw new JSONException("Invalid campaign output type");
@@ -111,10 +111,10 @@ public class LocalCampaignSerializer {
         JSONObject jsonOutput = new JSONObject();
         if (output instanceof LandingOutputCEP) {
             jsonOutput.put("type", "LANDING_CEP");
-            jsonOutput.put("payload", output.payload);
+            jsonOutput.put("payload", output.getPayload());
         } else if (output instanceof LandingOutput) {
             jsonOutput.put("type", "LANDING");
-            jsonOutput.put("payload", output.payload);
+            jsonOutput.put("payload", output.getPayload());
         }
         return jsonOutput;
     }
@@ -5,6 +5,7 @@ import androidx.annotation.Nullable;
 import com.batch.android.json.JSONObject;
 import com.batch.android.localcampaigns.model.LocalCampaign;
 import com.batch.android.localcampaigns.trigger.EventLocalCampaignTrigger;
+import java.util.Objects;
 
 /**
  * Represents the event tracked signal for all events
@@ -28,4 +29,25 @@ public class EventTrackedSignal implements Signal {
             ((EventLocalCampaignTrigger) trigger).isSatisfied(name, null, null)
         );
     }
+
+    /**
+     * Signals are equal if they are of the same class, for the same event name and parameters:
+     * they would trigger the same campaigns.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        EventTrackedSignal that = (EventTrackedSignal) o;
+        return name.equals(that.name) && Objects.equals(parameters, that.parameters);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, parameters);
+    }
 }
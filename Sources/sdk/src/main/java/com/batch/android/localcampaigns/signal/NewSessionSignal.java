@@ -15,4 +15,14 @@ public class NewSessionSignal implements Signal {
     public boolean satisfiesTrigger(@NonNull LocalCampaign.Trigger trigger) {
         return trigger instanceof NextSessionTrigger;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof NewSessionSignal;
+    }
+
+    @Override
+    public int hashCode() {
+        return NewSessionSignal.class.hashCode();
+    }
 }
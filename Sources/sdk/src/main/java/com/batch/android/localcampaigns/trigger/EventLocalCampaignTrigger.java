@@ -3,7 +3,7 @@ package com.batch.android.localcampaigns.trigger;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import com.batch.android.json.JSONObject;
-import com.batch.android.json.JSONUtils;
+import com.batch.android.json.JSONMatcher;
 import com.batch.android.localcampaigns.model.LocalCampaign;
 import java.util.Locale;
 
@@ -27,17 +27,26 @@ public class EventLocalCampaignTrigger implements LocalCampaign.Trigger {
     public String label;
 
     @Nullable
-    public JSONObject attributes;
+    public final JSONObject attributes;
+
+    /**
+     * Matcher compiled from {@link #attributes}
+     */
+    @Nullable
+    private final JSONMatcher attributesMatcher;
 
     public EventLocalCampaignTrigger(@NonNull String name, @Nullable String label) {
         this.name = name.toUpperCase(Locale.US);
         this.label = label;
+        this.attributes = null;
+        this.attributesMatcher = null;
     }
 
     public EventLocalCampaignTrigger(@NonNull String name, @Nullable String label, @Nullable JSONObject attributes) {
         this.name = name.toUpperCase(Locale.US);
         this.label = label;
         this.attributes = attributes;
+        this.attributesMatcher = attributes != null ? JSONMatcher.compile(attributes) : null;
     }
 
     /**
@@ -56,8 +65,8 @@ public class EventLocalCampaignTrigger implements LocalCampaign.Trigger {
             return false;
         }
 
-        if (this.attributes != null) {
-            return JSONUtils.jsonObjectContainsValuesFrom(this.attributes, eventAttributes);
+        if (this.attributesMatcher != null) {
+            return this.attributesMatcher.matches(eventAttributes);
         }
         return true;
     }
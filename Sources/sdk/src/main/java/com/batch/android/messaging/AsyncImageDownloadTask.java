@@ -1,5 +1,6 @@
 package com.batch.android.messaging;
 
+import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.os.AsyncTask;
@@ -9,6 +10,7 @@ import com.batch.android.core.ByteArrayHelper;
 import com.batch.android.core.ForwardReadableInputStream;
 import com.batch.android.core.Logger;
 import com.batch.android.core.TLSSocketFactory;
+import com.batch.android.di.providers.RuntimeManagerProvider;
 import com.batch.android.messaging.gif.GifHelper;
 import com.batch.android.messaging.model.MessagingError;
 import com.batch.android.metrics.MetricRegistry;
@@ -28,6 +30,7 @@ import javax.net.ssl.SSLException;
 /**
  * Simple AsyncTask that will handle the downloading of the hero image.
  * No need for all of Batch's Webservice stuff here, simply download the image and call it a day.
+ * Images prefetched in the {@link InAppImageCache} are read from it instead.
  *
  */
 public class AsyncImageDownloadTask extends AsyncTask<String, Void, AsyncImageDownloadTask.Result<?>> {
@@ -118,20 +121,15 @@ public class AsyncImageDownloadTask extends AsyncTask<String, Void, AsyncImageDo
             return null;
         }
 
+        Result<?> cachedResult = getCachedResult(params[0]);
+        if (cachedResult != null) {
+            return cachedResult;
+        }
+
         HttpURLConnection connection = null;
         InputStream inputStream = null;
         try {
-            connection = (HttpURLConnection) imageURL.openConnection();
-
-            if (connection instanceof HttpsURLConnection) {
-                // If HTTPS is enable, we enforce the TLS versions
-                ((HttpsURLConnection) connection).setSSLSocketFactory(new TLSSocketFactory());
-            }
-
-            connection.setConnectTimeout(20000);
-            connection.setReadTimeout((int) (MessagingModule.DEFAULT_IMAGE_DOWNLOAD_TIMEOUT * 1000));
-            connection.setRequestMethod("GET");
-
+            connection = openConnection(imageURL);
             connection.connect();
             int statusCode = connection.getResponseCode();
             if (statusCode >= 200 && statusCode < 300) {
@@ -192,6 +190,62 @@ public class AsyncImageDownloadTask extends AsyncTask<String, Void, AsyncImageDo
         return null;
     }
 
+    /**
+     * Open a GET connection to an image URL, with the in-app image timeouts
+     */
+    @NonNull
+    static HttpURLConnection openConnection(@NonNull URL imageURL)
+        throws IOException, NoSuchAlgorithmException, KeyManagementException {
+        HttpURLConnection connection = (HttpURLConnection) imageURL.openConnection();
+
+        if (connection instanceof HttpsURLConnection) {
+            // If HTTPS is enable, we enforce the TLS versions
+            ((HttpsURLConnection) connection).setSSLSocketFactory(new TLSSocketFactory());
+        }
+
+        connection.setConnectTimeout(20000);
+        connection.setReadTimeout((int) (MessagingModule.DEFAULT_IMAGE_DOWNLOAD_TIMEOUT * 1000));
+        connection.setRequestMethod("GET");
+        return connection;
+    }
+
+    /**
+     * Get the result of an image from the {@link InAppImageCache}
+     *
+     * @return the result, or null if the image is not cached or could not be decoded
+     */
+    @Nullable
+    private Result<?> getCachedResult(@NonNull String url) {
+        Context context = RuntimeManagerProvider.get().getContext();
+        if (context == null) {
+            return null;
+        }
+        byte[] data = InAppImageCache.get(context, url);
+        if (data == null) {
+            return null;
+        }
+
+        Logger.internal(TAG, "Image found in cache for URL: " + url);
+        int[] firstBytes = new int[Math.min(data.length, GifHelper.NEEDED_BYTES_FOR_TYPE_CHECK)];
+        for (int i = 0; i < firstBytes.length; i++) {
+            firstBytes[i] = data[i] & 0xFF;
+        }
+        if (GifHelper.isPotentiallyAGif(firstBytes)) {
+            return new GIFResult(url, data);
+        }
+        try {
+            Bitmap bitmap = BitmapFactory.decodeByteArray(data, 0, data.length);
+            if (bitmap == null) {
+                Logger.internal(TAG, "Error while creating the bitmap from cache");
+                return null;
+            }
+            return new BitmapResult(url, bitmap);
+        } catch (OutOfMemoryError e) {
+            Logger.internal(TAG, "Out of memory while creating the bitmap", e);
+            return null;
+        }
+    }
+
     @Override
     protected void onPostExecute(@Nullable Result result) {
         ImageDownloadListener listener = weakListener.get();
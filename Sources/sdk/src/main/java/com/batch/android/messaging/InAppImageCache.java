@@ -0,0 +1,153 @@
+package com.batch.android.messaging;
+
+import android.content.Context;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.batch.android.core.ByteArrayHelper;
+import com.batch.android.core.GenericHelper;
+import com.batch.android.core.Logger;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Disk cache for in-app message images, filled by {@link InAppImagePrefetcher} and read by
+ * {@link AsyncImageDownloadTask} before going to the network.
+ * <p>
+ * Images are stored as downloaded (so that GIFs are kept), under a byte budget. When over it, the least
+ * recently used images are deleted first: reading an image touches its file.
+ */
+public final class InAppImageCache {
+
+    private static final String TAG = "InAppImageCache";
+
+    /**
+     * Max total size of the cached images, in bytes
+     */
+    static final long MAX_CACHE_SIZE = 10 * 1024 * 1024;
+
+    /**
+     * Name of the folder that contains in-app image cache
+     */
+    private static final String IMAGES_CACHE_FOLDER = "batch_inappimg";
+
+    private InAppImageCache() {}
+
+    @NonNull
+    private static File getCacheFolder(@NonNull Context context) {
+        return new File(context.getCacheDir(), IMAGES_CACHE_FOLDER);
+    }
+
+    @Nullable
+    private static File getFileForURL(@NonNull Context context, @NonNull String url) {
+        try {
+            return new File(getCacheFolder(context), GenericHelper.readMD5(url));
+        } catch (Exception e) {
+            Logger.internal(TAG, "Error while computing MD5 identifier for url : " + url, e);
+            return null;
+        }
+    }
+
+    /**
+     * Checks if an image is cached, without marking it as used
+     */
+    public static boolean contains(@NonNull Context context, @NonNull String url) {
+        File file = getFileForURL(context, url);
+        return file != null && file.isFile();
+    }
+
+    /**
+     * Get the data of a cached image and mark it as recently used
+     *
+     * @return the image data if found in cache, null otherwise
+     */
+    @Nullable
+    public static byte[] get(@NonNull Context context, @NonNull String url) {
+        File file = getFileForURL(context, url);
+        if (file == null || !file.isFile()) {
+            return null;
+        }
+        try (FileInputStream in = new FileInputStream(file)) {
+            byte[] data = ByteArrayHelper.fromInputStream(in);
+            //noinspection ResultOfMethodCallIgnored
+            file.setLastModified(System.currentTimeMillis());
+            return data;
+        } catch (IOException e) {
+            Logger.internal(TAG, "Error while reading in-app image from cache (" + url + ")", e);
+            return null;
+        }
+    }
+
+    /**
+     * Store an image in cache, then delete the least recently used images if the cache is over its budget.
+     * Images larger than the whole budget are not stored.
+     *
+     * @return true if the image has been stored
+     */
+    public static boolean put(@NonNull Context context, @NonNull String url, @NonNull byte[] data) {
+        if (data.length > MAX_CACHE_SIZE) {
+            return false;
+        }
+        File file = getFileForURL(context, url);
+        if (file == null) {
+            return false;
+        }
+
+        File folder = getCacheFolder(context);
+        if (!folder.exists() && !folder.mkdirs()) {
+            return false;
+        }
+
+        // Write to a temporary file first, so that a partially written image is never read
+        File tmpFile = new File(folder, file.getName() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmpFile)) {
+            out.write(data);
+        } catch (IOException e) {
+            Logger.internal(TAG, "Error while storing in-app image in cache (" + url + ")", e);
+            //noinspection ResultOfMethodCallIgnored
+            tmpFile.delete();
+            return false;
+        }
+        if (!tmpFile.renameTo(file)) {
+            //noinspection ResultOfMethodCallIgnored
+            tmpFile.delete();
+            return false;
+        }
+
+        trimToSize(folder, MAX_CACHE_SIZE);
+        return true;
+    }
+
+    /**
+     * Delete the least recently used files of a folder until their total size fits in the given budget
+     */
+    static void trimToSize(@NonNull File folder, long maxSize) {
+        File[] files = folder.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        long totalSize = 0;
+        for (File file : files) {
+            totalSize += file.length();
+        }
+        if (totalSize <= maxSize) {
+            return;
+        }
+
+        // Sort them from the least to the most recently used
+        Arrays.sort(files, (f1, f2) -> Long.compare(f1.lastModified(), f2.lastModified()));
+        for (File file : files) {
+            if (totalSize <= maxSize) {
+                break;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                Logger.internal(TAG, "Deleted " + file.getName() + " to keep the in-app image cache under its limit");
+                totalSize -= length;
+            }
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.batch.android.messaging;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import com.batch.android.core.GenericHelper;
+import com.batch.android.core.Logger;
+import com.batch.android.json.JSONObject;
+import com.batch.android.messaging.model.Message;
+import com.batch.android.messaging.model.cep.CEPMessage;
+import com.batch.android.messaging.model.cep.InAppComponent;
+import com.batch.android.messaging.model.mep.BaseBannerMessage;
+import com.batch.android.messaging.model.mep.ImageMessage;
+import com.batch.android.messaging.model.mep.UniversalMessage;
+import com.batch.android.messaging.parsing.PayloadParser;
+import com.batch.android.messaging.parsing.PayloadParsingException;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Downloads the images of the in-app messages most likely to be displayed into the {@link InAppImageCache},
+ * so that they are shown right away instead of after a loading spinner.
+ * <p>
+ * Images are prefetched in the order of the given messages, until the per-run byte budget is spent.
+ * Nothing is downloaded on metered networks, or if the network type can't be known because the app
+ * doesn't have the ACCESS_NETWORK_STATE permission.
+ */
+public final class InAppImagePrefetcher {
+
+    private static final String TAG = "InAppImagePrefetcher";
+
+    /**
+     * Max number of bytes downloaded by a prefetch run
+     */
+    static final long MAX_PREFETCH_SIZE = 5 * 1024 * 1024;
+
+    private InAppImagePrefetcher() {}
+
+    /**
+     * Prefetch the images of in-app message payloads.
+     * <p>
+     * Should not be called on the UI thread.
+     *
+     * @param context  Context
+     * @param payloads Landing payloads, from the most to the least likely to be displayed
+     */
+    public static void prefetch(@NonNull Context context, @NonNull List<JSONObject> payloads) {
+        if (payloads.isEmpty() || !isNetworkUnmetered(context)) {
+            return;
+        }
+
+        Set<String> urls = new LinkedHashSet<>();
+        for (JSONObject payload : payloads) {
+            try {
+                urls.addAll(getImageURLs(PayloadParser.parseUnknownLandingMessage(payload)));
+            } catch (PayloadParsingException e) {
+                Logger.internal(TAG, "Could not parse landing payload, skipping its images", e);
+            }
+        }
+
+        long remainingBudget = MAX_PREFETCH_SIZE;
+        for (String url : urls) {
+            if (remainingBudget <= 0) {
+                break;
+            }
+            if (InAppImageCache.contains(context, url)) {
+                continue;
+            }
+            byte[] data = download(url, remainingBudget);
+            if (data != null && InAppImageCache.put(context, url, data)) {
+                Logger.internal(TAG, "Prefetched image for URL: " + url);
+                remainingBudget -= data.length;
+            }
+        }
+    }
+
+    /**
+     * Get the URLs of the images that will be downloaded when displaying a message
+     */
+    @VisibleForTesting
+    @NonNull
+    static List<String> getImageURLs(@NonNull Message message) {
+        List<String> urls = new ArrayList<>();
+        if (message instanceof CEPMessage) {
+            CEPMessage cepMessage = (CEPMessage) message;
+            for (InAppComponent.Image image : cepMessage.getImagesComponents()) {
+                String url = cepMessage.getUrls().get(image.getId());
+                if (url != null) {
+                    urls.add(url);
+                }
+            }
+        } else if (message instanceof UniversalMessage) {
+            UniversalMessage universalMessage = (UniversalMessage) message;
+            // The hero image isn't shown if there is a video
+            if (universalMessage.videoURL == null && universalMessage.heroImageURL != null) {
+                urls.add(universalMessage.heroImageURL);
+            }
+        } else if (message instanceof BaseBannerMessage) {
+            if (((BaseBannerMessage) message).imageURL != null) {
+                urls.add(((BaseBannerMessage) message).imageURL);
+            }
+        } else if (message instanceof ImageMessage) {
+            if (((ImageMessage) message).imageURL != null) {
+                urls.add(((ImageMessage) message).imageURL);
+            }
+        }
+        return urls;
+    }
+
+    /**
+     * Download an image, giving up if it is larger than the given size
+     *
+     * @return the image data, or null on error
+     */
+    @Nullable
+    private static byte[] download(@NonNull String url, long maxSize) {
+        HttpURLConnection connection = null;
+        try {
+            connection = AsyncImageDownloadTask.openConnection(new URL(url));
+            connection.connect();
+            int statusCode = connection.getResponseCode();
+            if (statusCode < 200 || statusCode >= 300) {
+                Logger.internal(
+                    TAG,
+                    "Server returned an invalid status code (" + statusCode + ") for URL (" + url + ")"
+                );
+                return null;
+            }
+            if (connection.getContentLength() > maxSize) {
+                Logger.internal(TAG, "Image is over the prefetch budget, skipping URL (" + url + ")");
+                return null;
+            }
+
+            try (
+                InputStream in = connection.getInputStream();
+                ByteArrayOutputStream out = new ByteArrayOutputStream()
+            ) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer, 0, buffer.length)) != -1) {
+                    out.write(buffer, 0, read);
+                    // The content length is not always known
+                    if (out.size() > maxSize) {
+                        Logger.internal(TAG, "Image is over the prefetch budget, skipping URL (" + url + ")");
+                        return null;
+                    }
+                }
+                return out.toByteArray();
+            }
+        } catch (Exception e) {
+            Logger.internal(TAG, "Unexpected error while prefetching image (" + url + ")", e);
+            return null;
+        } finally {
+            if (connection != null) {
+                try {
+                    connection.disconnect();
+                } catch (Exception ignored) {}
+            }
+        }
+    }
+
+    /**
+     * Checks if the device is connected to an unmetered network
+     */
+    private static boolean isNetworkUnmetered(@NonNull Context context) {
+        try {
+            if (!GenericHelper.checkPermission("android.permission.ACCESS_NETWORK_STATE", context)) {
+                Logger.internal(TAG, "Missing ACCESS_NETWORK_STATE permission, not prefetching images");
+                return false;
+            }
+            ConnectivityManager connectivityManager = (ConnectivityManager) context.getSystemService(
+                Context.CONNECTIVITY_SERVICE
+            );
+            if (connectivityManager == null) {
+                return false;
+            }
+            NetworkInfo networkInfo = connectivityManager.getActiveNetworkInfo();
+            return networkInfo != null && networkInfo.isConnected() && !connectivityManager.isActiveNetworkMetered();
+        } catch (Exception e) {
+            Logger.internal(TAG, "Could not check the network type", e);
+            return false;
+        }
+    }
+}
@@ -16,20 +16,27 @@ import com.batch.android.di.providers.LocalBroadcastManagerProvider;
 import com.batch.android.di.providers.RuntimeManagerProvider;
 import com.batch.android.di.providers.TaskExecutorProvider;
 import com.batch.android.localcampaigns.CampaignManager;
+import com.batch.android.json.JSONException;
+import com.batch.android.json.JSONObject;
 import com.batch.android.localcampaigns.model.LocalCampaign;
 import com.batch.android.localcampaigns.persistence.PersistenceException;
 import com.batch.android.localcampaigns.signal.EventTrackedSignal;
 import com.batch.android.localcampaigns.signal.NewSessionSignal;
 import com.batch.android.localcampaigns.signal.PublicEventTrackedSignal;
 import com.batch.android.localcampaigns.signal.Signal;
+import com.batch.android.messaging.InAppImagePrefetcher;
 import com.batch.android.processor.Module;
 import com.batch.android.processor.Provide;
 import com.batch.android.processor.Singleton;
 import com.batch.android.runtime.SessionManager;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -42,6 +49,11 @@ public class LocalCampaignsModule extends BatchModule {
 
     public static final String TAG = "LocalCampaigns";
 
+    /**
+     * Delay during which signals are collected before being processed together
+     */
+    private static final long SIGNAL_COALESCING_WINDOW_MS = 50;
+
     /**
      * Campaign manager instance
      */
@@ -75,7 +87,29 @@ public class LocalCampaignsModule extends BatchModule {
     /**
      * Executor responsible for handling the campaign event based trigger
      */
-    private final ExecutorService triggerExecutor = Executors.newSingleThreadExecutor(new NamedThreadFactory());
+    private final ScheduledExecutorService triggerExecutor = Executors.newSingleThreadScheduledExecutor(
+        new NamedThreadFactory()
+    );
+
+    /**
+     * JIT prefetch scheduled for when the results given by the last campaign sync expire
+     */
+    private ScheduledFuture<?> scheduledJITPrefetch;
+
+    /**
+     * Executor prefetching the images of in-app campaigns, kept apart so that downloads never delay elections
+     */
+    private final ExecutorService imagePrefetchExecutor = Executors.newSingleThreadExecutor(new NamedThreadFactory());
+
+    /**
+     * Signals waiting for the next election, in arrival order and without duplicates
+     */
+    private final List<Signal> signalBatch = new ArrayList<>();
+
+    /**
+     * Whether the election of {@link #signalBatch} is scheduled. Guarded by {@link #signalBatch}.
+     */
+    private boolean isSignalBatchScheduled = false;
 
     /**
      * Flag indicating whether the new session broadcast receiver is registered
@@ -165,15 +199,56 @@ public class LocalCampaignsModule extends BatchModule {
             return;
         }
 
-        Signal finalSignal = signal;
-        triggerExecutor.submit(() -> {
-            if (isWaitingJITSync.get()) {
-                Logger.internal(TAG, "JIT sync in progress, enqueue signal.");
-                enqueueSignal(finalSignal);
+        addToSignalBatch(signal);
+    }
+
+    /**
+     * Add a signal to the next election batch, scheduling it if needed.
+     * Signals equal to one already in the batch are dropped, as they would elect the same campaign.
+     * @param signal signal to add
+     */
+    private void addToSignalBatch(@NonNull Signal signal) {
+        synchronized (signalBatch) {
+            if (signalBatch.contains(signal)) {
+                Logger.internal(TAG, "Coalescing signal: " + signal.getClass().getSimpleName());
             } else {
-                electCampaignForSignal(finalSignal);
+                signalBatch.add(signal);
+            }
+            if (!isSignalBatchScheduled) {
+                isSignalBatchScheduled = true;
+                triggerExecutor.schedule(this::processSignalBatch, SIGNAL_COALESCING_WINDOW_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Elect a campaign for the signals of the current batch
+     * <p>
+     * Signals are processed in arrival order, like they were before being batched, until one of them
+     * elects a campaign: only one campaign can be displayed, so the remaining signals are dropped.
+     */
+    private void processSignalBatch() {
+        List<Signal> signals;
+        synchronized (signalBatch) {
+            signals = new ArrayList<>(signalBatch);
+            signalBatch.clear();
+            isSignalBatchScheduled = false;
+        }
+
+        if (isWaitingJITSync.get()) {
+            Logger.internal(TAG, "JIT sync in progress, enqueue signals.");
+            for (Signal signal : signals) {
+                enqueueSignal(signal);
             }
-        });
+            return;
+        }
+
+        for (int i = 0; i < signals.size(); i++) {
+            List<Signal> remainingSignals = signals.subList(i + 1, signals.size());
+            if (electCampaignForSignal(signals.get(i), remainingSignals)) {
+                return;
+            }
+        }
     }
 
     /**
@@ -194,8 +269,16 @@ public class LocalCampaignsModule extends BatchModule {
      *                  - No: Display the first campaign not requiring a JIT sync (if there's one else do noting)
      *              -No: Display it
      *          - No: Display it
+     *
+     * @param signal signal to elect a campaign for
+     * @param remainingSignals signals of the batch after this one, replayed if the JIT sync ends
+     *                         without displaying anything
+     * @return true if a campaign was displayed or if a JIT sync was started
      */
-    private void electCampaignForSignal(final @NonNull Signal signal) {
+    private boolean electCampaignForSignal(
+        final @NonNull Signal signal,
+        final @NonNull List<Signal> remainingSignals
+    ) {
         // Get all eligible campaigns (sorted by priority) regardless of the JIT sync
         List<LocalCampaign> eligibleCampaigns = campaignManager.getEligibleCampaignsSortedByPriority(signal);
 
@@ -210,6 +293,7 @@ public class LocalCampaignsModule extends BatchModule {
                     // Last succeed JIT sync for this campaign is NOT older than 30 sec, considering eligibility up to date.
                     Logger.internal(TAG, "Skipping JIT sync since this campaign has been already synced recently.");
                     displayMessage(firstElectedCampaign);
+                    return true;
                 } else if (
                     syncedCampaignState == SyncedJITResult.State.REQUIRES_SYNC &&
                     campaignManager.isJITServiceAvailable()
@@ -221,6 +305,7 @@ public class LocalCampaignsModule extends BatchModule {
                     LocalCampaign fallbackCampaign = campaignManager.getFirstCampaignNotRequiringJITSync(
                         eligibleCampaigns
                     );
+                    final List<Signal> signalsToReplay = new ArrayList<>(remainingSignals);
                     isWaitingJITSync.set(true);
                     campaignManager.verifyCampaignsEligibilityFromServer(
                         eligibleCampaignsRequiringSync,
@@ -236,11 +321,13 @@ public class LocalCampaignsModule extends BatchModule {
                                 displayMessage(fallbackCampaign);
                             } else {
                                 Logger.info(TAG, "Ne eligible campaigns found after the JIT sync.");
+                                requeueSignals(signalsToReplay);
                             }
                             isWaitingJITSync.set(false);
                             dequeueSignals();
                         }
                     );
+                    return true;
                 } else {
                     // JIT not available or campaign is cached and not eligible, fallback on the first eligible campaign not requiring a JIT sync
                     LocalCampaign firstEligibleCampaignNotRequiringJITSync = campaignManager.getFirstCampaignNotRequiringJITSync(
@@ -252,16 +339,19 @@ public class LocalCampaignsModule extends BatchModule {
                             "JIT not available or campaign is cached and not eligible, fallback on offline campaign."
                         );
                         displayMessage(firstEligibleCampaignNotRequiringJITSync);
+                        return true;
                     }
                 }
             } else {
                 // First elected campaign is not requiring a JIT sync, display it !
                 Logger.internal(TAG, "Elected campaign not requiring a sync, display it.");
                 displayMessage(firstElectedCampaign);
+                return true;
             }
         } else {
             Logger.internal(TAG, "No eligible campaigns found.");
         }
+        return false;
     }
 
     /**
@@ -275,10 +365,62 @@ public class LocalCampaignsModule extends BatchModule {
 
     /**
      * Make this module ready to process signals enqueued.
+     * Then check the JIT eligibility of the campaigns likely to be elected in the background, once
+     * the enqueued signals are processed, so that next elections don't have to wait for it.
+     * As a successful sync also gives JIT results, this is done again once they expire.
+     * The images of the in-app campaigns likely to be displayed are prefetched at the same time.
      */
     private void makeReady() {
         isReady.set(true);
         dequeueSignals();
+        triggerExecutor.submit(campaignManager::prefetchJITEligibility);
+        scheduleJITPrefetch();
+        imagePrefetchExecutor.submit(this::prefetchCampaignImages);
+    }
+
+    /**
+     * Schedule a JIT prefetch for when the results given by the campaign sync expire, replacing the
+     * one scheduled by a previous sync
+     */
+    private synchronized void scheduleJITPrefetch() {
+        if (scheduledJITPrefetch != null) {
+            scheduledJITPrefetch.cancel(false);
+        }
+        scheduledJITPrefetch =
+            triggerExecutor.schedule(
+                campaignManager::prefetchJITEligibility,
+                campaignManager.getJITCampaignCachePeriod(),
+                TimeUnit.MILLISECONDS
+            );
+    }
+
+    /**
+     * Prefetch the images of the in-app campaigns most likely to be displayed
+     */
+    private void prefetchCampaignImages() {
+        Context context = RuntimeManagerProvider.get().getContext();
+        if (context == null) {
+            return;
+        }
+        List<JSONObject> payloads = new ArrayList<>();
+        for (LocalCampaign campaign : campaignManager.getImagePrefetchCandidates()) {
+            try {
+                payloads.add(campaign.output.getPayload());
+            } catch (JSONException e) {
+                Logger.internal(TAG, "Could not decode the payload of campaign " + campaign.id + ", skipping", e);
+            }
+        }
+        InAppImagePrefetcher.prefetch(context, payloads);
+    }
+
+    /**
+     * Put signals back at the head of the queue, keeping their order
+     * @param signals signals to requeue
+     */
+    private void requeueSignals(@NonNull List<Signal> signals) {
+        synchronized (signalQueue) {
+            signalQueue.addAll(0, signals);
+        }
     }
 
     /**
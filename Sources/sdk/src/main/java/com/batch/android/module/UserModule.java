@@ -37,8 +37,6 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -551,41 +549,27 @@ public final class UserModule extends BatchModule {
             );
         }
 
-        Map<String, UserAttribute> previousAttributes = datasource.getAttributes();
-        Map<String, Set<String>> previousTagCollections = datasource.getTagCollections();
-
-        for (UserOperation operation : pendingOperationQueue) {
+        try {
+            datasource.applyOperations(pendingOperationQueue);
+        } catch (Exception e) {
             try {
-                operation.execute(datasource);
-            } catch (Exception e) {
-                try {
-                    datasource.rollbackTransaction();
-                } catch (UserDatabaseException e1) {
-                    Logger.internal(InstallDataEditor.TAG, "Save - Error while rolling back transaction.", e1);
-                }
-
-                throw new SaveException(
-                    "An internal error occurred while applying the changes (code 41)",
-                    "Save - Callable exception",
-                    e
-                );
+                datasource.rollbackTransaction();
+            } catch (UserDatabaseException e1) {
+                Logger.internal(InstallDataEditor.TAG, "Save - Error while rolling back transaction.", e1);
             }
+
+            throw new SaveException(
+                "An internal error occurred while applying the changes (code 41)",
+                "Save - Callable exception",
+                e
+            );
         }
 
         try {
+            // Computed from the attributes and tags touched by the operations, rather than from all of the user data
+            UserDataDiff.Result diff = datasource.getTransactionDiff();
             datasource.commitTransaction();
 
-            Map<String, UserAttribute> newAttributes = datasource.getAttributes();
-            Map<String, Set<String>> newTagCollections = datasource.getTagCollections();
-
-            UserDataDiff.Result diff = new UserDataDiff(
-                newAttributes,
-                previousAttributes,
-                newTagCollections,
-                previousTagCollections
-            )
-                .result;
-
             if (diff.hasChanges()) {
                 final Parameters parameters = ParametersProvider.get(context);
                 parameters.set(ParameterKeys.USER_DATA_CHANGESET, Long.toString(changeset), true);
@@ -1,11 +1,11 @@
 package com.batch.android.post;
 
-import com.batch.android.core.ByteArrayHelper;
 import com.batch.android.core.Logger;
 import com.batch.android.inbox.InboxCandidateNotificationInternal;
 import com.batch.android.json.JSONArray;
 import com.batch.android.json.JSONException;
 import com.batch.android.json.JSONObject;
+import com.batch.android.json.JSONWriter;
 import java.util.Collection;
 
 public class InboxSyncPostDataProvider implements PostDataProvider<JSONObject> {
@@ -38,7 +38,12 @@ public class InboxSyncPostDataProvider implements PostDataProvider<JSONObject> {
 
     @Override
     public byte[] getData() {
-        return ByteArrayHelper.getUTF8Bytes(body.toString());
+        try {
+            return JSONWriter.toUTF8Bytes(body);
+        } catch (JSONException e) {
+            Logger.internal(TAG, "Could not serialize post data to JSON", e);
+            return new byte[0];
+        }
     }
 
     public boolean isEmpty() {
@@ -1,7 +1,9 @@
 package com.batch.android.post;
 
-import com.batch.android.core.ByteArrayHelper;
+import com.batch.android.core.Logger;
+import com.batch.android.json.JSONException;
 import com.batch.android.json.JSONObject;
+import com.batch.android.json.JSONWriter;
 
 /**
  * A json post data provider
@@ -9,6 +11,8 @@ import com.batch.android.json.JSONObject;
  */
 public class JSONPostDataProvider implements PostDataProvider<JSONObject> {
 
+    private static final String TAG = "JSONPostDataProvider";
+
     /**
      * The data
      */
@@ -40,7 +44,22 @@ public class JSONPostDataProvider implements PostDataProvider<JSONObject> {
 
     @Override
     public byte[] getData() {
-        return ByteArrayHelper.getUTF8Bytes(data.toString());
+        return serialize(data);
+    }
+
+    /**
+     * Encode the given JSON as UTF-8 bytes, without going through an intermediate String
+     *
+     * @param json The JSON to encode
+     * @return The encoded JSON, or an empty array if it could not be serialized
+     */
+    protected static byte[] serialize(JSONObject json) {
+        try {
+            return JSONWriter.toUTF8Bytes(json);
+        } catch (JSONException e) {
+            Logger.internal(TAG, "Could not serialize post data to JSON", e);
+            return new byte[0];
+        }
     }
 
     @Override
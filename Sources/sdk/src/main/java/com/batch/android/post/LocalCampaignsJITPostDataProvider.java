@@ -3,7 +3,6 @@ package com.batch.android.post;
 import android.content.Context;
 import androidx.annotation.NonNull;
 import com.batch.android.WebserviceParameterUtils;
-import com.batch.android.core.ByteArrayHelper;
 import com.batch.android.core.Logger;
 import com.batch.android.di.providers.CampaignManagerProvider;
 import com.batch.android.di.providers.RuntimeManagerProvider;
@@ -113,7 +112,7 @@ public class LocalCampaignsJITPostDataProvider extends JSONPostDataProvider {
 
     @Override
     public byte[] getData() {
-        return ByteArrayHelper.getUTF8Bytes(getRawData().toString());
+        return serialize(getRawData());
     }
 
     public List<String> deserializeResponse(JSONObject response) throws JSONException {
@@ -1,9 +1,9 @@
 package com.batch.android.post;
 
-import com.batch.android.core.ByteArrayHelper;
 import com.batch.android.core.Logger;
 import com.batch.android.json.JSONArray;
 import com.batch.android.json.JSONException;
+import com.batch.android.json.JSONWriter;
 import com.batch.android.metrics.model.Metric;
 import java.util.Collection;
 
@@ -32,8 +32,7 @@ public class MetricPostDataProvider implements PostDataProvider<Collection<Metri
             for (Metric<?> metric : metrics) {
                 payload.put(metric.toJson());
             }
-            String payloadString = payload.toString();
-            return ByteArrayHelper.getUTF8Bytes(payloadString);
+            return JSONWriter.toUTF8Bytes(payload);
         } catch (JSONException e) {
             Logger.internal(TAG, "Could not serialize metrics payload to JSON", e);
             return new byte[0];
@@ -28,8 +28,14 @@ public class LocalCampaignsQuery extends Query {
      */
     private Map<String, Integer> capping = new HashMap<>();
 
+    /**
+     * Sync version of the loaded campaigns, allowing the server to only send what changed since
+     */
+    private String syncVersion;
+
     public LocalCampaignsQuery(CampaignManager campaignManager, Context context) {
         super(context, QueryType.LOCAL_CAMPAIGNS);
+        syncVersion = campaignManager.getSyncVersion();
         // Add capping of campaigns loaded
         List<LocalCampaign> localCampaigns = campaignManager.getCampaignList();
         ViewTracker viewTracker = campaignManager.getViewTracker();
@@ -63,6 +69,7 @@ public class LocalCampaignsQuery extends Query {
             viewsJson.put(entry.getKey(), countJson);
         }
         json.put("views", viewsJson);
+        json.putOpt("sync_version", syncVersion);
         return json;
     }
 }
@@ -46,6 +46,19 @@ public class LocalCampaignsResponse extends Response {
     @Nullable
     private GlobalCappings cappings;
 
+    /**
+     * Version of the campaign set sent by the server, used to ask for delta updates on the next sync
+     */
+    @Nullable
+    private String syncVersion;
+
+    /**
+     * Delta information, only set when the server sent a partial update.
+     * In that case, {@link #campaigns} only contains added and updated campaigns.
+     */
+    @Nullable
+    private Delta delta;
+
     public LocalCampaignsResponse(@NonNull String queryID, @NonNull Version version) {
         super(QueryType.LOCAL_CAMPAIGNS, queryID);
         this.version = version;
@@ -113,6 +126,64 @@ public class LocalCampaignsResponse extends Response {
         return cappings != null;
     }
 
+    @Nullable
+    public String getSyncVersion() {
+        return syncVersion;
+    }
+
+    public void setSyncVersion(@Nullable String syncVersion) {
+        this.syncVersion = syncVersion;
+    }
+
+    @Nullable
+    public Delta getDelta() {
+        return delta;
+    }
+
+    public void setDelta(@Nullable Delta delta) {
+        this.delta = delta;
+    }
+
+    public boolean isDelta() {
+        return delta != null;
+    }
+
+    /**
+     * Partial update of the campaign set
+     * <p>
+     * Added and updated campaigns are carried by the response's campaign list, this only holds
+     * what is needed to patch the previous set.
+     */
+    public static class Delta {
+
+        /**
+         * Sync version the delta has been computed against
+         */
+        @NonNull
+        private final String baseVersion;
+
+        /**
+         * Ids of the campaigns that have been removed since the base version
+         */
+        @NonNull
+        private final List<String> removedCampaignIds;
+
+        public Delta(@NonNull String baseVersion, @NonNull List<String> removedCampaignIds) {
+            this.baseVersion = baseVersion;
+            this.removedCampaignIds = removedCampaignIds;
+        }
+
+        @NonNull
+        public String getBaseVersion() {
+            return baseVersion;
+        }
+
+        @NonNull
+        public List<String> getRemovedCampaignIds() {
+            return removedCampaignIds;
+        }
+    }
+
     /**
      * Global In-App Cappings
      */
@@ -58,6 +58,9 @@ public class LocalCampaignsResponseDeserializer extends ResponseDeserializer {
         LocalCampaignsResponse.GlobalCappings cappings = deserializeCappings();
         response.setCappings(cappings);
 
+        response.setSyncVersion(deserializeSyncVersion());
+        response.setDelta(parseDelta());
+
         return response;
     }
 
@@ -66,6 +69,16 @@ public class LocalCampaignsResponseDeserializer extends ResponseDeserializer {
         return LocalCampaignsResponse.Version.valueOf(json.getString("campaigns_version"));
     }
 
+    /**
+     * Only deserialize the sync version from the json response
+     *
+     * @return The sync version, or null if the server didn't send one
+     */
+    @Nullable
+    public String deserializeSyncVersion() {
+        return json.reallyOptString("sync_version", null);
+    }
+
     /**
      * Only deserialize the local campaigns from the json response
      * @return A list of LocalCampaign
@@ -128,6 +141,34 @@ public class LocalCampaignsResponseDeserializer extends ResponseDeserializer {
         return timeBasedCappings.isEmpty() ? null : timeBasedCappings;
     }
 
+    /**
+     * Parse delta information if the server sent a partial update
+     *
+     * @return LocalCampaignsResponse.Delta || null
+     * @throws JSONException parsing exception
+     */
+    @Nullable
+    private LocalCampaignsResponse.Delta parseDelta() throws JSONException {
+        if (json == null || !json.hasNonNull("delta")) {
+            return null;
+        }
+        JSONObject deltaJson = json.getJSONObject("delta");
+        String baseVersion = deltaJson.reallyOptString("from", null);
+        if (baseVersion == null) {
+            throw new JSONException("Invalid delta base version");
+        }
+        List<String> removedCampaignIds = new ArrayList<>();
+        JSONArray removedJson = deltaJson.optJSONArray("removed");
+        if (removedJson != null) {
+            for (int i = 0; i < removedJson.length(); i++) {
+                if (!removedJson.isNull(i)) {
+                    removedCampaignIds.add(removedJson.getString(i));
+                }
+            }
+        }
+        return new LocalCampaignsResponse.Delta(baseVersion, removedCampaignIds);
+    }
+
     /**
      * Parse error response if there's one
      *
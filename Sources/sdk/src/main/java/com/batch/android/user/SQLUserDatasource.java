@@ -1,12 +1,12 @@
 package com.batch.android.user;
 
-import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteConstraintException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteStatement;
 import android.text.TextUtils;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -15,9 +15,11 @@ import com.batch.android.module.UserModule;
 import com.batch.android.processor.Module;
 import com.batch.android.processor.Singleton;
 import java.net.URI;
+import java.net.URISyntaxException;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -57,6 +59,25 @@ public final class SQLUserDatasource implements UserDatasource {
      */
     private long currentChangeset = 0;
 
+    /**
+     * Attributes and tags touched by the current transaction. Only relevant when a transaction is occurring
+     */
+    @Nullable
+    private UserDataChanges transactionChanges = null;
+
+    /**
+     * Compiled statements writing attributes and tags. They are compiled with the first transaction,
+     * then reused for every operation until the datasource is closed.
+     */
+    @Nullable
+    private SQLiteStatement attributeUpsertStatement = null;
+
+    @Nullable
+    private SQLiteStatement tagInsertStatement = null;
+
+    @Nullable
+    private SQLiteStatement tagDeleteStatement = null;
+
     public SQLUserDatasource(@Nullable Context context) throws SQLiteException {
         if (context == null) {
             throw new NullPointerException("context==null");
@@ -79,9 +100,72 @@ public final class SQLUserDatasource implements UserDatasource {
             }
         }
 
+        closeStatements();
         database.close();
     }
 
+    private void compileStatements() {
+        if (attributeUpsertStatement == null) {
+            // The table's conflict clauses apply: a new value replaces the previous one,
+            // while writing the same value again fails as nothing changed.
+            attributeUpsertStatement =
+                database.compileStatement(
+                    "INSERT INTO " +
+                    UserDatabaseHelper.TABLE_ATTRIBUTES +
+                    " (" +
+                    UserDatabaseHelper.COLUMN_ATTR_NAME +
+                    ", " +
+                    UserDatabaseHelper.COLUMN_ATTR_TYPE +
+                    ", " +
+                    UserDatabaseHelper.COLUMN_ATTR_VALUE +
+                    ", " +
+                    UserDatabaseHelper.COLUMN_ATTR_CHANGESET +
+                    ") VALUES (?, ?, ?, ?)"
+                );
+        }
+        if (tagInsertStatement == null) {
+            tagInsertStatement =
+                database.compileStatement(
+                    "INSERT OR IGNORE INTO " +
+                    UserDatabaseHelper.TABLE_TAGS +
+                    " (" +
+                    UserDatabaseHelper.COLUMN_TAG_COLLECTION +
+                    ", " +
+                    UserDatabaseHelper.COLUMN_TAG_VALUE +
+                    ", " +
+                    UserDatabaseHelper.COLUMN_TAG_CHANGESET +
+                    ") VALUES (?, ?, ?)"
+                );
+        }
+        if (tagDeleteStatement == null) {
+            tagDeleteStatement =
+                database.compileStatement(
+                    "DELETE FROM " +
+                    UserDatabaseHelper.TABLE_TAGS +
+                    " WHERE " +
+                    UserDatabaseHelper.COLUMN_TAG_COLLECTION +
+                    " = ? AND " +
+                    UserDatabaseHelper.COLUMN_TAG_VALUE +
+                    " = ?"
+                );
+        }
+    }
+
+    private void closeStatements() {
+        if (attributeUpsertStatement != null) {
+            attributeUpsertStatement.close();
+            attributeUpsertStatement = null;
+        }
+        if (tagInsertStatement != null) {
+            tagInsertStatement.close();
+            tagInsertStatement = null;
+        }
+        if (tagDeleteStatement != null) {
+            tagDeleteStatement.close();
+            tagDeleteStatement = null;
+        }
+    }
+
     // endregion
 
     // region Transaction methods ---------------------------
@@ -97,9 +181,11 @@ public final class SQLUserDatasource implements UserDatasource {
     public void acquireTransactionLock(long changeset) throws UserDatabaseException {
         if (changeset > 0 && !transactionOccurring) {
             try {
+                compileStatements();
                 database.execSQL("BEGIN TRANSACTION;");
                 transactionOccurring = true;
                 currentChangeset = changeset;
+                transactionChanges = new UserDataChanges();
             } catch (SQLiteException e) {
                 logAndThrow("Error while starting the SQLite transaction", e);
             }
@@ -120,6 +206,7 @@ public final class SQLUserDatasource implements UserDatasource {
                 database.execSQL("COMMIT TRANSACTION;");
                 transactionOccurring = false;
                 currentChangeset = 0;
+                transactionChanges = null;
             } catch (SQLiteException e) {
                 logAndThrow("Error while committing the SQLite transaction", e);
             }
@@ -135,6 +222,7 @@ public final class SQLUserDatasource implements UserDatasource {
                 database.execSQL("ROLLBACK TRANSACTION;");
                 transactionOccurring = false;
                 currentChangeset = 0;
+                transactionChanges = null;
             } catch (SQLiteException e) {
                 logAndThrow("Error while rolling back the SQLite transaction", e);
             }
@@ -143,50 +231,81 @@ public final class SQLUserDatasource implements UserDatasource {
         }
     }
 
+    /**
+     * Apply operations in the current transaction, in order.
+     * <p>
+     * All of the attribute and tag writes of the operations reuse the same compiled statements.
+     *
+     * @param operations Operations to apply
+     * @throws Exception The exception thrown by the first failing operation. The following operations are not applied.
+     */
+    public void applyOperations(@NonNull List<UserOperation> operations) throws Exception {
+        if (!transactionOccurring) {
+            throwInvalidStateException();
+            return;
+        }
+
+        for (UserOperation operation : operations) {
+            operation.execute(this);
+        }
+    }
+
+    /**
+     * Get the changes made by the current transaction.
+     * <p>
+     * Only the attributes and tags touched by the transaction are read, so that the cost doesn't depend on
+     * the amount of stored user data.
+     */
+    @Override
+    @NonNull
+    public UserDataDiff.Result getTransactionDiff() throws UserDatabaseException {
+        final UserDataChanges changes = transactionChanges;
+        if (!transactionOccurring || changes == null) {
+            throw new UserDatabaseException("Invalid database state");
+        }
+
+        final Map<String, UserAttribute> attributesAfter = new HashMap<>();
+        for (String name : changes.getAttributeNames()) {
+            UserAttribute attribute = readAttribute(name);
+            if (attribute != null) {
+                attributesAfter.put(name, attribute);
+            }
+        }
+        return changes.makeDiff(attributesAfter);
+    }
+
     // endregion
 
     // region Attributes methods ----------------------------
 
     @Override
     public void setAttribute(@NonNull String key, long attribute) throws UserDatabaseException {
-        final ContentValues cv = new ContentValues();
-        cv.put(UserDatabaseHelper.COLUMN_ATTR_VALUE, attribute);
-        setAttribute(key, cv, AttributeType.LONG, false);
+        setAttribute(key, attribute, AttributeType.LONG, false);
     }
 
     @Override
     public void setAttribute(@NonNull String key, double attribute) throws UserDatabaseException {
-        final ContentValues cv = new ContentValues();
-        cv.put(UserDatabaseHelper.COLUMN_ATTR_VALUE, attribute);
-        setAttribute(key, cv, AttributeType.DOUBLE, false);
+        setAttribute(key, attribute, AttributeType.DOUBLE, false);
     }
 
     @Override
     public void setAttribute(@NonNull String key, boolean attribute) throws UserDatabaseException {
-        final ContentValues cv = new ContentValues();
-        cv.put(UserDatabaseHelper.COLUMN_ATTR_VALUE, attribute);
-        setAttribute(key, cv, AttributeType.BOOL, false);
+        setAttribute(key, attribute ? 1L : 0L, AttributeType.BOOL, false);
     }
 
     @Override
     public void setAttribute(@NonNull String key, @NonNull String attribute) throws UserDatabaseException {
-        final ContentValues cv = new ContentValues();
-        cv.put(UserDatabaseHelper.COLUMN_ATTR_VALUE, attribute);
-        setAttribute(key, cv, AttributeType.STRING, false);
+        setAttribute(key, attribute, AttributeType.STRING, false);
     }
 
     @Override
     public void setAttribute(@NonNull String key, @NonNull Date attribute) throws UserDatabaseException {
-        final ContentValues cv = new ContentValues();
-        cv.put(UserDatabaseHelper.COLUMN_ATTR_VALUE, attribute.getTime());
-        setAttribute(key, cv, AttributeType.DATE, false);
+        setAttribute(key, attribute.getTime(), AttributeType.DATE, false);
     }
 
     @Override
     public void setAttribute(@NonNull String key, @NonNull URI attribute) throws UserDatabaseException {
-        final ContentValues cv = new ContentValues();
-        cv.put(UserDatabaseHelper.COLUMN_ATTR_VALUE, attribute.toString());
-        setAttribute(key, cv, AttributeType.URL, false);
+        setAttribute(key, attribute.toString(), AttributeType.URL, false);
     }
 
     @Override
@@ -231,6 +350,7 @@ public final class SQLUserDatasource implements UserDatasource {
             return;
         }
 
+        recordTagsBeforeClear(null);
         database.delete(UserDatabaseHelper.TABLE_TAGS, null, null);
     }
 
@@ -240,6 +360,7 @@ public final class SQLUserDatasource implements UserDatasource {
             return;
         }
 
+        recordTagsBeforeClear(collection);
         database.delete(
             UserDatabaseHelper.TABLE_TAGS,
             UserDatabaseHelper.COLUMN_TAG_COLLECTION + "=?",
@@ -253,6 +374,11 @@ public final class SQLUserDatasource implements UserDatasource {
             return;
         }
 
+        if (transactionChanges != null) {
+            for (Map.Entry<String, UserAttribute> attribute : getAttributes().entrySet()) {
+                transactionChanges.recordAttribute(attribute.getKey(), attribute.getValue());
+            }
+        }
         database.delete(UserDatabaseHelper.TABLE_ATTRIBUTES, null, null);
     }
 
@@ -260,22 +386,35 @@ public final class SQLUserDatasource implements UserDatasource {
 
     // region Attribute helpers ------------------------------
 
-    // Set an attribute. The value should already be inserted in contentValues for the VALUE column.
+    // Set an attribute. The value must be a Long, a Double or a String, as stored in the VALUE column.
     // It also assumes that everything has already been validated.
-    private void setAttribute(String key, ContentValues values, AttributeType type, boolean isNative)
+    private void setAttribute(String key, @NonNull Object value, AttributeType type, boolean isNative)
         throws UserDatabaseException {
-        if (!transactionOccurring || TextUtils.isEmpty(key) || currentChangeset <= 0) {
+        if (
+            !transactionOccurring ||
+            TextUtils.isEmpty(key) ||
+            currentChangeset <= 0 ||
+            attributeUpsertStatement == null
+        ) {
             throwInvalidStateException();
             return;
         }
 
-        try {
-            values.put(UserDatabaseHelper.COLUMN_ATTR_NAME, (isNative ? "n." : "c.") + key);
-            values.put(UserDatabaseHelper.COLUMN_ATTR_TYPE, type.getValue());
-            // Value has already been added
-            values.put(UserDatabaseHelper.COLUMN_ATTR_CHANGESET, currentChangeset);
+        final String name = (isNative ? "n." : "c.") + key;
+        recordAttributeBeforeChange(name);
 
-            database.insertOrThrow(UserDatabaseHelper.TABLE_ATTRIBUTES, null, values);
+        try {
+            attributeUpsertStatement.bindString(1, name);
+            attributeUpsertStatement.bindLong(2, type.getValue());
+            if (value instanceof Long) {
+                attributeUpsertStatement.bindLong(3, (Long) value);
+            } else if (value instanceof Double) {
+                attributeUpsertStatement.bindDouble(3, (Double) value);
+            } else {
+                attributeUpsertStatement.bindString(3, value.toString());
+            }
+            attributeUpsertStatement.bindLong(4, currentChangeset);
+            attributeUpsertStatement.executeInsert();
         } catch (SQLiteConstraintException e) {
             // Means that the name+value+type are the same, so no data changed.
             // This catch is just here so that a false error isn't shown, and the operation still succeeds
@@ -290,59 +429,108 @@ public final class SQLUserDatasource implements UserDatasource {
             return;
         }
 
+        final String name = (isNative ? "n." : "c.") + key;
+        recordAttributeBeforeChange(name);
+
         try {
             database.delete(
                 UserDatabaseHelper.TABLE_ATTRIBUTES,
                 UserDatabaseHelper.COLUMN_ATTR_NAME + "=?",
-                new String[] { (isNative ? "n." : "c.") + key }
+                new String[] { name }
             );
         } catch (SQLException e) {
             logAndThrow("Error while deleting custom attribute '" + key + "'", e);
         }
     }
 
+    /**
+     * Record the value of an attribute in the transaction changes, if it hasn't been changed yet in the transaction
+     */
+    private void recordAttributeBeforeChange(@NonNull String name) {
+        if (transactionChanges != null && !transactionChanges.isAttributeRecorded(name)) {
+            transactionChanges.recordAttribute(name, readAttribute(name));
+        }
+    }
+
     // endregion
 
     // region Tag helpers ------------------------------------
 
     private void writeTag(@NonNull String collection, @NonNull String tag) throws UserDatabaseException {
-        if (!transactionOccurring || currentChangeset <= 0 || TextUtils.isEmpty(collection) || TextUtils.isEmpty(tag)) {
+        if (!isTagWriteAllowed(collection, tag) || tagInsertStatement == null) {
             throwInvalidStateException();
             return;
         }
 
         try {
-            final ContentValues values = new ContentValues();
-            values.put(UserDatabaseHelper.COLUMN_TAG_COLLECTION, collection);
-            values.put(UserDatabaseHelper.COLUMN_TAG_VALUE, tag);
-            values.put(UserDatabaseHelper.COLUMN_TAG_CHANGESET, currentChangeset);
-
-            database.insertOrThrow(UserDatabaseHelper.TABLE_TAGS, null, values);
-        } catch (SQLiteConstraintException e) {
-            // Means that the tag existed, so no data changed.
-            // This catch is just here so that a false error isn't shown, and the operation still succeeds
+            tagInsertStatement.bindString(1, collection);
+            tagInsertStatement.bindString(2, tag);
+            tagInsertStatement.bindLong(3, currentChangeset);
+            // Ignored if the tag already exists, meaning that no data changed
+            boolean inserted = tagInsertStatement.executeInsert() != -1;
+            recordTagChange(collection, tag, !inserted, true);
         } catch (SQLException e) {
             logAndThrow(String.format("Error while adding tag '%s' in collection '%s'", tag, collection), e);
         }
     }
 
     private void deleteTag(@NonNull String collection, @NonNull String tag) throws UserDatabaseException {
-        if (!transactionOccurring || currentChangeset <= 0 || TextUtils.isEmpty(collection) || TextUtils.isEmpty(tag)) {
+        if (!isTagWriteAllowed(collection, tag) || tagDeleteStatement == null) {
             throwInvalidStateException();
             return;
         }
 
         try {
-            database.delete(
-                UserDatabaseHelper.TABLE_TAGS,
-                UserDatabaseHelper.COLUMN_TAG_COLLECTION + "=? AND " + UserDatabaseHelper.COLUMN_TAG_VALUE + "=?",
-                new String[] { collection, tag }
-            );
+            tagDeleteStatement.bindString(1, collection);
+            tagDeleteStatement.bindString(2, tag);
+            int deletedRows = tagDeleteStatement.executeUpdateDelete();
+            recordTagChange(collection, tag, deletedRows > 0, false);
         } catch (SQLException e) {
             logAndThrow(String.format("Error while removing tag '%s' in collection '%s'", tag, collection), e);
         }
     }
 
+    private boolean isTagWriteAllowed(@Nullable String collection, @Nullable String tag) {
+        return (
+            transactionOccurring && currentChangeset > 0 && !TextUtils.isEmpty(collection) && !TextUtils.isEmpty(tag)
+        );
+    }
+
+    private void recordTagChange(@NonNull String collection, @NonNull String tag, boolean existed, boolean exists) {
+        if (transactionChanges != null) {
+            transactionChanges.recordTag(collection, tag, existed, exists);
+        }
+    }
+
+    /**
+     * Record the tags that are about to be cleared in the transaction changes
+     *
+     * @param collection Collection to be cleared, or null for all of them
+     */
+    private void recordTagsBeforeClear(@Nullable String collection) {
+        if (transactionChanges == null) {
+            return;
+        }
+
+        try (
+            Cursor cursor = database.query(
+                UserDatabaseHelper.TABLE_TAGS,
+                new String[] { UserDatabaseHelper.COLUMN_TAG_COLLECTION, UserDatabaseHelper.COLUMN_TAG_VALUE },
+                collection != null ? UserDatabaseHelper.COLUMN_TAG_COLLECTION + "=?" : null,
+                collection != null ? new String[] { collection } : null,
+                null,
+                null,
+                null
+            )
+        ) {
+            while (cursor.moveToNext()) {
+                transactionChanges.recordTag(cursor.getString(0), cursor.getString(1), true, false);
+            }
+        } catch (SQLException e) {
+            Logger.internal(TAG, "Error while reading the tags to clear", e);
+        }
+    }
+
     // endregion
 
     // region Reader methods
@@ -436,48 +624,8 @@ public final class SQLUserDatasource implements UserDatasource {
             if (cursor != null) {
                 while (cursor.moveToNext()) {
                     try {
-                        AttributeType type = AttributeType.fromValue(
-                            cursor.getInt(cursor.getColumnIndexOrThrow(UserDatabaseHelper.COLUMN_ATTR_TYPE))
-                        );
-
-                        if (type == null) {
-                            continue;
-                        }
-
-                        int valueColIndex = cursor.getColumnIndexOrThrow(UserDatabaseHelper.COLUMN_ATTR_VALUE);
-                        if (valueColIndex == -1) {
-                            continue;
-                        }
-
-                        Object typedValue = null;
-
-                        switch (type) {
-                            case STRING:
-                                typedValue = cursor.getString(valueColIndex);
-                                break;
-                            case DATE:
-                                typedValue = new Date(cursor.getLong(valueColIndex));
-                                break;
-                            case BOOL:
-                                {
-                                    int intVal = cursor.getInt(valueColIndex);
-                                    typedValue = (intVal != 0);
-                                    break;
-                                }
-                            case LONG:
-                                typedValue = cursor.getLong(valueColIndex);
-                                break;
-                            case DOUBLE:
-                                typedValue = cursor.getDouble(valueColIndex);
-                                break;
-                            case URL:
-                                typedValue = new URI(cursor.getString(valueColIndex));
-                                break;
-                            default:
-                                continue;
-                        }
-
-                        if (typedValue == null) {
+                        UserAttribute attribute = parseAttribute(cursor);
+                        if (attribute == null) {
                             continue;
                         }
 
@@ -485,7 +633,7 @@ public final class SQLUserDatasource implements UserDatasource {
                             cursor.getColumnIndexOrThrow(UserDatabaseHelper.COLUMN_ATTR_NAME)
                         );
 
-                        attributes.put(name, new UserAttribute(typedValue, type));
+                        attributes.put(name, attribute);
                     } catch (Exception e) {
                         Logger.internal(TAG, "Error while reading attribute", e);
                     }
@@ -498,6 +646,90 @@ public final class SQLUserDatasource implements UserDatasource {
         return attributes;
     }
 
+    /**
+     * Read an attribute
+     *
+     * @param name Prefixed attribute name
+     * @return the attribute, or null if it doesn't exist or couldn't be read
+     */
+    @Nullable
+    private UserAttribute readAttribute(@NonNull String name) {
+        try (
+            Cursor cursor = database.query(
+                UserDatabaseHelper.TABLE_ATTRIBUTES,
+                new String[] { UserDatabaseHelper.COLUMN_ATTR_TYPE, UserDatabaseHelper.COLUMN_ATTR_VALUE },
+                UserDatabaseHelper.COLUMN_ATTR_NAME + "=?",
+                new String[] { name },
+                null,
+                null,
+                null,
+                "1"
+            )
+        ) {
+            if (cursor != null && cursor.moveToFirst()) {
+                return parseAttribute(cursor);
+            }
+        } catch (Exception e) {
+            Logger.internal(TAG, "Error while reading attribute '" + name + "'", e);
+        }
+        return null;
+    }
+
+    /**
+     * Parse the attribute at the cursor's position. The cursor must include the type and value columns.
+     *
+     * @return the attribute, or null if its type or value are invalid
+     */
+    @Nullable
+    private static UserAttribute parseAttribute(@NonNull Cursor cursor) throws URISyntaxException {
+        AttributeType type = AttributeType.fromValue(
+            cursor.getInt(cursor.getColumnIndexOrThrow(UserDatabaseHelper.COLUMN_ATTR_TYPE))
+        );
+
+        if (type == null) {
+            return null;
+        }
+
+        int valueColIndex = cursor.getColumnIndexOrThrow(UserDatabaseHelper.COLUMN_ATTR_VALUE);
+        if (valueColIndex == -1) {
+            return null;
+        }
+
+        Object typedValue = null;
+
+        switch (type) {
+            case STRING:
+                typedValue = cursor.getString(valueColIndex);
+                break;
+            case DATE:
+                typedValue = new Date(cursor.getLong(valueColIndex));
+                break;
+            case BOOL:
+                {
+                    int intVal = cursor.getInt(valueColIndex);
+                    typedValue = (intVal != 0);
+                    break;
+                }
+            case LONG:
+                typedValue = cursor.getLong(valueColIndex);
+                break;
+            case DOUBLE:
+                typedValue = cursor.getDouble(valueColIndex);
+                break;
+            case URL:
+                typedValue = new URI(cursor.getString(valueColIndex));
+                break;
+            default:
+                return null;
+        }
+
+        if (typedValue == null) {
+            return null;
+        }
+
+        return new UserAttribute(typedValue, type);
+    }
+
     // endregion
 
     // region Exception helpers
@@ -0,0 +1,128 @@
+package com.batch.android.user;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Records the attributes and tags touched by a user data transaction, with their state before it.
+ * <p>
+ * This allows computing the transaction's diff from the touched keys only, rather than comparing
+ * all of the user data before and after the transaction.
+ */
+final class UserDataChanges {
+
+    /**
+     * Values of the touched attributes before the transaction, by prefixed name.
+     * A null value means that the attribute didn't exist.
+     */
+    private final Map<String, UserAttribute> attributesBefore = new HashMap<>();
+
+    /**
+     * Touched tags, by collection then by tag
+     */
+    private final Map<String, Map<String, TagChange>> tags = new HashMap<>();
+
+    boolean isAttributeRecorded(@NonNull String name) {
+        return attributesBefore.containsKey(name);
+    }
+
+    /**
+     * Record an attribute's value before it is first changed in the transaction
+     *
+     * @param before Value before the transaction, null if the attribute didn't exist
+     */
+    void recordAttribute(@NonNull String name, @Nullable UserAttribute before) {
+        if (!attributesBefore.containsKey(name)) {
+            attributesBefore.put(name, before);
+        }
+    }
+
+    @NonNull
+    Set<String> getAttributeNames() {
+        return attributesBefore.keySet();
+    }
+
+    /**
+     * Record a change of a tag
+     *
+     * @param existedBefore Whether the tag existed before this change. Ignored if the tag has already been changed in
+     *                      the transaction, as the state before the transaction is already known.
+     * @param existsAfter   Whether the tag exists after this change
+     */
+    void recordTag(@NonNull String collection, @NonNull String tag, boolean existedBefore, boolean existsAfter) {
+        Map<String, TagChange> collectionTags = tags.get(collection);
+        if (collectionTags == null) {
+            collectionTags = new HashMap<>();
+            tags.put(collection, collectionTags);
+        }
+
+        TagChange change = collectionTags.get(tag);
+        if (change == null) {
+            collectionTags.put(tag, new TagChange(existedBefore, existsAfter));
+        } else {
+            change.existsAfter = existsAfter;
+        }
+    }
+
+    /**
+     * Compute the diff of the transaction
+     *
+     * @param attributesAfter Values of the touched attributes after the transaction, by prefixed name.
+     *                        Attributes that don't exist anymore are missing or null.
+     */
+    @NonNull
+    UserDataDiff.Result makeDiff(@NonNull Map<String, UserAttribute> attributesAfter) {
+        // Same rules as UserDataDiff: an updated attribute is both in the added and removed ones
+        final Map<String, UserAttribute> addedAttributes = new HashMap<>();
+        final Map<String, UserAttribute> removedAttributes = new HashMap<>();
+        for (Map.Entry<String, UserAttribute> entry : attributesBefore.entrySet()) {
+            final UserAttribute before = entry.getValue();
+            final UserAttribute after = attributesAfter.get(entry.getKey());
+            if (after != null && after.equals(before)) {
+                continue;
+            }
+            if (after != null) {
+                addedAttributes.put(entry.getKey(), after);
+            }
+            if (before != null) {
+                removedAttributes.put(entry.getKey(), before);
+            }
+        }
+
+        final Map<String, Set<String>> addedTags = new HashMap<>();
+        final Map<String, Set<String>> removedTags = new HashMap<>();
+        for (Map.Entry<String, Map<String, TagChange>> collection : tags.entrySet()) {
+            for (Map.Entry<String, TagChange> tag : collection.getValue().entrySet()) {
+                final TagChange change = tag.getValue();
+                if (change.existedBefore == change.existsAfter) {
+                    continue;
+                }
+                final Map<String, Set<String>> target = change.existsAfter ? addedTags : removedTags;
+                Set<String> collectionTags = target.get(collection.getKey());
+                if (collectionTags == null) {
+                    collectionTags = new HashSet<>();
+                    target.put(collection.getKey(), collectionTags);
+                }
+                collectionTags.add(tag.getKey());
+            }
+        }
+
+        return new UserDataDiff.Result(addedAttributes, removedAttributes, addedTags, removedTags);
+    }
+
+    private static class TagChange {
+
+        private final boolean existedBefore;
+
+        private boolean existsAfter;
+
+        private TagChange(boolean existedBefore, boolean existsAfter) {
+            this.existedBefore = existedBefore;
+            this.existsAfter = existsAfter;
+        }
+    }
+}
@@ -150,6 +150,18 @@ public class UserDataDiff {
 
         private Result() {}
 
+        Result(
+            @NonNull Map<String, UserAttribute> addedAttributes,
+            @NonNull Map<String, UserAttribute> removedAttributes,
+            @NonNull Map<String, Set<String>> addedTags,
+            @NonNull Map<String, Set<String>> removedTags
+        ) {
+            this.addedAttributes = addedAttributes;
+            this.removedAttributes = removedAttributes;
+            this.addedTags = addedTags;
+            this.removedTags = removedTags;
+        }
+
         public boolean hasChanges() {
             return (
                 addedAttributes.size() > 0 ||
@@ -17,6 +17,9 @@ public interface UserDatasource {
 
     void rollbackTransaction() throws UserDatabaseException;
 
+    @NonNull
+    UserDataDiff.Result getTransactionDiff() throws UserDatabaseException;
+
     void setAttribute(@NonNull String key, long attribute) throws UserDatabaseException;
 
     void setAttribute(@NonNull String key, double attribute) throws UserDatabaseException;
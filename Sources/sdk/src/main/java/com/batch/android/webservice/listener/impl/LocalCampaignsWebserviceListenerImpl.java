@@ -2,9 +2,11 @@ package com.batch.android.webservice.listener.impl;
 
 import androidx.annotation.NonNull;
 import com.batch.android.FailReason;
+import com.batch.android.WebserviceLauncher;
 import com.batch.android.core.Logger;
 import com.batch.android.di.providers.CampaignManagerProvider;
 import com.batch.android.di.providers.LocalCampaignsModuleProvider;
+import com.batch.android.di.providers.RuntimeManagerProvider;
 import com.batch.android.localcampaigns.CampaignManager;
 import com.batch.android.module.LocalCampaignsModule;
 import com.batch.android.processor.Module;
@@ -54,7 +56,12 @@ public class LocalCampaignsWebserviceListenerImpl implements LocalCampaignsWebse
     }
 
     private void handleInAppResponse(@NonNull LocalCampaignsResponse response) {
-        campaignManager.handleLocalCampaignsResponse(response);
+        if (!campaignManager.handleLocalCampaignsResponse(response)) {
+            // Delta couldn't be applied: signals stay enqueued until the full sync ends
+            Logger.internal(LocalCampaignsModule.TAG, "Local campaigns delta rejected, requesting a full sync");
+            WebserviceLauncher.launchLocalCampaignsWebservice(RuntimeManagerProvider.get());
+            return;
+        }
         localCampaignsModule.onLocalCampaignsWebserviceFinished();
     }
 }
@@ -0,0 +1,217 @@
+package com.batch.android.core;
+
+import android.content.Context;
+import androidx.annotation.NonNull;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+
+/**
+ * Tests of the connection race between the primary and fallback hosts
+ */
+@RunWith(AndroidJUnit4.class)
+@SmallTest
+public class WebserviceRaceTest {
+
+    private static final String PRIMARY_HOST = "google.com";
+
+    private static final String FALLBACK_HOST = "fallback.batch.com";
+
+    private Context appContext;
+
+    @Before
+    public void setUp() {
+        appContext = ApplicationProvider.getApplicationContext();
+    }
+
+    @Test
+    public void testPrimaryWins() throws Exception {
+        RacingWebservice ws = new RacingWebservice(appContext);
+        // The fallback would connect right away too, but the primary has a head start
+        ws.behaviors.put(PRIMARY_HOST, connection -> {});
+        ws.behaviors.put(FALLBACK_HOST, connection -> {});
+
+        Webservice.RaceResult result = ws.buildRacingConnection(ws.prepareRequest(), FALLBACK_HOST);
+        HttpURLConnection connection = result.connection;
+
+        Assert.assertFalse(result.fallbackWon);
+        Assert.assertEquals(PRIMARY_HOST, connection.getURL().getHost());
+        Mockito.verify(connection, Mockito.never()).disconnect();
+        // The fallback either never opened its connection, or closed it
+        HttpURLConnection fallbackConnection = ws.awaitConnection(FALLBACK_HOST, 1000);
+        if (fallbackConnection != null) {
+            Mockito.verify(fallbackConnection, Mockito.timeout(5000)).disconnect();
+        }
+    }
+
+    @Test
+    public void testFallbackWinsAfterHeadStart() throws Exception {
+        RacingWebservice ws = new RacingWebservice(appContext);
+        CountDownLatch releasePrimary = new CountDownLatch(1);
+        ws.behaviors.put(PRIMARY_HOST, connection -> awaitQuietly(releasePrimary));
+        ws.behaviors.put(FALLBACK_HOST, connection -> {});
+
+        long start = System.currentTimeMillis();
+        Webservice.RaceResult result = ws.buildRacingConnection(ws.prepareRequest(), FALLBACK_HOST);
+        HttpURLConnection connection = result.connection;
+        long elapsed = System.currentTimeMillis() - start;
+
+        Assert.assertTrue(result.fallbackWon);
+        Assert.assertEquals(FALLBACK_HOST, connection.getURL().getHost());
+        Assert.assertTrue("Fallback joined the race after " + elapsed + "ms", elapsed >= 250);
+        Mockito.verify(connection, Mockito.never()).disconnect();
+
+        // The primary connects once it has lost: it is disconnected
+        releasePrimary.countDown();
+        Mockito.verify(ws.awaitConnection(PRIMARY_HOST, 5000), Mockito.timeout(5000)).disconnect();
+    }
+
+    @Test
+    public void testPrimaryFailsFast() throws Exception {
+        RacingWebservice ws = new RacingWebservice(appContext);
+        ws.behaviors.put(
+            PRIMARY_HOST,
+            connection -> {
+                throw new ConnectException("primary");
+            }
+        );
+        ws.behaviors.put(FALLBACK_HOST, connection -> {});
+
+        Webservice.RaceResult result = ws.buildRacingConnection(ws.prepareRequest(), FALLBACK_HOST);
+        HttpURLConnection connection = result.connection;
+
+        Assert.assertTrue(result.fallbackWon);
+        Assert.assertEquals(FALLBACK_HOST, connection.getURL().getHost());
+        Mockito.verify(connection, Mockito.never()).disconnect();
+    }
+
+    @Test
+    public void testBothFailRethrowsPrimaryError() throws Exception {
+        RacingWebservice ws = new RacingWebservice(appContext);
+        ConnectException primaryError = new ConnectException("primary");
+        ws.behaviors.put(
+            PRIMARY_HOST,
+            connection -> {
+                throw primaryError;
+            }
+        );
+        ws.behaviors.put(
+            FALLBACK_HOST,
+            connection -> {
+                throw new UnknownHostException("fallback");
+            }
+        );
+
+        try {
+            ws.buildRacingConnection(ws.prepareRequest(), FALLBACK_HOST);
+            Assert.fail("The race should have failed");
+        } catch (ConnectException e) {
+            Assert.assertSame(primaryError, e);
+        }
+    }
+
+    @Test
+    public void testLoserIsDisconnected() throws Exception {
+        RacingWebservice ws = new RacingWebservice(appContext);
+        CountDownLatch releaseFallback = new CountDownLatch(1);
+        // The primary is slower than its head start, but still connects before the fallback
+        ws.behaviors.put(PRIMARY_HOST, connection -> sleepQuietly(500));
+        ws.behaviors.put(FALLBACK_HOST, connection -> awaitQuietly(releaseFallback));
+
+        Webservice.RaceResult result = ws.buildRacingConnection(ws.prepareRequest(), FALLBACK_HOST);
+        HttpURLConnection connection = result.connection;
+        Assert.assertFalse(result.fallbackWon);
+        Assert.assertEquals(PRIMARY_HOST, connection.getURL().getHost());
+
+        HttpURLConnection fallbackConnection = ws.awaitConnection(FALLBACK_HOST, 5000);
+        Assert.assertNotNull(fallbackConnection);
+        releaseFallback.countDown();
+        Mockito.verify(fallbackConnection, Mockito.timeout(5000)).disconnect();
+        Mockito.verify(connection, Mockito.never()).disconnect();
+    }
+
+    private static void awaitQuietly(@NonNull CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException ignored) {}
+    }
+
+    private static void sleepQuietly(long duration) {
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException ignored) {}
+    }
+
+    /**
+     * What a mocked connection does when connecting
+     */
+    private interface ConnectBehavior {
+        void connect(@NonNull HttpURLConnection connection) throws IOException;
+    }
+
+    /**
+     * Webservice creating mocked connections, by host
+     */
+    private static class RacingWebservice extends WebserviceTest.GeneralWebservice {
+
+        private final Map<String, ConnectBehavior> behaviors = new ConcurrentHashMap<>();
+
+        private final Map<String, HttpURLConnection> connections = new ConcurrentHashMap<>();
+
+        private RacingWebservice(Context context) throws MalformedURLException {
+            super(context);
+        }
+
+        @Override
+        protected HttpURLConnection createConnection(@NonNull URL url) throws IOException {
+            final ConnectBehavior behavior = behaviors.get(url.getHost());
+            Assert.assertNotNull("Unexpected host " + url.getHost(), behavior);
+
+            HttpURLConnection connection = Mockito.mock(HttpURLConnection.class);
+            Mockito.when(connection.getURL()).thenReturn(url);
+            Mockito.when(connection.getRequestMethod()).thenReturn("POST");
+            Mockito.when(connection.getRequestProperties()).thenReturn(new HashMap<String, List<String>>());
+            Mockito
+                .doAnswer(invocation -> {
+                    behavior.connect(connection);
+                    return null;
+                })
+                .when(connection)
+                .connect();
+            connections.put(url.getHost(), connection);
+            return connection;
+        }
+
+        /**
+         * Wait for the connection to a host to be created
+         *
+         * @return the connection, null if it hasn't been created in time
+         */
+        private HttpURLConnection awaitConnection(@NonNull String host, long timeout) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + timeout;
+            HttpURLConnection connection = connections.get(host);
+            while (connection == null && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+                connection = connections.get(host);
+            }
+            return connection;
+        }
+    }
+}
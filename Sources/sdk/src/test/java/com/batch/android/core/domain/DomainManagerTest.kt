@@ -7,6 +7,7 @@ import androidx.test.filters.SmallTest
 import com.batch.android.di.DITest
 import java.util.Date
 import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
 import org.junit.Before
 import org.junit.Test
 import org.junit.runner.RunWith
@@ -208,6 +209,24 @@ class DomainManagerTests : DITest() {
 
     // endregion
 
+    // region FallbackHost
+    @Test
+    fun testFallbackHost() {
+        /** Given hosts on both known domains */
+        /** Then the domain suffix should be swapped, keeping the subdomain */
+        assertEquals("ws.batch.io", manager.fallbackHost("ws.batch.com"))
+        assertEquals("wsmetrics.batch.com", manager.fallbackHost("wsmetrics.batch.io"))
+    }
+
+    @Test
+    fun testFallbackHostUnknownDomain() {
+        /** Given a host on an unknown domain */
+        /** Then there should be no fallback host */
+        assertNull(manager.fallbackHost("ws.example.com"))
+    }
+
+    // endregion
+
     // region Feature flags
     @Test
     fun testFeatureFlagNotActivated() {
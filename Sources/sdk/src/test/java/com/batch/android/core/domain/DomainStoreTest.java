@@ -89,7 +89,7 @@ public class DomainStoreTest {
         Context context = ApplicationProvider.getApplicationContext();
         RuntimeManagerProvider.get().setContext(context);
 
-        store = new DomainStore();
+        store = new DomainStore(Runnable::run);
 
         /// Remove local config
         Parameters parameters = ParametersProvider.get(RuntimeManagerProvider.get().getContext());
@@ -313,6 +313,9 @@ public class DomainStoreTest {
             .get(RuntimeManagerProvider.get().getContext())
             .set(ParameterKeys.DNS_DOMAIN_LAST_CHECK_DATE, String.valueOf(lastCheckDate), true);
 
+        /// Persisted values are only read once, when the store loads
+        store = new DomainStore(Runnable::run);
+
         /// When check availability
         boolean canCheck = store.canCheckOriginalDomainAvailability();
 
@@ -346,4 +349,18 @@ public class DomainStoreTest {
         // Then it should be false
         assertFalse(isOriginalDomain);
     } //endregion
+
+    //region Cache
+    @Test
+    public void testStateIsCachedInMemory() {
+        /// Given a loaded store
+        store.updateDomain(DomainManager.domains.get(1));
+
+        /// When the persisted value is changed behind its back
+        ParametersProvider.get(RuntimeManagerProvider.get().getContext()).remove(ParameterKeys.DNS_DOMAIN_KEY);
+
+        /// Then the store should keep serving its in-memory state
+        assertEquals(DomainManager.domains.get(1), store.getCurrentDomain());
+    }
+    //endregion
 }
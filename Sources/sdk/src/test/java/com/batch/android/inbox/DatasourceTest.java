@@ -2,17 +2,21 @@ package com.batch.android.inbox;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import androidx.test.core.app.ApplicationProvider;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import androidx.test.filters.MediumTest;
 import com.batch.android.BatchNotificationSource;
+import com.batch.android.PrivateNotificationContentHelper;
 import com.batch.android.json.JSONException;
 import com.batch.android.json.JSONObject;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
@@ -23,6 +27,7 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.powermock.reflect.Whitebox;
 
 /**
  * Test the SQLite DAO
@@ -375,6 +380,71 @@ public class DatasourceTest {
         );
     }
 
+    @Test
+    public void testUpdateNotifications() throws JSONException {
+        long fetcherId = datasource.getFetcherID(FetcherType.INSTALLATION, "test-install-id");
+        long now = System.currentTimeMillis();
+        List<InboxNotificationContentInternal> notifications = new ArrayList<>();
+        for (int i = 0; i < 3; ++i) {
+            notifications.add(makeNotification(i, now - i * 1000L));
+        }
+        datasource.insertNotifications(notifications, fetcherId);
+
+        // Unparsable sync objects are skipped, the others are written
+        List<String> updatedIds = datasource.updateNotifications(
+            Arrays.asList(
+                new JSONObject("{\"notificationId\":\"test-id-0\",\"read\":true}"),
+                new JSONObject("{\"read\":true}"),
+                new JSONObject("{\"notificationId\":\"test-id-1\",\"notificationTime\":\"invalid\"}"),
+                new JSONObject("{\"notificationId\":\"test-id-2\",\"read\":true}")
+            ),
+            fetcherId
+        );
+        assertEquals(Arrays.asList("test-id-0", "test-id-2"), updatedIds);
+        assertEquals(1, datasource.getUnreadNotificationCount(fetcherId, false));
+
+        // A second send of the same notification makes changing its send id violate the unique constraint
+        NotificationIdentifiers identifiers = new NotificationIdentifiers("test-id-1", "other-send-id");
+        InboxNotificationContentInternal otherSend = new InboxNotificationContentInternal(
+            BatchNotificationSource.CAMPAIGN,
+            new Date(now),
+            Collections.singletonMap("com.batch", payloadJson),
+            identifiers
+        );
+        otherSend.title = "test title";
+        otherSend.body = "test body";
+        otherSend.isUnread = true;
+        assertTrue(datasource.insert(otherSend, fetcherId));
+
+        // A failed write rolls the whole batch back and reports nothing as updated
+        updatedIds =
+            datasource.updateNotifications(
+                Arrays.asList(
+                    new JSONObject("{\"notificationId\":\"test-id-0\",\"read\":false}"),
+                    new JSONObject("{\"notificationId\":\"test-id-1\",\"sendId\":\"same-send-id\"}")
+                ),
+                fetcherId
+            );
+        assertTrue(updatedIds.isEmpty());
+        try (
+            Cursor cursor = datasource
+                .getDatabase()
+                .query(
+                    InboxDatabaseHelper.TABLE_NOTIFICATIONS,
+                    new String[] { InboxDatabaseHelper.COLUMN_UNREAD },
+                    InboxDatabaseHelper.COLUMN_NOTIFICATION_ID + " = ?",
+                    new String[] { "test-id-0" },
+                    null,
+                    null,
+                    null
+                )
+        ) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(0, cursor.getInt(0));
+        }
+        assertFalse(datasource.getDatabase().inTransaction());
+    }
+
     @Test
     public void testMarkNotificationAsDeleted() {
         long fetcherId = datasource.getFetcherID(FetcherType.USER_IDENTIFIER, "test-custom-id");
@@ -759,4 +829,317 @@ public class DatasourceTest {
         assertEquals(times[3], cursor.getLong(cursor.getColumnIndex(InboxDatabaseHelper.COLUMN_DATE)));
         assertEquals("test-id-3", cursor.getString(cursor.getColumnIndex(InboxDatabaseHelper.COLUMN_NOTIFICATION_ID)));
     }
+
+    @Test
+    public void testGetNotificationsPage() {
+        long fetcherId = datasource.getFetcherID(FetcherType.USER_IDENTIFIER, "test-custom-id");
+        assertTrue(fetcherId > 0);
+
+        Map<String, String> payload = new HashMap<>();
+        payload.put("com.batch", payloadJson);
+
+        long now = System.currentTimeMillis();
+        // Notifications 1 and 2 share the same date, and 3 is deleted
+        long[] times = { now, now - 1000, now - 1000, now - 2000, now - 3000 };
+        for (int i = 0; i < times.length; ++i) {
+            NotificationIdentifiers identifiers = new NotificationIdentifiers("test-id-" + i, "test-send-id-" + i);
+            InboxNotificationContentInternal notification = new InboxNotificationContentInternal(
+                BatchNotificationSource.CAMPAIGN,
+                new Date(times[i]),
+                payload,
+                identifiers
+            );
+            notification.title = "test title";
+            notification.body = "test body";
+            assertTrue(datasource.insert(notification, fetcherId));
+        }
+        datasource.markNotificationAsDeleted("test-id-3");
+
+        List<InboxNotificationContentInternal> page = datasource.getNotificationsPage(null, 2, fetcherId);
+        assertEquals(2, page.size());
+        assertEquals("test-id-0", page.get(0).identifiers.identifier);
+        assertEquals("test-id-2", page.get(1).identifiers.identifier);
+
+        page = datasource.getNotificationsPage(InboxPageCursor.from(page.get(1)), 2, fetcherId);
+        assertEquals(2, page.size());
+        assertEquals("test-id-1", page.get(0).identifiers.identifier);
+        assertEquals("test-id-4", page.get(1).identifiers.identifier);
+
+        page = datasource.getNotificationsPage(InboxPageCursor.from(page.get(1)), 2, fetcherId);
+        assertTrue(page.isEmpty());
+
+        // Other fetchers don't see them
+        long otherFetcherId = datasource.getFetcherID(FetcherType.INSTALLATION, "test-install-id");
+        assertTrue(datasource.getNotificationsPage(null, 2, otherFetcherId).isEmpty());
+    }
+
+    @Test
+    public void testIndexes() {
+        Cursor cursor = datasource
+            .getDatabase()
+            .rawQuery(
+                "SELECT name FROM sqlite_master WHERE type = 'index' AND name IN (?, ?)",
+                new String[] {
+                    InboxDatabaseHelper.INDEX_NOTIFICATIONS_DATE,
+                    InboxDatabaseHelper.INDEX_FETCHERS_NOTIFICATIONS_NOTIFICATION_ID
+                }
+            );
+        assertEquals(2, cursor.getCount());
+        cursor.close();
+    }
+
+    @Test
+    public void testInsertSkipsUnchangedNotifications() {
+        long fetcherId = datasource.getFetcherID(FetcherType.USER_IDENTIFIER, "test-custom-id");
+        assertTrue(fetcherId > 0);
+
+        InboxNotificationContentInternal notification = makeNotification(0, System.currentTimeMillis());
+        assertEquals(
+            Collections.singletonList("test-id-0"),
+            datasource.insertNotifications(Collections.singletonList(notification), fetcherId)
+        );
+        long dbId = getNotificationDbId("test-id-0");
+
+        // Unchanged: the row is kept as is
+        assertTrue(datasource.insert(notification, fetcherId));
+        assertEquals(dbId, getNotificationDbId("test-id-0"));
+
+        // Changed: the row is replaced
+        notification.isUnread = false;
+        assertTrue(datasource.insert(notification, fetcherId));
+        long newDbId = getNotificationDbId("test-id-0");
+        assertTrue(newDbId != dbId);
+
+        // Deleted locally: the row is replaced too, even if unchanged
+        datasource.markNotificationAsDeleted("test-id-0");
+        assertTrue(datasource.insert(notification, fetcherId));
+        assertTrue(getNotificationDbId("test-id-0") != newDbId);
+        assertEquals(1, datasource.getNotifications(Collections.singletonList("test-id-0"), fetcherId).size());
+    }
+
+    @Test
+    public void testBulkInsertNotifications() {
+        long fetcherId = datasource.getFetcherID(FetcherType.USER_IDENTIFIER, "test-custom-id");
+        assertTrue(fetcherId > 0);
+
+        long now = System.currentTimeMillis();
+        for (int count : new int[] { 20, 100, 500 }) {
+            datasource.wipeData();
+            fetcherId = datasource.getFetcherID(FetcherType.USER_IDENTIFIER, "test-custom-id");
+
+            List<InboxNotificationContentInternal> notifications = new ArrayList<>();
+            for (int i = 0; i < count; ++i) {
+                notifications.add(makeNotification(i, now - i * 1000L));
+            }
+
+            assertEquals(count, datasource.insertNotifications(notifications, fetcherId).size());
+            // Inserting them again only updates them
+            assertEquals(count, datasource.insertNotifications(notifications, fetcherId).size());
+            assertEquals(count, datasource.getNotificationsPage(null, count, fetcherId).size());
+        }
+    }
+
+    @Test
+    public void testNotificationPayloadIsParsedLazily() {
+        long fetcherId = datasource.getFetcherID(FetcherType.USER_IDENTIFIER, "test-custom-id");
+        assertTrue(fetcherId > 0);
+        assertTrue(datasource.insert(makeNotification(0, System.currentTimeMillis()), fetcherId));
+
+        InboxNotificationContentInternal notification = datasource.getNotificationsPage(null, 1, fetcherId).get(0);
+        assertEquals("test title", notification.title);
+        assertEquals("test body", notification.body);
+        assertEquals(BatchNotificationSource.CAMPAIGN, notification.getSource());
+        assertFalse(notification.isSilentPush());
+        assertNull(Whitebox.getInternalState(notification, "payload"));
+        assertNull(notification.identifiers.additionalData);
+
+        assertEquals("hop", notification.getPayload().get("hip"));
+        assertEquals(payloadJson, notification.getPayload().get("com.batch"));
+        notification.loadBatchData();
+        assertNotNull(notification.identifiers.additionalData);
+    }
+
+    @Test
+    public void testCleanDatabaseRetention() {
+        long fetcherId = datasource.getFetcherID(FetcherType.USER_IDENTIFIER, "test-custom-id");
+        assertTrue(fetcherId > 0);
+
+        // More expired notifications than a cleanup batch, and than SQLite's max number of arguments
+        long now = System.currentTimeMillis();
+        List<InboxNotificationContentInternal> notifications = new ArrayList<>();
+        for (int i = 0; i < 1200; ++i) {
+            notifications.add(makeNotification(i, now - 7776000000L - i * 1000L));
+        }
+        for (int i = 1200; i < 1210; ++i) {
+            notifications.add(makeNotification(i, now - (i - 1200) * 1000L));
+        }
+        assertEquals(1210, datasource.insertNotifications(notifications, fetcherId).size());
+
+        assertTrue(datasource.cleanDatabase());
+        assertEquals(10, countRows(InboxDatabaseHelper.TABLE_NOTIFICATIONS));
+        assertEquals(10, countRows(InboxDatabaseHelper.TABLE_FETCHERS_NOTIFICATIONS));
+
+        // Keep the 6 most recent ones
+        assertTrue(datasource.cleanDatabase(6, 0));
+        List<InboxNotificationContentInternal> page = datasource.getNotificationsPage(null, 10, fetcherId);
+        assertEquals(6, page.size());
+        assertEquals("test-id-1200", page.get(0).identifiers.identifier);
+        assertEquals("test-id-1205", page.get(5).identifiers.identifier);
+        assertEquals(6, countRows(InboxDatabaseHelper.TABLE_FETCHERS_NOTIFICATIONS));
+
+        // All notifications have the same size: keep 3 of them
+        Cursor cursor = datasource
+            .getDatabase()
+            .rawQuery(
+                "SELECT length(CAST(payload AS BLOB)) + length(CAST(title AS BLOB)) + length(CAST(body AS BLOB))" +
+                " FROM notifications LIMIT 1",
+                null
+            );
+        assertTrue(cursor.moveToFirst());
+        long notificationSize = cursor.getLong(0);
+        cursor.close();
+
+        assertTrue(datasource.cleanDatabase(0, notificationSize * 3 + notificationSize / 2));
+        page = datasource.getNotificationsPage(null, 10, fetcherId);
+        assertEquals(3, page.size());
+        assertEquals("test-id-1202", page.get(2).identifiers.identifier);
+        assertEquals(3, countRows(InboxDatabaseHelper.TABLE_FETCHERS_NOTIFICATIONS));
+    }
+
+    @Test
+    public void testNotificationCounters() {
+        long fetcherId = datasource.getFetcherID(FetcherType.INSTALLATION, "test-install-id");
+        long otherFetcherId = datasource.getFetcherID(FetcherType.USER_IDENTIFIER, "test-custom-id");
+
+        long now = System.currentTimeMillis();
+        List<InboxNotificationContentInternal> notifications = new ArrayList<>();
+        for (int i = 0; i < 5; ++i) {
+            notifications.add(makeNotification(i, now - i * 1000L));
+        }
+        datasource.insertNotifications(notifications, fetcherId);
+        datasource.insertNotifications(notifications.subList(0, 2), otherFetcherId);
+
+        assertEquals(5, datasource.getNotificationCount(fetcherId, false));
+        assertEquals(5, datasource.getUnreadNotificationCount(fetcherId, false));
+        assertEquals(2, datasource.getNotificationCount(otherFetcherId, false));
+        assertEquals(2, datasource.getUnreadNotificationCount(otherFetcherId, false));
+
+        // Counters are updated for every fetcher having the notification
+        datasource.markNotificationAsRead("test-id-0");
+        datasource.markNotificationAsRead("test-id-0");
+        datasource.markNotificationAsDeleted("test-id-1");
+        assertEquals(4, datasource.getNotificationCount(fetcherId, false));
+        assertEquals(3, datasource.getUnreadNotificationCount(fetcherId, false));
+        assertEquals(1, datasource.getNotificationCount(otherFetcherId, false));
+        assertEquals(0, datasource.getUnreadNotificationCount(otherFetcherId, false));
+
+        // Same values as computed from scratch
+        InboxDatasource otherDatasource = new InboxDatasource(appContext);
+        assertEquals(4, otherDatasource.getNotificationCount(fetcherId, false));
+        assertEquals(3, otherDatasource.getUnreadNotificationCount(fetcherId, false));
+        assertEquals(1, otherDatasource.getNotificationCount(otherFetcherId, false));
+        assertEquals(0, otherDatasource.getUnreadNotificationCount(otherFetcherId, false));
+        otherDatasource.close();
+
+        datasource.markAllAsRead(now, fetcherId);
+        assertEquals(4, datasource.getNotificationCount(fetcherId, false));
+        assertEquals(0, datasource.getUnreadNotificationCount(fetcherId, false));
+
+        datasource.insert(makeNotification(5, now + 1000L), otherFetcherId);
+        assertEquals(2, datasource.getNotificationCount(otherFetcherId, false));
+        assertEquals(1, datasource.getUnreadNotificationCount(otherFetcherId, false));
+    }
+
+    @Test
+    public void testNotificationCountersMatchSilentFilter() throws JSONException {
+        long fetcherId = datasource.getFetcherID(FetcherType.INSTALLATION, "test-install-id");
+        long now = System.currentTimeMillis();
+        List<InboxNotificationContentInternal> notifications = new ArrayList<>();
+        for (int i = 0; i < 3; ++i) {
+            notifications.add(makeNotification(i, now - i * 1000L));
+        }
+        // Listed as silent by fetchers, as it has no body
+        notifications.get(1).body = null;
+        datasource.insertNotifications(notifications, fetcherId);
+
+        assertEquals(3, datasource.getNotificationCount(fetcherId, false));
+        assertEquals(2, datasource.getNotificationCount(fetcherId, true));
+        assertEquals(2, datasource.getUnreadNotificationCount(fetcherId, true));
+        datasource.markNotificationAsRead("test-id-1");
+        assertEquals(2, datasource.getUnreadNotificationCount(fetcherId, true));
+        assertEquals(2, datasource.getUnreadNotificationCount(fetcherId, false));
+
+        // A sync replacing the payload with a silent push one
+        JSONObject silentPayload = new JSONObject();
+        silentPayload.put("com.batch", new JSONObject(payloadJson).put("s", true));
+        datasource.updateNotifications(
+            Collections.singletonList(
+                new JSONObject().put("notificationId", "test-id-2").put("payload", silentPayload)
+            ),
+            fetcherId
+        );
+        assertEquals(1, datasource.getNotificationCount(fetcherId, true));
+        assertEquals(1, datasource.getUnreadNotificationCount(fetcherId, true));
+        assertEquals(3, datasource.getNotificationCount(fetcherId, false));
+
+        // Counters match what the fetcher lists
+        int listed = 0;
+        int listedUnread = 0;
+        for (InboxNotificationContentInternal notification : datasource.getNotificationsPage(null, 10, fetcherId)) {
+            if (!PrivateNotificationContentHelper.getPublicContent(notification).isSilent()) {
+                listed++;
+                if (notification.isUnread) {
+                    listedUnread++;
+                }
+            }
+        }
+        assertEquals(listed, datasource.getNotificationCount(fetcherId, true));
+        assertEquals(listedUnread, datasource.getUnreadNotificationCount(fetcherId, true));
+        assertEquals(
+            BatchNotificationSource.CAMPAIGN,
+            datasource.getNotifications(Collections.singletonList("test-id-2"), fetcherId).get(0).getSource()
+        );
+    }
+
+    private long countRows(String table) {
+        return DatabaseUtils.queryNumEntries(datasource.getDatabase(), table);
+    }
+
+    private InboxNotificationContentInternal makeNotification(int index, long time) {
+        Map<String, String> payload = new HashMap<>();
+        payload.put("com.batch", payloadJson);
+        payload.put("hip", "hop");
+
+        NotificationIdentifiers identifiers = new NotificationIdentifiers("test-id-" + index, "test-send-id-" + index);
+        identifiers.installID = "b5baf3e0-a01f-11ea-111a-17c13e111be2";
+        InboxNotificationContentInternal notification = new InboxNotificationContentInternal(
+            BatchNotificationSource.CAMPAIGN,
+            new Date(time),
+            payload,
+            identifiers
+        );
+        notification.title = "test title";
+        notification.body = "test body";
+        notification.isUnread = true;
+        return notification;
+    }
+
+    private long getNotificationDbId(String notificationId) {
+        try (
+            Cursor cursor = datasource
+                .getDatabase()
+                .query(
+                    InboxDatabaseHelper.TABLE_NOTIFICATIONS,
+                    new String[] { InboxDatabaseHelper.COLUMN_DB_ID },
+                    InboxDatabaseHelper.COLUMN_NOTIFICATION_ID + " = ?",
+                    new String[] { notificationId },
+                    null,
+                    null,
+                    null
+                )
+        ) {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getLong(0);
+        }
+    }
 }
@@ -0,0 +1,146 @@
+package com.batch.android.inbox;
+
+import androidx.annotation.NonNull;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+import com.batch.android.BatchNotificationSource;
+import com.batch.android.webservice.listener.InboxWebserviceListener;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(AndroidJUnit4.class)
+@SmallTest
+public class InboxFetchEngineTest {
+
+    @Test
+    public void testIdenticalRequestsAreDeduplicated() throws Exception {
+        InboxFetchEngine engine = new InboxFetchEngine();
+        String key = InboxFetchEngine.makeFetchKey(1, FetcherType.INSTALLATION, "install", null, 20, null);
+
+        CountDownLatch requestStarted = new CountDownLatch(1);
+        CountDownLatch releaseRequest = new CountDownLatch(1);
+        AtomicInteger runCount = new AtomicInteger();
+        InboxFetchEngine.Request request = listener -> {
+            runCount.incrementAndGet();
+            requestStarted.countDown();
+            try {
+                releaseRequest.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ignored) {}
+            listener.onSuccess(makeResponse());
+        };
+
+        CollectingListener firstListener = new CollectingListener();
+        CollectingListener secondListener = new CollectingListener();
+        CollectingListener otherPageListener = new CollectingListener();
+
+        engine.submit(key, firstListener, request);
+        Assert.assertTrue(requestStarted.await(5, TimeUnit.SECONDS));
+        // Joins the running request
+        engine.submit(key, secondListener, request);
+        // Another page is a different request
+        engine.submit(
+            InboxFetchEngine.makeFetchKey(1, FetcherType.INSTALLATION, "install", null, 20, "cursor"),
+            otherPageListener,
+            listener -> {
+                runCount.incrementAndGet();
+                listener.onFailure("error");
+            }
+        );
+        Assert.assertEquals(2, engine.getPendingRequestCount());
+        releaseRequest.countDown();
+
+        Assert.assertTrue(firstListener.done.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(secondListener.done.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(otherPageListener.done.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(2, runCount.get());
+        Assert.assertEquals(0, engine.getPendingRequestCount());
+        Assert.assertEquals("error", otherPageListener.error);
+
+        // Both fetchers get the notifications, each in its own copy
+        InboxNotificationContentInternal first = firstListener.responses.get(0).notifications.get(0);
+        InboxNotificationContentInternal second = secondListener.responses.get(0).notifications.get(0);
+        Assert.assertNotSame(first, second);
+        Assert.assertNotSame(first.identifiers, second.identifiers);
+        Assert.assertEquals(first.identifiers.identifier, second.identifiers.identifier);
+        Assert.assertEquals(first.title, second.title);
+        Assert.assertEquals(first.getPayload(), second.getPayload());
+        Assert.assertEquals("next", secondListener.responses.get(0).cursor);
+
+        // Completed requests are not joined anymore
+        CollectingListener laterListener = new CollectingListener();
+        engine.submit(key, laterListener, request);
+        Assert.assertTrue(laterListener.done.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(3, runCount.get());
+    }
+
+    @Test
+    public void testSyncKeyDependsOnCandidates() {
+        List<InboxCandidateNotificationInternal> candidates = new ArrayList<>();
+        candidates.add(new InboxCandidateNotificationInternal("id", true));
+        FetcherType type = FetcherType.USER_IDENTIFIER;
+        String unreadKey = InboxFetchEngine.makeSyncKey(1, type, "user", "key", 20, null, candidates);
+        candidates.get(0).isUnread = false;
+        String readKey = InboxFetchEngine.makeSyncKey(1, type, "user", "key", 20, null, candidates);
+
+        Assert.assertNotEquals(unreadKey, readKey);
+        Assert.assertEquals(readKey, InboxFetchEngine.makeSyncKey(1, type, "user", "key", 20, null, candidates));
+        Assert.assertNotEquals(readKey, InboxFetchEngine.makeSyncKey(2, type, "user", "key", 20, null, candidates));
+    }
+
+    @Test
+    public void testFetchKeyDependsOnFetcherCache() {
+        FetcherType type = FetcherType.INSTALLATION;
+        String cachingKey = InboxFetchEngine.makeFetchKey(1, type, "install", null, 20, null);
+
+        // A fetcher not using the cache must not join a request persisting its results for another one
+        Assert.assertNotEquals(cachingKey, InboxFetchEngine.makeFetchKey(-1, type, "install", null, 20, null));
+        Assert.assertEquals(cachingKey, InboxFetchEngine.makeFetchKey(1, type, "install", null, 20, null));
+    }
+
+    private static InboxWebserviceResponse makeResponse() {
+        NotificationIdentifiers identifiers = new NotificationIdentifiers("notification-id", "send-id");
+        InboxNotificationContentInternal notification = new InboxNotificationContentInternal(
+            BatchNotificationSource.CAMPAIGN,
+            new Date(),
+            Collections.singletonMap("msg", "body"),
+            identifiers
+        );
+        notification.title = "title";
+        notification.body = "body";
+
+        InboxWebserviceResponse response = new InboxWebserviceResponse();
+        response.cursor = "next";
+        response.hasMore = true;
+        response.notifications.add(notification);
+        return response;
+    }
+
+    private static class CollectingListener implements InboxWebserviceListener {
+
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        private final List<InboxWebserviceResponse> responses = new ArrayList<>();
+
+        private String error;
+
+        @Override
+        public void onSuccess(InboxWebserviceResponse result) {
+            responses.add(result);
+            done.countDown();
+        }
+
+        @Override
+        public void onFailure(@NonNull String error) {
+            this.error = error;
+            done.countDown();
+        }
+    }
+}
@@ -8,8 +8,9 @@ import androidx.test.core.app.ApplicationProvider;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import androidx.test.filters.SmallTest;
 import com.batch.android.di.DITest;
-import com.batch.android.json.JSONObject;
+import com.batch.android.json.JSONReader;
 import com.batch.android.webservice.listener.InboxWebserviceListener;
+import java.io.StringReader;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -68,7 +69,7 @@ public class InboxFetchWebserviceClientTest extends DITest {
             )
         );
 
-        PowerMockito.doReturn(new JSONObject(payload)).when(client, "getBasicJsonResponseBody");
+        PowerMockito.doReturn(new JSONReader(new StringReader(payload))).when(client, "getBasicJsonResponseReader");
         client.run();
     }
 }
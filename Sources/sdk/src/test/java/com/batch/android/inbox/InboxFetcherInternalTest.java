@@ -11,10 +11,21 @@ import androidx.test.ext.junit.runners.AndroidJUnit4;
 import androidx.test.filters.SmallTest;
 import com.batch.android.BatchInboxFetcher;
 import com.batch.android.BatchInboxNotificationContent;
+import com.batch.android.BatchNotificationSource;
+import com.batch.android.di.providers.InboxDatasourceProvider;
+import com.batch.android.di.providers.InboxFetchEngineProvider;
 import com.batch.android.di.providers.InboxFetcherInternalProvider;
 import com.batch.android.json.JSONObject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -112,4 +123,138 @@ public class InboxFetcherInternalTest {
             compareNotification.getNotificationIdentifier()
         );
     }
+
+    @Test
+    public void testFetchNextPageFromCache() throws Exception {
+        InboxDatasource datasource = InboxDatasourceProvider.get(appContext);
+        long fetcherId = datasource.getFetcherID(FetcherType.INSTALLATION, "test-cache-install-id");
+
+        Map<String, String> payload = new HashMap<>();
+        payload.put("com.batch", "{\"t\":\"c\",\"l\":\"https://batch.com\",\"i\":\"test-send-id\"}");
+        // Cache: test-id-0 (oldest) to test-id-3 (newest), all unread
+        for (int i = 0; i < 4; ++i) {
+            NotificationIdentifiers identifiers = new NotificationIdentifiers("test-id-" + i, "test-send-id-" + i);
+            identifiers.installID = "test-cache-install-id";
+            InboxNotificationContentInternal notification = new InboxNotificationContentInternal(
+                BatchNotificationSource.CAMPAIGN,
+                new Date((i + 1) * 3600000L),
+                payload,
+                identifiers
+            );
+            notification.title = "test title";
+            notification.body = "test body";
+            Assert.assertTrue(datasource.insert(notification, fetcherId));
+        }
+
+        // The first page syncs test-id-3 and test-id-2. The second one is read from the cache, and its sync tells
+        // that test-id-1 has been read, that test-id-0 has been deleted and that the cache was missing test-id-1.5.
+        Queue<String> serverResponses = new LinkedList<>();
+        serverResponses.add(
+            "{\"notifications\":[{\"notificationId\":\"test-id-3\"},{\"notificationId\":\"test-id-2\"}],\"hasMore\":true,\"timeout\":false,\"cursor\":\"test-id-2\"}"
+        );
+        serverResponses.add(
+            "{\"notifications\":[{\"installId\":\"test-cache-install-id\",\"notificationId\":\"test-id-1.5\",\"notificationTime\":9000000,\"sendId\":\"test-send-id-1.5\",\"payload\":{\"com.batch\":{\"t\":\"c\",\"l\":\"https://batch.com\",\"i\":\"test-send-id-1.5\"},\"msg\":\"test body\",\"title\":\"test title\"}},{\"notificationId\":\"test-id-1\",\"read\":true}],\"cache\":{\"delete\":[\"test-id-0\"]},\"hasMore\":false,\"timeout\":false,\"cursor\":\"test-id-1\"}"
+        );
+
+        InboxFetcherInternal fetcher = spy(InboxFetcherInternalProvider.get(appContext, "test-cache-install-id"));
+        fetcher.setMaxPageSize(2);
+        Mockito
+            .doAnswer(invocation -> {
+                InboxSyncWebserviceClient client = invocation.getArgument(0);
+                InboxSyncWebserviceClient spy = PowerMockito.spy(client);
+                PowerMockito.doReturn(new JSONObject(serverResponses.remove())).when(spy, "getBasicJsonResponseBody");
+                spy.run();
+                return null;
+            })
+            .when(fetcher)
+            .runSyncWSClient(Mockito.any());
+
+        try {
+            fetcher.fetchNewNotifications(
+                new BatchInboxFetcher.OnNewNotificationsFetchedListener() {
+                    @Override
+                    public void onFetchSuccess(
+                        @NonNull List<BatchInboxNotificationContent> notifications,
+                        boolean foundNewNotifications,
+                        boolean endReached
+                    ) {
+                        Assert.assertEquals(2, notifications.size());
+                        latch.countDown();
+                    }
+
+                    @Override
+                    public void onFetchFailure(@NonNull String error) {
+                        Assert.fail(error);
+                    }
+                }
+            );
+            Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+
+            // Served right away from the cache, then synced in the background
+            List<BatchInboxNotificationContent> cachedPage = new ArrayList<>();
+            fetcher.fetchNextPage(
+                new BatchInboxFetcher.OnNextPageFetchedListener() {
+                    @Override
+                    public void onFetchSuccess(
+                        @NonNull List<BatchInboxNotificationContent> notifications,
+                        boolean endReached
+                    ) {
+                        cachedPage.addAll(notifications);
+                    }
+
+                    @Override
+                    public void onFetchFailure(@NonNull String error) {
+                        Assert.fail(error);
+                    }
+                }
+            );
+            Assert.assertEquals(2, cachedPage.size());
+            Assert.assertEquals("test-id-1", cachedPage.get(0).getNotificationIdentifier());
+            Assert.assertEquals("test-id-0", cachedPage.get(1).getNotificationIdentifier());
+
+            CountDownLatch syncLatch = new CountDownLatch(1);
+            InboxFetchEngineProvider.get().execute(syncLatch::countDown);
+            Assert.assertTrue(syncLatch.await(5, TimeUnit.SECONDS));
+            Assert.assertTrue(serverResponses.isEmpty());
+
+            // The sync updated the cache, but not the notifications the app already has
+            List<InboxNotificationContentInternal> cached = datasource.getNotifications(
+                Collections.singletonList("test-id-1"),
+                fetcherId
+            );
+            Assert.assertFalse(cached.get(0).isUnread);
+            Assert.assertTrue(datasource.getNotifications(Collections.singletonList("test-id-0"), fetcherId).isEmpty());
+            Assert.assertTrue(cachedPage.get(0).isUnread());
+            List<String> fetchedIds = new ArrayList<>();
+            for (BatchInboxNotificationContent notification : fetcher.getPublicFetchedNotifications()) {
+                fetchedIds.add(notification.getNotificationIdentifier());
+            }
+            Assert.assertTrue(fetchedIds.contains("test-id-0"));
+
+            // The notification that the cache was missing comes with the next page
+            List<BatchInboxNotificationContent> nextPage = new ArrayList<>();
+            fetcher.fetchNextPage(
+                new BatchInboxFetcher.OnNextPageFetchedListener() {
+                    @Override
+                    public void onFetchSuccess(
+                        @NonNull List<BatchInboxNotificationContent> notifications,
+                        boolean endReached
+                    ) {
+                        Assert.assertTrue(endReached);
+                        nextPage.addAll(notifications);
+                    }
+
+                    @Override
+                    public void onFetchFailure(@NonNull String error) {
+                        Assert.fail(error);
+                    }
+                }
+            );
+            Assert.assertEquals(1, nextPage.size());
+            Assert.assertEquals("test-id-1.5", nextPage.get(0).getNotificationIdentifier());
+            Assert.assertTrue(fetcher.isEndReached());
+        } finally {
+            datasource.wipeData();
+        }
+    }
 }
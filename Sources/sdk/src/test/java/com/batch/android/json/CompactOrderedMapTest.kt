@@ -0,0 +1,102 @@
+package com.batch.android.json
+
+import java.util.ConcurrentModificationException
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+/** Test class for [CompactOrderedMap] */
+class CompactOrderedMapTest {
+
+    @Test
+    fun testCompactStorage() {
+        val map = CompactOrderedMap()
+        for (i in 0 until CompactOrderedMap.COMPACT_THRESHOLD) {
+            assertNull(map.put("key$i", i))
+        }
+
+        assertTrue(map.isCompact)
+        assertEquals(CompactOrderedMap.COMPACT_THRESHOLD, map.size)
+        assertEquals(3, map["key3"])
+        assertEquals(3, map.put("key3", "three"))
+        assertEquals("three", map["key3"])
+        assertFalse(map.containsKey("missing"))
+        assertFalse(map.containsKey(42))
+    }
+
+    @Test
+    fun testPromotionKeepsOrder() {
+        val map = CompactOrderedMap()
+        val expected = LinkedHashMap<String, Any>()
+        for (i in 20 downTo 0) {
+            map["key$i"] = i
+            expected["key$i"] = i
+        }
+
+        assertFalse(map.isCompact)
+        assertEquals(expected.keys.toList(), map.keys.toList())
+        assertEquals(expected, map)
+        assertEquals(expected.hashCode(), map.hashCode())
+
+        assertTrue(CompactOrderedMap(1).isCompact)
+        assertFalse(CompactOrderedMap(100).isCompact)
+    }
+
+    @Test
+    fun testRemovalKeepsOrder() {
+        val map = CompactOrderedMap()
+        listOf("a", "b", "c", "d").forEach { map[it] = it.uppercase() }
+
+        assertEquals("B", map.remove("b"))
+        assertNull(map.remove("b"))
+        assertEquals(listOf("a", "c", "d"), map.keys.toList())
+
+        val iterator = map.entries.iterator()
+        while (iterator.hasNext()) {
+            val entry = iterator.next()
+            if (entry.key == "c") {
+                iterator.remove()
+            } else {
+                entry.setValue(entry.value.toString().lowercase())
+            }
+        }
+        assertEquals(mapOf("a" to "a", "d" to "d"), map)
+        assertEquals(listOf("a", "d"), map.keys.toList())
+
+        map["e"] = "E"
+        assertEquals(listOf("a", "d", "e"), map.keys.toList())
+        map.clear()
+        assertTrue(map.isEmpty())
+    }
+
+    @Test(expected = ConcurrentModificationException::class)
+    fun testPromotionDuringIterationFailsFast() {
+        val map = CompactOrderedMap()
+        for (i in 0 until CompactOrderedMap.COMPACT_THRESHOLD) {
+            map["key$i"] = i
+        }
+
+        val iterator = map.entries.iterator()
+        iterator.next()
+        map["promoting"] = 0
+        assertFalse(map.isCompact)
+        iterator.hasNext()
+    }
+
+    @Test
+    fun testJSONObjectIterationOrder() {
+        val json = JSONObject()
+        for (i in 0 until 12) {
+            json.put("k$i", i)
+            if (i == 4) {
+                json.remove("k1")
+            }
+        }
+
+        val expected = (0 until 12).filter { it != 1 }.map { "k$it" }
+        assertEquals(expected, json.keySet().toList())
+        assertEquals(JSONObject(json.toString()), json)
+    }
+}
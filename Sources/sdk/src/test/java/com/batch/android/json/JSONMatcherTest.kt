@@ -0,0 +1,112 @@
+package com.batch.android.json
+
+import java.util.Random
+import org.junit.Assert.*
+import org.junit.Test
+
+class JSONMatcherTest {
+
+    @Test
+    fun testMatches() {
+        val expected =
+            JSONObject(
+                "{\"size.s\":\"M\",\"count.i\":2,\"items.a\":[\"b\",\"a\"],\"objects.a\":[{\"id.s\":\"x\"}],\"sub.o\":{\"ok.b\":true}}"
+            )
+        val matcher = JSONMatcher.compile(expected)
+
+        assertTrue(matcher.matches(expected))
+        assertTrue(
+            matcher.matches(
+                JSONObject(
+                    "{\"size.s\":\"M\",\"count.i\":2,\"items.a\":[\"a\",\"c\",\"b\"],\"objects.a\":[{\"id.s\":\"y\"},{\"id.s\":\"x\",\"other\":1}],\"sub.o\":{\"ok.b\":true,\"more\":null},\"extra\":3}"
+                )
+            )
+        )
+        assertFalse(matcher.matches(null))
+        assertFalse(matcher.matches(JSONObject()))
+        // Case sensitive
+        assertFalse(
+            matcher.matches(
+                JSONObject(
+                    "{\"size.s\":\"m\",\"count.i\":2,\"items.a\":[\"b\",\"a\"],\"objects.a\":[{\"id.s\":\"x\"}],\"sub.o\":{\"ok.b\":true}}"
+                )
+            )
+        )
+        // Array values must match distinct values
+        assertFalse(JSONMatcher.compile(JSONObject("{\"a\":[1,1]}")).matches(JSONObject("{\"a\":[1,2]}")))
+        // Types mismatch
+        assertFalse(JSONMatcher.compile(JSONObject("{\"a\":{}}")).matches(JSONObject("{\"a\":[]}")))
+        assertFalse(JSONMatcher.compile(JSONObject("{\"a\":\"1\"}")).matches(JSONObject("{\"a\":1}")))
+        assertTrue(JSONMatcher.compile(JSONObject("{\"a\":null}")).matches(JSONObject("{\"a\":null}")))
+        assertFalse(JSONMatcher.compile(JSONObject("{\"a\":null}")).matches(JSONObject("{}")))
+    }
+
+    @Test
+    fun testMatchesLikeJSONUtils() {
+        val random = Random(42)
+        repeat(5000) {
+            val expected = randomObject(random, 0)
+            val actual = if (random.nextBoolean()) mutate(random, expected) else randomObject(random, 0)
+            assertEquals(
+                "expected: $expected, actual: $actual",
+                JSONUtils.jsonObjectContainsValuesFrom(expected, actual),
+                JSONMatcher.compile(expected).matches(actual),
+            )
+        }
+    }
+
+    private fun randomValue(random: Random, depth: Int): Any {
+        // No JSONObject.NULL: its lenient equals() makes JSONUtils' equality shortcut ignore missing keys
+        return when (random.nextInt(if (depth < 3) 7 else 5)) {
+            0 -> "v" + random.nextInt(3)
+            1 -> random.nextInt(3)
+            2 -> random.nextInt(3).toLong()
+            3 -> random.nextInt(3) / 2.0
+            4 -> random.nextBoolean()
+            5 -> randomObject(random, depth + 1)
+            else -> {
+                val array = JSONArray()
+                repeat(random.nextInt(4)) { array.put(randomValue(random, depth + 1)) }
+                array
+            }
+        }
+    }
+
+    private fun randomObject(random: Random, depth: Int): JSONObject {
+        val json = JSONObject()
+        repeat(random.nextInt(4)) { json.put("k" + random.nextInt(4), randomValue(random, depth)) }
+        return json
+    }
+
+    /** Returns a copy of the given object with extra, removed or changed values */
+    private fun mutate(random: Random, source: JSONObject): JSONObject {
+        val json = JSONObject()
+        for (key in source.keySet()) {
+            val value = source.opt(key)
+            when (random.nextInt(6)) {
+                0 -> {}
+                1 -> json.put(key, randomValue(random, 2))
+                else -> json.put(key, mutateValue(random, value))
+            }
+        }
+        if (random.nextBoolean()) {
+            json.put("extra" + random.nextInt(2), randomValue(random, 2))
+        }
+        return json
+    }
+
+    private fun mutateValue(random: Random, value: Any?): Any? {
+        return when (value) {
+            is JSONObject -> mutate(random, value)
+            is JSONArray -> {
+                val array = JSONArray()
+                for (i in 0 until value.length()) {
+                    if (random.nextInt(4) != 0) array.put(mutateValue(random, value.opt(i)))
+                }
+                if (random.nextBoolean()) array.put(randomValue(random, 2))
+                array
+            }
+            else -> value
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.batch.android.json
+
+import java.io.ByteArrayInputStream
+import java.io.StringReader
+import java.nio.ByteBuffer
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Assert.fail
+import org.junit.Test
+
+/** Test class for [JSONReader] */
+class JSONReaderTest {
+
+    private val document =
+        "{\"string\":\"va\\\"l\\u00e9\\n\",\"int\":12,\"long\":12345678901,\"double\":-1.5e3," +
+            "\"bool\":true,\"null\":null,\"array\":[1,\"two\",[],{}],\"object\":{\"nested\":{\"k\":false}}}"
+
+    @Test
+    fun testMaterializeLikeTokener() {
+        val read = JSONReader(StringReader(document)).nextJSONObject()
+        val expected = JSONObject(document)
+
+        assertEquals(expected.toString(), read.toString())
+        assertEquals(12, read.get("int"))
+        assertEquals(12345678901L, read.get("long"))
+        assertEquals(-1500.0, read.get("double"))
+        assertEquals("va\"lé\n", read.getString("string"))
+        assertTrue(read.isNull("null"))
+    }
+
+    @Test
+    fun testPullTokens() {
+        val reader = JSONReader(StringReader(document))
+        reader.beginObject()
+
+        assertEquals("string", reader.nextName())
+        assertEquals("va\"lé\n", reader.nextString())
+        assertEquals("int", reader.nextName())
+        assertEquals(12, reader.nextInt())
+        assertEquals("long", reader.nextName())
+        assertEquals(12345678901L, reader.nextLong())
+        assertEquals("double", reader.nextName())
+        assertEquals(-1500.0, reader.nextDouble(), 0.0)
+        assertEquals("bool", reader.nextName())
+        assertTrue(reader.nextBoolean())
+        assertEquals("null", reader.nextName())
+        assertEquals(JSONReader.Token.NULL, reader.peek())
+        reader.nextNull()
+
+        assertEquals("array", reader.nextName())
+        reader.skipValue()
+        assertEquals("object", reader.nextName())
+        reader.beginObject()
+        assertEquals("nested", reader.nextName())
+        reader.skipValue()
+        assertFalse(reader.hasNext())
+        reader.endObject()
+
+        reader.endObject()
+        assertEquals(JSONReader.Token.END_DOCUMENT, reader.peek())
+    }
+
+    @Test
+    fun testRawValue() {
+        val reader = JSONReader(StringReader("{\"raw\":$document,\"array\":[1.0,{\"a\":[]}],\"next\":1}"))
+        reader.beginObject()
+        assertEquals("raw", reader.nextName())
+        val raw = reader.nextRawValue()
+        assertEquals(JSONObject(document), JSONObject(raw))
+
+        assertEquals("array", reader.nextName())
+        // Numbers keep their original text, and are decoded with the same type
+        assertEquals("[1.0,{\"a\":[]}]", reader.nextRawValue())
+
+        assertEquals("next", reader.nextName())
+        try {
+            reader.nextRawValue()
+            fail("Scalar values can't be read as raw values")
+        } catch (expected: JSONException) {}
+        assertEquals(1, reader.nextInt())
+        reader.endObject()
+    }
+
+    @Test
+    fun testValuesSpanningBuffers() {
+        val longValue = "a\\u00e9b".repeat(1000)
+        val json = "[\"$longValue\", 12345678901234]"
+        val reader = JSONReader(StringReader(json))
+
+        reader.beginArray()
+        assertEquals("aéb".repeat(1000), reader.nextString())
+        assertEquals(12345678901234L, reader.nextLong())
+        reader.endArray()
+    }
+
+    @Test
+    fun testByteSources() {
+        val bytes = document.toByteArray(Charsets.UTF_8)
+        val expected = JSONObject(document).toString()
+
+        assertEquals(expected, JSONReader(ByteArrayInputStream(bytes)).nextJSONObject().toString())
+
+        val buffer = ByteBuffer.wrap(bytes)
+        assertEquals(expected, JSONReader(buffer).nextJSONObject().toString())
+        assertFalse(buffer.hasRemaining())
+    }
+
+    @Test
+    fun testOptValues() {
+        val reader = JSONReader(StringReader("[\"12\", \"true\", 3.7, null, {\"a\":1}]"))
+        reader.beginArray()
+        assertEquals(12, reader.optNextInteger())
+        assertEquals(true, reader.optNextBoolean())
+        assertEquals(3L, reader.optNextLong())
+        assertNull(reader.optNextString())
+        assertNull(reader.optNextInteger())
+        reader.endArray()
+    }
+
+    @Test
+    fun testMalformed() {
+        val malformed =
+            listOf("", "{", "{\"a\" 1}", "{'a':1}", "[1,]", "[1 2]", "{\"a\":tru}", "\"abc", "{} {}")
+        for (json in malformed) {
+            try {
+                val reader = JSONReader(StringReader(json))
+                reader.nextValue()
+                reader.peek()
+                fail("Expected an exception for: $json")
+            } catch (expected: JSONException) {}
+        }
+    }
+}
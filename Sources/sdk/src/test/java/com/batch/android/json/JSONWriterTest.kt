@@ -0,0 +1,79 @@
+package com.batch.android.json
+
+import java.io.ByteArrayOutputStream
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.fail
+import org.junit.Test
+
+/** Test class for [JSONWriter] */
+class JSONWriterTest {
+
+    private val document =
+        "{\"string\":\"va\\\"l/\\u00e9\\n\\t\\u0001\\u20ac\\ud83d\\ude00\",\"int\":12,\"long\":12345678901," +
+            "\"double\":-1.5e3,\"negZero\":-0.0,\"bool\":true,\"null\":null,\"array\":[1,\"two\",[],{}]," +
+            "\"object\":{\"nested\":{\"k\":false}}}"
+
+    @Test
+    fun testOutputMatchesToString() {
+        val json = JSONObject(document)
+        assertArrayEquals(json.toString().toByteArray(Charsets.UTF_8), JSONWriter.toUTF8Bytes(json))
+
+        val array = JSONArray(listOf(json, "é", 3.5, JSONObject.NULL))
+        assertArrayEquals(array.toString().toByteArray(Charsets.UTF_8), JSONWriter.toUTF8Bytes(array))
+    }
+
+    @Test
+    fun testStreamingLargeDocument() {
+        val array = JSONArray()
+        for (i in 0 until 2000) {
+            array.put(JSONObject().put("id", i).put("label", "ünïcødé 漢字 $i"))
+        }
+
+        val out = ByteArrayOutputStream()
+        val writer = JSONWriter(out)
+        writer.value(array)
+        writer.flush()
+
+        assertEquals(array.toString(), out.toString("UTF-8"))
+        // The pooled buffer must be reset between two calls
+        assertArrayEquals(out.toByteArray(), JSONWriter.toUTF8Bytes(array))
+        assertEquals("[]", String(JSONWriter.toUTF8Bytes(JSONArray()), Charsets.UTF_8))
+    }
+
+    @Test
+    fun testManualWriting() {
+        val out = ByteArrayOutputStream()
+        JSONWriter(out).use {
+            it.beginObject()
+                .name("a")
+                .value(1L)
+                .name("b")
+                .beginArray()
+                .value(true)
+                .value(2.5)
+                .nullValue()
+                .endArray()
+                .endObject()
+        }
+        assertEquals("{\"a\":1,\"b\":[true,2.5,null]}", out.toString("UTF-8"))
+    }
+
+    @Test
+    fun testNestingErrors() {
+        try {
+            JSONWriter(ByteArrayOutputStream()).beginObject().value(1L)
+            fail("Expected a nesting error")
+        } catch (expected: JSONException) {}
+
+        try {
+            JSONWriter(ByteArrayOutputStream()).beginArray().endObject()
+            fail("Expected a nesting error")
+        } catch (expected: JSONException) {}
+
+        try {
+            JSONWriter(ByteArrayOutputStream()).value(1L).value(2L)
+            fail("Expected a nesting error")
+        } catch (expected: JSONException) {}
+    }
+}
@@ -0,0 +1,84 @@
+package com.batch.android.localcampaigns;
+
+import com.batch.android.localcampaigns.model.LocalCampaign;
+import java.util.TimeZone;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CampaignEligibilityScheduleTest {
+
+    @Test
+    public void testExpiration() {
+        CampaignEligibilitySchedule schedule = new CampaignEligibilitySchedule();
+        LocalCampaign first = new LocalCampaign();
+        LocalCampaign second = new LocalCampaign();
+        LocalCampaign ended = new LocalCampaign();
+
+        schedule.schedule(first, 1_000, 0);
+        schedule.schedule(second, 2_000, 0);
+        schedule.schedule(ended, CampaignEligibilitySchedule.NEVER, 0);
+        // Instants in the past are ignored
+        schedule.schedule(new LocalCampaign(), 0, 0);
+        Assert.assertEquals(3, schedule.size());
+
+        schedule.advance(999);
+        Assert.assertTrue(schedule.isIneligible(first));
+        Assert.assertTrue(schedule.isIneligible(second));
+
+        schedule.advance(1_000);
+        Assert.assertFalse(schedule.isIneligible(first));
+        Assert.assertTrue(schedule.isIneligible(second));
+
+        schedule.advance(5_000);
+        Assert.assertFalse(schedule.isIneligible(second));
+        Assert.assertTrue(schedule.isIneligible(ended));
+        Assert.assertEquals(1, schedule.size());
+
+        schedule.clear();
+        Assert.assertFalse(schedule.isIneligible(ended));
+    }
+
+    @Test
+    public void testRescheduling() {
+        CampaignEligibilitySchedule schedule = new CampaignEligibilitySchedule();
+        LocalCampaign campaign = new LocalCampaign();
+
+        schedule.schedule(campaign, 1_000, 0);
+        schedule.schedule(campaign, 3_000, 0);
+        // An earlier instant does not replace a later one
+        schedule.schedule(campaign, 2_000, 0);
+
+        // The replaced entry expiring does not release the campaign
+        schedule.advance(2_500);
+        Assert.assertTrue(schedule.isIneligible(campaign));
+
+        schedule.advance(3_000);
+        Assert.assertFalse(schedule.isIneligible(campaign));
+    }
+
+    @Test
+    public void testClockAndTimeZoneChanges() {
+        CampaignEligibilitySchedule schedule = new CampaignEligibilitySchedule();
+        LocalCampaign campaign = new LocalCampaign();
+
+        schedule.schedule(campaign, 10_000, 5_000);
+        schedule.advance(4_000);
+        Assert.assertFalse("The schedule should be cleared when the clock goes back", schedule.isIneligible(campaign));
+
+        TimeZone defaultTimeZone = TimeZone.getDefault();
+        try {
+            TimeZone.setDefault(TimeZone.getTimeZone("Europe/Paris"));
+            schedule.schedule(campaign, 10_000, 5_000);
+            Assert.assertTrue(schedule.isIneligible(campaign));
+
+            TimeZone.setDefault(TimeZone.getTimeZone("America/New_York"));
+            schedule.advance(5_000);
+            Assert.assertFalse(
+                "The schedule should be cleared when the time zone changes",
+                schedule.isIneligible(campaign)
+            );
+        } finally {
+            TimeZone.setDefault(defaultTimeZone);
+        }
+    }
+}
@@ -14,19 +14,30 @@ import androidx.test.ext.junit.runners.AndroidJUnit4;
 import androidx.test.filters.MediumTest;
 import com.batch.android.Batch;
 import com.batch.android.core.DateProvider;
+import com.batch.android.core.ParameterKeys;
+import com.batch.android.core.Parameters;
 import com.batch.android.date.BatchDate;
 import com.batch.android.date.UTCDate;
 import com.batch.android.di.DI;
 import com.batch.android.di.providers.LandingOutputProvider;
+import com.batch.android.di.providers.ParametersProvider;
 import com.batch.android.di.providers.RuntimeManagerProvider;
 import com.batch.android.di.providers.UserModuleProvider;
+import com.batch.android.json.JSONArray;
 import com.batch.android.json.JSONException;
 import com.batch.android.json.JSONObject;
 import com.batch.android.localcampaigns.model.DayOfWeek;
 import com.batch.android.localcampaigns.model.LocalCampaign;
 import com.batch.android.localcampaigns.model.QuietHours;
+import com.batch.android.localcampaigns.output.ActionOutput;
+import com.batch.android.localcampaigns.signal.EventTrackedSignal;
+import com.batch.android.localcampaigns.signal.NewSessionSignal;
+import com.batch.android.localcampaigns.signal.Signal;
+import com.batch.android.localcampaigns.trigger.EventLocalCampaignTrigger;
+import com.batch.android.localcampaigns.trigger.NextSessionTrigger;
 import com.batch.android.query.response.LocalCampaignsResponse;
 import com.batch.android.query.serialization.deserializers.LocalCampaignsResponseDeserializer;
+import com.batch.android.webservice.listener.LocalCampaignsJITWebserviceListener;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
@@ -36,19 +47,28 @@ import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.Mockito;
 import org.powermock.reflect.Whitebox;
 
 @RunWith(AndroidJUnit4.class)
@@ -524,6 +544,406 @@ public class CampaignManagerTest {
         assertSame(highPriorityCampaign, eligibleCampaigns.get(0));
     }
 
+    @Test
+    public void testIndexedElection() {
+        removeExistingSave();
+
+        Random random = new Random(42);
+        List<LocalCampaign> fakeCampaigns = new ArrayList<>(1000);
+        for (int i = 0; i < 1000; i++) {
+            LocalCampaign campaign = createFakeCampaignWithPriority(random.nextInt(100));
+            campaign.triggers.clear();
+            campaign.triggers.add(new EventLocalCampaignTrigger("event_" + (i % 50), i % 3 == 0 ? "label" : null));
+            if (i % 10 == 0) {
+                campaign.triggers.add(new NextSessionTrigger());
+            }
+            campaign.requiresJustInTimeSync = i % 4 != 0;
+            fakeCampaigns.add(campaign);
+        }
+        campaignManager.updateCampaignList(fakeCampaigns, true);
+        List<LocalCampaign> loadedCampaigns = campaignManager.getCampaignList();
+
+        List<Signal> signals = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            signals.add(new EventTrackedSignal((i % 2 == 0 ? "EVENT_" : "event_") + i, null));
+        }
+        signals.add(new EventTrackedSignal("unknown_event", null));
+        signals.add(new NewSessionSignal());
+
+        for (Signal signal : signals) {
+            // Reference election: scan every campaign, sort by priority and stop after the first offline campaign
+            List<LocalCampaign> expected = new ArrayList<>();
+            for (LocalCampaign campaign : loadedCampaigns) {
+                for (LocalCampaign.Trigger trigger : campaign.triggers) {
+                    if (signal.satisfiesTrigger(trigger)) {
+                        expected.add(campaign);
+                        break;
+                    }
+                }
+            }
+            Collections.sort(expected, (o1, o2) -> Integer.compare(o2.priority, o1.priority));
+            for (int i = 0; i < expected.size(); i++) {
+                if (!expected.get(i).requiresJustInTimeSync) {
+                    expected = expected.subList(0, i + 1);
+                    break;
+                }
+            }
+
+            assertEquals(expected, campaignManager.getEligibleCampaignsSortedByPriority(signal));
+        }
+    }
+
+    @Test
+    public void testElectionSkipsTimeGatedCampaigns() throws NoSuchFieldException, IllegalAccessException {
+        removeExistingSave();
+
+        final BatchDate fakeCurrentDate = new UTCDate();
+        Field dateProviderField = CampaignManager.class.getDeclaredField("dateProvider");
+        dateProviderField.setAccessible(true);
+        dateProviderField.set(campaignManager, (DateProvider) () -> fakeCurrentDate);
+
+        // Wednesday, 8:00am
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(Calendar.DAY_OF_WEEK, Calendar.WEDNESDAY);
+        calendar.set(Calendar.HOUR_OF_DAY, 8);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        long eightAM = calendar.getTimeInMillis();
+        fakeCurrentDate.setTime(eightAM);
+
+        LocalCampaign notStarted = createFakeCampaignWithPriority(20);
+        notStarted.startDate = new UTCDate(eightAM + TimeUnit.MINUTES.toMillis(50));
+        LocalCampaign quiet = createFakeCampaignWithPriority(10);
+        quiet.quietHours = new QuietHours(7, 15, 9, 0, null);
+        LocalCampaign fallback = createFakeCampaignWithPriority(0);
+        campaignManager.updateCampaignList(Arrays.asList(notStarted, quiet, fallback), true);
+
+        CampaignEligibilitySchedule schedule = Whitebox.getInternalState(campaignManager, "eligibilitySchedule");
+        Signal anySignal = trigger -> true;
+        assertEquals(
+            Collections.singletonList(fallback),
+            campaignManager.getEligibleCampaignsSortedByPriority(anySignal)
+        );
+        assertTrue(schedule.isIneligible(notStarted));
+        assertTrue(schedule.isIneligible(quiet));
+
+        // Both campaigns are skipped until their conditions can change
+        fakeCurrentDate.setTime(eightAM + TimeUnit.MINUTES.toMillis(45));
+        assertEquals(
+            Collections.singletonList(fallback),
+            campaignManager.getEligibleCampaignsSortedByPriority(anySignal)
+        );
+        assertEquals(2, schedule.size());
+
+        fakeCurrentDate.setTime(eightAM + TimeUnit.MINUTES.toMillis(60));
+        assertEquals(
+            Collections.singletonList(notStarted),
+            campaignManager.getEligibleCampaignsSortedByPriority(anySignal)
+        );
+        assertEquals(0, schedule.size());
+
+        // Going back in time evaluates the campaigns again
+        fakeCurrentDate.setTime(eightAM);
+        assertEquals(
+            Collections.singletonList(fallback),
+            campaignManager.getEligibleCampaignsSortedByPriority(anySignal)
+        );
+
+        // Updating the campaigns clears the schedule
+        campaignManager.updateCampaignList(Arrays.asList(notStarted, quiet, fallback), true);
+        assertEquals(0, schedule.size());
+    }
+
+    @Test
+    public void testJITPrefetchCandidates() {
+        removeExistingSave();
+
+        LocalCampaign jitFirst = createFakeJITCampaign(50, new EventLocalCampaignTrigger("first_event", null));
+        LocalCampaign offline = createFakeJITCampaign(40, new EventLocalCampaignTrigger("first_event", null));
+        offline.requiresJustInTimeSync = false;
+        // Can't be elected before the offline campaign
+        LocalCampaign jitAfterOffline = createFakeJITCampaign(30, new EventLocalCampaignTrigger("first_event", null));
+        LocalCampaign jitSecond = createFakeJITCampaign(20, new EventLocalCampaignTrigger("second_event", null));
+        LocalCampaign jitSynced = createFakeJITCampaign(10, new NextSessionTrigger());
+        campaignManager.updateCampaignList(
+            Arrays.asList(jitSynced, jitAfterOffline, offline, jitSecond, jitFirst),
+            false
+        );
+        campaignManager.updateSyncedJITCampaignsCached(
+            new ArrayList<>(Collections.singletonList(jitSynced)),
+            Collections.singletonList(jitSynced.id),
+            false
+        );
+
+        assertEquals(Arrays.asList(jitFirst, jitSecond), campaignManager.getJITPrefetchCandidates());
+    }
+
+    @Test
+    public void testElectionAfterJITPrefetch() throws NoSuchFieldException, IllegalAccessException {
+        removeExistingSave();
+
+        CampaignManager manager = Mockito.spy(campaignManager);
+        final BatchDate fakeCurrentDate = new UTCDate();
+        Field dateProviderField = CampaignManager.class.getDeclaredField("dateProvider");
+        dateProviderField.setAccessible(true);
+        dateProviderField.set(manager, (DateProvider) () -> fakeCurrentDate);
+        long now = fakeCurrentDate.getTime();
+
+        List<List<String>> launchedCampaignIds = new ArrayList<>();
+        Mockito
+            .doAnswer(invocation -> {
+                List<LocalCampaign> campaigns = invocation.getArgument(0);
+                LocalCampaignsJITWebserviceListener listener = invocation.getArgument(2);
+                List<String> campaignIds = new ArrayList<>();
+                for (LocalCampaign campaign : campaigns) {
+                    campaignIds.add(campaign.id);
+                }
+                launchedCampaignIds.add(campaignIds);
+                listener.onSuccess(campaignIds);
+                return true;
+            })
+            .when(manager)
+            .launchJITWebservice(Mockito.anyList(), Mockito.any(), Mockito.any());
+
+        LocalCampaign prefetched = createFakeJITCampaign(20, new EventLocalCampaignTrigger("first_event", null));
+        // Not a prefetch candidate, as it has not begun yet
+        LocalCampaign uncached = createFakeJITCampaign(10, new EventLocalCampaignTrigger("second_event", null));
+        uncached.startDate = new UTCDate(now + TimeUnit.SECONDS.toMillis(5));
+        LocalCampaignsResponse response = new LocalCampaignsResponse("dummy_id", LocalCampaignsResponse.Version.CEP);
+        response.setCampaigns(new ArrayList<>(Arrays.asList(prefetched, uncached)));
+        assertTrue(manager.handleLocalCampaignsResponse(response));
+
+        manager.prefetchJITEligibility();
+        assertEquals(Collections.singletonList(Collections.singletonList(prefetched.id)), launchedCampaignIds);
+        assertEquals(SyncedJITResult.State.ELIGIBLE, manager.getSyncedJITCampaignState(prefetched));
+
+        // An election right after the prefetch can still check a campaign that wasn't prefetched
+        fakeCurrentDate.setTime(now + TimeUnit.SECONDS.toMillis(6));
+        List<LocalCampaign> eligibleCampaigns = manager.getEligibleCampaignsSortedByPriority(
+            new EventTrackedSignal("second_event", null)
+        );
+        assertEquals(Collections.singletonList(uncached), eligibleCampaigns);
+        assertEquals(SyncedJITResult.State.REQUIRES_SYNC, manager.getSyncedJITCampaignState(uncached));
+        assertTrue(manager.isJITServiceAvailable());
+
+        AtomicReference<LocalCampaign> electedCampaign = new AtomicReference<>();
+        manager.verifyCampaignsEligibilityFromServer(
+            manager.getFirstEligibleCampaignsRequiringSync(eligibleCampaigns),
+            electedCampaign::set
+        );
+        assertEquals(2, launchedCampaignIds.size());
+        assertEquals(Collections.singletonList(uncached.id), launchedCampaignIds.get(1));
+        assertSame(uncached, electedCampaign.get());
+
+        // The election throttles the next ones
+        assertFalse(manager.isJITServiceAvailable());
+    }
+
+    @Test
+    public void testImagePrefetchCandidates() throws NoSuchFieldException, IllegalAccessException {
+        removeExistingSave();
+
+        final BatchDate fakeCurrentDate = new UTCDate();
+        Field dateProviderField = CampaignManager.class.getDeclaredField("dateProvider");
+        dateProviderField.setAccessible(true);
+        dateProviderField.set(campaignManager, (DateProvider) () -> fakeCurrentDate);
+
+        // Wednesday, 8:00am
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(Calendar.DAY_OF_WEEK, Calendar.WEDNESDAY);
+        calendar.set(Calendar.HOUR_OF_DAY, 8);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        fakeCurrentDate.setTime(calendar.getTimeInMillis());
+
+        LocalCampaign quiet = createFakeJITCampaign(100, new EventLocalCampaignTrigger("quiet_event", null));
+        quiet.quietHours = new QuietHours(7, 15, 9, 0, null);
+        LocalCampaign action = createFakeJITCampaign(80, new EventLocalCampaignTrigger("action_event", null));
+        action.output = new ActionOutput(new JSONObject());
+        // Displayed after the action campaign
+        LocalCampaign afterAction = createFakeJITCampaign(50, new EventLocalCampaignTrigger("action_event", null));
+        LocalCampaign first = createFakeJITCampaign(70, new EventLocalCampaignTrigger("first_event", null));
+        LocalCampaign afterFirst = createFakeJITCampaign(60, new EventLocalCampaignTrigger("first_event", null));
+        LocalCampaign second = createFakeJITCampaign(40, new EventLocalCampaignTrigger("second_event", null));
+        LocalCampaign third = createFakeJITCampaign(30, new EventLocalCampaignTrigger("third_event", null));
+        LocalCampaign fourth = createFakeJITCampaign(20, new EventLocalCampaignTrigger("fourth_event", null));
+        campaignManager.updateCampaignList(
+            Arrays.asList(fourth, third, second, afterFirst, first, afterAction, action, quiet),
+            false
+        );
+
+        List<LocalCampaign> candidates = campaignManager.getImagePrefetchCandidates();
+        assertEquals(CampaignManager.MAX_CAMPAIGNS_IMAGE_PREFETCH, candidates.size());
+        // Likely campaigns come first, then the ones that would be displayed after another campaign
+        assertEquals(Arrays.asList(first, second, third, fourth, afterFirst), candidates);
+
+        CampaignEligibilitySchedule schedule = Whitebox.getInternalState(campaignManager, "eligibilitySchedule");
+        assertTrue(schedule.isIneligible(quiet));
+
+        // Out of the quiet hours, the campaign is a candidate again
+        fakeCurrentDate.setTime(calendar.getTimeInMillis() + TimeUnit.HOURS.toMillis(2));
+        candidates = campaignManager.getImagePrefetchCandidates();
+        assertEquals(quiet, candidates.get(0));
+        assertFalse(candidates.contains(action));
+    }
+
+    @Test
+    public void testApplyDeltaResponse() throws NoSuchFieldException, IllegalAccessException {
+        removeExistingSave();
+
+        LocalCampaign kept = createFakeCampaignWithPriority(0);
+        LocalCampaign updated = createFakeCampaignWithPriority(10);
+        LocalCampaign removed = createFakeCampaignWithPriority(20);
+        removed.triggers.add(new EventLocalCampaignTrigger("removed_event", null, null));
+
+        LocalCampaignsResponse fullResponse = new LocalCampaignsResponse("full", LocalCampaignsResponse.Version.MEP);
+        fullResponse.setCampaigns(new ArrayList<>(Arrays.asList(kept, updated, removed)));
+        fullResponse.setSyncVersion("v1");
+        assertTrue(campaignManager.handleLocalCampaignsResponse(fullResponse));
+        assertEquals("v1", campaignManager.getSyncVersion());
+        assertTrue(campaignManager.isEventWatched("removed_event"));
+
+        LocalCampaign updatedVersion = createFakeCampaignWithPriority(30);
+        updatedVersion.id = updated.id;
+        updatedVersion.triggers.add(new EventLocalCampaignTrigger("updated_event", null, null));
+        LocalCampaign added = createFakeCampaignWithPriority(40);
+
+        LocalCampaignsResponse deltaResponse = new LocalCampaignsResponse("delta", LocalCampaignsResponse.Version.MEP);
+        deltaResponse.setCampaigns(new ArrayList<>(Arrays.asList(updatedVersion, added)));
+        deltaResponse.setSyncVersion("v2");
+        deltaResponse.setDelta(new LocalCampaignsResponse.Delta("v1", Collections.singletonList(removed.id)));
+        assertTrue(campaignManager.handleLocalCampaignsResponse(deltaResponse));
+
+        List<LocalCampaign> campaigns = campaignManager.getCampaignList();
+        assertEquals(3, campaigns.size());
+        assertSame(kept, campaigns.get(0));
+        assertSame(updatedVersion, campaigns.get(1));
+        assertSame(added, campaigns.get(2));
+        assertEquals("v2", campaignManager.getSyncVersion());
+        assertFalse(campaignManager.isEventWatched("removed_event"));
+        assertTrue(campaignManager.isEventWatched("updated_event"));
+
+        // A delta against an unknown version must be rejected and require a full sync
+        deltaResponse.setDelta(new LocalCampaignsResponse.Delta("v1", Collections.emptyList()));
+        assertFalse(campaignManager.handleLocalCampaignsResponse(deltaResponse));
+        assertNull(campaignManager.getSyncVersion());
+        assertEquals(3, campaignManager.getCampaignList().size());
+    }
+
+    @Test
+    public void testSaveCampaignsDelta() throws NoSuchFieldException, IllegalAccessException, JSONException {
+        removeExistingSave();
+
+        JSONObject fullResponse = makeResponseJSON(
+            "v1",
+            makeCampaignJSON("kept", 0),
+            makeCampaignJSON("updated", 10),
+            makeCampaignJSON("removed", 20)
+        );
+        campaignManager.saveCampaigns(context, new LocalCampaignsResponseDeserializer(fullResponse).deserialize());
+
+        JSONObject deltaResponse = makeResponseJSON(
+            "v2",
+            makeCampaignJSON("updated", 30),
+            makeCampaignJSON("added", 40)
+        );
+        deltaResponse.put("delta", new JSONObject().put("from", "v1").put("removed", new JSONArray().put("removed")));
+        campaignManager.saveCampaigns(context, new LocalCampaignsResponseDeserializer(deltaResponse).deserialize());
+
+        // Upserts and removals survive a reload
+        campaignManager.loadSavedCampaignResponse(context);
+        assertEquals("v2", campaignManager.getSyncVersion());
+        Map<String, LocalCampaign> campaigns = new HashMap<>();
+        for (LocalCampaign campaign : campaignManager.getCampaignList()) {
+            campaigns.put(campaign.id, campaign);
+        }
+        assertEquals(3, campaigns.size());
+        assertEquals(0, Objects.requireNonNull(campaigns.get("kept")).priority);
+        assertEquals(30, Objects.requireNonNull(campaigns.get("updated")).priority);
+        assertEquals(40, Objects.requireNonNull(campaigns.get("added")).priority);
+
+        // A delta against another version deletes the saved campaigns, so that the next sync is a full one
+        deltaResponse.put("sync_version", "v3");
+        campaignManager.saveCampaigns(context, new LocalCampaignsResponseDeserializer(deltaResponse).deserialize());
+        assertFalse(campaignManager.hasSavedCampaigns(context));
+
+        campaignManager.saveCampaigns(context, new LocalCampaignsResponseDeserializer(fullResponse).deserialize());
+        campaignManager.loadSavedCampaignResponse(context);
+        assertEquals("v1", campaignManager.getSyncVersion());
+        assertEquals(3, campaignManager.getCampaignList().size());
+    }
+
+    @Test
+    public void testConcurrentTrackingAndElection() throws Exception {
+        removeExistingSave();
+
+        final int threadCount = 4;
+        final int iterations = 2_000;
+        final List<List<LocalCampaign>> campaignSets = new ArrayList<>();
+        for (int set = 0; set < 2; set++) {
+            List<LocalCampaign> campaigns = new ArrayList<>(200);
+            for (int i = 0; i < 200; i++) {
+                LocalCampaign campaign = createFakeCampaignWithPriority(i % 20);
+                campaign.triggers.clear();
+                campaign.triggers.add(new EventLocalCampaignTrigger("event_" + ((i + set) % 20), null));
+                campaigns.add(campaign);
+            }
+            campaignSets.add(campaigns);
+        }
+        campaignManager.updateCampaignList(campaignSets.get(0), true);
+
+        final AtomicBoolean updating = new AtomicBoolean(true);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            futures.add(
+                executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < iterations; i++) {
+                        String eventName = "event_" + (i % 20);
+                        // Each campaign set watches every event name
+                        if (!campaignManager.isEventWatched(eventName)) {
+                            throw new AssertionError("Event " + eventName + " should be watched");
+                        }
+                        Signal signal = new EventTrackedSignal(eventName, null);
+                        for (LocalCampaign campaign : campaignManager.getEligibleCampaignsSortedByPriority(signal)) {
+                            if (!signal.satisfiesTrigger(campaign.triggers.get(0))) {
+                                throw new AssertionError("Elected a campaign not triggered by " + eventName);
+                            }
+                        }
+                    }
+                    return null;
+                })
+            );
+        }
+
+        start.countDown();
+        Thread updater = new Thread(() -> {
+            int set = 0;
+            try {
+                while (updating.get()) {
+                    set = (set + 1) % campaignSets.size();
+                    campaignManager.updateCampaignList(campaignSets.get(set), true);
+                }
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        });
+        updater.start();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        updating.set(false);
+        updater.join();
+        executor.shutdown();
+
+        assertNull(failure.get());
+    }
+
     @Test
     public void testGetEligibleCampaignsRequiringSync() {
         List<LocalCampaign> fakeCampaigns = new ArrayList<>();
@@ -588,6 +1008,20 @@ public class CampaignManagerTest {
         // Ensure cached jit campaign requires a new sync
         fakeCurrentDate.setTime(30_000);
         Assert.assertEquals(SyncedJITResult.State.REQUIRES_SYNC, campaignManager.getSyncedJITCampaignState(campaign));
+
+        // Ensure a TTL update from the server is taken into account right away
+        Parameters parameters = ParametersProvider.get(context);
+        try {
+            parameters.set(ParameterKeys.LOCAL_CAMPAIGNS_JIT_CACHE_TTL, "60000", false);
+            Assert.assertEquals(SyncedJITResult.State.ELIGIBLE, campaignManager.getSyncedJITCampaignState(campaign));
+            parameters.set(ParameterKeys.LOCAL_CAMPAIGNS_JIT_CACHE_TTL, "10000", false);
+            Assert.assertEquals(
+                SyncedJITResult.State.REQUIRES_SYNC,
+                campaignManager.getSyncedJITCampaignState(campaign)
+            );
+        } finally {
+            parameters.remove(ParameterKeys.LOCAL_CAMPAIGNS_JIT_CACHE_TTL);
+        }
     }
 
     @Test
@@ -697,6 +1131,28 @@ public class CampaignManagerTest {
         campaignManager.loadSavedCampaignResponse(context);
     }
 
+    private JSONObject makeResponseJSON(String syncVersion, JSONObject... campaigns) throws JSONException {
+        JSONObject response = new JSONObject(jsonCampaigns);
+        response.put("sync_version", syncVersion);
+        response.put("campaigns", new JSONArray(Arrays.asList(campaigns)));
+        return response;
+    }
+
+    private JSONObject makeCampaignJSON(String id, int priority) throws JSONException {
+        JSONObject campaign = new JSONObject(jsonCampaigns.getJSONArray("campaigns").getJSONObject(0));
+        campaign.put("campaignId", id);
+        campaign.put("priority", priority);
+        return campaign;
+    }
+
+    private LocalCampaign createFakeJITCampaign(int priority, LocalCampaign.Trigger trigger) {
+        LocalCampaign campaign = createFakeCampaignWithPriority(priority);
+        campaign.triggers.clear();
+        campaign.triggers.add(trigger);
+        campaign.requiresJustInTimeSync = true;
+        return campaign;
+    }
+
     private LocalCampaign createFakeCampaignWithPriority(int priority) {
         LocalCampaign campaign = new LocalCampaign();
         campaign.id = UUID.randomUUID().toString();
@@ -62,7 +62,7 @@ public class EventTriggerTest extends DITest {
         campaign.id = UUID.randomUUID().toString();
         campaign.eventData = new JSONObject();
         campaign.output = LandingOutputProvider.get(new JSONObject());
-        campaign.output.payload.put("testRandomMessage", UUID.randomUUID().toString());
+        campaign.output.getPayload().put("testRandomMessage", UUID.randomUUID().toString());
         campaign.startDate = new UTCDate(0);
         campaign.triggers.add(new EventLocalCampaignTrigger("E." + EVENT_NAME_TEST, null));
 
@@ -85,7 +85,7 @@ public class EventTriggerTest extends DITest {
         campaign.id = UUID.randomUUID().toString();
         campaign.eventData = new JSONObject();
         campaign.output = LandingOutputProvider.get(new JSONObject());
-        campaign.output.payload.put("testRandomMessage", UUID.randomUUID().toString());
+        campaign.output.getPayload().put("testRandomMessage", UUID.randomUUID().toString());
         campaign.startDate = new UTCDate(0);
         campaign.triggers.add(new EventLocalCampaignTrigger("E." + EVENT_NAME_TEST, null));
 
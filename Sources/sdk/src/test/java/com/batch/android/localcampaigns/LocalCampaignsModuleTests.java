@@ -1,28 +1,46 @@
 package com.batch.android.localcampaigns;
 
+import android.content.Context;
+import androidx.test.core.app.ApplicationProvider;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import androidx.test.filters.SmallTest;
+import com.batch.android.core.ParameterKeys;
+import com.batch.android.core.Parameters;
+import com.batch.android.date.UTCDate;
 import com.batch.android.di.DI;
 import com.batch.android.di.DITestUtils;
 import com.batch.android.di.providers.CampaignManagerProvider;
 import com.batch.android.di.providers.LandingOutputProvider;
 import com.batch.android.di.providers.LocalCampaignsModuleProvider;
+import com.batch.android.di.providers.ParametersProvider;
+import com.batch.android.di.providers.RuntimeManagerProvider;
 import com.batch.android.json.JSONObject;
 import com.batch.android.localcampaigns.model.LocalCampaign;
+import com.batch.android.localcampaigns.signal.EventTrackedSignal;
 import com.batch.android.localcampaigns.signal.NewSessionSignal;
 import com.batch.android.localcampaigns.signal.Signal;
+import com.batch.android.localcampaigns.trigger.EventLocalCampaignTrigger;
 import com.batch.android.localcampaigns.trigger.NextSessionTrigger;
 import com.batch.android.module.LocalCampaignsModule;
+import com.batch.android.query.response.LocalCampaignsResponse;
+import com.batch.android.webservice.listener.LocalCampaignsJITWebserviceListener;
+import com.batch.android.webservice.listener.impl.LocalCampaignsWebserviceListenerImpl;
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.Mockito;
 
 @RunWith(AndroidJUnit4.class)
 @SmallTest
@@ -67,4 +85,107 @@ public class LocalCampaignsModuleTests {
         Assert.assertTrue(isReady.get());
         Assert.assertEquals(0, signalQueue.size());
     }
+
+    @Test
+    public void testSignalCoalescing() throws Exception {
+        LocalCampaignsModule module = LocalCampaignsModuleProvider.get();
+
+        LocalCampaign campaign = new LocalCampaign();
+        campaign.id = UUID.randomUUID().toString();
+        campaign.output = LandingOutputProvider.get(new JSONObject());
+        campaign.triggers.add(new EventLocalCampaignTrigger("WATCHED_EVENT", null));
+        CampaignManagerProvider.get().updateCampaignList(Collections.singletonList(campaign), true);
+        module.onLocalCampaignsWebserviceFinished();
+
+        Field signalBatchField = LocalCampaignsModule.class.getDeclaredField("signalBatch");
+        signalBatchField.setAccessible(true);
+        List<Signal> signalBatch = (List<Signal>) signalBatchField.get(module);
+        assert signalBatch != null;
+
+        // Hold the batch lock so that it isn't processed while checking it
+        synchronized (signalBatch) {
+            module.sendSignal(new EventTrackedSignal("WATCHED_EVENT", null));
+            module.sendSignal(new NewSessionSignal());
+            module.sendSignal(new EventTrackedSignal("WATCHED_EVENT", null));
+            module.sendSignal(new EventTrackedSignal("WATCHED_EVENT", new JSONObject().put("label", "value")));
+            module.sendSignal(new NewSessionSignal());
+            // Not watched by any campaign
+            module.sendSignal(new EventTrackedSignal("UNWATCHED_EVENT", null));
+
+            Assert.assertEquals(
+                Arrays.asList(
+                    new EventTrackedSignal("WATCHED_EVENT", null),
+                    new NewSessionSignal(),
+                    new EventTrackedSignal("WATCHED_EVENT", new JSONObject().put("label", "value"))
+                ),
+                signalBatch
+            );
+        }
+    }
+
+    @Test
+    public void testJITPrefetchAfterCampaignSync() throws Exception {
+        DI.reset();
+        Context context = ApplicationProvider.getApplicationContext();
+        RuntimeManagerProvider.get().setContext(context);
+        Parameters parameters = ParametersProvider.get(context);
+        // Make the JIT results given by the sync expire right away
+        parameters.set(ParameterKeys.LOCAL_CAMPAIGNS_JIT_CACHE_TTL, "100", false);
+
+        try {
+            CampaignManager campaignManager = DITestUtils.mockSingletonDependency(CampaignManager.class, null);
+            DITestUtils.mockSingletonDependency(LocalCampaignsModule.class, null).batchDidStart();
+
+            CountDownLatch jitLaunched = new CountDownLatch(1);
+            List<String> prefetchedCampaignIds = new ArrayList<>();
+            Mockito
+                .doAnswer(invocation -> {
+                    List<LocalCampaign> campaigns = invocation.getArgument(0);
+                    LocalCampaignsJITWebserviceListener listener = invocation.getArgument(2);
+                    for (LocalCampaign campaign : campaigns) {
+                        prefetchedCampaignIds.add(campaign.id);
+                    }
+                    listener.onSuccess(Collections.singletonList("jit_campaign"));
+                    jitLaunched.countDown();
+                    return true;
+                })
+                .when(campaignManager)
+                .launchJITWebservice(Mockito.anyList(), Mockito.any(), Mockito.any());
+
+            LocalCampaign campaign = new LocalCampaign();
+            campaign.id = "jit_campaign";
+            campaign.output = LandingOutputProvider.get(new JSONObject());
+            campaign.startDate = new UTCDate(0);
+            campaign.requiresJustInTimeSync = true;
+            campaign.triggers.add(new EventLocalCampaignTrigger("WATCHED_EVENT", null));
+            LocalCampaignsResponse response = new LocalCampaignsResponse(
+                "dummy_id",
+                LocalCampaignsResponse.Version.CEP
+            );
+            response.setCampaigns(new ArrayList<>(Collections.singletonList(campaign)));
+
+            LocalCampaignsWebserviceListenerImpl.provide().onSuccess(Collections.singletonList(response));
+
+            // The sync throttles elections, but not the prefetch of the results it gave once they expire
+            Assert.assertFalse(campaignManager.isJITServiceAvailable());
+            Assert.assertTrue(jitLaunched.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals(Collections.singletonList("jit_campaign"), prefetchedCampaignIds);
+        } finally {
+            parameters.remove(ParameterKeys.LOCAL_CAMPAIGNS_JIT_CACHE_TTL);
+        }
+    }
+
+    @Test
+    public void testJITPrefetchWaitsForRetryAfter() {
+        CampaignManager campaignManager = new CampaignManager(new LocalCampaignsTracker());
+        Assert.assertTrue(campaignManager.isJITPrefetchAvailable());
+
+        campaignManager.setNextAvailableJITTimestampWithDefaultDelay();
+        Assert.assertFalse(campaignManager.isJITServiceAvailable());
+        Assert.assertTrue(campaignManager.isJITPrefetchAvailable());
+
+        campaignManager.setNextAvailableJITTimestampWithCustomDelay(60_000);
+        Assert.assertFalse(campaignManager.isJITServiceAvailable());
+        Assert.assertFalse(campaignManager.isJITPrefetchAvailable());
+    }
 }
@@ -7,9 +7,11 @@ import androidx.test.ext.junit.runners.AndroidJUnit4;
 import androidx.test.filters.SmallTest;
 import com.batch.android.core.DateProvider;
 import com.batch.android.core.SystemDateProvider;
+import com.batch.android.date.UTCDate;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -253,6 +255,81 @@ public class LocalCampaignsTrackerTest {
         tracker.close();
     }
 
+    @Test
+    public void testTrackedViewsArePersisted() throws ViewTrackerUnavailableException {
+        appContext.deleteDatabase(LocalCampaignTrackDbHelper.DATABASE_NAME);
+        LocalCampaignsSQLTracker tracker = new LocalCampaignsSQLTracker();
+        tracker.open(appContext);
+
+        for (int i = 0; i < 50; i++) {
+            tracker.trackViewEvent("campaign_id_1", i % 2 == 0 ? null : "custom_id_1");
+        }
+        tracker.trackViewEvent("campaign_id_2", null);
+        long lastOccurrence = tracker.getCampaignLastOccurrence("campaign_id_1");
+
+        // Closing writes the views that are still pending
+        tracker.close();
+
+        // A new tracker has no cache, and has to load everything from the database
+        tracker = new LocalCampaignsSQLTracker();
+        tracker.open(appContext);
+        Assert.assertEquals(50, tracker.getViewEventByCampaignId("campaign_id_1").count);
+        Assert.assertEquals(25, tracker.getViewEventByCampaignIdAndCustomId("campaign_id_1", null).count);
+        Assert.assertEquals(25, tracker.getViewEventByCampaignIdAndCustomId("campaign_id_1", "custom_id_1").count);
+        Assert.assertEquals(1, tracker.getViewEventByCampaignId("campaign_id_2").count);
+        Assert.assertEquals(lastOccurrence, tracker.getCampaignLastOccurrence("campaign_id_1"));
+        Assert.assertEquals(51, tracker.getNumberOfViewEventsSince(0));
+
+        // Deleting clears the cache too
+        tracker.deleteViewEvents();
+        Assert.assertEquals(0, tracker.getViewEventByCampaignId("campaign_id_1").count);
+        Assert.assertEquals(0, tracker.getNumberOfViewEventsSince(0));
+
+        tracker.close();
+    }
+
+    @Test
+    public void testViewEventsOutsideOfRetentionAreDropped() throws Exception {
+        appContext.deleteDatabase(LocalCampaignTrackDbHelper.DATABASE_NAME);
+        Field windowField = LocalCampaignsSQLTracker.class.getDeclaredField("viewEventsWindow");
+        windowField.setAccessible(true);
+
+        long now = 1_700_000_000_000L;
+        AtomicLong currentTime = new AtomicLong(now - 2 * 86_400_000L);
+        LocalCampaignsSQLTracker tracker = new LocalCampaignsSQLTracker(() -> new UTCDate(currentTime.get()));
+        tracker.open(appContext);
+        tracker.setViewEventsRetention(3_600_000);
+
+        // Two days ago, then during the last hour
+        tracker.trackViewEvent("campaign_id", null);
+        currentTime.set(now - 1_800_000);
+        tracker.trackViewEvent("campaign_id", null);
+        currentTime.set(now);
+        Assert.assertEquals(1, tracker.getNumberOfViewEventsSince(now - 3_600_000));
+        ViewEventsWindow window = (ViewEventsWindow) windowField.get(tracker);
+        Assert.assertEquals(1, window.getBucketCount());
+        tracker.close();
+
+        // Only the retention period is loaded from the database
+        tracker = new LocalCampaignsSQLTracker(() -> new UTCDate(currentTime.get()));
+        tracker.open(appContext);
+        tracker.setViewEventsRetention(3_600_000);
+        Assert.assertEquals(1, tracker.getNumberOfViewEventsSince(now - 3_600_000));
+        window = (ViewEventsWindow) windowField.get(tracker);
+        Assert.assertEquals(1, window.size());
+
+        // Older buckets are dropped as time goes by
+        currentTime.set(now + 3_600_000);
+        Assert.assertEquals(0, tracker.getNumberOfViewEventsSince(currentTime.get() - 3_600_000));
+        Assert.assertEquals(0, window.getBucketCount());
+
+        // Asking for older views extends the retention, and loads them again
+        Assert.assertEquals(2, tracker.getNumberOfViewEventsSince(now - 3 * 86_400_000L));
+        Assert.assertEquals(2, tracker.getViewEventByCampaignId("campaign_id").count);
+
+        tracker.close();
+    }
+
     @Test
     // Tests that the db being not opened results in a specific exception
     public void testUnavailabilityException() {
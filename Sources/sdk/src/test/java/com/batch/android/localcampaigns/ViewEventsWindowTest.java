@@ -0,0 +1,101 @@
+package com.batch.android.localcampaigns;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ViewEventsWindowTest {
+
+    @Test
+    public void testCountSince() {
+        ViewEventsWindow window = new ViewEventsWindow();
+        Assert.assertEquals(0, window.countSince(0));
+
+        window.add(0);
+        window.add(30_000);
+        window.add(90_000);
+
+        Assert.assertEquals(3, window.size());
+        Assert.assertEquals(2, window.getBucketCount());
+        Assert.assertEquals(3, window.countSince(-1));
+        // The bucket overlapping the timestamp is counted exactly
+        Assert.assertEquals(2, window.countSince(0));
+        Assert.assertEquals(1, window.countSince(30_000));
+        Assert.assertEquals(1, window.countSince(59_999));
+        Assert.assertEquals(1, window.countSince(89_999));
+        Assert.assertEquals(0, window.countSince(90_000));
+        Assert.assertEquals(0, window.countSince(120_000));
+
+        // Late events are inserted in order
+        window.add(45_000);
+        window.add(10_000);
+        Assert.assertEquals(5, window.size());
+        Assert.assertEquals(3, window.countSince(10_000));
+        Assert.assertEquals(4, window.countSince(9_999));
+
+        window.clear();
+        Assert.assertEquals(0, window.size());
+        Assert.assertEquals(0, window.countSince(-1));
+    }
+
+    @Test
+    public void testBucketStart() {
+        Assert.assertEquals(0, ViewEventsWindow.getBucketStart(0));
+        Assert.assertEquals(0, ViewEventsWindow.getBucketStart(59_999));
+        Assert.assertEquals(60_000, ViewEventsWindow.getBucketStart(60_000));
+        Assert.assertEquals(-60_000, ViewEventsWindow.getBucketStart(-1));
+    }
+
+    @Test
+    public void testPruneDropsOldBuckets() {
+        ViewEventsWindow window = new ViewEventsWindow();
+        long now = 1_700_000_000_000L;
+        // One view per minute for a day
+        for (int i = 24 * 60; i > 0; i--) {
+            window.add(now - i * ViewEventsWindow.BUCKET_DURATION_MS);
+        }
+        Assert.assertEquals(24 * 60, window.getBucketCount());
+        int lastHourCount = window.countSince(now - 3_600_000);
+
+        window.prune(now - 3_600_000);
+        Assert.assertTrue(window.getBucketCount() <= 61);
+        Assert.assertEquals(window.getBucketCount(), window.size());
+        Assert.assertEquals(lastHourCount, window.countSince(now - 3_600_000));
+        Assert.assertEquals(0, window.countSince(now));
+
+        // Late events for pruned buckets come back as their own bucket
+        window.add(now - 7_200_000);
+        Assert.assertEquals(window.getBucketCount(), window.size());
+        Assert.assertEquals(window.size(), window.countSince(now - 7_200_001));
+        window.prune(now);
+        Assert.assertEquals(0, window.getBucketCount());
+        Assert.assertEquals(0, window.size());
+    }
+
+    @Test
+    public void testMatchesBruteForce() {
+        Random random = new Random(42);
+        ViewEventsWindow window = new ViewEventsWindow();
+        List<Long> timestamps = new ArrayList<>();
+
+        long now = 1_700_000_000_000L;
+        for (int i = 0; i < 2000; i++) {
+            // Mostly in order, with a few late events and some happening during the same minute
+            now += random.nextInt(5) == 0 ? random.nextInt(1000) : random.nextInt(600_000);
+            long timestamp = random.nextInt(20) == 0 ? now - random.nextInt(3_600_000) : now;
+            window.add(timestamp);
+            timestamps.add(timestamp);
+
+            long since = now - random.nextInt(24 * 3_600_000);
+            int expected = 0;
+            for (long t : timestamps) {
+                if (t > since) {
+                    expected++;
+                }
+            }
+            Assert.assertEquals(expected, window.countSince(since));
+        }
+    }
+}
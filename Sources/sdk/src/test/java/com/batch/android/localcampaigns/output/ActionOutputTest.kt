@@ -7,6 +7,7 @@ import androidx.test.filters.SmallTest
 import com.batch.android.JSONObjectMockitoMatcher
 import com.batch.android.di.DI
 import com.batch.android.di.DITestUtils
+import com.batch.android.json.JSONException
 import com.batch.android.json.JSONObject
 import com.batch.android.localcampaigns.model.LocalCampaign
 import com.batch.android.module.ActionModule
@@ -120,4 +121,33 @@ class ActionOutputTest {
 
         // Don't call "verifyNoInteractions" as "action" is stringified if of the wrong type
     }
+
+    @Test
+    fun testSkipsCampaignWithMalformedPayload() {
+        val actionModuleSpy = DITestUtils.mockSingletonDependency(ActionModule::class.java, null)
+        val runtimeManager = DITestUtils.mockSingletonDependency(RuntimeManager::class.java, null)
+        PowerMockito.doReturn(ApplicationProvider.getApplicationContext<Context>())
+            .`when`(runtimeManager)
+            .getContext()
+
+        val fakeCampaign = LocalCampaign()
+        fakeCampaign.id = "foobar"
+
+        var decodeCount = 0
+        val output =
+            ActionOutput(
+                LocalCampaign.PayloadSource {
+                    decodeCount++
+                    JSONObject("{\"action\": ")
+                }
+            )
+        Assert.assertFalse(output.displayMessage(fakeCampaign))
+
+        // The decoding error is kept: the payload isn't decoded again
+        Assert.assertThrows(JSONException::class.java) { output.getPayload() }
+        Assert.assertFalse(output.displayMessage(fakeCampaign))
+        Assert.assertEquals(1, decodeCount)
+
+        Mockito.verifyNoInteractions(actionModuleSpy)
+    }
 }
@@ -5,7 +5,15 @@ import androidx.test.ext.junit.runners.AndroidJUnit4;
 import androidx.test.filters.SmallTest;
 import androidx.test.rule.ActivityTestRule;
 import com.batch.android.TestActivity;
+import com.batch.android.json.JSONArray;
 import com.batch.android.json.JSONObject;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.UUID;
 import org.junit.After;
 import org.junit.Assert;
@@ -69,16 +77,209 @@ public class LocalCampaignsFilePersistenceTest {
             LocalCampaignsFilePersistence.PERSISTENCE_CURRENT_FILE_VERSION
         );
 
-        JSONObject loadedData = persister.loadData(activity, randomFileName);
+        SavedCampaigns loadedData = persister.loadSavedCampaigns(activity, randomFileName);
         Assert.assertNotNull(loadedData);
 
-        Assert.assertEquals("Loaded data not equals to saved data", expectedData.toString(), loadedData.toString());
+        Assert.assertEquals("Loaded data not equals to saved data", expectedData, loadedData.rootFields);
+        Assert.assertTrue(loadedData.campaigns.isEmpty());
+        Assert.assertTrue(persister.checkSaveVersion(loadedData.rootFields));
 
         savedData.put(LocalCampaignsFilePersistence.PERSISTENCE_SAVE_VERSION_KEY, -1);
         persister.persistData(activity, savedData, randomFileName);
+        loadedData = persister.loadSavedCampaigns(activity, randomFileName);
+        Assert.assertNotNull(loadedData);
 
         // Must throw an exception when loading a file with an invalid save version
         exception.expect(PersistenceException.class);
-        persister.loadData(activity, randomFileName);
+        persister.checkSaveVersion(loadedData.rootFields);
+    }
+
+    @Test
+    public void testCampaignsArePersistedInAContainer() throws Exception {
+        String randomFileName = UUID.randomUUID().toString() + ".toto";
+        JSONObject savedData = makeSavedData();
+
+        persister.persistData(activity, savedData, randomFileName);
+
+        File file = new File(activity.getCacheDir(), randomFileName);
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            Assert.assertEquals(CampaignsContainer.MAGIC, in.readInt());
+        }
+
+        SavedCampaigns loadedData = persister.loadSavedCampaigns(activity, randomFileName);
+        Assert.assertNotNull(loadedData);
+        assertSavedCampaignsEqual(savedData.getJSONArray("campaigns"), loadedData);
+        Assert.assertEquals("abc", loadedData.rootFields.getString("id"));
+    }
+
+    @Test
+    public void testLoadSavedCampaigns() throws Exception {
+        String randomFileName = UUID.randomUUID().toString() + ".toto";
+        JSONObject savedData = makeSavedData();
+        persister.persistData(activity, savedData, randomFileName);
+
+        SavedCampaigns savedCampaigns = persister.loadSavedCampaigns(activity, randomFileName);
+        Assert.assertNotNull(savedCampaigns);
+        Assert.assertFalse(savedCampaigns.rootFields.has("campaigns"));
+        Assert.assertEquals("abc", savedCampaigns.rootFields.getString("id"));
+        assertSavedCampaignsEqual(savedData.getJSONArray("campaigns"), savedCampaigns);
+
+        Assert.assertNull(persister.loadSavedCampaigns(activity, UUID.randomUUID().toString()));
+    }
+
+    @Test
+    public void testLegacyFileIsConverted() throws Exception {
+        String randomFileName = UUID.randomUUID().toString() + ".toto";
+        String legacyFileName = UUID.randomUUID().toString() + ".json";
+        Assert.assertFalse(persister.migrateLegacyData(activity, legacyFileName, randomFileName));
+
+        JSONObject savedData = makeSavedData();
+        savedData.put(
+            LocalCampaignsFilePersistence.PERSISTENCE_SAVE_VERSION_KEY,
+            LocalCampaignsFilePersistence.PERSISTENCE_CURRENT_FILE_VERSION
+        );
+        File legacyFile = writeLegacyFile(legacyFileName, savedData);
+
+        Assert.assertTrue(persister.migrateLegacyData(activity, legacyFileName, randomFileName));
+        Assert.assertFalse("Legacy file should have been deleted", legacyFile.exists());
+        File file = new File(activity.getCacheDir(), randomFileName);
+        Assert.assertTrue("Legacy file should have been converted", CampaignsContainer.isContainer(file));
+
+        SavedCampaigns savedCampaigns = persister.loadSavedCampaigns(activity, randomFileName);
+        Assert.assertNotNull(savedCampaigns);
+        Assert.assertEquals("abc", savedCampaigns.rootFields.getString("id"));
+        assertSavedCampaignsEqual(savedData.getJSONArray("campaigns"), savedCampaigns);
+        Assert.assertFalse(persister.migrateLegacyData(activity, legacyFileName, randomFileName));
+
+        // Data saved under the new name is more recent: a legacy file is only deleted
+        savedData.put("id", "def");
+        legacyFile = writeLegacyFile(legacyFileName, savedData);
+        Assert.assertFalse(persister.migrateLegacyData(activity, legacyFileName, randomFileName));
+        Assert.assertFalse(legacyFile.exists());
+        savedCampaigns = persister.loadSavedCampaigns(activity, randomFileName);
+        Assert.assertNotNull(savedCampaigns);
+        Assert.assertEquals("abc", savedCampaigns.rootFields.getString("id"));
+    }
+
+    @Test
+    public void testLegacyFileWithWrongVersionIsDeleted() throws Exception {
+        String randomFileName = UUID.randomUUID().toString() + ".toto";
+        String legacyFileName = UUID.randomUUID().toString() + ".json";
+        JSONObject savedData = makeSavedData();
+        savedData.put(LocalCampaignsFilePersistence.PERSISTENCE_SAVE_VERSION_KEY, -1);
+        File legacyFile = writeLegacyFile(legacyFileName, savedData);
+
+        try {
+            persister.migrateLegacyData(activity, legacyFileName, randomFileName);
+            Assert.fail("Converting a legacy file with a wrong version should fail");
+        } catch (PersistenceException ignored) {}
+        Assert.assertFalse(legacyFile.exists());
+        Assert.assertFalse(persister.hasSavedData(activity, randomFileName));
+    }
+
+    @Test
+    public void testPatchData() throws Exception {
+        String randomFileName = UUID.randomUUID().toString() + ".toto";
+        JSONObject rootFields = new JSONObject().put("id", "def");
+        Assert.assertFalse(
+            persister.patchData(activity, rootFields, new JSONArray(), Collections.emptyList(), randomFileName)
+        );
+
+        JSONObject savedData = makeSavedData();
+        persister.persistData(activity, savedData, randomFileName);
+        JSONObject loadedRootFields = persister.loadRootFields(activity, randomFileName);
+        Assert.assertNotNull(loadedRootFields);
+        Assert.assertFalse(loadedRootFields.has("campaigns"));
+        Assert.assertEquals("abc", loadedRootFields.getString("id"));
+
+        JSONArray savedCampaigns = savedData.getJSONArray("campaigns");
+        JSONObject updatedCampaign = new JSONObject(savedCampaigns.getJSONObject(1));
+        updatedCampaign.put("priority", 10);
+        JSONObject addedCampaign = new JSONObject().put("campaignId", "campaign4");
+        Assert.assertTrue(
+            persister.patchData(
+                activity,
+                rootFields,
+                new JSONArray().put(updatedCampaign).put(addedCampaign),
+                Collections.singletonList("campaign2"),
+                randomFileName
+            )
+        );
+
+        JSONArray expectedCampaigns = new JSONArray()
+            .put(savedCampaigns.getJSONObject(0))
+            .put(savedCampaigns.getJSONObject(3))
+            .put(updatedCampaign)
+            .put(addedCampaign);
+        SavedCampaigns patchedCampaigns = persister.loadSavedCampaigns(activity, randomFileName);
+        Assert.assertNotNull(patchedCampaigns);
+        Assert.assertEquals("def", patchedCampaigns.rootFields.getString("id"));
+        Assert.assertTrue(persister.checkSaveVersion(patchedCampaigns.rootFields));
+        assertSavedCampaignsEqual(expectedCampaigns, patchedCampaigns);
+    }
+
+    @Test
+    public void testCorruptedContainer() throws Exception {
+        String randomFileName = UUID.randomUUID().toString() + ".toto";
+        persister.persistData(activity, makeSavedData(), randomFileName);
+
+        // Flip a byte of the index
+        File file = new File(activity.getCacheDir(), randomFileName);
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.seek(20);
+            int value = randomAccessFile.read();
+            randomAccessFile.seek(20);
+            randomAccessFile.write(value ^ 0xFF);
+        }
+
+        exception.expect(PersistenceException.class);
+        persister.loadSavedCampaigns(activity, randomFileName);
+    }
+
+    private File writeLegacyFile(String filename, JSONObject data) throws Exception {
+        File file = new File(activity.getCacheDir(), filename);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(data.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        return file;
+    }
+
+    private static JSONObject makeSavedData() throws Exception {
+        JSONArray campaigns = new JSONArray();
+        for (int i = 0; i < 3; i++) {
+            JSONObject output = new JSONObject();
+            output.put("type", "LANDING");
+            output.put("payload", new JSONObject().put("id", "landing" + i).put("values", new JSONArray().put(i)));
+            campaigns.put(new JSONObject().put("campaignId", "campaign" + i).put("output", output));
+        }
+        // Campaign without payload
+        campaigns.put(new JSONObject().put("campaignId", "campaign3"));
+
+        JSONObject savedData = new JSONObject();
+        savedData.put("id", "abc");
+        savedData.put("campaigns", campaigns);
+        return savedData;
+    }
+
+    private static void assertSavedCampaignsEqual(JSONArray expected, SavedCampaigns savedCampaigns)
+        throws Exception {
+        Assert.assertEquals(expected.length(), savedCampaigns.campaigns.size());
+        for (int i = 0; i < expected.length(); i++) {
+            JSONObject expectedCampaign = new JSONObject(expected.getJSONObject(i));
+            SavedCampaigns.Campaign campaign = savedCampaigns.campaigns.get(i);
+            JSONObject expectedOutput = expectedCampaign.optJSONObject("output");
+            if (expectedOutput == null) {
+                Assert.assertNull(campaign.payload);
+                Assert.assertEquals(expectedCampaign, campaign.json);
+                continue;
+            }
+
+            Assert.assertNotNull(campaign.payload);
+            Assert.assertEquals(expectedOutput.getJSONObject("payload"), campaign.payload.decode());
+            JSONObject outputWithoutPayload = new JSONObject(expectedOutput);
+            outputWithoutPayload.remove("payload");
+            expectedCampaign.put("output", outputWithoutPayload);
+            Assert.assertEquals(expectedCampaign, campaign.json);
+        }
     }
 }
@@ -17,6 +17,7 @@ import com.batch.android.query.response.LocalCampaignsResponse;
 import com.batch.android.query.serialization.deserializers.LocalCampaignsResponseDeserializer;
 import com.batch.android.query.serialization.serializers.LocalCampaignsResponseSerializer;
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -88,7 +89,7 @@ public class LocalCampaignsResponseSerializationTest {
         Assert.assertEquals(campaign.triggers.get(0).getType(), jsonTriggers.getJSONObject(0).getString("type"));
         Assert.assertTrue(campaign.output instanceof LandingOutput);
         Assert.assertEquals(
-            campaign.output.payload,
+            campaign.output.getPayload(),
             serializedCampaign.getJSONObject("output").getJSONObject("payload")
         );
         Assert.assertTrue(serializedCampaign.getBoolean("requireJIT"));
@@ -184,7 +185,7 @@ public class LocalCampaignsResponseSerializationTest {
 
         Assert.assertTrue(campaign.output instanceof LandingOutput);
         Assert.assertEquals(
-            campaign.output.payload,
+            campaign.output.getPayload(),
             serializedCampaign.getJSONObject("output").getJSONObject("payload")
         );
         Assert.assertTrue(serializedCampaign.getBoolean("requireJIT"));
@@ -249,14 +250,14 @@ public class LocalCampaignsResponseSerializationTest {
         Assert.assertNotNull(jsonTriggers);
         Assert.assertEquals(jsonTriggers.getJSONObject(0).getString("type"), campaign.triggers.get(0).getType());
         Assert.assertTrue(campaign.output instanceof LandingOutput);
-        Assert.assertEquals(jsonCampaign.getJSONObject("output").getJSONObject("payload"), campaign.output.payload);
+        Assert.assertEquals(jsonCampaign.getJSONObject("output").getJSONObject("payload"), campaign.output.getPayload());
         Assert.assertTrue(campaign.requiresJustInTimeSync);
 
         // Test ACTION deserialization
         jsonCampaign = validJsonCampaignsResponse.getJSONArray("campaigns").getJSONObject(1);
         campaign = response.getCampaigns().get(1);
         Assert.assertTrue(campaign.output instanceof ActionOutput);
-        Assert.assertEquals(jsonCampaign.getJSONObject("output").getJSONObject("payload"), campaign.output.payload);
+        Assert.assertEquals(jsonCampaign.getJSONObject("output").getJSONObject("payload"), campaign.output.getPayload());
     }
 
     @Test
@@ -333,14 +334,14 @@ public class LocalCampaignsResponseSerializationTest {
         Assert.assertNotNull(jsonTriggers);
         Assert.assertEquals(jsonTriggers.getJSONObject(0).getString("type"), campaign.triggers.get(0).getType());
         Assert.assertTrue(campaign.output instanceof LandingOutputCEP);
-        Assert.assertEquals(jsonCampaign.getJSONObject("output").getJSONObject("payload"), campaign.output.payload);
+        Assert.assertEquals(jsonCampaign.getJSONObject("output").getJSONObject("payload"), campaign.output.getPayload());
         Assert.assertTrue(campaign.requiresJustInTimeSync);
 
         // Test ACTION deserialization
         jsonCampaign = validJsonCampaignsResponse.getJSONArray("campaigns").getJSONObject(1);
         campaign = response.getCampaigns().get(1);
         Assert.assertTrue(campaign.output instanceof ActionOutput);
-        Assert.assertEquals(jsonCampaign.getJSONObject("output").getJSONObject("payload"), campaign.output.payload);
+        Assert.assertEquals(jsonCampaign.getJSONObject("output").getJSONObject("payload"), campaign.output.getPayload());
     }
 
     @Test
@@ -382,4 +383,30 @@ public class LocalCampaignsResponseSerializationTest {
         Assert.assertFalse(response.hasCampaigns());
         Assert.assertFalse(response.hasCappings());
     }
+
+    @Test
+    public void testPayloadSourceIsDecodedLazily() throws Exception {
+        JSONObject jsonCampaign = factory
+            .createValidJsonResponse(LocalCampaignsResponse.Version.CEP)
+            .getJSONArray("campaigns")
+            .getJSONObject(0);
+        JSONObject expectedPayload = jsonCampaign.getJSONObject("output").getJSONObject("payload");
+        jsonCampaign.getJSONObject("output").remove("payload");
+
+        AtomicInteger decodeCount = new AtomicInteger();
+        LocalCampaign campaign = new LocalCampaignDeserializer()
+            .deserialize(
+                jsonCampaign,
+                () -> {
+                    decodeCount.incrementAndGet();
+                    return new JSONObject(expectedPayload);
+                },
+                true
+            );
+        Assert.assertEquals("Payload should not be decoded before it is used", 0, decodeCount.get());
+
+        Assert.assertEquals(expectedPayload, campaign.output.getPayload());
+        Assert.assertSame(campaign.output.getPayload(), campaign.output.getPayload());
+        Assert.assertEquals(1, decodeCount.get());
+    }
 }
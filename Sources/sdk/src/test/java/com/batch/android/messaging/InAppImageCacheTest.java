@@ -0,0 +1,89 @@
+package com.batch.android.messaging;
+
+import android.content.Context;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+import com.batch.android.json.JSONObject;
+import com.batch.android.messaging.parsing.PayloadParser;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Collections;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(AndroidJUnit4.class)
+@SmallTest
+public class InAppImageCacheTest {
+
+    @Test
+    public void testPutAndGet() {
+        Context context = ApplicationProvider.getApplicationContext();
+        String url = "https://batch.com/image.png";
+        byte[] data = new byte[] { 1, 2, 3, 4 };
+
+        Assert.assertFalse(InAppImageCache.contains(context, url));
+        Assert.assertNull(InAppImageCache.get(context, url));
+
+        Assert.assertTrue(InAppImageCache.put(context, url, data));
+        Assert.assertTrue(InAppImageCache.contains(context, url));
+        Assert.assertArrayEquals(data, InAppImageCache.get(context, url));
+
+        // Images larger than the cache are not stored
+        String largeUrl = "https://batch.com/large.png";
+        Assert.assertFalse(
+            InAppImageCache.put(context, largeUrl, new byte[(int) InAppImageCache.MAX_CACHE_SIZE + 1])
+        );
+        Assert.assertFalse(InAppImageCache.contains(context, largeUrl));
+    }
+
+    @Test
+    public void testTrimDeletesLeastRecentlyUsedFirst() throws Exception {
+        Context context = ApplicationProvider.getApplicationContext();
+        File folder = new File(context.getCacheDir(), "trim_test");
+        Assert.assertTrue(folder.mkdirs() || folder.isDirectory());
+
+        File oldest = writeFile(folder, "oldest", 10, 1_000);
+        File middle = writeFile(folder, "middle", 10, 2_000);
+        File newest = writeFile(folder, "newest", 10, 3_000);
+
+        InAppImageCache.trimToSize(folder, 30);
+        Assert.assertTrue(oldest.exists());
+
+        InAppImageCache.trimToSize(folder, 25);
+        Assert.assertFalse(oldest.exists());
+        Assert.assertTrue(middle.exists());
+        Assert.assertTrue(newest.exists());
+
+        InAppImageCache.trimToSize(folder, 5);
+        Assert.assertFalse(middle.exists());
+        Assert.assertFalse(newest.exists());
+    }
+
+    @Test
+    public void testPrefetchedImageURLs() throws Exception {
+        JSONObject universalPayload = new JSONObject(
+            "{'id':'tmpid','kind':'universal','hero':'https://batch.com/hero.png','style':'@import sdk(\\\"generic1-v-cta\\\");'}"
+        );
+        Assert.assertEquals(
+            Collections.singletonList("https://batch.com/hero.png"),
+            InAppImagePrefetcher.getImageURLs(PayloadParser.parseUnknownLandingMessage(universalPayload))
+        );
+
+        // The hero image is not shown when there is a video
+        universalPayload.put("video", "https://batch.com/video.mp4");
+        Assert.assertTrue(
+            InAppImagePrefetcher.getImageURLs(PayloadParser.parseUnknownLandingMessage(universalPayload)).isEmpty()
+        );
+    }
+
+    private static File writeFile(File folder, String name, int size, long lastModified) throws Exception {
+        File file = new File(folder, name);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[size]);
+        }
+        Assert.assertTrue(file.setLastModified(lastModified));
+        return file;
+    }
+}
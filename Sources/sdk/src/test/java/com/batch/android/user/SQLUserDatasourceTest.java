@@ -0,0 +1,195 @@
+package com.batch.android.user;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(AndroidJUnit4.class)
+@SmallTest
+public class SQLUserDatasourceTest {
+
+    private SQLUserDatasource datasource;
+
+    @Before
+    public void setUp() {
+        datasource = new SQLUserDatasource(ApplicationProvider.getApplicationContext());
+        datasource.clear();
+    }
+
+    @After
+    public void tearDown() {
+        datasource.close();
+    }
+
+    @Test
+    public void testTransactionDiffMatchesFullDiff() throws Exception {
+        datasource.acquireTransactionLock(1);
+        datasource.setAttribute("unchanged", "value");
+        datasource.setAttribute("updated", 1L);
+        datasource.setAttribute("removed", true);
+        datasource.addTag("kept", "tag");
+        datasource.addTag("cleared", "a");
+        datasource.addTag("cleared", "b");
+        datasource.addTag("other", "removed");
+        datasource.commitTransaction();
+
+        Map<String, UserAttribute> previousAttributes = datasource.getAttributes();
+        Map<String, Set<String>> previousTagCollections = datasource.getTagCollections();
+
+        datasource.acquireTransactionLock(2);
+        datasource.setAttribute("unchanged", "value");
+        datasource.setAttribute("updated", 2L);
+        datasource.removeAttribute("removed");
+        datasource.setAttribute("added", new Date(123456000));
+        datasource.setAttribute("temporary", new URI("https://batch.com"));
+        datasource.removeAttribute("temporary");
+        datasource.addTag("kept", "tag");
+        datasource.clearTags("cleared");
+        datasource.addTag("cleared", "b");
+        datasource.addTag("cleared", "c");
+        datasource.removeTag("other", "removed");
+        datasource.addTag("new", "tag");
+        datasource.addTag("new", "temporary");
+        datasource.removeTag("new", "temporary");
+        UserDataDiff.Result diff = datasource.getTransactionDiff();
+        datasource.commitTransaction();
+
+        UserDataDiff.Result fullDiff = new UserDataDiff(
+            datasource.getAttributes(),
+            previousAttributes,
+            datasource.getTagCollections(),
+            previousTagCollections
+        )
+            .result;
+
+        assertEquals(fullDiff.addedAttributes, diff.addedAttributes);
+        assertEquals(fullDiff.removedAttributes, diff.removedAttributes);
+        assertEquals(fullDiff.addedTags, diff.addedTags);
+        assertEquals(fullDiff.removedTags, diff.removedTags);
+
+        assertEquals(2, diff.addedAttributes.size());
+        assertEquals(new UserAttribute(1L, AttributeType.LONG), diff.removedAttributes.get("c.updated"));
+        assertEquals(new UserAttribute(true, AttributeType.BOOL), diff.removedAttributes.get("c.removed"));
+        assertEquals(Collections.singleton("c"), diff.addedTags.get("cleared"));
+        assertEquals(Collections.singleton("tag"), diff.addedTags.get("new"));
+        assertEquals(Collections.singleton("a"), diff.removedTags.get("cleared"));
+        assertEquals(Collections.singleton("removed"), diff.removedTags.get("other"));
+    }
+
+    @Test
+    public void testTransactionDiffWithoutChanges() throws Exception {
+        datasource.acquireTransactionLock(1);
+        datasource.setAttribute("attribute", 1.5);
+        datasource.addTag("collection", "tag");
+        datasource.commitTransaction();
+
+        datasource.acquireTransactionLock(2);
+        datasource.clearAttributes();
+        datasource.setAttribute("attribute", 1.5);
+        datasource.clearTags();
+        datasource.addTag("collection", "tag");
+        UserDataDiff.Result diff = datasource.getTransactionDiff();
+        datasource.commitTransaction();
+
+        assertFalse(diff.hasChanges());
+        assertEquals(new HashMap<String, UserAttribute>(), diff.addedAttributes);
+        assertEquals(new HashMap<String, Set<String>>(), diff.removedTags);
+
+        datasource.acquireTransactionLock(3);
+        datasource.clearTags();
+        diff = datasource.getTransactionDiff();
+        datasource.rollbackTransaction();
+
+        assertTrue(diff.hasChanges());
+        assertEquals(new HashSet<>(Collections.singleton("tag")), diff.removedTags.get("collection"));
+    }
+
+    @Test
+    public void testTransactionDiffWithRestoredValues() throws Exception {
+        datasource.acquireTransactionLock(1);
+        datasource.setAttribute("attribute", "value");
+        datasource.setAttribute("other", 2L);
+        datasource.addTag("collection", "a");
+        datasource.addTag("collection", "b");
+        datasource.addTag("other", "tag");
+        datasource.commitTransaction();
+
+        // Every value is removed, then set back to what it was, within the same transaction
+        datasource.acquireTransactionLock(2);
+        datasource.removeAttribute("attribute");
+        datasource.setAttribute("attribute", "value");
+        datasource.clearAttributes();
+        datasource.setAttribute("attribute", "value");
+        datasource.setAttribute("other", 2L);
+        datasource.clearTags("collection");
+        datasource.addTag("collection", "b");
+        datasource.addTag("collection", "a");
+        datasource.removeTag("other", "tag");
+        datasource.addTag("other", "tag");
+        UserDataDiff.Result diff = datasource.getTransactionDiff();
+        datasource.commitTransaction();
+
+        assertFalse(diff.hasChanges());
+        assertTrue(diff.addedAttributes.isEmpty());
+        assertTrue(diff.removedAttributes.isEmpty());
+        assertTrue(diff.addedTags.isEmpty());
+        assertTrue(diff.removedTags.isEmpty());
+    }
+
+    @Test
+    public void testApplyTagOperations() throws Exception {
+        List<UserOperation> operations = new ArrayList<>();
+        // 600 new tags, 200 already added ones and 200 removals
+        for (int i = 0; i < 600; ++i) {
+            final String collection = "collection" + (i % 3);
+            final String tag = "tag" + i;
+            operations.add(userDatasource -> userDatasource.addTag(collection, tag));
+        }
+        for (int i = 0; i < 200; ++i) {
+            final String collection = "collection" + (i % 3);
+            final String tag = "tag" + i;
+            operations.add(userDatasource -> userDatasource.addTag(collection, tag));
+        }
+        for (int i = 400; i < 600; ++i) {
+            final String collection = "collection" + (i % 3);
+            final String tag = "tag" + i;
+            operations.add(userDatasource -> userDatasource.removeTag(collection, tag));
+        }
+        assertEquals(1000, operations.size());
+
+        datasource.acquireTransactionLock(1);
+        datasource.applyOperations(operations);
+        UserDataDiff.Result diff = datasource.getTransactionDiff();
+        datasource.commitTransaction();
+
+        int tagCount = 0;
+        for (Set<String> tags : datasource.getTagCollections().values()) {
+            tagCount += tags.size();
+        }
+        assertEquals(400, tagCount);
+
+        int addedTagCount = 0;
+        for (Set<String> tags : diff.addedTags.values()) {
+            addedTagCount += tags.size();
+        }
+        assertEquals(400, addedTagCount);
+        assertTrue(diff.removedTags.isEmpty());
+    }
+}